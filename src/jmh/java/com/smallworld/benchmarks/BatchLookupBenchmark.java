@@ -0,0 +1,74 @@
+package com.smallworld.benchmarks;
+
+import com.smallworld.AsyncTransactionDataFetcher;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to look up many clients at once: one query per client, one batch query for all of them, or one
+ * asynchronous request per client coalesced into batches by an {@link AsyncTransactionDataFetcher}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchLookupBenchmark {
+
+    /**
+     * Clients looked up per operation.
+     */
+    @State(Scope.Benchmark)
+    public static class Lookups {
+
+        @Param({"10", "1000"})
+        public int lookups;
+
+        List<String> clients;
+
+        AsyncTransactionDataFetcher async;
+
+        @Setup(Level.Trial)
+        public void setUp(LoadedFetcher loaded, TransactionFile file) {
+            clients = new ArrayList<>(lookups);
+            for (int lookup = 0; lookup < lookups; lookup++) {
+                clients.add(TransactionDataGenerator.clientName(lookup * 7919 % file.clients));
+            }
+            async = new AsyncTransactionDataFetcher(loaded.fetcher);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            async.close();
+        }
+    }
+
+    @Benchmark
+    public void oneQueryPerClient(LoadedFetcher loaded, Lookups lookups, Blackhole blackhole) {
+        for (String client : lookups.clients) {
+            blackhole.consume(loaded.fetcher.getTotalTransactionAmountSentBy(client));
+            blackhole.consume(loaded.fetcher.hasOpenComplianceIssues(client));
+        }
+    }
+
+    @Benchmark
+    public void batchQuery(LoadedFetcher loaded, Lookups lookups, Blackhole blackhole) {
+        blackhole.consume(loaded.fetcher.getTotalTransactionAmountSentBy(lookups.clients));
+        blackhole.consume(loaded.fetcher.hasOpenComplianceIssues(lookups.clients));
+    }
+
+    @Benchmark
+    public void coalescedRequests(Lookups lookups, Blackhole blackhole) {
+        List<CompletableFuture<?>> answers = new ArrayList<>(2 * lookups.lookups);
+        for (String client : lookups.clients) {
+            answers.add(lookups.async.getTotalTransactionAmountSentBy(client));
+            answers.add(lookups.async.hasOpenComplianceIssues(client));
+        }
+        blackhole.consume(CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0])).join());
+    }
+}
@@ -0,0 +1,64 @@
+package com.smallworld.benchmarks;
+
+import com.smallworld.CachingTransactionDataFetcher;
+import com.smallworld.TransactionDataFetcher;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a dashboard refresh, which runs every {@link TransactionDataFetcher} query once, directly or through
+ * a {@link CachingTransactionDataFetcher} on unchanged data.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DashboardBenchmark {
+
+    @Benchmark
+    public void dashboard(LoadedFetcher loaded, Blackhole blackhole) {
+        TransactionDataFetcher fetcher = loaded.fetcher;
+        blackhole.consume(fetcher.getTotalTransactionAmount());
+        blackhole.consume(fetcher.getTotalTransactionAmountSentBy(loaded.client));
+        blackhole.consume(fetcher.getMaxTransactionAmount());
+        blackhole.consume(fetcher.countUniqueClients());
+        blackhole.consume(fetcher.hasOpenComplianceIssues(loaded.client));
+        blackhole.consume(fetcher.getTransactionsByBeneficiaryName().get(loaded.client));
+        blackhole.consume(fetcher.getUnsolvedIssueIds());
+        blackhole.consume(fetcher.getAllSolvedIssueMessages());
+        blackhole.consume(fetcher.getTop3TransactionsByAmount());
+        blackhole.consume(fetcher.getTopSender());
+    }
+
+    /**
+     * Cache in front of the fetcher of the trial, filled by the warmup.
+     */
+    @State(Scope.Benchmark)
+    public static class CachedFetcher {
+
+        CachingTransactionDataFetcher fetcher;
+
+        @Setup(Level.Trial)
+        public void setUp(LoadedFetcher loaded) {
+            fetcher = new CachingTransactionDataFetcher(loaded.fetcher, 100);
+        }
+    }
+
+    @Benchmark
+    public void cachedDashboard(LoadedFetcher loaded, CachedFetcher cached, Blackhole blackhole) {
+        CachingTransactionDataFetcher fetcher = cached.fetcher;
+        blackhole.consume(fetcher.getTotalTransactionAmount());
+        blackhole.consume(fetcher.getTotalTransactionAmountSentBy(loaded.client));
+        blackhole.consume(fetcher.getMaxTransactionAmount());
+        blackhole.consume(fetcher.countUniqueClients());
+        blackhole.consume(fetcher.hasOpenComplianceIssues(loaded.client));
+        blackhole.consume(fetcher.getTransactionsByBeneficiaryName().get(loaded.client));
+        blackhole.consume(fetcher.getUnsolvedIssueIds());
+        blackhole.consume(fetcher.getAllSolvedIssueMessages());
+        blackhole.consume(fetcher.getTop3TransactionsByAmount());
+        blackhole.consume(fetcher.getTopSender());
+    }
+}
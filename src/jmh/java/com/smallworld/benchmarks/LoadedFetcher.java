@@ -0,0 +1,47 @@
+package com.smallworld.benchmarks;
+
+import com.smallworld.JsonFileParser;
+import com.smallworld.TransactionDataFetcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+
+/**
+ * Fetcher over a generated file, loaded once per trial.
+ */
+@State(Scope.Benchmark)
+public class LoadedFetcher {
+
+    /**
+     * How the fetcher answers: scanning the store on the calling thread, from the precomputed index,
+     * or scanning the store on the common fork-join pool.
+     */
+    @Param({"scan", "indexed", "parallel"})
+    public String mode;
+
+    public TransactionDataFetcher fetcher;
+
+    /**
+     * Client the per-client queries ask for.
+     */
+    public String client;
+
+    @Setup(Level.Trial)
+    public void load(TransactionFile file) throws IOException {
+        TransactionDataFetcher loaded = new TransactionDataFetcher(JsonFileParser.readTransactionStore(file.path));
+        switch (mode) {
+            case "scan":
+                fetcher = loaded;
+                break;
+            case "indexed":
+                fetcher = loaded.indexed();
+                break;
+            case "parallel":
+                fetcher = loaded.parallel();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+        client = TransactionDataGenerator.clientName(file.clients / 2);
+    }
+}
@@ -0,0 +1,57 @@
+package com.smallworld.benchmarks;
+
+import com.smallworld.JsonFileParser;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.data.TransactionStore;
+import com.smallworld.data.TransactionStoreFile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load a whole generated file with each of the parsing modes, and to map the same data from a binary
+ * {@link TransactionStoreFile}. Parse throughput in rows per second is the {@code rows} parameter divided by the
+ * reported time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Benchmark
+    public List<Transaction> readTransactionJsonFile(TransactionFile file) throws IOException {
+        return JsonFileParser.readTransactionJsonFile(file.path);
+    }
+
+    @Benchmark
+    public void forEachTransaction(TransactionFile file, Blackhole blackhole) throws IOException {
+        JsonFileParser.forEachTransaction(file.path, blackhole::consume);
+    }
+
+    @Benchmark
+    public TransactionStore readTransactionStore(TransactionFile file) throws IOException {
+        return JsonFileParser.readTransactionStore(file.path);
+    }
+
+    @Benchmark
+    public TransactionStore readTransactionStoreInParallel(TransactionFile file) throws IOException {
+        return JsonFileParser.readTransactionStore(file.path, ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public TransactionStore mapTransactionStoreFile(TransactionFile file) throws IOException {
+        return TransactionStoreFile.map(file.storePath);
+    }
+
+    @Benchmark
+    public TransactionDataFetcher fromJsonFile(TransactionFile file) throws IOException {
+        return TransactionDataFetcher.fromJsonFile(file.path);
+    }
+}
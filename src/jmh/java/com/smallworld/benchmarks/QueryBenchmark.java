@@ -0,0 +1,86 @@
+package com.smallworld.benchmarks;
+
+import com.smallworld.data.TransactionRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of every {@link com.smallworld.TransactionDataFetcher} query on loaded data.
+ * Run with the GC profiler, as {@link BenchmarkRunner} does, to see the allocation rate of each query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Benchmark
+    public double getTotalTransactionAmount(LoadedFetcher loaded) {
+        return loaded.fetcher.getTotalTransactionAmount();
+    }
+
+    @Benchmark
+    public double getTotalTransactionAmountSentBy(LoadedFetcher loaded) {
+        return loaded.fetcher.getTotalTransactionAmountSentBy(loaded.client);
+    }
+
+    @Benchmark
+    public double getMaxTransactionAmount(LoadedFetcher loaded) {
+        return loaded.fetcher.getMaxTransactionAmount();
+    }
+
+    @Benchmark
+    public long countUniqueClients(LoadedFetcher loaded) {
+        return loaded.fetcher.countUniqueClients();
+    }
+
+    @Benchmark
+    public double sketchAmountPercentile(LoadedFetcher loaded) {
+        return loaded.fetcher.sketch().estimateAmountQuantile(0.95);
+    }
+
+    @Benchmark
+    public boolean hasOpenComplianceIssues(LoadedFetcher loaded) {
+        return loaded.fetcher.hasOpenComplianceIssues(loaded.client);
+    }
+
+    @Benchmark
+    public Set<Integer> getOpenIssuesForClient(LoadedFetcher loaded) {
+        return loaded.fetcher.getOpenIssuesForClient(loaded.client);
+    }
+
+    @Benchmark
+    public List<TransactionRecord> getTransactionsByBeneficiaryName(LoadedFetcher loaded) {
+        return loaded.fetcher.getTransactionsByBeneficiaryName().get(loaded.client);
+    }
+
+    @Benchmark
+    public List<TransactionRecord> getTransactionsByBeneficiaryNamePage(LoadedFetcher loaded) {
+        return loaded.fetcher.getTransactionsByBeneficiaryName(loaded.client, 0, 100);
+    }
+
+    @Benchmark
+    public Set<Integer> getUnsolvedIssueIds(LoadedFetcher loaded) {
+        return loaded.fetcher.getUnsolvedIssueIds();
+    }
+
+    @Benchmark
+    public List<String> getAllSolvedIssueMessages(LoadedFetcher loaded) {
+        return loaded.fetcher.getAllSolvedIssueMessages();
+    }
+
+    @Benchmark
+    public List<TransactionRecord> getTop3TransactionsByAmount(LoadedFetcher loaded) {
+        return loaded.fetcher.getTop3TransactionsByAmount();
+    }
+
+    @Benchmark
+    public Optional<String> getTopSender(LoadedFetcher loaded) {
+        return loaded.fetcher.getTopSender();
+    }
+}
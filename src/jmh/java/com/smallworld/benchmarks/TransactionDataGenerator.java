@@ -0,0 +1,151 @@
+package com.smallworld.benchmarks;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Writes synthetic json files shaped like {@code transactions.json}: rows of the transaction/transaction_issue join,
+ * the rows of a transaction with several issues next to each other. The output only depends on the parameters,
+ * so the same seed always gives the same file.
+ */
+public class TransactionDataGenerator {
+
+    /**
+     * Share of the transactions that have at least one issue.
+     */
+    private static final double FLAGGED_TRANSACTIONS = 0.25;
+
+    /**
+     * Share of the issues that are solved.
+     */
+    private static final double SOLVED_ISSUES = 0.6;
+
+    private static final String[] ISSUE_MESSAGES = {
+            "Looks like money laundering", "Never gonna give you up", "Something's fishy",
+            "Never gonna let you down", "Something ain't right", "Don't let this transaction happen"
+    };
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final int rows;
+
+    private final int issueFanOut;
+
+    private final int clients;
+
+    private final long seed;
+
+    /**
+     * @param rows - number of json rows to write.
+     * @param issueFanOut - highest number of issues, and so rows, of a single transaction.
+     * @param clients - number of distinct client names, senders and beneficiaries together.
+     * @param seed - seed of the random data.
+     */
+    public TransactionDataGenerator(int rows, int issueFanOut, int clients, long seed) {
+        if (rows < 0 || issueFanOut < 1 || clients < 1) {
+            throw new IllegalArgumentException("rows must not be negative, issueFanOut and clients must be positive");
+        }
+        this.rows = rows;
+        this.issueFanOut = issueFanOut;
+        this.clients = clients;
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the generated file for the parameters in the temporary directory, writing it only if it is not there yet,
+     * so that benchmark runs share the files.
+     * @return path of the json file.
+     * @throws IOException - when the file cannot be written.
+     */
+    public Path cachedFile() throws IOException {
+        Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "smallworld-benchmarks");
+        Path file = directory.resolve(String.format("transactions-%d-%d-%d-%d.json", rows, issueFanOut, clients, seed));
+        if (!Files.exists(file)) {
+            Files.createDirectories(directory);
+            Path partial = Files.createTempFile(directory, "transactions", ".partial");
+            write(partial);
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file;
+    }
+
+    /**
+     * Writes the json rows to the file.
+     * @param file - json file to write.
+     * @throws IOException - when the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        Random random = new Random(seed);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(file.toFile(), JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartArray();
+            int mtn = 0;
+            int issueId = 0;
+            for (int written = 0; written < rows; ) {
+                mtn += 1 + random.nextInt(16);
+                long amount = 100 + (long) (random.nextDouble() * random.nextDouble() * 1_000_000);
+                int sender = random.nextInt(clients);
+                int beneficiary = random.nextInt(clients);
+                int issues = random.nextDouble() < FLAGGED_TRANSACTIONS ? 1 + random.nextInt(issueFanOut) : 0;
+                do {
+                    generator.writeStartObject();
+                    generator.writeNumberField("mtn", mtn);
+                    generator.writeNumberField("amount", BigDecimal.valueOf(amount, 2));
+                    generator.writeStringField("senderFullName", clientName(sender));
+                    generator.writeNumberField("senderAge", clientAge(sender));
+                    generator.writeStringField("beneficiaryFullName", clientName(beneficiary));
+                    generator.writeNumberField("beneficiaryAge", clientAge(beneficiary));
+                    if (issues == 0) {
+                        generator.writeNullField("issueId");
+                        generator.writeBooleanField("issueSolved", true);
+                        generator.writeNullField("issueMessage");
+                    } else {
+                        generator.writeNumberField("issueId", ++issueId);
+                        generator.writeBooleanField("issueSolved", random.nextDouble() < SOLVED_ISSUES);
+                        generator.writeStringField("issueMessage", ISSUE_MESSAGES[random.nextInt(ISSUE_MESSAGES.length)]);
+                    }
+                    generator.writeEndObject();
+                    written++;
+                } while (--issues > 0 && written < rows);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Returns the full name of a generated client.
+     */
+    public static String clientName(int client) {
+        return "Client " + client;
+    }
+
+    private static int clientAge(int client) {
+        return 18 + Math.floorMod(client * 31, 70);
+    }
+
+    /**
+     * Writes a file, e.g. {@code java -cp target/benchmarks.jar com.smallworld.benchmarks.TransactionDataGenerator
+     * transactions-1m.json 1000000 3 10000 42}.
+     * @param args - path, rows, issue fan-out, clients and seed, the last three optional.
+     * @throws IOException - when the file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TransactionDataGenerator <file> <rows> [issueFanOut] [clients] [seed]");
+            System.exit(2);
+        }
+        int issueFanOut = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int clients = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        new TransactionDataGenerator(Integer.parseInt(args[1]), issueFanOut, clients, seed).write(Paths.get(args[0]));
+    }
+}
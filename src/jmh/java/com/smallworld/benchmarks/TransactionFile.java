@@ -0,0 +1,56 @@
+package com.smallworld.benchmarks;
+
+import com.smallworld.JsonFileParser;
+import com.smallworld.data.TransactionStoreFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Generated json file the benchmarks read, one per combination of the parameters.
+ */
+@State(Scope.Benchmark)
+public class TransactionFile {
+
+    /**
+     * Number of json rows.
+     */
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    /**
+     * Highest number of issues of a single transaction.
+     */
+    @Param({"3"})
+    public int issueFanOut;
+
+    /**
+     * Number of distinct clients.
+     */
+    @Param({"10000"})
+    public int clients;
+
+    @Param({"42"})
+    public long seed;
+
+    /**
+     * Path of the generated json file.
+     */
+    public String path;
+
+    /**
+     * Path of the same data as a binary {@link TransactionStoreFile}.
+     */
+    public String storePath;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        path = new TransactionDataGenerator(rows, issueFanOut, clients, seed).cachedFile().toString();
+        storePath = path.replaceAll("\\.json$", ".store");
+        if (!Files.exists(Paths.get(storePath))) {
+            TransactionStoreFile.write(JsonFileParser.readTransactionStore(path), storePath);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.smallworld;
+
+import com.smallworld.metrics.Metrics;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous per-client lookups for callers that fire many small requests concurrently, e.g. one per API call.
+ * Requests arriving within a short window are coalesced into one batch query, see
+ * {@link TransactionDataFetcher#getTotalTransactionAmountSentBy(java.util.Collection)}: a thousand concurrent
+ * lookups cost one pass over the transactions instead of a thousand, so the more requests arrive, the more every
+ * pass answers. The first request of a batch waits for the window, and a batch that reaches the maximum size
+ * is run at once. Windows are waited and batches run on virtual threads, so waiting requests hold no platform thread.
+ * <p>
+ * Requests for the same client in the same batch share one answer. Every batch runs against a single fetcher,
+ * for a concurrent fetcher its latest snapshot when the batch runs.
+ */
+public class AsyncTransactionDataFetcher implements AutoCloseable {
+
+    /**
+     * Window a batch waits for more requests when none is given, short next to a request's own latency.
+     */
+    public static final Duration DEFAULT_WINDOW = Duration.ofMillis(1);
+
+    /**
+     * Number of distinct clients a batch holds at most when none is given.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 4096;
+
+    private final Supplier<TransactionDataFetcher> fetcher;
+
+    private final Duration window;
+
+    private final int maxBatchSize;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Batcher<Double> sentAmounts = new Batcher<>(TransactionDataFetcher::getTotalTransactionAmountSentBy);
+
+    private final Batcher<Boolean> openIssues = new Batcher<>(TransactionDataFetcher::hasOpenComplianceIssues);
+
+    public AsyncTransactionDataFetcher(TransactionDataFetcher fetcher) {
+        this(fetcher, DEFAULT_WINDOW, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Coalesces the lookups on a fetcher, which must not be appended to while batches run.
+     * @param fetcher - fetcher answering the batches.
+     * @param window - time the first request of a batch waits for others, zero to run batches as soon as possible.
+     * @param maxBatchSize - number of distinct clients that makes a batch run before its window is over.
+     */
+    public AsyncTransactionDataFetcher(TransactionDataFetcher fetcher, Duration window, int maxBatchSize) {
+        this(() -> fetcher, window, maxBatchSize);
+    }
+
+    /**
+     * Coalesces the lookups on a concurrent fetcher. Every batch runs against its latest snapshot.
+     * @param fetcher - fetcher answering the batches.
+     * @param window - time the first request of a batch waits for others, zero to run batches as soon as possible.
+     * @param maxBatchSize - number of distinct clients that makes a batch run before its window is over.
+     */
+    public AsyncTransactionDataFetcher(ConcurrentTransactionDataFetcher fetcher, Duration window, int maxBatchSize) {
+        this(fetcher::snapshot, window, maxBatchSize);
+    }
+
+    private AsyncTransactionDataFetcher(Supplier<TransactionDataFetcher> fetcher, Duration window, int maxBatchSize) {
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("window must not be negative: " + window);
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+        this.fetcher = fetcher;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Returns the sum of the amounts of all transactions sent by a client, once its batch ran.
+     * @param senderFullName - Full name of the sender whose data needs to be retrieved.
+     * @return future sum, completed exceptionally if the batch failed.
+     */
+    public CompletableFuture<Double> getTotalTransactionAmountSentBy(String senderFullName) {
+        return sentAmounts.submit(senderFullName);
+    }
+
+    /**
+     * Returns whether a client has a transaction with an unsolved compliance issue, once its batch ran.
+     * @param clientFullName - sender or beneficiary name whose data needs to be retrieved.
+     * @return future answer, completed exceptionally if the batch failed.
+     */
+    public CompletableFuture<Boolean> hasOpenComplianceIssues(String clientFullName) {
+        return openIssues.submit(clientFullName);
+    }
+
+    /**
+     * Stops accepting requests and waits for the pending batches to be answered.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    /**
+     * Collects the requests of one query into batches and runs them.
+     */
+    private final class Batcher<R> {
+
+        private final BiFunction<TransactionDataFetcher, Collection<String>, Map<String, R>> query;
+
+        // Guarded by this
+
+        /**
+         * Requests of the batch being collected, per client name.
+         */
+        private Map<String, List<CompletableFuture<R>>> pending = new LinkedHashMap<>();
+
+        /**
+         * Number of batches taken so far, so that a window only runs the batch it was started for.
+         */
+        private long taken;
+
+        private Batcher(BiFunction<TransactionDataFetcher, Collection<String>, Map<String, R>> query) {
+            this.query = query;
+        }
+
+        private CompletableFuture<R> submit(String clientFullName) {
+            CompletableFuture<R> answer = new CompletableFuture<>();
+            Map<String, List<CompletableFuture<R>>> full = null;
+            long batch = -1;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    batch = taken;
+                }
+                pending.computeIfAbsent(clientFullName, name -> new ArrayList<>()).add(answer);
+                if (pending.size() >= maxBatchSize) {
+                    full = take();
+                    batch = -1;
+                }
+            }
+            try {
+                if (full != null) {
+                    Map<String, List<CompletableFuture<R>>> requests = full;
+                    executor.execute(() -> run(requests));
+                } else if (batch >= 0) {
+                    long started = batch;
+                    executor.execute(() -> runAfterWindow(started));
+                }
+            } catch (RejectedExecutionException e) {
+                Map<String, List<CompletableFuture<R>>> requests = full;
+                if (requests == null) {
+                    synchronized (this) {
+                        requests = take();
+                    }
+                }
+                fail(requests, new IllegalStateException("The fetcher is closed", e));
+            }
+            return answer;
+        }
+
+        private void runAfterWindow(long batch) {
+            if (!window.isZero()) {
+                try {
+                    Thread.sleep(window);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Map<String, List<CompletableFuture<R>>> requests;
+            synchronized (this) {
+                // a batch that filled up before its window ended was already run
+                if (taken != batch) {
+                    return;
+                }
+                requests = take();
+            }
+            run(requests);
+        }
+
+        private Map<String, List<CompletableFuture<R>>> take() {
+            Map<String, List<CompletableFuture<R>>> requests = pending;
+            pending = new LinkedHashMap<>();
+            taken++;
+            return requests;
+        }
+
+        private void run(Map<String, List<CompletableFuture<R>>> requests) {
+            Metrics.increment("async.batches", 1);
+            Metrics.increment("async.batchedClients", requests.size());
+            Map<String, R> answers;
+            try {
+                answers = query.apply(fetcher.get(), requests.keySet());
+            } catch (RuntimeException e) {
+                fail(requests, e);
+                return;
+            }
+            requests.forEach((clientFullName, futures) -> futures.forEach(future -> future.complete(answers.get(clientFullName))));
+        }
+
+        private void fail(Map<String, List<CompletableFuture<R>>> requests, RuntimeException e) {
+            requests.values().forEach(futures -> futures.forEach(future -> future.completeExceptionally(e)));
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.smallworld;
+
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.metrics.Metrics;
+import com.smallworld.metrics.MetricsRecorder;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Transaction data fetcher that remembers the answers of the queries, for dashboards that ask the same questions
+ * over and over while the data rarely changes. Answers are kept per query and argument in a bounded cache that
+ * evicts the least recently used entry. The cache is tied to the version of the data: the first query after
+ * the data changed drops every entry, so an answer is never served for data it was not computed from.
+ * The cache may be shared by threads as far as the wrapped fetcher may.
+ * Collections are returned as unmodifiable views, because every caller of a cached answer gets the same instance.
+ */
+public class CachingTransactionDataFetcher {
+
+    /**
+     * Returns the fetcher the next query runs against. The version of a returned fetcher does not change while
+     * a query runs on it, except for a plain fetcher appended to by the thread that queries it.
+     */
+    private final Supplier<TransactionDataFetcher> fetcher;
+
+    private final int maximumSize;
+
+    /**
+     * Cached answers in access order, guarded by itself.
+     */
+    private final Map<List<Object>, Object> answers;
+
+    // Guarded by answers
+
+    private long version = -1;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    private long invalidations;
+
+    /**
+     * Caches the answers of a fetcher, also one that is appended to.
+     * @param fetcher - fetcher answering the queries.
+     * @param maximumSize - number of answers kept at most.
+     */
+    public CachingTransactionDataFetcher(TransactionDataFetcher fetcher, int maximumSize) {
+        this(() -> fetcher, maximumSize);
+    }
+
+    /**
+     * Caches the answers of a concurrent fetcher. Queries run against its latest snapshot.
+     * @param fetcher - fetcher answering the queries.
+     * @param maximumSize - number of answers kept at most.
+     */
+    public CachingTransactionDataFetcher(ConcurrentTransactionDataFetcher fetcher, int maximumSize) {
+        this(fetcher::snapshot, maximumSize);
+    }
+
+    private CachingTransactionDataFetcher(Supplier<TransactionDataFetcher> fetcher, int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        this.fetcher = fetcher;
+        this.maximumSize = maximumSize;
+        this.answers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+                if (size() > CachingTransactionDataFetcher.this.maximumSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached answer of the query for the version of the data, computing it on a miss.
+     * The answer is computed outside the lock, so two threads missing the same entry may both compute it.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cached(String query, Object argument, Function<TransactionDataFetcher, T> compute) {
+        TransactionDataFetcher current = fetcher.get();
+        long currentVersion = current.version();
+        List<Object> key = Arrays.asList(query, argument);
+        synchronized (answers) {
+            invalidateUnless(currentVersion);
+            // a thread still holding an older snapshot of a concurrent fetcher computes its own answer
+            Object answer = version == currentVersion ? answers.get(key) : null;
+            if (answer != null) {
+                hits++;
+                return (T) answer;
+            }
+            misses++;
+        }
+        T answer = compute.apply(current);
+        synchronized (answers) {
+            // the data may have changed meanwhile, the answer is only kept for the latest version
+            invalidateUnless(currentVersion);
+            if (version == currentVersion) {
+                answers.put(key, answer);
+            }
+        }
+        return answer;
+    }
+
+    private void invalidateUnless(long currentVersion) {
+        if (currentVersion > version) {
+            if (!answers.isEmpty()) {
+                invalidations++;
+                answers.clear();
+            }
+            version = currentVersion;
+        }
+    }
+
+    /**
+     * Returns the number of queries answered from the cache.
+     */
+    public long hitCount() {
+        synchronized (answers) {
+            return hits;
+        }
+    }
+
+    /**
+     * Returns the number of queries that had to be computed.
+     */
+    public long missCount() {
+        synchronized (answers) {
+            return misses;
+        }
+    }
+
+    /**
+     * Returns the number of answers dropped to make room for newer ones.
+     */
+    public long evictionCount() {
+        synchronized (answers) {
+            return evictions;
+        }
+    }
+
+    /**
+     * Returns the number of times the cached answers were dropped because the data changed.
+     */
+    public long invalidationCount() {
+        synchronized (answers) {
+            return invalidations;
+        }
+    }
+
+    /**
+     * Returns the number of answers currently cached.
+     */
+    public int size() {
+        synchronized (answers) {
+            return answers.size();
+        }
+    }
+
+    /**
+     * Publishes the statistics of the cache as gauges of the installed {@link MetricsRecorder}, named after the
+     * given prefix: {@code <prefix>.hits}, {@code .misses}, {@code .evictions}, {@code .invalidations} and
+     * {@code .size}. Gauges of the same name are replaced.
+     * @param prefix - start of the gauge names, e.g. {@code cache.dashboard}.
+     * @return this cache.
+     */
+    public CachingTransactionDataFetcher registerMetrics(String prefix) {
+        Metrics.gauge(prefix + ".hits", this::hitCount);
+        Metrics.gauge(prefix + ".misses", this::missCount);
+        Metrics.gauge(prefix + ".evictions", this::evictionCount);
+        Metrics.gauge(prefix + ".invalidations", this::invalidationCount);
+        Metrics.gauge(prefix + ".size", this::size);
+        return this;
+    }
+
+    /**
+     * Returns the sum of the amounts of all transactions
+     */
+    public double getTotalTransactionAmount() {
+        return cached("getTotalTransactionAmount", null, TransactionDataFetcher::getTotalTransactionAmount);
+    }
+
+    /**
+     * Returns the sum of the amounts of all transactions sent by the specified client
+     *
+     * @param senderFullName - Full name of the sender whose data needs to be retrieved.
+     */
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        return cached("getTotalTransactionAmountSentBy", senderFullName,
+                current -> current.getTotalTransactionAmountSentBy(senderFullName));
+    }
+
+    /**
+     * Returns the highest transaction amount
+     * {@link double}
+     */
+    public double getMaxTransactionAmount() {
+        return cached("getMaxTransactionAmount", null, TransactionDataFetcher::getMaxTransactionAmount);
+    }
+
+    /**
+     * Counts the number of unique clients that sent or received a transaction
+     *  @return The count of unique clients (senders or beneficiaries) involved in the transactions.
+     */
+    public long countUniqueClients() {
+        return cached("countUniqueClients", null, TransactionDataFetcher::countUniqueClients);
+    }
+
+    /**
+     * Returns whether a client (sender or beneficiary) has at least one transaction with a compliance
+     * issue that has not been solved
+     * @param clientFullName - beneficiary name whose data needs to be retrieved.
+     * @return {@code true} if the client has at least one transaction with an unsolved compliance issue, {@code false} otherwise.
+     */
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        return cached("hasOpenComplianceIssues", clientFullName,
+                current -> current.hasOpenComplianceIssues(clientFullName));
+    }
+
+    /**
+     * Returns the identifiers of the unsolved compliance issues on the transactions a client sent or received.
+     * @param clientFullName - sender or beneficiary name whose data needs to be retrieved.
+     * @return {@link Set} of unsolved issue ids, empty if the client has none or is unknown.
+     */
+    public Set<Integer> getOpenIssuesForClient(String clientFullName) {
+        return cached("getOpenIssuesForClient", clientFullName,
+                current -> Collections.unmodifiableSet(current.getOpenIssuesForClient(clientFullName)));
+    }
+
+    /**
+     * Returns all transactions indexed by beneficiary name
+     * @return A {@link Map} containing transactions indexed by beneficiary name.
+     */
+    public Map<String, List<TransactionRecord>> getTransactionsByBeneficiaryName() {
+        return cached("getTransactionsByBeneficiaryName", null, TransactionDataFetcher::getTransactionsByBeneficiaryName);
+    }
+
+    /**
+     * Counts the transactions received by a beneficiary.
+     * @param beneficiaryFullName - beneficiary name whose data needs to be retrieved.
+     * @return number of transactions, 0 for an unknown beneficiary.
+     */
+    public int countTransactionsByBeneficiaryName(String beneficiaryFullName) {
+        return cached("countTransactionsByBeneficiaryName", beneficiaryFullName,
+                current -> current.countTransactionsByBeneficiaryName(beneficiaryFullName));
+    }
+
+    /**
+     * Returns a page of the transactions received by a beneficiary, see
+     * {@link TransactionDataFetcher#getTransactionsByBeneficiaryName(String, int, int)}. Pages are cached one by one.
+     * @param beneficiaryFullName - beneficiary name whose data needs to be retrieved.
+     * @param offset - number of transactions to skip.
+     * @param limit - number of transactions to return at most.
+     * @return {@link List} of at most limit transactions, empty past the last one.
+     */
+    public List<TransactionRecord> getTransactionsByBeneficiaryName(String beneficiaryFullName, int offset, int limit) {
+        return cached("getTransactionsByBeneficiaryName", Arrays.asList(beneficiaryFullName, offset, limit),
+                current -> Collections.unmodifiableList(current.getTransactionsByBeneficiaryName(beneficiaryFullName, offset, limit)));
+    }
+
+    /**
+     * Returns the identifiers of all open compliance issues.
+     * {@link Set} of unsolved issue ids.
+     */
+    public Set<Integer> getUnsolvedIssueIds() {
+        return cached("getUnsolvedIssueIds", null,
+                current -> Collections.unmodifiableSet(current.getUnsolvedIssueIds()));
+    }
+
+    /**
+     * Returns a list of all solved issue messages
+     * {@link List} of all the messages of the issues that are resolved.
+     */
+    public List<String> getAllSolvedIssueMessages() {
+        return cached("getAllSolvedIssueMessages", null,
+                current -> Collections.unmodifiableList(current.getAllSolvedIssueMessages()));
+    }
+
+    /**
+     * Retrieves top 3 transactions with the highest amount.
+     * @return {@link List} contaning top 3 transactions with the highest amount in descending order.
+     */
+    public List<TransactionRecord> getTop3TransactionsByAmount() {
+        return getTopNTransactionsByAmount(3);
+    }
+
+    /**
+     * Retrieves the n transactions with the highest amount, see {@link TransactionDataFetcher#getTopNTransactionsByAmount(int)}.
+     * @param n - number of transactions to return.
+     * @return {@link List} containing at most n transactions with the highest amount in descending order.
+     */
+    public List<TransactionRecord> getTopNTransactionsByAmount(int n) {
+        return cached("getTopNTransactionsByAmount", n,
+                current -> Collections.unmodifiableList(current.getTopNTransactionsByAmount(n)));
+    }
+
+    /**
+     * Returns the senderFullName of the sender with the most total sent amount
+     * @return full name of the sender
+     */
+    public Optional<String> getTopSender() {
+        return cached("getTopSender", null, TransactionDataFetcher::getTopSender);
+    }
+
+    /**
+     * Returns the n senders with the most total sent amount, see {@link TransactionDataFetcher#getTopNSenders(int)}.
+     * @param n - number of senders to return.
+     * @return full names of at most n senders in descending order of total sent amount.
+     */
+    public List<String> getTopNSenders(int n) {
+        return cached("getTopNSenders", n, current -> Collections.unmodifiableList(current.getTopNSenders(n)));
+    }
+}
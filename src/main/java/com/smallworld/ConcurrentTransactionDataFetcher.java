@@ -0,0 +1,349 @@
+package com.smallworld;
+
+import com.smallworld.data.Amounts;
+import com.smallworld.data.Transaction;
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionSketches;
+import com.smallworld.data.TransactionStore;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Transaction data fetcher that can be shared by request threads while a loader thread keeps appending to it.
+ * Writers are serialized and publish an immutable snapshot of the data after every change, readers only read
+ * the latest published snapshot from a volatile field, so they never block and never see a change half made.
+ * Every query runs against a single snapshot; use {@link #snapshot()} to run several queries against the same one.
+ * <p>
+ * Publishing costs little next to the change itself, see {@link TransactionStore#snapshot()}, so even rows appended
+ * one by one are published one by one. The total and highest amounts are kept up to date by the writers. The other
+ * queries are answered from a read-only {@link TransactionIndex} per version, built by the first reader of the
+ * version: it copies the index of the latest version read so far and folds in only the changes made since, so
+ * readers do not scan the data however often it changes. Versions published but never read are never indexed.
+ */
+public class ConcurrentTransactionDataFetcher {
+
+    /**
+     * Serializes the writers.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Data the writers change, guarded by {@link #writeLock}.
+     */
+    private final TransactionStore store;
+
+    // Running aggregates in minor units, guarded by writeLock
+
+    private long totalAmount;
+
+    private long maxAmount;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Latest version whose index has been built, the one the next index is copied from.
+     */
+    private final AtomicReference<Snapshot> indexedSnapshot = new AtomicReference<>();
+
+    public ConcurrentTransactionDataFetcher() {
+        this(Collections.emptyList());
+    }
+
+    public ConcurrentTransactionDataFetcher(List<Transaction> transactionList) {
+        store = new TransactionStore(transactionList.size());
+        synchronized (writeLock) {
+            transactionList.forEach(this::add);
+            snapshot = new Snapshot(0, store.snapshot(), totalAmount, maxAmount);
+        }
+    }
+
+    /**
+     * Immutable state of the data at one version, with the aggregates that are kept up to date by the writers.
+     */
+    private static class Snapshot {
+
+        private final long version;
+
+        private final TransactionStore store;
+
+        private final long totalAmount;
+
+        private final long maxAmount;
+
+        /**
+         * Index over {@link #store}, set before {@link #fetcher} by the first reader of the version.
+         */
+        private TransactionIndex index;
+
+        private volatile TransactionDataFetcher fetcher;
+
+        private Snapshot(long version, TransactionStore store, long totalAmount, long maxAmount) {
+            this.version = version;
+            this.store = store;
+            this.totalAmount = totalAmount;
+            this.maxAmount = maxAmount;
+        }
+    }
+
+    /**
+     * Appends a row of the transaction/transaction_issue join and publishes the new data.
+     * @param transaction - transaction row.
+     */
+    public void append(Transaction transaction) {
+        synchronized (writeLock) {
+            add(transaction);
+            publish();
+        }
+    }
+
+    /**
+     * Appends rows of the transaction/transaction_issue join and publishes them at once, so readers see either
+     * none or all of them.
+     * @param transactions - transaction rows.
+     */
+    public void appendAll(Collection<? extends Transaction> transactions) {
+        synchronized (writeLock) {
+            transactions.forEach(this::add);
+            publish();
+        }
+    }
+
+    /**
+     * Marks a compliance issue as solved or reopens it, and publishes the change.
+     * @param issueId - id of the issue, the first issue with that id if it is repeated.
+     * @param solved - new state of the issue.
+     * @throws IllegalArgumentException - when there is no issue with that id.
+     */
+    public void setIssueSolved(int issueId, boolean solved) {
+        synchronized (writeLock) {
+            int issue = store.issueOf(issueId);
+            if (issue < 0) {
+                throw new IllegalArgumentException("Unknown issue id: " + issueId);
+            }
+            if (store.setIssueSolved(issue, solved)) {
+                publish();
+            }
+        }
+    }
+
+    private void add(Transaction transaction) {
+        int rows = store.size();
+        int row = store.add(transaction);
+        if (row == rows) {
+            long amount = store.amount(row);
+            totalAmount += amount;
+            maxAmount = rows == 0 ? amount : Math.max(maxAmount, amount);
+        }
+    }
+
+    private void publish() {
+        snapshot = new Snapshot(snapshot.version + 1, store.snapshot(), totalAmount, maxAmount);
+    }
+
+    /**
+     * Returns a fetcher over the latest published data. It does not change, so all its queries see the same version.
+     * @return read-only fetcher, whose update methods throw {@link UnsupportedOperationException}.
+     */
+    public TransactionDataFetcher snapshot() {
+        Snapshot current = snapshot;
+        TransactionDataFetcher fetcher = current.fetcher;
+        return fetcher != null ? fetcher : index(current);
+    }
+
+    /**
+     * Builds the index of a version, from the index of an earlier version when there is one, and publishes it.
+     */
+    private TransactionDataFetcher index(Snapshot current) {
+        synchronized (current) {
+            if (current.fetcher == null) {
+                Snapshot base = indexedSnapshot.get();
+                current.index = base != null && base.version < current.version
+                        ? base.index.readOnlyCopyFor(current.store)
+                        : TransactionIndex.readOnly(current.store);
+                current.fetcher = new TransactionDataFetcher(current.store, current.index, PartitionedScan.SEQUENTIAL);
+                indexedSnapshot.accumulateAndGet(current,
+                        (latest, indexed) -> latest == null || indexed.version > latest.version ? indexed : latest);
+            }
+            return current.fetcher;
+        }
+    }
+
+    /**
+     * Returns the version of the latest published data, incremented by every change.
+     */
+    public long version() {
+        return snapshot.version;
+    }
+
+    /**
+     * Returns the sum of the amounts of all transactions
+     */
+    public double getTotalTransactionAmount() {
+        return Amounts.toDouble(snapshot.totalAmount);
+    }
+
+    /**
+     * Returns the sum of the amounts of all transactions sent by the specified client
+     *
+     * @param senderFullName - Full name of the sender whose data needs to be retrieved.
+     */
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        return snapshot().getTotalTransactionAmountSentBy(senderFullName);
+    }
+
+    /**
+     * Returns the sums of the amounts sent by many clients, all from the same snapshot, see
+     * {@link TransactionDataFetcher#getTotalTransactionAmountSentBy(Collection)}.
+     * @param senderFullNames - full names of the senders.
+     * @return sum sent per requested name, in the order of the names, 0 for unknown senders.
+     */
+    public Map<String, Double> getTotalTransactionAmountSentBy(Collection<String> senderFullNames) {
+        return snapshot().getTotalTransactionAmountSentBy(senderFullNames);
+    }
+
+    /**
+     * Returns the highest transaction amount
+     * {@link double}
+     */
+    public double getMaxTransactionAmount() {
+        return Amounts.toDouble(snapshot.maxAmount);
+    }
+
+    /**
+     * Counts the number of unique clients that sent or received a transaction
+     *  @return The count of unique clients (senders or beneficiaries) involved in the transactions.
+     */
+    public long countUniqueClients() {
+        return snapshot().countUniqueClients();
+    }
+
+    /**
+     * Summarizes the transactions of the latest snapshot, see {@link TransactionDataFetcher#sketch(double, double)}.
+     * @param clientError - standard error of the client counts relative to the true counts.
+     * @param amountAccuracy - accuracy of the amount quantiles relative to their value.
+     * @return approximate summary of the transactions.
+     */
+    public TransactionSketches sketch(double clientError, double amountAccuracy) {
+        return snapshot().sketch(clientError, amountAccuracy);
+    }
+
+    /**
+     * Returns whether a client (sender or beneficiary) has at least one transaction with a compliance
+     * issue that has not been solved
+     * @param clientFullName - beneficiary name whose data needs to be retrieved.
+     * @return {@code true} if the client has at least one transaction with an unsolved compliance issue, {@code false} otherwise.
+     */
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        return snapshot().hasOpenComplianceIssues(clientFullName);
+    }
+
+    /**
+     * Returns whether each of many clients has an unsolved compliance issue, all from the same snapshot, see
+     * {@link TransactionDataFetcher#hasOpenComplianceIssues(Collection)}.
+     * @param clientFullNames - sender or beneficiary names.
+     * @return whether the client has an open issue, per requested name, in the order of the names.
+     */
+    public Map<String, Boolean> hasOpenComplianceIssues(Collection<String> clientFullNames) {
+        return snapshot().hasOpenComplianceIssues(clientFullNames);
+    }
+
+    /**
+     * Returns the identifiers of the unsolved compliance issues on the transactions a client sent or received.
+     * @param clientFullName - sender or beneficiary name whose data needs to be retrieved.
+     * @return {@link Set} of unsolved issue ids, empty if the client has none or is unknown.
+     */
+    public Set<Integer> getOpenIssuesForClient(String clientFullName) {
+        return snapshot().getOpenIssuesForClient(clientFullName);
+    }
+
+    /**
+     * Returns all transactions indexed by beneficiary name
+     * @return A {@link Map} containing transactions indexed by beneficiary name.
+     */
+    public Map<String, List<TransactionRecord>> getTransactionsByBeneficiaryName() {
+        return snapshot().getTransactionsByBeneficiaryName();
+    }
+
+    /**
+     * Counts the transactions received by a beneficiary.
+     * @param beneficiaryFullName - beneficiary name whose data needs to be retrieved.
+     * @return number of transactions, 0 for an unknown beneficiary.
+     */
+    public int countTransactionsByBeneficiaryName(String beneficiaryFullName) {
+        return snapshot().countTransactionsByBeneficiaryName(beneficiaryFullName);
+    }
+
+    /**
+     * Returns a page of the transactions received by a beneficiary, see
+     * {@link TransactionDataFetcher#getTransactionsByBeneficiaryName(String, int, int)}.
+     * Pages read one after another may come from different versions; page through a {@link #snapshot()} to avoid that.
+     * @param beneficiaryFullName - beneficiary name whose data needs to be retrieved.
+     * @param offset - number of transactions to skip.
+     * @param limit - number of transactions to return at most.
+     * @return {@link List} of at most limit transactions, empty past the last one.
+     */
+    public List<TransactionRecord> getTransactionsByBeneficiaryName(String beneficiaryFullName, int offset, int limit) {
+        return snapshot().getTransactionsByBeneficiaryName(beneficiaryFullName, offset, limit);
+    }
+
+    /**
+     * Streams the transactions received by a beneficiary in load order, from the latest published snapshot.
+     * @param beneficiaryFullName - beneficiary name whose data needs to be retrieved.
+     * @return stream of the beneficiary's transactions, empty for an unknown beneficiary.
+     */
+    public Stream<TransactionRecord> streamTransactionsByBeneficiaryName(String beneficiaryFullName) {
+        return snapshot().streamTransactionsByBeneficiaryName(beneficiaryFullName);
+    }
+
+    /**
+     * Returns the identifiers of all open compliance issues.
+     * {@link Set} of unsolved issue ids.
+     */
+    public Set<Integer> getUnsolvedIssueIds() {
+        return snapshot().getUnsolvedIssueIds();
+    }
+
+    /**
+     * Returns a list of all solved issue messages
+     * {@link List} of all the messages of the issues that are resolved.
+     */
+    public List<String> getAllSolvedIssueMessages() {
+        return snapshot().getAllSolvedIssueMessages();
+    }
+
+    /**
+     * Retrieves top 3 transactions with the highest amount.
+     * @return {@link List} contaning top 3 transactions with the highest amount in descending order.
+     */
+    public List<TransactionRecord> getTop3TransactionsByAmount() {
+        return snapshot().getTop3TransactionsByAmount();
+    }
+
+    /**
+     * Retrieves the n transactions with the highest amount, see {@link TransactionDataFetcher#getTopNTransactionsByAmount(int)}.
+     * @param n - number of transactions to return.
+     * @return {@link List} containing at most n transactions with the highest amount in descending order.
+     */
+    public List<TransactionRecord> getTopNTransactionsByAmount(int n) {
+        return snapshot().getTopNTransactionsByAmount(n);
+    }
+
+    /**
+     * Returns the senderFullName of the sender with the most total sent amount
+     * @return full name of the sender
+     */
+    public Optional<String> getTopSender() {
+        return snapshot().getTopSender();
+    }
+
+    /**
+     * Returns the n senders with the most total sent amount, see {@link TransactionDataFetcher#getTopNSenders(int)}.
+     * @param n - number of senders to return.
+     * @return full names of at most n senders in descending order of total sent amount.
+     */
+    public List<String> getTopNSenders(int n) {
+        return snapshot().getTopNSenders(n);
+    }
+}
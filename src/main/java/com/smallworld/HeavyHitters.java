@@ -0,0 +1,92 @@
+package com.smallworld;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded summary of the keys with the highest total weight in a stream, e.g. senders by amount sent, kept with
+ * the weighted Misra-Gries algorithm. At most twice the capacity of keys are counted: when the table is full, the
+ * weight of the key ranking just past the capacity is taken off every counter and the keys left without weight
+ * are dropped. That happens at most once every capacity additions, so adding costs amortized constant time for a
+ * fixed capacity.
+ * <p>
+ * A counted total is never more than the true total and never less by more than {@link #error()}, which is at
+ * most the total weight divided by the capacity plus one. Every key with a larger total than the error is still
+ * counted. Summaries merge into a summary with the same guarantee for the union of the streams.
+ */
+class HeavyHitters {
+
+    private final int capacity;
+
+    private final Map<String, long[]> counters = new HashMap<>();
+
+    private long error;
+
+    HeavyHitters(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds weight to the total of a key. Weights that are not positive are ignored.
+     */
+    void add(String key, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        long[] counter = counters.get(key);
+        if (counter != null) {
+            counter[0] += weight;
+            return;
+        }
+        counters.put(key, new long[]{weight});
+        if (counters.size() > 2 * capacity) {
+            prune();
+        }
+    }
+
+    /**
+     * Adds the totals of another summary to this one.
+     * @return this summary.
+     */
+    HeavyHitters merge(HeavyHitters other) {
+        for (Map.Entry<String, long[]> counter : other.counters.entrySet()) {
+            add(counter.getKey(), counter.getValue()[0]);
+        }
+        error += other.error;
+        return this;
+    }
+
+    /**
+     * Returns how much a counted total may be below the true total.
+     */
+    long error() {
+        return error;
+    }
+
+    /**
+     * Returns the counted keys with the highest totals, highest first and ties in key order.
+     * @param n - number of keys to return at most, no more than the capacity are meaningful.
+     */
+    List<Map.Entry<String, Long>> top(int n) {
+        return counters.entrySet().stream()
+                .map(counter -> Map.entry(counter.getKey(), counter.getValue()[0]))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(Math.min(n, capacity))
+                .collect(Collectors.toList());
+    }
+
+    void clear() {
+        counters.clear();
+        error = 0;
+    }
+
+    private void prune() {
+        long[] totals = counters.values().stream().mapToLong(counter -> counter[0]).sorted().toArray();
+        long decrement = totals[totals.length - capacity - 1];
+        counters.values().removeIf(counter -> (counter[0] -= decrement) <= 0);
+        error += decrement;
+    }
+}
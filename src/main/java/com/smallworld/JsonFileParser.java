@@ -1,14 +1,58 @@
 package com.smallworld;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.data.Amounts;
+import com.smallworld.data.ClientDictionary;
+import com.smallworld.data.EventTimeDeserializer;
 import com.smallworld.data.Transaction;
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionStore;
+import com.smallworld.metrics.Metrics;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class JsonFileParser {
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Ranges per pool worker when a file is read in parallel, so workers that finish early pick up more work.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Smallest range worth handing to a worker of its own.
+     */
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+
     /**
      * Reads the json file and parses it into list.
      * @param filePath - of the json file
@@ -16,10 +60,464 @@ public class JsonFileParser {
      * @throws IOException - when there is error reading json file.
      */
     public static List<Transaction> readTransactionJsonFile (String filePath) throws IOException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        List<Transaction> transactions = objectMapper.readValue(
-                new File(filePath),
-                objectMapper.getTypeFactory().constructCollectionType(List.class, Transaction.class));
-        return transactions;
+        try (Metrics.Timing ignored = Metrics.time("parser.readTransactionJsonFile")) {
+            ObjectMapper objectMapper = new ObjectMapper();
+            List<Transaction> transactions = objectMapper.readValue(
+                    new File(filePath),
+                    objectMapper.getTypeFactory().constructCollectionType(List.class, Transaction.class));
+            Metrics.increment("parser.rows", transactions.size());
+            countFile(filePath, -1);
+            return transactions;
+        }
+    }
+
+    /**
+     * Streams the transactions of the json file one row at a time, so the whole list is never held in memory.
+     * Rows are bound straight from the parser tokens and amounts are decoded into minor units without
+     * creating intermediate strings. Client names are interned, so repeated names share one String.
+     * The returned stream keeps the file open and must be closed, preferably with try-with-resources.
+     * Errors found while the stream is consumed are thrown as {@link UncheckedIOException}.
+     * @param filePath - of the json file
+     * @return lazily parsed stream of transactions.
+     * @throws IOException - when the file cannot be opened or does not contain a json array.
+     */
+    public static Stream<Transaction> streamTransactionJsonFile(String filePath) throws IOException {
+        return streamTransactionJsonFile(filePath, new ClientDictionary());
+    }
+
+    /**
+     * Streams the transactions of the json file like {@link #streamTransactionJsonFile(String)}, interning client
+     * names through the given dictionary, e.g. the one of the {@link TransactionStore} the rows are loaded into.
+     * Names already in the dictionary are resolved from the parser's buffer without allocating a String.
+     * @param filePath - of the json file
+     * @param clients - dictionary the client names are interned in.
+     * @return lazily parsed stream of transactions.
+     * @throws IOException - when the file cannot be opened or does not contain a json array.
+     */
+    public static Stream<Transaction> streamTransactionJsonFile(String filePath, ClientDictionary clients) throws IOException {
+        JsonParser parser = openTransactionArray(filePath);
+        Iterator<Transaction> iterator = new TransactionIterator(parser, clients, false);
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        parser.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Parses the json file one row at a time and hands every transaction to the given action.
+     * @param filePath - of the json file
+     * @param action - called for each transaction in file order.
+     * @throws IOException - when there is error reading json file.
+     */
+    public static void forEachTransaction(String filePath, Consumer<? super Transaction> action) throws IOException {
+        try (Stream<Transaction> transactions = streamTransactionJsonFile(filePath)) {
+            transactions.forEach(action);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reads the json file and groups its rows into one record per transaction while parsing,
+     * so the repeated transaction details of multi-issue rows are never kept.
+     * @param filePath - of the json file
+     * @return one record per mtn, in the order the mtns first appear in the file.
+     * @throws IOException - when there is error reading json file.
+     */
+    public static List<TransactionRecord> readTransactionRecords(String filePath) throws IOException {
+        try (Metrics.Timing ignored = Metrics.time("parser.readTransactionRecords");
+             Stream<Transaction> transactions = streamTransactionJsonFile(filePath)) {
+            List<TransactionRecord> records = TransactionRecords.group(transactions);
+            countFile(filePath, records.size());
+            return records;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Streams the json file as one record per transaction, grouping rows with the same mtn that follow each other.
+     * The returned stream keeps the file open and must be closed.
+     * @param filePath - of the json file
+     * @return lazily parsed stream of transaction records.
+     * @throws IOException - when the file cannot be opened or does not contain a json array.
+     */
+    public static Stream<TransactionRecord> streamTransactionRecords(String filePath) throws IOException {
+        return TransactionRecords.groupConsecutive(streamTransactionJsonFile(filePath));
+    }
+
+    /**
+     * Streams the json file straight into a columnar {@link TransactionStore}, without building transaction objects
+     * for the whole file first.
+     * @param filePath - of the json file
+     * @return store with one row per mtn.
+     * @throws IOException - when there is error reading json file.
+     */
+    public static TransactionStore readTransactionStore(String filePath) throws IOException {
+        TransactionStore store = new TransactionStore();
+        try (Metrics.Timing ignored = Metrics.time("parser.readTransactionStore");
+             Stream<Transaction> transactions = streamTransactionJsonFile(filePath, store.clients())) {
+            transactions.forEach(store::add);
+            countFile(filePath, store.size());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return store;
+    }
+
+    /**
+     * Reads the file into a store like {@link #readTransactionStore(String)}, parsing byte ranges of the file on the
+     * workers of the pool. The file may be a json array of transactions or newline delimited json with one transaction
+     * per line. The ranges are merged in file order, so the store is the same as one read on a single thread,
+     * including rows of the same mtn that end up in different ranges.
+     * @param filePath - of the json file
+     * @param pool - pool the ranges are parsed on.
+     * @return store with one row per mtn.
+     * @throws IOException - when there is error reading json file.
+     */
+    public static TransactionStore readTransactionStore(String filePath, ForkJoinPool pool) throws IOException {
+        long chunks = Math.min((long) pool.getParallelism() * CHUNKS_PER_WORKER, Files.size(Path.of(filePath)) / MIN_CHUNK_SIZE);
+        return readTransactionStore(filePath, pool, (int) Math.max(1, chunks));
+    }
+
+    /**
+     * Reads the file into a store like {@link #readTransactionStore(String, ForkJoinPool)}, splitting it into
+     * the given number of byte ranges.
+     * @param filePath - of the json file
+     * @param pool - pool the ranges are parsed on.
+     * @param chunks - number of ranges the file is split into, fewer when the file holds fewer transactions.
+     * @return store with one row per mtn.
+     * @throws IOException - when there is error reading json file.
+     */
+    public static TransactionStore readTransactionStore(String filePath, ForkJoinPool pool, int chunks) throws IOException {
+        if (chunks < 1) {
+            throw new IllegalArgumentException("chunks must be positive: " + chunks);
+        }
+        try (Metrics.Timing ignored = Metrics.time("parser.readTransactionStoreParallel")) {
+            TransactionStore store = readTransactionStoreChunks(filePath, pool, chunks);
+            countFile(filePath, store.size());
+            return store;
+        }
+    }
+
+    private static TransactionStore readTransactionStoreChunks(String filePath, ForkJoinPool pool, int chunks) throws IOException {
+        TransactionFileChunks fileChunks;
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            fileChunks = TransactionFileChunks.split(channel, chunks);
+        }
+        List<ForkJoinTask<TransactionStore>> tasks = new ArrayList<>(fileChunks.count());
+        for (int chunk = 0; chunk < fileChunks.count(); chunk++) {
+            long start = fileChunks.starts[chunk];
+            long end = fileChunks.ends[chunk];
+            tasks.add(pool.submit(() -> readTransactionStore(filePath, start, end, fileChunks.lineDelimited)));
+        }
+        TransactionStore store = new TransactionStore();
+        try {
+            // merging in file order keeps rows, issues and client ids where a single threaded read puts them
+            for (ForkJoinTask<TransactionStore> task : tasks) {
+                store.addAll(task.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading " + filePath);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to read " + filePath, cause);
+        } finally {
+            tasks.forEach(task -> task.cancel(false));
+        }
+        return store;
+    }
+
+    /**
+     * Counts a file that was read in the metrics, with the number of transactions its rows held if known.
+     */
+    static void countFile(String filePath, long transactions) {
+        if (Metrics.isEnabled()) {
+            Metrics.increment("parser.bytes", new File(filePath).length());
+            if (transactions >= 0) {
+                Metrics.increment("parser.transactions", transactions);
+            }
+        }
+    }
+
+    /**
+     * Parses the transactions in {@code [start, end)} of the file into a store of their own.
+     */
+    private static TransactionStore readTransactionStore(String filePath, long start, long end, boolean lineDelimited) throws IOException {
+        TransactionStore store = new TransactionStore();
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            InputStream range = new RangeInputStream(channel, start, end);
+            // a range of an array holds the objects without the brackets around them
+            InputStream input = lineDelimited ? range : new SequenceInputStream(
+                    new SequenceInputStream(new ByteArrayInputStream(new byte[]{'['}), range),
+                    new ByteArrayInputStream(new byte[]{']'}));
+            try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+                if (!lineDelimited && parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new JsonParseException(parser, "Expected a json array of transactions");
+                }
+                Iterator<Transaction> transactions = new TransactionIterator(parser, store.clients(), lineDelimited);
+                while (transactions.hasNext()) {
+                    store.add(transactions.next());
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Opens a parser on the json file and moves it past the opening bracket of the transaction array.
+     */
+    private static JsonParser openTransactionArray(String filePath) throws IOException {
+        JsonParser parser = JSON_FACTORY.createParser(new File(filePath));
+        try {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected a json array of transactions");
+            }
+        } catch (IOException e) {
+            parser.close();
+            throw e;
+        }
+        return parser;
+    }
+
+    /**
+     * Reads a byte range of a file through positional reads, leaving the position of the channel alone.
+     */
+    private static class RangeInputStream extends InputStream {
+
+        private final FileChannel channel;
+
+        private final long end;
+
+        private long position;
+
+        private RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Iterates over the objects of an already opened transaction array, binding one object per call.
+     * Objects of newline delimited json are read as root level values up to the end of the input.
+     */
+    private static class TransactionIterator implements Iterator<Transaction> {
+
+        private final JsonParser parser;
+
+        private final ClientDictionary clients;
+
+        private final boolean lineDelimited;
+
+        private JsonToken current;
+
+        /**
+         * Rows read so far, added to the metrics at the end of the input.
+         */
+        private long rows;
+
+        private TransactionIterator(JsonParser parser, ClientDictionary clients, boolean lineDelimited) {
+            this.parser = parser;
+            this.clients = clients;
+            this.lineDelimited = lineDelimited;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (current == null) {
+                current = nextToken();
+            }
+            if (current == JsonToken.START_OBJECT) {
+                return true;
+            }
+            if (current == JsonToken.END_ARRAY) {
+                if (rows > 0) {
+                    Metrics.increment("parser.rows", rows);
+                    rows = 0;
+                }
+                return false;
+            }
+            throw new UncheckedIOException(new JsonParseException(parser, "Expected a transaction object but found " + current));
+        }
+
+        @Override
+        public Transaction next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = null;
+            rows++;
+            try {
+                return readTransaction();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Binds the fields of the current transaction object, leaving the parser on its closing brace.
+         * Unknown fields are skipped.
+         */
+        private Transaction readTransaction() throws IOException {
+            Transaction transaction = new Transaction();
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_OBJECT; token = parser.nextToken()) {
+                if (token != JsonToken.FIELD_NAME) {
+                    throw new JsonParseException(parser, "Expected a transaction field but found " + token);
+                }
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == null) {
+                    throw new JsonParseException(parser, "Unexpected end of transaction object");
+                }
+                switch (field) {
+                    case "mtn":
+                        transaction.setMtn(readInt(field, value));
+                        break;
+                    case "amount":
+                        transaction.setAmount(readAmount(value));
+                        break;
+                    case "senderFullName":
+                        transaction.setSenderFullName(readClientName(value));
+                        break;
+                    case "senderAge":
+                        transaction.setSenderAge(readInt(field, value));
+                        break;
+                    case "beneficiaryFullName":
+                        transaction.setBeneficiaryFullName(readClientName(value));
+                        break;
+                    case "beneficiaryAge":
+                        transaction.setBeneficiaryAge(readInt(field, value));
+                        break;
+                    case "issueId":
+                        transaction.setIssueId(value == JsonToken.VALUE_NULL ? null : readInt(field, value));
+                        break;
+                    case "issueSolved":
+                        transaction.setIssueSolved(readBoolean(field, value));
+                        break;
+                    case "issueMessage":
+                        transaction.setIssueMessage(parser.getValueAsString());
+                        break;
+                    case "eventTime":
+                        transaction.setEventTime(readEventTime(value));
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return transaction;
+        }
+
+        /**
+         * Reads an integer field, rejecting any other value instead of reading it as 0.
+         */
+        private int readInt(String field, JsonToken value) throws IOException {
+            if (value != JsonToken.VALUE_NUMBER_INT) {
+                throw new JsonParseException(parser, "Expected an integer for " + field + " but found " + value);
+            }
+            return parser.getIntValue();
+        }
+
+        /**
+         * Reads a boolean field, null as {@code false}, rejecting any other value instead of reading it as {@code false}.
+         */
+        private boolean readBoolean(String field, JsonToken value) throws IOException {
+            if (value == JsonToken.VALUE_NULL) {
+                return false;
+            }
+            if (value != JsonToken.VALUE_TRUE && value != JsonToken.VALUE_FALSE) {
+                throw new JsonParseException(parser, "Expected a boolean for " + field + " but found " + value);
+            }
+            return parser.getBooleanValue();
+        }
+
+        private String readClientName(JsonToken value) throws IOException {
+            if (value != JsonToken.VALUE_STRING) {
+                return parser.getValueAsString();
+            }
+            return clients.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+
+        private long readAmount(JsonToken value) throws IOException {
+            if (value == JsonToken.VALUE_NULL) {
+                return 0L;
+            }
+            if (value != JsonToken.VALUE_NUMBER_INT && value != JsonToken.VALUE_NUMBER_FLOAT && value != JsonToken.VALUE_STRING) {
+                throw new JsonParseException(parser, "Expected a number for amount but found " + value);
+            }
+            try {
+                return Amounts.parseMinorUnits(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new JsonParseException(parser, "Invalid amount: " + parser.getText(), e);
+            }
+        }
+
+        private Long readEventTime(JsonToken value) throws IOException {
+            if (value == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (value == JsonToken.VALUE_NUMBER_INT) {
+                return parser.getLongValue();
+            }
+            if (value != JsonToken.VALUE_STRING) {
+                throw new JsonParseException(parser, "Expected milliseconds or an ISO-8601 instant for eventTime but found " + value);
+            }
+            try {
+                return EventTimeDeserializer.parseEpochMillis(parser.getText());
+            } catch (DateTimeParseException | ArithmeticException e) {
+                throw new JsonParseException(parser, "Invalid event time: " + parser.getText(), e);
+            }
+        }
+
+        private JsonToken nextToken() {
+            try {
+                JsonToken token = parser.nextToken();
+                if (token == null && lineDelimited) {
+                    // the end of the input ends newline delimited json like the closing bracket ends an array
+                    return JsonToken.END_ARRAY;
+                }
+                if (token == null) {
+                    throw new JsonParseException(parser, "Unexpected end of transaction array");
+                }
+                return token;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 }
@@ -0,0 +1,101 @@
+package com.smallworld;
+
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionSketches;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shard held by this JVM, answered by a {@link TransactionDataFetcher}, e.g. over the store of a shard file mapped
+ * with {@link com.smallworld.data.TransactionStoreFile#map(String)}. Also what a {@link TransactionShardServer}
+ * serves to the coordinators of other processes.
+ */
+public class LocalTransactionShard implements TransactionShard {
+
+    private final TransactionDataFetcher fetcher;
+
+    /**
+     * Creates a shard answered by a fetcher.
+     * @param fetcher - fetcher over the transactions of the shard only.
+     */
+    public LocalTransactionShard(TransactionDataFetcher fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    @Override
+    public long size() {
+        return fetcher.query().count();
+    }
+
+    @Override
+    public long totalAmount() {
+        return fetcher.query().sumMinorUnits();
+    }
+
+    @Override
+    public long totalAmountSentBy(String senderFullName) {
+        return fetcher.query().sender(senderFullName).sumMinorUnits();
+    }
+
+    @Override
+    public long maxAmount() {
+        return fetcher.query().maxMinorUnits();
+    }
+
+    @Override
+    public List<String> clientNames() {
+        return fetcher.clientNames();
+    }
+
+    @Override
+    public TransactionSketches sketch(double clientError, double amountAccuracy) {
+        return fetcher.sketch(clientError, amountAccuracy);
+    }
+
+    @Override
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        return fetcher.hasOpenComplianceIssues(clientFullName);
+    }
+
+    @Override
+    public Set<Integer> openIssuesForClient(String clientFullName) {
+        return fetcher.getOpenIssuesForClient(clientFullName);
+    }
+
+    @Override
+    public Map<String, List<TransactionRecord>> transactionsByBeneficiary() {
+        return fetcher.getTransactionsByBeneficiaryName();
+    }
+
+    @Override
+    public int countTransactionsByBeneficiary(String beneficiaryFullName) {
+        return fetcher.countTransactionsByBeneficiaryName(beneficiaryFullName);
+    }
+
+    @Override
+    public List<TransactionRecord> transactionsByBeneficiary(String beneficiaryFullName, int offset, int limit) {
+        return fetcher.getTransactionsByBeneficiaryName(beneficiaryFullName, offset, limit);
+    }
+
+    @Override
+    public Set<Integer> unsolvedIssueIds() {
+        return fetcher.getUnsolvedIssueIds();
+    }
+
+    @Override
+    public List<String> solvedIssueMessages() {
+        return fetcher.getAllSolvedIssueMessages();
+    }
+
+    @Override
+    public List<TransactionRecord> topTransactionsByAmount(int n) {
+        return fetcher.getTopNTransactionsByAmount(n);
+    }
+
+    @Override
+    public Map<String, Long> sentAmounts() {
+        return fetcher.query().groupBySender().sumsInMinorUnits();
+    }
+}
@@ -0,0 +1,103 @@
+package com.smallworld;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Runs an aggregation over the index range {@code [0, size)} of a column, either in one pass on the calling thread
+ * or split into partitions that fork-join workers aggregate on their own before the partial results are merged.
+ * Partial results are always merged left to right, so order dependent results such as lists or tie-breaks
+ * come out the same as in a sequential pass.
+ */
+class PartitionedScan {
+
+    /**
+     * Scans everything on the calling thread.
+     */
+    static final PartitionedScan SEQUENTIAL = new PartitionedScan(null, Integer.MAX_VALUE);
+
+    /**
+     * Smallest range worth handing to a separate task.
+     */
+    private static final int MIN_PARTITION_SIZE = 16_384;
+
+    /**
+     * Partitions created per worker, so that uneven partitions can be balanced by work stealing.
+     */
+    private static final int PARTITIONS_PER_WORKER = 4;
+
+    private final ForkJoinPool pool;
+
+    private final int minPartitionSize;
+
+    PartitionedScan(ForkJoinPool pool, int minPartitionSize) {
+        this.pool = pool;
+        this.minPartitionSize = minPartitionSize;
+    }
+
+    /**
+     * Creates a scan running on the given pool.
+     */
+    static PartitionedScan parallel(ForkJoinPool pool) {
+        return new PartitionedScan(pool, MIN_PARTITION_SIZE);
+    }
+
+    boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Aggregates a range of indexes.
+     */
+    @FunctionalInterface
+    interface RangeAggregator<A> {
+        A aggregate(int from, int to);
+    }
+
+    /**
+     * Aggregates the indexes {@code [0, size)}.
+     * @param size - number of indexes to scan.
+     * @param aggregator - computes the partial result of one partition.
+     * @param merger - combines the partial results of two adjacent partitions, left one first.
+     * @return aggregate of the whole range.
+     */
+    <A> A scan(int size, RangeAggregator<A> aggregator, BinaryOperator<A> merger) {
+        if (pool == null || size <= minPartitionSize) {
+            return aggregator.aggregate(0, size);
+        }
+        int partitionSize = Math.max(minPartitionSize, size / (pool.getParallelism() * PARTITIONS_PER_WORKER));
+        return pool.invoke(new ScanTask<>(0, size, partitionSize, aggregator, merger));
+    }
+
+    @SuppressWarnings("serial") // tasks are never serialized, and their aggregators are lambdas
+    private static class ScanTask<A> extends RecursiveTask<A> {
+
+        private final int from;
+        private final int to;
+        private final int partitionSize;
+        private final RangeAggregator<A> aggregator;
+        private final BinaryOperator<A> merger;
+
+        private ScanTask(int from, int to, int partitionSize, RangeAggregator<A> aggregator, BinaryOperator<A> merger) {
+            this.from = from;
+            this.to = to;
+            this.partitionSize = partitionSize;
+            this.aggregator = aggregator;
+            this.merger = merger;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= partitionSize) {
+                return aggregator.aggregate(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask<A> left = new ScanTask<>(from, middle, partitionSize, aggregator, merger);
+            ScanTask<A> right = new ScanTask<>(middle, to, partitionSize, aggregator, merger);
+            left.fork();
+            A rightResult = right.compute();
+            return merger.apply(left.join(), rightResult);
+        }
+    }
+}
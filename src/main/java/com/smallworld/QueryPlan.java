@@ -0,0 +1,453 @@
+package com.smallworld;
+
+import com.smallworld.data.BeneficiaryIndex;
+import com.smallworld.data.ClientDictionary;
+import com.smallworld.data.TransactionStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rows a {@link TransactionQuery} has to look at and the predicates left to check on each of them. The planner picks
+ * the narrowest access path the store offers for the predicates: no rows at all when a client name is unknown or a
+ * range is empty, the {@link BeneficiaryIndex} rows of the beneficiary, the rows of the open issue bitset, or every
+ * row. Queries over issues walk the solved or unsolved issue bitset instead of the rows.
+ * <p>
+ * Candidates are numbered by position in the access path, from 0 to {@link #domain()} excluded, so that a
+ * {@link PartitionedScan} can split them like a column; positions map to rows in ascending row order. A
+ * {@link Cursor} reads the candidates of a partition in batches and checks the remaining predicates one at a time
+ * over the whole batch, each in a tight loop over one column, so aggregates only loop over the matches:
+ * <pre>{@code
+ * for (QueryPlan.Cursor cursor = plan.cursor(from, to); cursor.next(); ) {
+ *     int[] selected = cursor.selected();
+ *     for (int i = 0, count = cursor.count(); i < count; i++) ...
+ * }}</pre>
+ */
+final class QueryPlan {
+
+    enum Access {
+        NONE("no rows"),
+        BENEFICIARY_INDEX("beneficiary index"),
+        OPEN_ISSUE_ROWS("open issue rows"),
+        FULL_SCAN("full scan"),
+        UNSOLVED_ISSUES("unsolved issues"),
+        SOLVED_ISSUES("solved issues");
+
+        private final String description;
+
+        Access(String description) {
+            this.description = description;
+        }
+    }
+
+    /**
+     * Candidates read per batch, small enough for the batch to stay in the L1 cache.
+     */
+    static final int BATCH_SIZE = 1024;
+
+    private static final int CHECK_SENDER = 1;
+
+    private static final int CHECK_BENEFICIARY = 1 << 1;
+
+    private static final int CHECK_CLIENT = 1 << 2;
+
+    private static final int CHECK_AMOUNT = 1 << 3;
+
+    private static final int CHECK_SENDER_AGE = 1 << 4;
+
+    private static final int CHECK_BENEFICIARY_AGE = 1 << 5;
+
+    private static final int CHECK_OPEN_ISSUES = 1 << 6;
+
+    /**
+     * Client id of a name the query does not filter on.
+     */
+    private static final int ANY = -2;
+
+    private final TransactionStore rows;
+
+    private final Access access;
+
+    private final int domain;
+
+    private final BeneficiaryIndex beneficiaries;
+
+    private final int sender;
+
+    private final int beneficiary;
+
+    private final int client;
+
+    private final long minAmount;
+
+    private final long maxAmount;
+
+    private final int minSenderAge;
+
+    private final int maxSenderAge;
+
+    private final int minBeneficiaryAge;
+
+    private final int maxBeneficiaryAge;
+
+    /**
+     * Required open issue state of the rows, when checked.
+     */
+    private final boolean openIssues;
+
+    /**
+     * Predicates the access path does not already guarantee, a bit per predicate.
+     */
+    private final int checks;
+
+    private QueryPlan(TransactionQuery query, TransactionStore rows, boolean issues, boolean solved) {
+        this.rows = rows;
+        this.sender = query.bySender ? rows.clientIdOf(query.sender) : ANY;
+        this.beneficiary = query.byBeneficiary ? rows.clientIdOf(query.beneficiary) : ANY;
+        this.client = query.byClient ? rows.clientIdOf(query.client) : ANY;
+        this.minAmount = query.minAmount;
+        this.maxAmount = query.maxAmount;
+        this.minSenderAge = query.minSenderAge;
+        this.maxSenderAge = query.maxSenderAge;
+        this.minBeneficiaryAge = query.minBeneficiaryAge;
+        this.maxBeneficiaryAge = query.maxBeneficiaryAge;
+        this.openIssues = Boolean.TRUE.equals(query.openIssues);
+        if (isEmpty()) {
+            access = Access.NONE;
+        } else if (issues) {
+            access = solved ? Access.SOLVED_ISSUES : Access.UNSOLVED_ISSUES;
+        } else if (beneficiary != ANY) {
+            access = Access.BENEFICIARY_INDEX;
+        } else if (openIssues) {
+            access = Access.OPEN_ISSUE_ROWS;
+        } else {
+            access = Access.FULL_SCAN;
+        }
+        this.beneficiaries = access == Access.BENEFICIARY_INDEX ? rows.beneficiaryIndex() : null;
+        switch (access) {
+            case NONE:
+                domain = 0;
+                break;
+            case BENEFICIARY_INDEX:
+                domain = beneficiaries.count(beneficiary);
+                break;
+            case UNSOLVED_ISSUES:
+            case SOLVED_ISSUES:
+                domain = rows.issueCount();
+                break;
+            default:
+                domain = rows.size();
+        }
+        int residual = 0;
+        if (sender != ANY) {
+            residual |= CHECK_SENDER;
+        }
+        if (beneficiary != ANY && access != Access.BENEFICIARY_INDEX) {
+            residual |= CHECK_BENEFICIARY;
+        }
+        if (client != ANY) {
+            residual |= CHECK_CLIENT;
+        }
+        if (minAmount != Long.MIN_VALUE || maxAmount != Long.MAX_VALUE) {
+            residual |= CHECK_AMOUNT;
+        }
+        if (minSenderAge != Integer.MIN_VALUE || maxSenderAge != Integer.MAX_VALUE) {
+            residual |= CHECK_SENDER_AGE;
+        }
+        if (minBeneficiaryAge != Integer.MIN_VALUE || maxBeneficiaryAge != Integer.MAX_VALUE) {
+            residual |= CHECK_BENEFICIARY_AGE;
+        }
+        if (query.openIssues != null && access != Access.OPEN_ISSUE_ROWS) {
+            residual |= CHECK_OPEN_ISSUES;
+        }
+        checks = residual;
+    }
+
+    /**
+     * Plans a query over the transactions, whose cursors select rows.
+     */
+    static QueryPlan rows(TransactionQuery query, TransactionStore rows) {
+        return new QueryPlan(query, rows, false, false);
+    }
+
+    /**
+     * Plans a query over the issues in one state of the matching transactions, whose cursors select issues.
+     */
+    static QueryPlan issues(TransactionQuery query, TransactionStore rows, boolean solved) {
+        return new QueryPlan(query, rows, true, solved);
+    }
+
+    private boolean isEmpty() {
+        return sender == ClientDictionary.UNKNOWN || beneficiary == ClientDictionary.UNKNOWN
+                || client == ClientDictionary.UNKNOWN || minAmount > maxAmount
+                || minSenderAge > maxSenderAge || minBeneficiaryAge > maxBeneficiaryAge;
+    }
+
+    Access access() {
+        return access;
+    }
+
+    /**
+     * Returns whether predicates are left to check per candidate. Without, every candidate matches.
+     */
+    boolean hasResidual() {
+        return checks != 0;
+    }
+
+    /**
+     * Returns whether the plan reads every row and checks nothing, so that aggregates can loop over the columns
+     * directly, as fast as a hand-written scan.
+     */
+    boolean scansAllRows() {
+        return access == Access.FULL_SCAN && checks == 0;
+    }
+
+    /**
+     * Returns the client id of the only predicate left to check when it is a sender or a client filter, the shape of
+     * the per-client questions, whose aggregates then compare a single column per candidate.
+     * @param asSender - whether the sender filter is asked for, the sender or beneficiary one otherwise.
+     * @return client id, or {@link ClientDictionary#UNKNOWN} when other predicates are left.
+     */
+    int onlyClientCheck(boolean asSender) {
+        if (asSender) {
+            return checks == CHECK_SENDER ? sender : ClientDictionary.UNKNOWN;
+        }
+        return checks == CHECK_CLIENT ? client : ClientDictionary.UNKNOWN;
+    }
+
+    /**
+     * Returns the number of candidate positions.
+     */
+    int domain() {
+        return domain;
+    }
+
+    /**
+     * Opens a cursor over the matching candidates of the positions {@code [from, to)}.
+     */
+    Cursor cursor(int from, int to) {
+        return new Cursor(from, to);
+    }
+
+    /**
+     * Describes the access path and the predicates checked per candidate, e.g.
+     * {@code beneficiary index (2 candidates), then amount}.
+     */
+    String describe() {
+        StringBuilder description = new StringBuilder(access.description);
+        if (access == Access.NONE) {
+            return description.toString();
+        }
+        description.append(" (").append(domain).append(" candidates)");
+        List<String> residual = new ArrayList<>();
+        if ((checks & CHECK_SENDER) != 0) {
+            residual.add("sender");
+        }
+        if ((checks & CHECK_BENEFICIARY) != 0) {
+            residual.add("beneficiary");
+        }
+        if ((checks & CHECK_CLIENT) != 0) {
+            residual.add("client");
+        }
+        if ((checks & CHECK_AMOUNT) != 0) {
+            residual.add("amount");
+        }
+        if ((checks & CHECK_SENDER_AGE) != 0) {
+            residual.add("sender age");
+        }
+        if ((checks & CHECK_BENEFICIARY_AGE) != 0) {
+            residual.add("beneficiary age");
+        }
+        if ((checks & CHECK_OPEN_ISSUES) != 0) {
+            residual.add("open issues");
+        }
+        if (!residual.isEmpty()) {
+            description.append(", then ").append(String.join(", ", residual));
+        }
+        return description.toString();
+    }
+
+    /**
+     * Reads the matching candidates of a range of positions in batches of at most {@link #BATCH_SIZE}, in ascending
+     * order: rows for plans over transactions, issues for plans over issues. Not thread-safe, every partition opens
+     * its own.
+     */
+    final class Cursor {
+
+        private final int to;
+
+        private final int[] selected = new int[BATCH_SIZE];
+
+        /**
+         * Rows of the selected candidates, the selected array itself unless issues are selected.
+         */
+        private final int[] selectedRows;
+
+        private int position;
+
+        private int count;
+
+        private Cursor(int from, int to) {
+            this.position = from;
+            this.to = to;
+            this.selectedRows = access == Access.UNSOLVED_ISSUES || access == Access.SOLVED_ISSUES
+                    ? new int[BATCH_SIZE] : selected;
+        }
+
+        /**
+         * Reads the next batch with at least one match.
+         * @return whether there is one, {@code false} once the range is exhausted.
+         */
+        boolean next() {
+            do {
+                if (position >= to) {
+                    count = 0;
+                    return false;
+                }
+                count = filter(read());
+            } while (count == 0);
+            return true;
+        }
+
+        /**
+         * Returns the matching candidates of the batch, valid up to {@link #count()} until the next batch is read.
+         */
+        int[] selected() {
+            return selected;
+        }
+
+        int count() {
+            return count;
+        }
+
+        /**
+         * Reads the next batch of candidates, returning their number.
+         */
+        private int read() {
+            int read = 0;
+            switch (access) {
+                case FULL_SCAN: {
+                    int end = Math.min(to, position + BATCH_SIZE);
+                    for (int row = position; row < end; row++) {
+                        selected[read++] = row;
+                    }
+                    position = end;
+                    break;
+                }
+                case BENEFICIARY_INDEX: {
+                    int end = Math.min(to, position + BATCH_SIZE);
+                    for (int next = position; next < end; next++) {
+                        selected[read++] = beneficiaries.row(beneficiary, next);
+                    }
+                    position = end;
+                    break;
+                }
+                case OPEN_ISSUE_ROWS:
+                    for (int row = rows.nextRowWithOpenIssues(position); row >= 0 && row < to && read < BATCH_SIZE;
+                         row = rows.nextRowWithOpenIssues(row + 1)) {
+                        selected[read++] = row;
+                        position = row;
+                    }
+                    position = read < BATCH_SIZE ? to : position + 1;
+                    break;
+                case UNSOLVED_ISSUES:
+                case SOLVED_ISSUES:
+                    boolean solved = access == Access.SOLVED_ISSUES;
+                    for (int issue = nextIssue(position, solved); issue >= 0 && issue < to && read < BATCH_SIZE;
+                         issue = nextIssue(issue + 1, solved)) {
+                        selected[read] = issue;
+                        selectedRows[read++] = rows.issueRow(issue);
+                        position = issue;
+                    }
+                    position = read < BATCH_SIZE ? to : position + 1;
+                    break;
+                default:
+                    position = to;
+            }
+            return read;
+        }
+
+        private int nextIssue(int from, boolean solved) {
+            return solved ? rows.nextSolvedIssue(from) : rows.nextUnsolvedIssue(from);
+        }
+
+        /**
+         * Keeps the candidates matching the remaining predicates at the start of the batch, checking one predicate
+         * at a time over the whole batch.
+         */
+        private int filter(int read) {
+            int kept = read;
+            if ((checks & CHECK_SENDER) != 0) {
+                kept = keepClient(kept, sender, true, false);
+            }
+            if ((checks & CHECK_BENEFICIARY) != 0) {
+                kept = keepClient(kept, beneficiary, false, true);
+            }
+            if ((checks & CHECK_CLIENT) != 0) {
+                kept = keepClient(kept, client, true, true);
+            }
+            if ((checks & CHECK_AMOUNT) != 0) {
+                kept = keepAmounts(kept);
+            }
+            if ((checks & CHECK_SENDER_AGE) != 0) {
+                kept = keepAges(kept, true, minSenderAge, maxSenderAge);
+            }
+            if ((checks & CHECK_BENEFICIARY_AGE) != 0) {
+                kept = keepAges(kept, false, minBeneficiaryAge, maxBeneficiaryAge);
+            }
+            if ((checks & CHECK_OPEN_ISSUES) != 0) {
+                kept = keepOpenIssues(kept);
+            }
+            return kept;
+        }
+
+        private int keepClient(int count, int clientId, boolean asSender, boolean asBeneficiary) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int row = selectedRows[i];
+                boolean matches = asSender && rows.senderId(row) == clientId
+                        || asBeneficiary && rows.beneficiaryId(row) == clientId;
+                kept = keep(i, kept, row, matches);
+            }
+            return kept;
+        }
+
+        private int keepAmounts(int count) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int row = selectedRows[i];
+                long amount = rows.amount(row);
+                kept = keep(i, kept, row, amount >= minAmount && amount <= maxAmount);
+            }
+            return kept;
+        }
+
+        private int keepAges(int count, boolean ofSender, int min, int max) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int row = selectedRows[i];
+                int age = ofSender ? rows.senderAge(row) : rows.beneficiaryAge(row);
+                kept = keep(i, kept, row, age >= min && age <= max);
+            }
+            return kept;
+        }
+
+        private int keepOpenIssues(int count) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int row = selectedRows[i];
+                kept = keep(i, kept, row, rows.hasOpenIssues(row) == openIssues);
+            }
+            return kept;
+        }
+
+        /**
+         * Moves a candidate to the end of the kept ones, which it stays part of only if it matches.
+         */
+        private int keep(int candidate, int kept, int row, boolean matches) {
+            selected[kept] = selected[candidate];
+            selectedRows[kept] = row;
+            return matches ? kept + 1 : kept;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.smallworld;
+
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionSketches;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.*;
+
+/**
+ * Shard served by a {@link TransactionShardServer}, usually in another process. Requests go over a single connection
+ * one at a time, so threads querying the same shard wait for each other; the coordinator queries different shards
+ * concurrently. Network failures are thrown as {@link UncheckedIOException}, and exceptions thrown by the remote
+ * shard as {@link IllegalStateException} with their message.
+ */
+public class RemoteTransactionShard implements TransactionShard, Closeable {
+
+    private final Socket socket;
+
+    private final DataInputStream in;
+
+    private final DataOutputStream out;
+
+    /**
+     * Connects to a shard server.
+     * @param host - host of the server.
+     * @param port - port the server listens on.
+     * @throws IOException - when the connection cannot be opened.
+     */
+    public RemoteTransactionShard(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    @Override
+    public long size() {
+        return call(ShardProtocol.SIZE, request -> { }, DataInputStream::readLong);
+    }
+
+    @Override
+    public long totalAmount() {
+        return call(ShardProtocol.TOTAL_AMOUNT, request -> { }, DataInputStream::readLong);
+    }
+
+    @Override
+    public long totalAmountSentBy(String senderFullName) {
+        return call(ShardProtocol.TOTAL_AMOUNT_SENT_BY, request -> ShardProtocol.writeString(request, senderFullName),
+                DataInputStream::readLong);
+    }
+
+    @Override
+    public long maxAmount() {
+        return call(ShardProtocol.MAX_AMOUNT, request -> { }, DataInputStream::readLong);
+    }
+
+    @Override
+    public List<String> clientNames() {
+        return call(ShardProtocol.CLIENT_NAMES, request -> { }, ShardProtocol::readStrings);
+    }
+
+    @Override
+    public TransactionSketches sketch(double clientError, double amountAccuracy) {
+        return call(ShardProtocol.SKETCH, request -> {
+            request.writeDouble(clientError);
+            request.writeDouble(amountAccuracy);
+        }, response -> TransactionSketches.fromByteArray(ShardProtocol.readBytes(response)));
+    }
+
+    @Override
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        return call(ShardProtocol.HAS_OPEN_COMPLIANCE_ISSUES, request -> ShardProtocol.writeString(request, clientFullName),
+                DataInputStream::readBoolean);
+    }
+
+    @Override
+    public Set<Integer> openIssuesForClient(String clientFullName) {
+        return call(ShardProtocol.OPEN_ISSUES_FOR_CLIENT, request -> ShardProtocol.writeString(request, clientFullName),
+                ShardProtocol::readIntSet);
+    }
+
+    @Override
+    public Map<String, List<TransactionRecord>> transactionsByBeneficiary() {
+        return call(ShardProtocol.TRANSACTIONS_BY_BENEFICIARY, request -> { }, response -> {
+            int size = response.readInt();
+            Map<String, List<TransactionRecord>> transactions = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                transactions.put(ShardProtocol.readString(response), ShardProtocol.readRecords(response));
+            }
+            return transactions;
+        });
+    }
+
+    @Override
+    public int countTransactionsByBeneficiary(String beneficiaryFullName) {
+        return call(ShardProtocol.COUNT_TRANSACTIONS_BY_BENEFICIARY,
+                request -> ShardProtocol.writeString(request, beneficiaryFullName), DataInputStream::readInt);
+    }
+
+    @Override
+    public List<TransactionRecord> transactionsByBeneficiary(String beneficiaryFullName, int offset, int limit) {
+        return call(ShardProtocol.TRANSACTIONS_BY_BENEFICIARY_PAGE, request -> {
+            ShardProtocol.writeString(request, beneficiaryFullName);
+            request.writeInt(offset);
+            request.writeInt(limit);
+        }, ShardProtocol::readRecords);
+    }
+
+    @Override
+    public Set<Integer> unsolvedIssueIds() {
+        return call(ShardProtocol.UNSOLVED_ISSUE_IDS, request -> { }, ShardProtocol::readIntSet);
+    }
+
+    @Override
+    public List<String> solvedIssueMessages() {
+        return call(ShardProtocol.SOLVED_ISSUE_MESSAGES, request -> { }, ShardProtocol::readStrings);
+    }
+
+    @Override
+    public List<TransactionRecord> topTransactionsByAmount(int n) {
+        return call(ShardProtocol.TOP_TRANSACTIONS_BY_AMOUNT, request -> request.writeInt(n), ShardProtocol::readRecords);
+    }
+
+    @Override
+    public Map<String, Long> sentAmounts() {
+        return call(ShardProtocol.SENT_AMOUNTS, request -> { }, response -> {
+            int size = response.readInt();
+            Map<String, Long> sentAmounts = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                sentAmounts.put(ShardProtocol.readString(response), response.readLong());
+            }
+            return sentAmounts;
+        });
+    }
+
+    /**
+     * Sends a request and reads its answer.
+     * @param opcode - method of the shard, see {@link ShardProtocol}.
+     * @param arguments - writes the arguments of the request.
+     * @param result - reads the result of a successful request.
+     */
+    private synchronized <T> T call(byte opcode, Arguments arguments, Result<T> result) {
+        try {
+            out.writeByte(opcode);
+            arguments.write(out);
+            out.flush();
+            if (in.readByte() == ShardProtocol.FAILED) {
+                throw new IllegalStateException("Shard " + socket.getRemoteSocketAddress() + " failed: "
+                        + ShardProtocol.readString(in));
+            }
+            return result.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface Arguments {
+
+        void write(DataOutputStream request) throws IOException;
+    }
+
+    private interface Result<T> {
+
+        T read(DataInputStream response) throws IOException;
+    }
+}
@@ -0,0 +1,160 @@
+package com.smallworld;
+
+import com.smallworld.data.Issue;
+import com.smallworld.data.TransactionRecord;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Binary protocol between a {@link RemoteTransactionShard} and a {@link TransactionShardServer}. A request is the
+ * opcode of a {@link TransactionShard} method followed by its arguments, the answer is {@link #OK} followed by the
+ * result, or {@link #FAILED} followed by the message of the exception the shard threw. Requests on a connection are
+ * answered one at a time, in order. Strings are UTF-8 bytes preceded by their length, -1 for {@code null}, and
+ * collections are their size followed by their elements.
+ */
+final class ShardProtocol {
+
+    static final byte OK = 0;
+
+    static final byte FAILED = 1;
+
+    // Opcodes, one per TransactionShard method
+
+    static final byte SIZE = 1;
+
+    static final byte TOTAL_AMOUNT = 2;
+
+    static final byte TOTAL_AMOUNT_SENT_BY = 3;
+
+    static final byte MAX_AMOUNT = 4;
+
+    static final byte CLIENT_NAMES = 5;
+
+    static final byte SKETCH = 6;
+
+    static final byte HAS_OPEN_COMPLIANCE_ISSUES = 7;
+
+    static final byte OPEN_ISSUES_FOR_CLIENT = 8;
+
+    static final byte TRANSACTIONS_BY_BENEFICIARY = 9;
+
+    static final byte COUNT_TRANSACTIONS_BY_BENEFICIARY = 10;
+
+    static final byte TRANSACTIONS_BY_BENEFICIARY_PAGE = 11;
+
+    static final byte UNSOLVED_ISSUE_IDS = 12;
+
+    static final byte SOLVED_ISSUE_MESSAGES = 13;
+
+    static final byte TOP_TRANSACTIONS_BY_AMOUNT = 14;
+
+    static final byte SENT_AMOUNTS = 15;
+
+    private ShardProtocol() {
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    static void writeInts(DataOutputStream out, Collection<Integer> values) throws IOException {
+        out.writeInt(values.size());
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    static Set<Integer> readIntSet(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Set<Integer> values = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            values.add(in.readInt());
+        }
+        return values;
+    }
+
+    static void writeRecords(DataOutputStream out, List<TransactionRecord> records) throws IOException {
+        out.writeInt(records.size());
+        for (TransactionRecord record : records) {
+            out.writeInt(record.getMtn());
+            out.writeLong(record.getAmount());
+            writeString(out, record.getSenderFullName());
+            out.writeInt(record.getSenderAge());
+            writeString(out, record.getBeneficiaryFullName());
+            out.writeInt(record.getBeneficiaryAge());
+            List<Issue> issues = record.getIssues();
+            out.writeInt(issues.size());
+            for (Issue issue : issues) {
+                out.writeInt(issue.getId());
+                out.writeBoolean(issue.isSolved());
+                writeString(out, issue.getMessage());
+            }
+        }
+    }
+
+    static List<TransactionRecord> readRecords(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<TransactionRecord> records = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int mtn = in.readInt();
+            long amount = in.readLong();
+            String senderFullName = readString(in);
+            int senderAge = in.readInt();
+            String beneficiaryFullName = readString(in);
+            int beneficiaryAge = in.readInt();
+            Issue[] issues = new Issue[in.readInt()];
+            for (int issue = 0; issue < issues.length; issue++) {
+                issues[issue] = new Issue(in.readInt(), in.readBoolean(), readString(in));
+            }
+            records.add(new TransactionRecord(mtn, amount, senderFullName, senderAge, beneficiaryFullName, beneficiaryAge, issues));
+        }
+        return records;
+    }
+}
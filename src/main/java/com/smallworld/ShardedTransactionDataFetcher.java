@@ -0,0 +1,374 @@
+package com.smallworld;
+
+import com.smallworld.data.Amounts;
+import com.smallworld.data.ClientDictionary;
+import com.smallworld.data.Transaction;
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionSketches;
+import com.smallworld.metrics.Metrics;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Transaction data fetcher over a dataset partitioned by mtn into shards, for data that does not fit in one heap.
+ * Every shard holds the transactions whose mtn {@link #shardOf(int, int) hashes} to it, in this JVM with a
+ * {@link LocalTransactionShard} or in another process with a {@link RemoteTransactionShard}. A query is scattered to
+ * all shards at once and their partial answers are merged: amounts add up in minor units, maxima and top-k
+ * selections are taken over the shards' own, client names are matched ignoring case across shards, and issue ids
+ * are united. Because every row of an mtn lands on the same shard, each shard deduplicates its transactions and
+ * sees all of their issues, so the merged answers are those of a single fetcher over the whole dataset.
+ * <p>
+ * Orders that a single fetcher derives from the load order, i.e. transactions by beneficiary, solved messages and
+ * ties between amounts or senders, follow the order of the shards, then the load order within each shard.
+ */
+public class ShardedTransactionDataFetcher {
+
+    private final List<TransactionShard> shards;
+
+    /**
+     * Runs the partial queries of the shards.
+     */
+    private final Executor executor;
+
+    /**
+     * Queries the shards concurrently on the common fork-join pool.
+     * @param shards - shards of the dataset.
+     */
+    public ShardedTransactionDataFetcher(List<? extends TransactionShard> shards) {
+        this(shards, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Queries the shards concurrently on the given executor, e.g. one with a thread per remote shard.
+     * @param shards - shards of the dataset, every mtn in a single one.
+     * @param executor - runs the partial queries.
+     * @throws IllegalArgumentException - when there are no shards.
+     */
+    public ShardedTransactionDataFetcher(List<? extends TransactionShard> shards, Executor executor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.executor = executor;
+    }
+
+    /**
+     * Partitions rows of the transaction/transaction_issue join into in-process shards.
+     * @param transactions - transaction rows.
+     * @param shardCount - number of shards.
+     * @return fetcher over a {@link LocalTransactionShard} per partition.
+     */
+    public static ShardedTransactionDataFetcher inProcess(Collection<? extends Transaction> transactions, int shardCount) {
+        return new ShardedTransactionDataFetcher(partition(transactions, shardCount).stream()
+                .map(partition -> new LocalTransactionShard(new TransactionDataFetcher(partition)))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns the shard of an mtn. The hash only depends on the mtn, so every process and every run place an mtn
+     * in the same shard, and consecutive mtns are spread over the shards.
+     * @param mtn - transaction number.
+     * @param shardCount - number of shards.
+     * @return shard index from 0 to shardCount - 1.
+     */
+    public static int shardOf(int mtn, int shardCount) {
+        int hash = mtn * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    /**
+     * Splits rows of the transaction/transaction_issue join by {@link #shardOf(int, int)}, e.g. to write a store
+     * file per shard. Every row of an mtn goes to the same partition, in the order of the rows.
+     * @param transactions - transaction rows.
+     * @param shardCount - number of partitions.
+     * @return rows of every shard, in shard order.
+     * @throws IllegalArgumentException - when shardCount is not positive.
+     */
+    public static List<List<Transaction>> partition(Collection<? extends Transaction> transactions, int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+        }
+        List<List<Transaction>> partitions = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (Transaction transaction : transactions) {
+            partitions.get(shardOf(transaction.getMtn(), shardCount)).add(transaction);
+        }
+        return partitions;
+    }
+
+    /**
+     * Returns the number of shards.
+     */
+    public int shardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Returns the sum of the amounts of all transactions
+     */
+    public double getTotalTransactionAmount() {
+        return Amounts.toDouble(scatter("getTotalTransactionAmount", TransactionShard::totalAmount)
+                .stream().mapToLong(Long::longValue).sum());
+    }
+
+    /**
+     * Returns the sum of the amounts of all transactions sent by the specified client
+     *
+     * @param senderFullName - Full name of the sender whose data needs to be retrieved.
+     */
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        return Amounts.toDouble(scatter("getTotalTransactionAmountSentBy", shard -> shard.totalAmountSentBy(senderFullName))
+                .stream().mapToLong(Long::longValue).sum());
+    }
+
+    /**
+     * Returns the highest transaction amount, 0 without transactions.
+     */
+    public double getMaxTransactionAmount() {
+        long max = scatter("getMaxTransactionAmount", TransactionShard::maxAmount)
+                .stream().mapToLong(Long::longValue).max().orElse(Long.MIN_VALUE);
+        return max == Long.MIN_VALUE ? 0.0 : Amounts.toDouble(max);
+    }
+
+    /**
+     * Counts the number of unique clients that sent or received a transaction. A client is often known to several
+     * shards, so the names of every shard are merged, which takes memory per client; {@link #sketch()} estimates
+     * the count in fixed memory instead.
+     *  @return The count of unique clients (senders or beneficiaries) involved in the transactions.
+     */
+    public long countUniqueClients() {
+        ClientDictionary clients = new ClientDictionary();
+        for (List<String> clientNames : scatter("countUniqueClients", TransactionShard::clientNames)) {
+            clientNames.forEach(clients::add);
+        }
+        return clients.size();
+    }
+
+    /**
+     * Summarizes the transactions with the default error bounds, see {@link #sketch(double, double)}.
+     * @return approximate summary of the transactions.
+     */
+    public TransactionSketches sketch() {
+        return sketch(TransactionSketches.DEFAULT_CLIENT_ERROR, TransactionSketches.DEFAULT_AMOUNT_ACCURACY);
+    }
+
+    /**
+     * Merges the summaries of the shards, see {@link TransactionDataFetcher#sketch(double, double)}. A summary
+     * has a fixed size whatever the number of clients of its shard.
+     * @param clientError - standard error of the client counts relative to the true counts, e.g. 0.02.
+     * @param amountAccuracy - accuracy of the amount quantiles relative to their value, e.g. 0.01.
+     * @return approximate summary of the transactions.
+     */
+    public TransactionSketches sketch(double clientError, double amountAccuracy) {
+        List<TransactionSketches> sketches = scatter("sketch", shard -> shard.sketch(clientError, amountAccuracy));
+        TransactionSketches merged = sketches.get(0);
+        for (int shard = 1; shard < sketches.size(); shard++) {
+            merged.merge(sketches.get(shard));
+        }
+        return merged;
+    }
+
+    /**
+     * Returns whether a client (sender or beneficiary) has at least one transaction with a compliance
+     * issue that has not been solved, on any shard.
+     * @param clientFullName - beneficiary name whose data needs to be retrieved.
+     * @return {@code true} if the client has at least one transaction with an unsolved compliance issue, {@code false} otherwise.
+     */
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        return scatter("hasOpenComplianceIssues", shard -> shard.hasOpenComplianceIssues(clientFullName))
+                .contains(Boolean.TRUE);
+    }
+
+    /**
+     * Returns the identifiers of the unsolved compliance issues on the transactions a client sent or received.
+     * @param clientFullName - sender or beneficiary name whose data needs to be retrieved.
+     * @return {@link Set} of unsolved issue ids, empty if the client has none or is unknown.
+     */
+    public Set<Integer> getOpenIssuesForClient(String clientFullName) {
+        return union(scatter("getOpenIssuesForClient", shard -> shard.openIssuesForClient(clientFullName)));
+    }
+
+    /**
+     * Returns all transactions indexed by beneficiary name, the transactions of every shard after those of
+     * the shards before it. Beneficiaries are keyed by the spelling of the first shard knowing them.
+     * @return A {@link Map} containing transactions indexed by beneficiary name.
+     */
+    public Map<String, List<TransactionRecord>> getTransactionsByBeneficiaryName() {
+        ClientDictionary beneficiaries = new ClientDictionary();
+        Map<String, List<TransactionRecord>> transactionsByBeneficiary = new LinkedHashMap<>();
+        for (Map<String, List<TransactionRecord>> partial : scatter("getTransactionsByBeneficiaryName",
+                TransactionShard::transactionsByBeneficiary)) {
+            partial.forEach((beneficiary, transactions) -> transactionsByBeneficiary
+                    .computeIfAbsent(beneficiaries.name(beneficiaries.add(beneficiary)), name -> new ArrayList<>())
+                    .addAll(transactions));
+        }
+        return transactionsByBeneficiary;
+    }
+
+    /**
+     * Counts the transactions received by a beneficiary.
+     * @param beneficiaryFullName - beneficiary name whose data needs to be retrieved.
+     * @return number of transactions, 0 for an unknown beneficiary.
+     */
+    public int countTransactionsByBeneficiaryName(String beneficiaryFullName) {
+        return scatter("countTransactionsByBeneficiaryName", shard -> shard.countTransactionsByBeneficiary(beneficiaryFullName))
+                .stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Returns a page of the transactions received by a beneficiary, in shard order. The counts of the shards are
+     * gathered first, then only the shards the page overlaps are asked for their part of it.
+     * @param beneficiaryFullName - beneficiary name whose data needs to be retrieved.
+     * @param offset - number of transactions to skip.
+     * @param limit - number of transactions to return at most.
+     * @return {@link List} of at most limit transactions, empty past the last one.
+     * @throws IllegalArgumentException - when offset or limit is negative.
+     */
+    public List<TransactionRecord> getTransactionsByBeneficiaryName(String beneficiaryFullName, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative: " + offset + ", " + limit);
+        }
+        List<Integer> counts = scatter("getTransactionsByBeneficiaryNamePage",
+                shard -> shard.countTransactionsByBeneficiary(beneficiaryFullName));
+        List<TransactionRecord> page = new ArrayList<>();
+        long skip = offset;
+        for (int shard = 0; shard < shards.size() && page.size() < limit; shard++) {
+            int count = counts.get(shard);
+            if (skip >= count) {
+                skip -= count;
+                continue;
+            }
+            page.addAll(shards.get(shard).transactionsByBeneficiary(beneficiaryFullName, (int) skip, limit - page.size()));
+            skip = 0;
+        }
+        return page;
+    }
+
+    /**
+     * Streams the transactions received by a beneficiary in shard order, reading the transactions of one shard at
+     * a time when the stream reaches them.
+     * @param beneficiaryFullName - beneficiary name whose data needs to be retrieved.
+     * @return stream of the beneficiary's transactions, empty for an unknown beneficiary.
+     */
+    public Stream<TransactionRecord> streamTransactionsByBeneficiaryName(String beneficiaryFullName) {
+        return shards.stream().flatMap(shard -> shard.transactionsByBeneficiary(beneficiaryFullName, 0, Integer.MAX_VALUE).stream());
+    }
+
+    /**
+     * Returns the identifiers of all open compliance issues.
+     * {@link Set} of unsolved issue ids.
+     */
+    public Set<Integer> getUnsolvedIssueIds() {
+        return union(scatter("getUnsolvedIssueIds", TransactionShard::unsolvedIssueIds));
+    }
+
+    /**
+     * Returns a list of all solved issue messages
+     * {@link List} of all the messages of the issues that are resolved, in shard order.
+     */
+    public List<String> getAllSolvedIssueMessages() {
+        List<String> solvedIssueMessages = new ArrayList<>();
+        scatter("getAllSolvedIssueMessages", TransactionShard::solvedIssueMessages).forEach(solvedIssueMessages::addAll);
+        return solvedIssueMessages;
+    }
+
+    /**
+     * Retrieves top 3 transactions with the highest amount.
+     * @return {@link List} contaning top 3 transactions with the highest amount in descending order.
+     */
+    public List<TransactionRecord> getTop3TransactionsByAmount() {
+        return getTopNTransactionsByAmount(3);
+    }
+
+    /**
+     * Retrieves the n transactions with the highest amount: every shard selects its own top n, and the top n of
+     * those are the top n overall. Transactions with the same amount keep the shard order.
+     * @param n - number of transactions to return.
+     * @return {@link List} containing at most n transactions with the highest amount in descending order.
+     * @throws IllegalArgumentException - when n is negative.
+     */
+    public List<TransactionRecord> getTopNTransactionsByAmount(int n) {
+        TopK top = new TopK(n);
+        List<TransactionRecord> candidates = new ArrayList<>();
+        scatter("getTopNTransactionsByAmount", shard -> shard.topTransactionsByAmount(n)).forEach(candidates::addAll);
+        for (int candidate = 0; candidate < candidates.size(); candidate++) {
+            top.offer(candidate, candidates.get(candidate).getAmount());
+        }
+        return Arrays.stream(top.idsDescending()).mapToObj(candidates::get).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the senderFullName of the sender with the most total sent amount
+     * @return full name of the sender
+     */
+    public Optional<String> getTopSender() {
+        return getTopNSenders(1).stream().findFirst();
+    }
+
+    /**
+     * Returns the n senders with the most total sent amount. A sender's transactions are spread over the shards,
+     * so the total of every sender of every shard is gathered before selecting. Senders with the same total keep
+     * the order in which the shards, in order, first name them.
+     * @param n - number of senders to return.
+     * @return full names of at most n senders in descending order of total sent amount.
+     * @throws IllegalArgumentException - when n is negative.
+     */
+    public List<String> getTopNSenders(int n) {
+        TopK top = new TopK(n);
+        ClientDictionary senders = new ClientDictionary();
+        long[] sentAmounts = new long[16];
+        for (Map<String, Long> partial : scatter("getTopNSenders", TransactionShard::sentAmounts)) {
+            for (Map.Entry<String, Long> sender : partial.entrySet()) {
+                int id = senders.add(sender.getKey());
+                if (id >= sentAmounts.length) {
+                    sentAmounts = Arrays.copyOf(sentAmounts, Math.max(sentAmounts.length * 2, id + 1));
+                }
+                sentAmounts[id] += sender.getValue();
+            }
+        }
+        for (int sender = 0; sender < senders.size(); sender++) {
+            top.offer(sender, sentAmounts[sender]);
+        }
+        return Arrays.stream(top.idsDescending()).mapToObj(senders::name).collect(Collectors.toList());
+    }
+
+    /**
+     * Runs a partial query on every shard concurrently and waits for all of them.
+     * @param timer - name of the query, timed as {@code shards.<query>}.
+     * @param query - partial query.
+     * @return answers of the shards, in shard order.
+     */
+    private <T> List<T> scatter(String timer, Function<TransactionShard, T> query) {
+        try (Metrics.Timing ignored = Metrics.time("shards." + timer)) {
+            List<CompletableFuture<T>> partials = new ArrayList<>(shards.size());
+            for (TransactionShard shard : shards) {
+                partials.add(CompletableFuture.supplyAsync(() -> query.apply(shard), executor));
+            }
+            List<T> answers = new ArrayList<>(partials.size());
+            for (CompletableFuture<T> partial : partials) {
+                answers.add(partial.join());
+            }
+            return answers;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Set<Integer> union(List<Set<Integer>> partials) {
+        Set<Integer> union = new HashSet<>();
+        partials.forEach(union::addAll);
+        return union;
+    }
+}
@@ -0,0 +1,126 @@
+package com.smallworld;
+
+/**
+ * Bounded selection of the k int ids with the highest long scores, e.g. store rows by amount.
+ * Kept as a min-heap of the current best k, so offering n ids costs O(n log k) time and O(k) memory.
+ * Ties are won by the smaller id, which matches a stable descending sort over ids in ascending order.
+ */
+class TopK {
+
+    private final int capacity;
+
+    private final int[] ids;
+
+    private final long[] scores;
+
+    private int size;
+
+    TopK(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        this.ids = new int[capacity];
+        this.scores = new long[capacity];
+    }
+
+    /**
+     * Offers an id with its score, keeping it only if it ranks among the best k seen so far.
+     */
+    void offer(int id, long score) {
+        if (size < capacity) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (capacity > 0 && ranksBefore(id, score, ids[0], scores[0])) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Adds the selection of another partition to this one.
+     * @return this selection.
+     */
+    TopK merge(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ids[i], other.scores[i]);
+        }
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the selected ids, best first.
+     */
+    int[] idsDescending() {
+        int[] heapIds = ids.clone();
+        long[] heapScores = scores.clone();
+        int[] result = new int[size];
+        for (int remaining = size; remaining > 0; remaining--) {
+            // pop the worst remaining element to the back of the result
+            result[remaining - 1] = heapIds[0];
+            heapIds[0] = heapIds[remaining - 1];
+            heapScores[0] = heapScores[remaining - 1];
+            siftDown(heapIds, heapScores, 0, remaining - 1);
+        }
+        return result;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksBefore(ids[parent], scores[parent], ids[index], scores[index])) {
+                break;
+            }
+            swap(ids, scores, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        siftDown(ids, scores, index, size);
+    }
+
+    /**
+     * Restores the min-heap order, the worst element at the root, below the given index.
+     */
+    private static void siftDown(int[] ids, long[] scores, int index, int size) {
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && ranksBefore(ids[worst], scores[worst], ids[left], scores[left])) {
+                worst = left;
+            }
+            if (right < size && ranksBefore(ids[worst], scores[worst], ids[right], scores[right])) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(ids, scores, index, worst);
+            index = worst;
+        }
+    }
+
+    /**
+     * Returns whether the first id ranks before the second one: a higher score, or the same score and a smaller id.
+     */
+    private static boolean ranksBefore(int id, long score, int otherId, long otherScore) {
+        return score > otherScore || (score == otherScore && id < otherId);
+    }
+
+    private static void swap(int[] ids, long[] scores, int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        long score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
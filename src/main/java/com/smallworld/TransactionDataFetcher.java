@@ -1,36 +1,175 @@
 package com.smallworld;
 
+import com.smallworld.data.Amounts;
+import com.smallworld.data.BeneficiaryIndex;
+import com.smallworld.data.ClientDictionary;
+import com.smallworld.data.HyperLogLog;
 import com.smallworld.data.Transaction;
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionSketches;
+import com.smallworld.data.TransactionStore;
+import com.smallworld.metrics.Metrics;
 
-import java.text.DecimalFormat;
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 public class TransactionDataFetcher {
 
     /**
-     * List of transaction data.
+     * Columnar transaction data the queries scan.
      */
-    List<Transaction> transactionList;
+    private final TransactionStore store;
+
+    /**
+     * Precomputed answers of the queries, {@code null} unless the fetcher was created by {@link #indexed()},
+     * {@link #fromJsonFile(String)} or {@link ConcurrentTransactionDataFetcher#snapshot()}.
+     */
+    private final TransactionIndex index;
+
+    /**
+     * Runs the scans over the store, on the calling thread or partitioned across fork-join workers.
+     */
+    private final PartitionedScan scan;
 
     public TransactionDataFetcher(List<Transaction> transactionList) {
-        this.transactionList = transactionList;
+        this(TransactionStore.of(transactionList.stream()));
+    }
+
+    public TransactionDataFetcher(TransactionStore store) {
+        this(store, null, PartitionedScan.SEQUENTIAL);
+    }
+
+    TransactionDataFetcher(TransactionStore store, TransactionIndex index, PartitionedScan scan) {
+        this.store = store;
+        this.index = index;
+        this.scan = scan;
+    }
+
+    /**
+     * Creates a fetcher over transactions that are already grouped by mtn.
+     * @param transactionRecords - one record per transaction, e.g. from {@link JsonFileParser#readTransactionRecords(String)}.
+     * @return fetcher over the records.
+     */
+    public static TransactionDataFetcher fromRecords(List<TransactionRecord> transactionRecords) {
+        return new TransactionDataFetcher(TransactionStore.ofRecords(transactionRecords));
+    }
+
+    /**
+     * Creates a read-only indexed fetcher over a json file. The file is streamed straight into a columnar
+     * {@link TransactionStore}, see {@link JsonFileParser#readTransactionStore(String)}, so no transaction objects
+     * are held for the whole file, but the store holds every transaction in compact form and grows with the file.
+     * The index is then built in one pass over the store.
+     * @param filePath - of the json file
+     * @return indexed fetcher over the json file.
+     * @throws IOException - when there is error reading json file.
+     */
+    public static TransactionDataFetcher fromJsonFile(String filePath) throws IOException {
+        try (Metrics.Timing ignored = Metrics.time("fetcher.fromJsonFile")) {
+            TransactionStore store = JsonFileParser.readTransactionStore(filePath).snapshot();
+            return new TransactionDataFetcher(store, TransactionIndex.of(store), PartitionedScan.SEQUENTIAL);
+        }
+    }
+
+    /**
+     * Returns a fetcher over the same data that computes every aggregate in a single pass up front.
+     * Its queries are then answered from the precomputed values without scanning the transactions again,
+     * which pays off when several queries are run on the same data.
+     * Data appended later, through any fetcher sharing the store, is folded into the aggregates incrementally.
+     * @return indexed fetcher over the same transactions.
+     */
+    public TransactionDataFetcher indexed() {
+        try (Metrics.Timing ignored = Metrics.time("fetcher.indexed")) {
+            if (index != null) {
+                return this;
+            }
+            return new TransactionDataFetcher(store, TransactionIndex.of(store), scan);
+        }
+    }
+
+    /**
+     * Returns a fetcher over the same data whose queries scan the store in parallel on the common fork-join pool.
+     * @return parallel fetcher over the same transactions.
+     */
+    public TransactionDataFetcher parallel() {
+        return parallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a fetcher over the same data whose queries scan the store in parallel on the given pool.
+     * Every worker aggregates its own partition of rows (sums, max, per-sender totals, bounded top-k heaps)
+     * and the partial results are merged in row order, so the answers are the same as the sequential ones.
+     * Partitions never share an mtn because the store keeps a single row per transaction.
+     * @param pool - fork-join pool running the partitions.
+     * @return parallel fetcher over the same transactions.
+     */
+    public TransactionDataFetcher parallel(ForkJoinPool pool) {
+        return new TransactionDataFetcher(store, index, PartitionedScan.parallel(pool));
+    }
+
+    /**
+     * Appends a row of the transaction/transaction_issue join. A new mtn adds a transaction, a known one only adds
+     * the issue of the row. The change is visible to the next query of this fetcher and of every fetcher
+     * sharing its store, indexed ones update their aggregates incrementally instead of rebuilding them.
+     * @param transaction - transaction row.
+     * @throws UnsupportedOperationException - when the fetcher was created by {@link #fromJsonFile(String)}
+     * or runs on another read-only {@link TransactionStore#snapshot()}.
+     */
+    public void append(Transaction transaction) {
+        store.add(transaction);
+        Metrics.increment("fetcher.appendedRows", 1);
+    }
+
+    /**
+     * Appends rows of the transaction/transaction_issue join in order, see {@link #append(Transaction)}.
+     * @param transactions - transaction rows.
+     */
+    public void appendAll(Collection<? extends Transaction> transactions) {
+        transactions.forEach(store::add);
+        Metrics.increment("fetcher.appendedRows", transactions.size());
+    }
+
+    /**
+     * Marks a compliance issue as solved or reopens it.
+     * @param issueId - id of the issue, the first issue with that id if it is repeated.
+     * @param solved - new state of the issue.
+     * @throws IllegalArgumentException - when there is no issue with that id.
+     * @throws UnsupportedOperationException - when the fetcher was created by {@link #fromJsonFile(String)}
+     * or runs on another read-only {@link TransactionStore#snapshot()}.
+     */
+    public void setIssueSolved(int issueId, boolean solved) {
+        int issue = store.issueOf(issueId);
+        if (issue < 0) {
+            throw new IllegalArgumentException("Unknown issue id: " + issueId);
+        }
+        store.setIssueSolved(issue, solved);
+    }
+
+    /**
+     * Returns the version of the data the fetcher answers from. Every appended transaction or issue and every change
+     * of an issue state increments it, so two calls returning the same version see the same data.
+     */
+    public long version() {
+        return (long) store.size() + store.issueCount() + store.transitionCount();
+    }
+
+    /**
+     * Starts a query over the transactions of this fetcher, answered from its precomputed aggregates when they
+     * hold the answer and otherwise scanned like its other queries, see {@link TransactionQuery}.
+     * @return query without filters, over all transactions.
+     */
+    public TransactionQuery query() {
+        return new TransactionQuery(store, index, scan);
     }
 
     /**
      * Returns the sum of the amounts of all transactions
      */
     public double getTotalTransactionAmount() {
-        DecimalFormat decimalFormat = new DecimalFormat("#.###");
-        return transactionList
-                .stream()
-                .filter(distinctByKey(Transaction::getMtn))
-                .mapToDouble(transaction -> Double.parseDouble(decimalFormat.format(transaction.getAmount())))
-                .sum();
+        try (Metrics.Timing ignored = Metrics.time("fetcher.getTotalTransactionAmount")) {
+            return query().sum();
+        }
     }
 
     /**
@@ -39,13 +178,54 @@ public class TransactionDataFetcher {
      * @param senderFullName - Full name of the sender whose data needs to be retrieved.
      */
     public double getTotalTransactionAmountSentBy(String senderFullName) {
-        DecimalFormat decimalFormat = new DecimalFormat("#.###");
-        return transactionList
-                .stream()
-                .filter(distinctByKey(Transaction::getMtn))
-                .filter(transaction -> transaction.getSenderFullName().equalsIgnoreCase(senderFullName))
-                .mapToDouble(transaction -> Double.parseDouble(decimalFormat.format(transaction.getAmount())))
-                .sum();
+        try (Metrics.Timing ignored = Metrics.time("fetcher.getTotalTransactionAmountSentBy")) {
+            return query().sender(senderFullName).sum();
+        }
+    }
+
+    /**
+     * Returns the sums of the amounts sent by many clients at once, for callers looking up clients by the thousand.
+     * All the senders are summed in a single pass over the transactions instead of a pass per sender: the pass
+     * only tests every row's sender against a bitset of the requested ones. Indexed fetchers look every sender
+     * up in constant time.
+     * @param senderFullNames - full names of the senders.
+     * @return sum sent per requested name, in the order of the names, 0 for unknown senders.
+     */
+    public Map<String, Double> getTotalTransactionAmountSentBy(Collection<String> senderFullNames) {
+        try (Metrics.Timing ignored = Metrics.time("fetcher.getTotalTransactionAmountSentByBatch")) {
+            Map<String, Double> sentAmounts = new LinkedHashMap<>();
+            if (index != null) {
+                for (String senderFullName : senderFullNames) {
+                    sentAmounts.put(senderFullName, index.getTotalTransactionAmountSentBy(senderFullName));
+                }
+                return sentAmounts;
+            }
+            TransactionStore rows = store;
+            ClientBatch senders = new ClientBatch(rows, senderFullNames);
+            long[] sums = new long[senders.size()];
+            if (senders.size() > 0) {
+                sums = scan.scan(rows.size(), (from, to) -> {
+                    long[] partialSums = new long[senders.size()];
+                    for (int row = from; row < to; row++) {
+                        int slot = senders.slotOf(rows.senderId(row));
+                        if (slot >= 0) {
+                            partialSums[slot] += rows.amount(row);
+                        }
+                    }
+                    return partialSums;
+                }, (left, right) -> {
+                    for (int slot = 0; slot < left.length; slot++) {
+                        left[slot] += right[slot];
+                    }
+                    return left;
+                });
+            }
+            for (String senderFullName : senderFullNames) {
+                int slot = senders.slotOf(rows.clientIdOf(senderFullName));
+                sentAmounts.put(senderFullName, slot >= 0 ? Amounts.toDouble(sums[slot]) : 0.0);
+            }
+            return sentAmounts;
+        }
     }
 
     /**
@@ -53,13 +233,9 @@ public class TransactionDataFetcher {
      * {@link double}
      */
     public double getMaxTransactionAmount() {
-        DecimalFormat decimalFormat = new DecimalFormat("#.###");
-        return transactionList
-                .stream()
-                .filter(distinctByKey(Transaction::getMtn))
-                .mapToDouble(transaction -> Double.parseDouble(decimalFormat.format(transaction.getAmount())))
-                .max()
-                .orElse(0.0);
+        try (Metrics.Timing ignored = Metrics.time("fetcher.getMaxTransactionAmount")) {
+            return query().max();
+        }
     }
 
     /**
@@ -67,39 +243,217 @@ public class TransactionDataFetcher {
      *  @return The count of unique clients (senders or beneficiaries) involved in the transactions.
      */
     public long countUniqueClients() {
-        return transactionList
-                .stream()
-                .flatMap(transaction -> Stream.of(transaction.getSenderFullName(), transaction.getBeneficiaryFullName()))
-                .distinct()
-                .count();
+        try (Metrics.Timing ignored = Metrics.time("fetcher.countUniqueClients")) {
+            return query().countDistinctClients();
+        }
+    }
+
+    /**
+     * Summarizes the transactions in sketches of fixed size with the default error bounds, see
+     * {@link #sketch(double, double)}.
+     * @return approximate summary of the transactions.
+     */
+    public TransactionSketches sketch() {
+        return sketch(TransactionSketches.DEFAULT_CLIENT_ERROR, TransactionSketches.DEFAULT_AMOUNT_ACCURACY);
+    }
+
+    /**
+     * Summarizes the transactions in sketches of fixed size, for approximate unique client counts and amount
+     * percentiles that take no memory per client or per transaction. Summaries merge, so the summary of a
+     * dataset spread over fetchers, e.g. on several nodes, is the merge of their summaries.
+     * Every partition of a parallel fetcher summarizes its own rows and the summaries are merged.
+     * @param clientError - standard error of the client counts relative to the true counts, e.g. 0.02.
+     * @param amountAccuracy - accuracy of the amount quantiles relative to their value, e.g. 0.01.
+     * @return approximate summary of the transactions.
+     */
+    public TransactionSketches sketch(double clientError, double amountAccuracy) {
+        try (Metrics.Timing ignored = Metrics.time("fetcher.sketch")) {
+            TransactionStore rows = store;
+            int size = rows.size();
+            // client names are hashed once, rows only pick the hashes of their clients
+            long[] clientHashes = new long[rows.clientCount()];
+            for (int client = 0; client < clientHashes.length; client++) {
+                clientHashes[client] = HyperLogLog.hash(rows.clientName(client));
+            }
+            return scan.scan(size, (from, to) -> {
+                TransactionSketches sketches = new TransactionSketches(clientError, amountAccuracy);
+                for (int row = from; row < to; row++) {
+                    sketches.add(clientHashes[rows.senderId(row)], clientHashes[rows.beneficiaryId(row)], rows.amount(row));
+                }
+                return sketches;
+            }, TransactionSketches::merge);
+        }
     }
 
     /**
      * Returns whether a client (sender or beneficiary) has at least one transaction with a compliance
-     * issue that has not been solved
+     * issue that has not been solved. Transactions without an issue never count as open.
+     * Indexed fetchers answer from an inverted index of open issues per client in constant time,
+     * which suits callers screening every transfer.
      * @param clientFullName - beneficiary name whose data needs to be retrieved.
      * @return {@code true} if the client has at least one transaction with an unsolved compliance issue, {@code false} otherwise.
      */
     public boolean hasOpenComplianceIssues(String clientFullName) {
-        return transactionList
-                .stream()
-                .filter(transaction ->
-                        transaction.getSenderFullName().equalsIgnoreCase(clientFullName) ||
-                                transaction.getBeneficiaryFullName().equalsIgnoreCase(clientFullName))
-                .anyMatch(transaction -> !transaction.isIssueSolved());
+        try (Metrics.Timing ignored = Metrics.time("fetcher.hasOpenComplianceIssues")) {
+            return query().client(clientFullName).withOpenIssues().exists();
+        }
+    }
 
+    /**
+     * Returns whether each of many clients has a transaction with an unsolved compliance issue, in a single pass
+     * over the transactions with open issues instead of a pass per client. Indexed fetchers look every client up
+     * in constant time.
+     * @param clientFullNames - sender or beneficiary names.
+     * @return whether the client has an open issue, per requested name, in the order of the names.
+     */
+    public Map<String, Boolean> hasOpenComplianceIssues(Collection<String> clientFullNames) {
+        try (Metrics.Timing ignored = Metrics.time("fetcher.hasOpenComplianceIssuesBatch")) {
+            Map<String, Boolean> openIssues = new LinkedHashMap<>();
+            if (index != null) {
+                for (String clientFullName : clientFullNames) {
+                    openIssues.put(clientFullName, index.hasOpenComplianceIssues(clientFullName));
+                }
+                return openIssues;
+            }
+            TransactionStore rows = store;
+            ClientBatch clients = new ClientBatch(rows, clientFullNames);
+            BitSet withOpenIssues = new BitSet();
+            if (clients.size() > 0) {
+                withOpenIssues = scan.scan(rows.size(), (from, to) -> {
+                    BitSet found = new BitSet();
+                    for (int row = rows.nextRowWithOpenIssues(from); row >= 0 && row < to; row = rows.nextRowWithOpenIssues(row + 1)) {
+                        if (clients.slotOf(rows.senderId(row)) >= 0) {
+                            found.set(rows.senderId(row));
+                        }
+                        if (clients.slotOf(rows.beneficiaryId(row)) >= 0) {
+                            found.set(rows.beneficiaryId(row));
+                        }
+                    }
+                    return found;
+                }, (left, right) -> {
+                    left.or(right);
+                    return left;
+                });
+            }
+            for (String clientFullName : clientFullNames) {
+                int client = rows.clientIdOf(clientFullName);
+                openIssues.put(clientFullName, client != ClientDictionary.UNKNOWN && withOpenIssues.get(client));
+            }
+            return openIssues;
+        }
+    }
+
+    /**
+     * Returns the identifiers of the unsolved compliance issues on the transactions a client sent or received.
+     * Indexed fetchers copy the ids from their inverted index, so the set does not change with later appends.
+     * @param clientFullName - sender or beneficiary name whose data needs to be retrieved.
+     * @return {@link Set} of unsolved issue ids, empty if the client has none or is unknown.
+     */
+    public Set<Integer> getOpenIssuesForClient(String clientFullName) {
+        try (Metrics.Timing ignored = Metrics.time("fetcher.getOpenIssuesForClient")) {
+            return query().client(clientFullName).openIssueIds();
+        }
     }
 
     /**
-     * Returns all transactions indexed by beneficiary name
+     * Returns all transactions indexed by beneficiary name, every transaction of a beneficiary in load order.
+     * The map is a read-only view over a {@link BeneficiaryIndex} the store keeps between calls, so it holds two
+     * ints per transaction and transactions are only materialized when read. It covers the transactions loaded
+     * when it was returned.
      * @return A {@link Map} containing transactions indexed by beneficiary name.
      */
+    public Map<String, List<TransactionRecord>> getTransactionsByBeneficiaryName() {
+        try (Metrics.Timing ignored = Metrics.time("fetcher.getTransactionsByBeneficiaryName")) {
+            return query().groupByBeneficiary().transactions();
+        }
+    }
 
-    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
-        return transactionList
-                .stream()
-                .filter(distinctByKey(Transaction::getMtn))
-                .collect(Collectors.toMap(Transaction::getBeneficiaryFullName, transaction -> transaction));
+    /**
+     * Counts the transactions received by a beneficiary.
+     * @param beneficiaryFullName - beneficiary name whose data needs to be retrieved.
+     * @return number of transactions, 0 for an unknown beneficiary.
+     */
+    public int countTransactionsByBeneficiaryName(String beneficiaryFullName) {
+        try (Metrics.Timing ignored = Metrics.time("fetcher.countTransactionsByBeneficiaryName")) {
+            return (int) query().beneficiary(beneficiaryFullName).count();
+        }
+    }
+
+    /**
+     * Returns a page of the transactions received by a beneficiary, in load order, for beneficiaries with
+     * too many transactions to read at once. Any page is found in constant time.
+     * @param beneficiaryFullName - beneficiary name whose data needs to be retrieved.
+     * @param offset - number of transactions to skip.
+     * @param limit - number of transactions to return at most.
+     * @return {@link List} of at most limit transactions, empty past the last one.
+     * @throws IllegalArgumentException - when offset or limit is negative.
+     */
+    public List<TransactionRecord> getTransactionsByBeneficiaryName(String beneficiaryFullName, int offset, int limit) {
+        try (Metrics.Timing ignored = Metrics.time("fetcher.getTransactionsByBeneficiaryNamePage")) {
+            if (offset < 0 || limit < 0) {
+                throw new IllegalArgumentException("offset and limit must not be negative: " + offset + ", " + limit);
+            }
+            List<TransactionRecord> transactions = query().beneficiary(beneficiaryFullName).transactions();
+            int to = (int) Math.min(transactions.size(), (long) offset + limit);
+            return offset >= to ? new ArrayList<>() : new ArrayList<>(transactions.subList(offset, to));
+        }
+    }
+
+    /**
+     * Streams the transactions received by a beneficiary in load order, materializing one at a time.
+     * Its timing covers finding the transactions and setting up the stream, not consuming it.
+     * @param beneficiaryFullName - beneficiary name whose data needs to be retrieved.
+     * @return stream of the beneficiary's transactions, empty for an unknown beneficiary.
+     */
+    public Stream<TransactionRecord> streamTransactionsByBeneficiaryName(String beneficiaryFullName) {
+        try (Metrics.Timing ignored = Metrics.time("fetcher.streamTransactionsByBeneficiaryName")) {
+            return query().beneficiary(beneficiaryFullName).transactions().stream();
+        }
+    }
+
+    /**
+     * Returns the canonical names of the clients that sent or received a transaction, which are as many as
+     * {@link #countUniqueClients()}, for merging the clients of several fetchers.
+     */
+    List<String> clientNames() {
+        TransactionStore rows = store;
+        List<String> clientNames = new ArrayList<>(rows.clientCount());
+        for (int client = 0; client < rows.clientCount(); client++) {
+            clientNames.add(rows.clientName(client));
+        }
+        return clientNames;
+    }
+
+    /**
+     * Distinct known clients of a batch lookup, numbered by slot in client id order. Rows test their client against
+     * a bitset and only the matching ones search the slot.
+     */
+    private static class ClientBatch {
+
+        private final BitSet clients = new BitSet();
+
+        private final int[] clientIds;
+
+        private ClientBatch(TransactionStore rows, Collection<String> clientFullNames) {
+            for (String clientFullName : clientFullNames) {
+                int client = rows.clientIdOf(clientFullName);
+                if (client != ClientDictionary.UNKNOWN) {
+                    clients.set(client);
+                }
+            }
+            clientIds = clients.stream().toArray();
+        }
+
+        private int size() {
+            return clientIds.length;
+        }
+
+        /**
+         * Returns the slot of a client, -1 for clients that are not in the batch.
+         */
+        private int slotOf(int client) {
+            return client >= 0 && clients.get(client) ? Arrays.binarySearch(clientIds, client) : -1;
+        }
     }
 
     /**
@@ -107,11 +461,9 @@ public class TransactionDataFetcher {
      * {@link Set} of unsolved issue ids.
      */
     public Set<Integer> getUnsolvedIssueIds() {
-        return transactionList
-                .stream()
-                .filter(transaction -> transaction.getIssueId() != null && !transaction.isIssueSolved())
-                .map(Transaction::getIssueId)
-                .collect(Collectors.toSet());
+        try (Metrics.Timing ignored = Metrics.time("fetcher.getUnsolvedIssueIds")) {
+            return query().openIssueIds();
+        }
     }
 
     /**
@@ -119,25 +471,31 @@ public class TransactionDataFetcher {
      * {@link List} of all the messages of the issues that are resolved.
      */
     public List<String> getAllSolvedIssueMessages() {
-        return transactionList
-                .stream()
-                .filter(transaction -> transaction.isIssueSolved())
-                .filter(transaction -> transaction.getIssueMessage() != null)
-                .map(Transaction::getIssueMessage)
-                .collect(Collectors.toList());
+        try (Metrics.Timing ignored = Metrics.time("fetcher.getAllSolvedIssueMessages")) {
+            return query().solvedIssueMessages();
+        }
     }
 
     /**
      * Retrieves top 3 transactions with the highest amount.
      * @return {@link List} contaning top 3 transactions with the highest amount in descending order.
      */
-    public List<Transaction> getTop3TransactionsByAmount() {
-        return transactionList
-                .stream()
-                .filter(distinctByKey(Transaction::getMtn))
-                .sorted(Comparator.comparingDouble(Transaction::getAmount).reversed())
-                .limit(3)
-                .collect(Collectors.toList());
+    public List<TransactionRecord> getTop3TransactionsByAmount() {
+        return getTopNTransactionsByAmount(3);
+    }
+
+    /**
+     * Retrieves the n transactions with the highest amount, using a bounded heap selection that takes
+     * O(size log n) time and O(n) memory instead of sorting every transaction.
+     * Transactions with the same amount keep their load order.
+     * @param n - number of transactions to return.
+     * @return {@link List} containing at most n transactions with the highest amount in descending order.
+     * @throws IllegalArgumentException - when n is negative.
+     */
+    public List<TransactionRecord> getTopNTransactionsByAmount(int n) {
+        try (Metrics.Timing ignored = Metrics.time("fetcher.getTopNTransactionsByAmount")) {
+            return query().topByAmount(n);
+        }
     }
 
     /**
@@ -145,25 +503,24 @@ public class TransactionDataFetcher {
      * @return full name of the sender
      */
     public Optional<String> getTopSender() {
-        Map<String, Double> senderTotalAmounts = transactionList.stream()
-                .filter(distinctByKey(Transaction::getMtn))
-                .collect(Collectors.groupingBy(Transaction::getSenderFullName,
-                        Collectors.summingDouble(Transaction::getAmount)));
-
-        return senderTotalAmounts.entrySet().stream()
-                .max(Comparator.comparingDouble(Map.Entry::getValue))
-                .map(Map.Entry::getKey);
+        try (Metrics.Timing ignored = Metrics.time("fetcher.getTopSender")) {
+            if (index != null) {
+                return index.getTopSender();
+            }
+            return query().groupBySender().top(1).stream().findFirst();
+        }
     }
 
     /**
-     * Returns a predicate that filters distinct elements based on a key extracted from each element.* Applies
-     * @param <T>           The type of the elements being filtered.
-     * @param keyExtractor  The function to extract the key from each element.
-     * @return A predicate that filters distinct elements based on the extracted key.
+     * Returns the n senders with the most total sent amount, selected with a bounded heap.
+     * Senders with the same total keep the order in which they first appear.
+     * @param n - number of senders to return.
+     * @return full names of at most n senders in descending order of total sent amount.
+     * @throws IllegalArgumentException - when n is negative.
      */
-    public static <T> Predicate<T> distinctByKey(Function<? super T, ?> keyExtractor) {
-        Set<Object> seen = ConcurrentHashMap.newKeySet();
-        return t -> seen.add(keyExtractor.apply(t));
+    public List<String> getTopNSenders(int n) {
+        try (Metrics.Timing ignored = Metrics.time("fetcher.getTopNSenders")) {
+            return query().groupBySender().top(n);
+        }
     }
-
 }
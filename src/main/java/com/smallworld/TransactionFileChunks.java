@@ -0,0 +1,247 @@
+package com.smallworld;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a transaction file into byte ranges that start and end on transaction object boundaries, so every range
+ * can be parsed on its own. Two layouts are understood:
+ * <ul>
+ *     <li>a json array of transaction objects, like transactions.json. A range holds the comma separated objects
+ *     without the surrounding brackets;</li>
+ *     <li>newline delimited json, one transaction object per line. A range holds whole lines.</li>
+ * </ul>
+ * Boundaries are found next to the split points only, without scanning the file from its start. In an array a
+ * boundary is a closing brace, a comma, an opening brace and a field name followed by a colon. That sequence cannot
+ * occur inside a string value, because the quote after the brace would end the string and a string value is never
+ * followed by a colon. This holds as long as field names are plain names without quotes, braces or backslashes,
+ * which is the case for the transaction fields.
+ */
+final class TransactionFileChunks {
+
+    /**
+     * Bytes read around a split point at first. The window doubles until a boundary is found.
+     */
+    private static final int WINDOW = 64 * 1024;
+
+    private static final int NO_BOUNDARY = -1;
+
+    private static final int NEED_MORE = -2;
+
+    /**
+     * Whether the file is newline delimited json rather than a json array.
+     */
+    final boolean lineDelimited;
+
+    /**
+     * Start (inclusive) and end (exclusive) offset of every range, in file order.
+     */
+    final long[] starts;
+    final long[] ends;
+
+    private TransactionFileChunks(boolean lineDelimited, long[] starts, long[] ends) {
+        this.lineDelimited = lineDelimited;
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    int count() {
+        return starts.length;
+    }
+
+    /**
+     * Splits the file into at most the given number of ranges of about the same size.
+     * An empty array gives no ranges at all.
+     */
+    static TransactionFileChunks split(FileChannel channel, int chunks) throws IOException {
+        long fileSize = channel.size();
+        byte[] head = read(channel, 0, (int) Math.min(WINDOW, fileSize));
+        int first = skipWhitespace(head, startOfContent(head), head.length);
+        if (first == head.length) {
+            throw new IOException("Expected transactions but the file is empty");
+        }
+        boolean lineDelimited = head[first] == '{';
+        if (!lineDelimited && head[first] != '[') {
+            throw new IOException("Expected a json array or newline delimited json objects but found '" + (char) head[first] + "'");
+        }
+
+        long start = lineDelimited ? first : skipWhitespace(channel, first + 1, fileSize);
+        long end = lineDelimited ? fileSize : endOfArray(channel, fileSize);
+        List<Long> starts = new ArrayList<>();
+        List<Long> ends = new ArrayList<>();
+        for (int chunk = 1; chunk < chunks && start < end; chunk++) {
+            long target = start + (end - start) / (chunks - chunk + 1);
+            long boundary = lineDelimited ? nextLine(channel, target, end) : nextObject(channel, target, end);
+            if (boundary < 0) {
+                break;
+            }
+            starts.add(start);
+            if (lineDelimited) {
+                ends.add(boundary);
+                start = boundary;
+            } else {
+                // the range ends after the closing brace, the next one starts at the opening brace
+                ends.add(boundary + 1);
+                start = skipWhitespace(channel, skipWhitespace(channel, boundary + 1, end) + 1, end);
+            }
+        }
+        if (start < end) {
+            starts.add(start);
+            ends.add(end);
+        }
+        return new TransactionFileChunks(lineDelimited,
+                starts.stream().mapToLong(Long::longValue).toArray(),
+                ends.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    /**
+     * Skips a UTF-8 byte order mark.
+     */
+    private static int startOfContent(byte[] head) {
+        return head.length >= 3 && head[0] == (byte) 0xEF && head[1] == (byte) 0xBB && head[2] == (byte) 0xBF ? 3 : 0;
+    }
+
+    /**
+     * Returns the offset just after the last object of the array, which is the offset of its opening bracket plus
+     * one when the array is empty.
+     */
+    private static long endOfArray(FileChannel channel, long fileSize) throws IOException {
+        int length = (int) Math.min(WINDOW, fileSize);
+        long offset = fileSize - length;
+        byte[] tail = read(channel, offset, length);
+        int last = tail.length - 1;
+        while (last >= 0 && isWhitespace(tail[last])) {
+            last--;
+        }
+        if (last < 0 || tail[last] != ']') {
+            throw new IOException("Expected a json array of transactions but the closing bracket is missing");
+        }
+        last--;
+        while (last >= 0 && isWhitespace(tail[last])) {
+            last--;
+        }
+        return offset + last + 1;
+    }
+
+    /**
+     * Returns the offset of the first newline at or after the given one plus one, or -1 if the newline is the last
+     * one before the end.
+     */
+    private static long nextLine(FileChannel channel, long from, long end) throws IOException {
+        for (long offset = from; offset < end; offset += WINDOW) {
+            byte[] window = read(channel, offset, (int) Math.min(WINDOW, end - offset));
+            for (int i = 0; i < window.length; i++) {
+                if (window[i] == '\n') {
+                    long boundary = offset + i + 1;
+                    return boundary < end ? boundary : -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset of the closing brace of the first object boundary at or after the given offset,
+     * or -1 if the rest of the array holds none.
+     */
+    private static long nextObject(FileChannel channel, long from, long end) throws IOException {
+        for (long window = WINDOW; ; window *= 2) {
+            int length = (int) Math.min(window, end - from);
+            int boundary = findObjectBoundary(read(channel, from, length));
+            if (boundary >= 0) {
+                return from + boundary;
+            }
+            if (boundary == NO_BOUNDARY || length == end - from || window > Integer.MAX_VALUE / 2) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Finds <code>} , { "name" :</code> in the bytes and returns the offset of its closing brace,
+     * {@link #NEED_MORE} if a candidate runs past the end of the bytes, or {@link #NO_BOUNDARY}.
+     */
+    private static int findObjectBoundary(byte[] bytes) {
+        int n = bytes.length;
+        for (int brace = 0; brace < n; brace++) {
+            if (bytes[brace] != '}') {
+                continue;
+            }
+            int comma = skipWhitespace(bytes, brace + 1, n);
+            if (comma == n) {
+                return NEED_MORE;
+            }
+            if (bytes[comma] != ',') {
+                continue;
+            }
+            int open = skipWhitespace(bytes, comma + 1, n);
+            if (open == n) {
+                return NEED_MORE;
+            }
+            if (bytes[open] != '{') {
+                continue;
+            }
+            int quote = skipWhitespace(bytes, open + 1, n);
+            if (quote == n) {
+                return NEED_MORE;
+            }
+            if (bytes[quote] != '"') {
+                continue;
+            }
+            int closingQuote = quote + 1;
+            while (closingQuote < n && bytes[closingQuote] != '"' && bytes[closingQuote] != '\\') {
+                closingQuote++;
+            }
+            if (closingQuote == n) {
+                return NEED_MORE;
+            }
+            if (bytes[closingQuote] != '"') {
+                continue;
+            }
+            int colon = skipWhitespace(bytes, closingQuote + 1, n);
+            if (colon == n) {
+                return NEED_MORE;
+            }
+            if (bytes[colon] == ':') {
+                return brace;
+            }
+        }
+        return NO_BOUNDARY;
+    }
+
+    private static long skipWhitespace(FileChannel channel, long from, long end) throws IOException {
+        for (long offset = from; offset < end; offset += WINDOW) {
+            byte[] window = read(channel, offset, (int) Math.min(WINDOW, end - offset));
+            int i = skipWhitespace(window, 0, window.length);
+            if (i < window.length) {
+                return offset + i;
+            }
+        }
+        return end;
+    }
+
+    private static int skipWhitespace(byte[] bytes, int from, int end) {
+        int i = from;
+        while (i < end && isWhitespace(bytes[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at offset " + (position + buffer.position()));
+            }
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,370 @@
+package com.smallworld;
+
+import com.smallworld.data.Amounts;
+import com.smallworld.data.ClientDictionary;
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionStore;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregates of the transaction data computed in a single pass, so that {@link TransactionDataFetcher}
+ * can answer its queries without scanning the rows again.
+ * An index over a {@link TransactionStore} follows the store as it grows: before answering a query it folds in
+ * the rows, issues and issue transitions added since the last query, so keeping it current costs time
+ * proportional to the changes only.
+ */
+class TransactionIndex {
+
+    /**
+     * Number of highest amount transactions kept for {@link #getTopNTransactionsByAmount(int)}.
+     */
+    static final int TOP_TRANSACTIONS = 1000;
+
+    // Amounts in minor units
+
+    private long totalAmount;
+
+    private long maxAmount;
+
+    private long transactionCount;
+
+    /**
+     * Ids of the clients, senders and beneficiaries, the per-client aggregates are indexed by.
+     */
+    private final ClientDictionary clients;
+
+    /**
+     * Sent amounts indexed by client id.
+     */
+    private long[] sentAmounts = new long[16];
+
+    private final BitSet senders = new BitSet();
+
+    /**
+     * Inverted compliance index: ids of the unsolved issues on the transactions of a client, each with the number of
+     * such issues, by client id. Clients without unsolved issues have no entry, transactions without issues are
+     * never counted.
+     */
+    private final Map<Integer, Map<Integer, Integer>> openIssuesByClient = new HashMap<>();
+
+    /**
+     * Number of unsolved issues per issue id.
+     */
+    private final Map<Integer, Integer> unsolvedIssueCounts = new HashMap<>();
+
+    private final List<String> solvedIssueMessages = new ArrayList<>();
+
+    /**
+     * Rows of the highest amount transactions, ties won by the earlier row. The records are read from the rows when
+     * the transactions are asked for, so they always carry the current state of their issues.
+     */
+    private final TopK topRows = new TopK(TOP_TRANSACTIONS);
+
+    /**
+     * Rows of {@link #topRows} sorted by amount, {@code null} until asked for after a change.
+     */
+    private int[] sortedTopRows;
+
+    /**
+     * Client id of the top sender, {@link ClientDictionary#UNKNOWN} while there is none.
+     */
+    private int topSender = ClientDictionary.UNKNOWN;
+
+    /**
+     * Set when a negative amount lowered the total of the top sender, which then has to be searched again.
+     */
+    private boolean topSenderStale;
+
+    // Position in the followed store
+
+    private final TransactionStore store;
+
+    private int indexedRows;
+
+    private int indexedIssues;
+
+    private int indexedTransitions;
+
+    private TransactionIndex(TransactionStore store) {
+        this.clients = store.clients();
+        this.store = store;
+    }
+
+    /**
+     * Builds the index over the store and keeps following it.
+     * @param store - transaction store, which may keep growing after the index is built.
+     * @return index over the store.
+     */
+    static TransactionIndex of(TransactionStore store) {
+        TransactionIndex index = new TransactionIndex(store);
+        index.catchUp();
+        return index;
+    }
+
+    /**
+     * Builds a read-only index over a store that does not change, e.g. a {@link TransactionStore#snapshot()}.
+     * Everything the queries would compute lazily is computed up front, so the index can be read by many threads.
+     * @param snapshot - read-only transaction store.
+     * @return read-only index over the store.
+     */
+    static TransactionIndex readOnly(TransactionStore snapshot) {
+        return new TransactionIndex(snapshot).freeze();
+    }
+
+    /**
+     * Copies this read-only index onto a later snapshot of its store and folds in the changes made between the two,
+     * so moving an index to the next version costs a copy of the aggregates plus the changes, not a rebuild.
+     * This index is only read and stays valid for its own snapshot.
+     * @param laterSnapshot - read-only snapshot of the same store, taken after the one this index is over.
+     * @return read-only index over the later snapshot.
+     * @throws IllegalArgumentException - when the snapshot is older than this index.
+     */
+    TransactionIndex readOnlyCopyFor(TransactionStore laterSnapshot) {
+        if (laterSnapshot.size() < indexedRows || laterSnapshot.issueCount() < indexedIssues
+                || laterSnapshot.transitionCount() < indexedTransitions) {
+            throw new IllegalArgumentException("The store is older than the index");
+        }
+        TransactionIndex copy = new TransactionIndex(laterSnapshot);
+        copy.totalAmount = totalAmount;
+        copy.maxAmount = maxAmount;
+        copy.transactionCount = transactionCount;
+        copy.sentAmounts = sentAmounts.clone();
+        copy.senders.or(senders);
+        openIssuesByClient.forEach((client, issues) -> copy.openIssuesByClient.put(client, new HashMap<>(issues)));
+        copy.unsolvedIssueCounts.putAll(unsolvedIssueCounts);
+        copy.solvedIssueMessages.addAll(solvedIssueMessages);
+        copy.topRows.merge(topRows);
+        copy.sortedTopRows = sortedTopRows;
+        copy.topSender = topSender;
+        copy.topSenderStale = topSenderStale;
+        copy.indexedRows = indexedRows;
+        copy.indexedIssues = indexedIssues;
+        copy.indexedTransitions = indexedTransitions;
+        return copy.freeze();
+    }
+
+    /**
+     * Catches up and computes the cached answers, after which queries no longer change the index as long as the
+     * store does not change.
+     */
+    private TransactionIndex freeze() {
+        catchUp();
+        getTopSender();
+        if (sortedTopRows == null) {
+            sortedTopRows = topRows.idsDescending();
+        }
+        return this;
+    }
+
+    /**
+     * Folds in the changes made to the store since the last call.
+     */
+    private void catchUp() {
+        if (indexedRows == store.size() && indexedIssues == store.issueCount()
+                && indexedTransitions == store.transitionCount()) {
+            return;
+        }
+        int oldIssues = indexedIssues;
+
+        // new rows are read in their current state, issues included
+        for (; indexedRows < store.size(); indexedRows++) {
+            int row = indexedRows;
+            addTransaction(store.amount(row), store.senderId(row));
+            offerTopRow(row, store.amount(row));
+        }
+        for (; indexedIssues < store.issueCount(); indexedIssues++) {
+            int issue = indexedIssues;
+            int row = store.issueRow(issue);
+            addIssue(store.issueId(issue), store.isIssueSolved(issue), store.issueMessage(issue));
+            if (!store.isIssueSolved(issue)) {
+                countOpenIssue(store.senderId(row), store.beneficiaryId(row), store.issueId(issue), 1);
+            }
+        }
+        // transitions of new issues are already part of the state they were added with
+        for (; indexedTransitions < store.transitionCount(); indexedTransitions++) {
+            int issue = store.transitionIssue(indexedTransitions);
+            if (issue < oldIssues) {
+                boolean solved = store.transitionSolved(indexedTransitions);
+                int row = store.issueRow(issue);
+                removeIssue(store.issueId(issue), !solved, store.issueMessage(issue));
+                addIssue(store.issueId(issue), solved, store.issueMessage(issue));
+                countOpenIssue(store.senderId(row), store.beneficiaryId(row), store.issueId(issue), solved ? -1 : 1);
+            }
+        }
+    }
+
+    private void addTransaction(long amount, int sender) {
+        totalAmount += amount;
+        maxAmount = transactionCount++ == 0 ? amount : Math.max(maxAmount, amount);
+
+        ensureClientCapacity(sender + 1);
+        sentAmounts[sender] += amount;
+        senders.set(sender);
+        if (sender == topSender && amount < 0) {
+            topSenderStale = true;
+        } else if (topSender == ClientDictionary.UNKNOWN || sentAmounts[sender] > sentAmounts[topSender]
+                || (sentAmounts[sender] == sentAmounts[topSender] && sender < topSender)) {
+            topSender = sender;
+        }
+    }
+
+    private void offerTopRow(int row, long amount) {
+        topRows.offer(row, amount);
+        sortedTopRows = null;
+    }
+
+    private void addIssue(int issueId, boolean solved, String message) {
+        if (solved) {
+            if (message != null) {
+                solvedIssueMessages.add(message);
+            }
+        } else {
+            unsolvedIssueCounts.merge(issueId, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Takes back an issue counted by {@link #addIssue(int, boolean, String)}. Removing a solved message is linear
+     * in the number of solved issues, which is fine for reopening, a rare transition.
+     */
+    private void removeIssue(int issueId, boolean solved, String message) {
+        if (solved) {
+            if (message != null) {
+                solvedIssueMessages.remove(message);
+            }
+        } else {
+            unsolvedIssueCounts.computeIfPresent(issueId, (id, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    private void countOpenIssue(int sender, int beneficiary, int issueId, int delta) {
+        countOpenIssue(sender, issueId, delta);
+        countOpenIssue(beneficiary, issueId, delta);
+    }
+
+    private void countOpenIssue(int client, int issueId, int delta) {
+        if (delta > 0) {
+            openIssuesByClient.computeIfAbsent(client, id -> new HashMap<>()).merge(issueId, delta, Integer::sum);
+        } else {
+            openIssuesByClient.computeIfPresent(client, (id, issues) -> {
+                issues.computeIfPresent(issueId, (issue, count) -> count + delta == 0 ? null : count + delta);
+                return issues.isEmpty() ? null : issues;
+            });
+        }
+    }
+
+    private void ensureClientCapacity(int clientCount) {
+        if (clientCount > sentAmounts.length) {
+            int capacity = Math.max(sentAmounts.length * 2, clientCount);
+            sentAmounts = Arrays.copyOf(sentAmounts, capacity);
+        }
+    }
+
+    /**
+     * Returns the sum of all amounts in minor units.
+     */
+    long totalAmount() {
+        catchUp();
+        return totalAmount;
+    }
+
+    double getTotalTransactionAmountSentBy(String senderFullName) {
+        return Amounts.toDouble(sentAmount(senderFullName));
+    }
+
+    /**
+     * Returns the sum of the amounts sent by a client in minor units, 0 for unknown senders.
+     */
+    long sentAmount(String senderFullName) {
+        catchUp();
+        int sender = clients.idOf(senderFullName);
+        return sender != ClientDictionary.UNKNOWN && senders.get(sender) ? sentAmounts[sender] : 0;
+    }
+
+    /**
+     * Returns the highest amount in minor units, {@link Long#MIN_VALUE} without transactions.
+     */
+    long maxAmount() {
+        catchUp();
+        return transactionCount == 0 ? Long.MIN_VALUE : maxAmount;
+    }
+
+    long countUniqueClients() {
+        catchUp();
+        return clients.size();
+    }
+
+    boolean hasOpenComplianceIssues(String clientFullName) {
+        catchUp();
+        int client = clients.idOf(clientFullName);
+        return client != ClientDictionary.UNKNOWN && openIssuesByClient.containsKey(client);
+    }
+
+    Set<Integer> getOpenIssuesForClient(String clientFullName) {
+        catchUp();
+        Map<Integer, Integer> openIssues = openIssuesByClient.get(clients.idOf(clientFullName));
+        return openIssues == null ? new HashSet<>() : new HashSet<>(openIssues.keySet());
+    }
+
+    Set<Integer> getUnsolvedIssueIds() {
+        catchUp();
+        return new HashSet<>(unsolvedIssueCounts.keySet());
+    }
+
+    /**
+     * Returns the solved issue messages, those of issues solved after they were indexed at the end in solving order.
+     */
+    List<String> getAllSolvedIssueMessages() {
+        catchUp();
+        return new ArrayList<>(solvedIssueMessages);
+    }
+
+    /**
+     * Returns whether the index kept enough transactions to answer {@link #getTopNTransactionsByAmount(int)}.
+     */
+    boolean hasTopNTransactions(int n) {
+        catchUp();
+        return n <= TOP_TRANSACTIONS || transactionCount <= TOP_TRANSACTIONS;
+    }
+
+    List<TransactionRecord> getTopNTransactionsByAmount(int n) {
+        if (!hasTopNTransactions(n)) {
+            throw new IllegalArgumentException("Only the top " + TOP_TRANSACTIONS + " transactions are indexed");
+        }
+        if (sortedTopRows == null) {
+            sortedTopRows = topRows.idsDescending();
+        }
+        List<TransactionRecord> top = new ArrayList<>(Math.min(n, sortedTopRows.length));
+        for (int position = 0; position < n && position < sortedTopRows.length; position++) {
+            top.add(store.record(sortedTopRows[position]));
+        }
+        return top;
+    }
+
+    List<String> getTopNSenders(int n) {
+        catchUp();
+        return Arrays.stream(topSenderIds(n))
+                .mapToObj(clients::name)
+                .collect(Collectors.toList());
+    }
+
+    Optional<String> getTopSender() {
+        catchUp();
+        if (topSenderStale) {
+            int[] top = topSenderIds(1);
+            topSender = top.length == 0 ? ClientDictionary.UNKNOWN : top[0];
+            topSenderStale = false;
+        }
+        return topSender == ClientDictionary.UNKNOWN ? Optional.empty() : Optional.of(clients.name(topSender));
+    }
+
+    private int[] topSenderIds(int n) {
+        TopK topSenders = new TopK(Math.min(n, senders.cardinality()));
+        for (int sender = senders.nextSetBit(0); sender >= 0; sender = senders.nextSetBit(sender + 1)) {
+            topSenders.offer(sender, sentAmounts[sender]);
+        }
+        return topSenders.idsDescending();
+    }
+}
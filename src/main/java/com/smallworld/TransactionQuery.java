@@ -0,0 +1,734 @@
+package com.smallworld;
+
+import com.smallworld.data.Amounts;
+import com.smallworld.data.ClientDictionary;
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionStore;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Query over the transactions of a {@link TransactionDataFetcher}, built from filters that all have to hold and run
+ * by one of the aggregates, e.g. {@code fetcher.query().sender("Tom Shelby").amountAtLeast(100).sum()}, or grouped
+ * by client with {@link #groupBySender()} and {@link #groupByBeneficiary()}.
+ * <p>
+ * Aggregates are answered without looking at the transactions when the precomputed values of an indexed fetcher
+ * hold the answer. Otherwise the filters are pushed down to the store: an unknown client name answers without
+ * reading any row, a beneficiary filter reads only the beneficiary's rows from the {@link
+ * com.smallworld.data.BeneficiaryIndex}, an open issues filter only the rows of the open issue bitset, and issue
+ * aggregates walk the issue bitsets. Only the remaining filters are checked per row, and every row is scanned only
+ * when no filter narrows them; see {@link #explain()}. Scans are partitioned like those of the fetcher.
+ * <p>
+ * Each filter replaces the previous one of the same kind. Names are matched ignoring case, amounts are compared in
+ * minor units. Queries are cheap to create and not thread-safe; each aggregate reads the current data.
+ */
+public final class TransactionQuery {
+
+    private final TransactionStore store;
+
+    private final TransactionIndex index;
+
+    private final PartitionedScan scan;
+
+    // Filters, read by QueryPlan
+
+    boolean bySender;
+
+    String sender;
+
+    boolean byBeneficiary;
+
+    String beneficiary;
+
+    boolean byClient;
+
+    String client;
+
+    long minAmount = Long.MIN_VALUE;
+
+    long maxAmount = Long.MAX_VALUE;
+
+    int minSenderAge = Integer.MIN_VALUE;
+
+    int maxSenderAge = Integer.MAX_VALUE;
+
+    int minBeneficiaryAge = Integer.MIN_VALUE;
+
+    int maxBeneficiaryAge = Integer.MAX_VALUE;
+
+    Boolean openIssues;
+
+    /**
+     * Creates a query over the data of a fetcher.
+     * @param store - store of the fetcher.
+     * @param index - precomputed aggregates of the fetcher, {@code null} if it has none.
+     * @param scan - runs the scans of the fetcher.
+     */
+    TransactionQuery(TransactionStore store, TransactionIndex index, PartitionedScan scan) {
+        this.store = store;
+        this.index = index;
+        this.scan = scan;
+    }
+
+    /**
+     * Keeps the transactions sent by a client.
+     * @param senderFullName - full name of the sender.
+     * @return this query.
+     */
+    public TransactionQuery sender(String senderFullName) {
+        bySender = true;
+        sender = senderFullName;
+        return this;
+    }
+
+    /**
+     * Keeps the transactions received by a client.
+     * @param beneficiaryFullName - full name of the beneficiary.
+     * @return this query.
+     */
+    public TransactionQuery beneficiary(String beneficiaryFullName) {
+        byBeneficiary = true;
+        beneficiary = beneficiaryFullName;
+        return this;
+    }
+
+    /**
+     * Keeps the transactions a client sent or received.
+     * @param clientFullName - full name of the sender or beneficiary.
+     * @return this query.
+     */
+    public TransactionQuery client(String clientFullName) {
+        byClient = true;
+        client = clientFullName;
+        return this;
+    }
+
+    /**
+     * Keeps the transactions whose amount is within a range.
+     * @param min - lowest amount kept.
+     * @param max - highest amount kept.
+     * @return this query.
+     * @throws NumberFormatException - when a bound is not finite.
+     */
+    public TransactionQuery amountBetween(double min, double max) {
+        minAmount = minorUnits(min, RoundingMode.CEILING);
+        maxAmount = minorUnits(max, RoundingMode.FLOOR);
+        return this;
+    }
+
+    /**
+     * Keeps the transactions of at least an amount, whatever the highest amount kept before.
+     * @param min - lowest amount kept.
+     * @return this query.
+     */
+    public TransactionQuery amountAtLeast(double min) {
+        minAmount = minorUnits(min, RoundingMode.CEILING);
+        maxAmount = Long.MAX_VALUE;
+        return this;
+    }
+
+    /**
+     * Keeps the transactions of at most an amount, whatever the lowest amount kept before.
+     * @param max - highest amount kept.
+     * @return this query.
+     */
+    public TransactionQuery amountAtMost(double max) {
+        minAmount = Long.MIN_VALUE;
+        maxAmount = minorUnits(max, RoundingMode.FLOOR);
+        return this;
+    }
+
+    private static long minorUnits(double amount, RoundingMode rounding) {
+        return Amounts.toMinorUnits(BigDecimal.valueOf(amount).setScale(Amounts.SCALE, rounding));
+    }
+
+    /**
+     * Keeps the transactions whose sender's age is within a range.
+     * @param min - lowest age kept.
+     * @param max - highest age kept.
+     * @return this query.
+     */
+    public TransactionQuery senderAgeBetween(int min, int max) {
+        minSenderAge = min;
+        maxSenderAge = max;
+        return this;
+    }
+
+    /**
+     * Keeps the transactions whose beneficiary's age is within a range.
+     * @param min - lowest age kept.
+     * @param max - highest age kept.
+     * @return this query.
+     */
+    public TransactionQuery beneficiaryAgeBetween(int min, int max) {
+        minBeneficiaryAge = min;
+        maxBeneficiaryAge = max;
+        return this;
+    }
+
+    /**
+     * Keeps the transactions with at least one compliance issue that is not solved.
+     * @return this query.
+     */
+    public TransactionQuery withOpenIssues() {
+        openIssues = true;
+        return this;
+    }
+
+    /**
+     * Keeps the transactions without any compliance issue that is not solved, including those without issues.
+     * @return this query.
+     */
+    public TransactionQuery withoutOpenIssues() {
+        openIssues = false;
+        return this;
+    }
+
+    /**
+     * Describes how the transaction aggregates read the store for the current filters: the access path, the number
+     * of candidates it yields and the filters checked per candidate, e.g.
+     * {@code beneficiary index (2 candidates), then amount}. Aggregates an indexed fetcher has precomputed for
+     * the filters do not read the store at all.
+     */
+    public String explain() {
+        return plan().describe();
+    }
+
+    /**
+     * Counts the matching transactions.
+     */
+    public long count() {
+        QueryPlan plan = plan();
+        if (!plan.hasResidual() && plan.access() != QueryPlan.Access.OPEN_ISSUE_ROWS) {
+            return plan.domain();
+        }
+        return scan.scan(plan.domain(), (from, to) -> {
+            long count = 0;
+            for (QueryPlan.Cursor cursor = plan.cursor(from, to); cursor.next(); ) {
+                count += cursor.count();
+            }
+            return count;
+        }, Long::sum);
+    }
+
+    /**
+     * Returns whether at least one transaction matches, stopping at the first match of every partition.
+     */
+    public boolean exists() {
+        if (index != null && byClient && Boolean.TRUE.equals(openIssues) && filters() == 2) {
+            return index.hasOpenComplianceIssues(client);
+        }
+        QueryPlan plan = plan();
+        int client = plan.onlyClientCheck(false);
+        if (plan.access() == QueryPlan.Access.OPEN_ISSUE_ROWS && client != ClientDictionary.UNKNOWN) {
+            TransactionStore rows = store;
+            return scan.scan(plan.domain(), (from, to) -> {
+                for (int row = rows.nextRowWithOpenIssues(from); row >= 0 && row < to; row = rows.nextRowWithOpenIssues(row + 1)) {
+                    if (rows.senderId(row) == client || rows.beneficiaryId(row) == client) {
+                        return true;
+                    }
+                }
+                return false;
+            }, Boolean::logicalOr);
+        }
+        return scan.scan(plan.domain(), (from, to) -> plan.cursor(from, to).next(), Boolean::logicalOr);
+    }
+
+    /**
+     * Returns the sum of the amounts of the matching transactions, 0 if none matches.
+     */
+    public double sum() {
+        return Amounts.toDouble(sumMinorUnits());
+    }
+
+    /**
+     * Returns the sum of the amounts of the matching transactions in minor units, exact where a double may not be.
+     */
+    long sumMinorUnits() {
+        if (index != null && filters() == 0) {
+            return index.totalAmount();
+        }
+        if (index != null && bySender && filters() == 1) {
+            return index.sentAmount(sender);
+        }
+        QueryPlan plan = plan();
+        TransactionStore rows = store;
+        int sender = plan.onlyClientCheck(true);
+        if (plan.scansAllRows() || (plan.access() == QueryPlan.Access.FULL_SCAN && sender != ClientDictionary.UNKNOWN)) {
+            return scan.scan(plan.domain(), (from, to) -> {
+                long sum = 0;
+                if (sender == ClientDictionary.UNKNOWN) {
+                    for (int row = from; row < to; row++) {
+                        sum += rows.amount(row);
+                    }
+                    return sum;
+                }
+                for (int row = from; row < to; row++) {
+                    if (rows.senderId(row) == sender) {
+                        sum += rows.amount(row);
+                    }
+                }
+                return sum;
+            }, Long::sum);
+        }
+        return scan.scan(plan.domain(), (from, to) -> {
+            long sum = 0;
+            for (QueryPlan.Cursor cursor = plan.cursor(from, to); cursor.next(); ) {
+                int[] selected = cursor.selected();
+                for (int i = 0, count = cursor.count(); i < count; i++) {
+                    sum += rows.amount(selected[i]);
+                }
+            }
+            return sum;
+        }, Long::sum);
+    }
+
+    /**
+     * Returns the highest amount of the matching transactions, 0 if none matches.
+     */
+    public double max() {
+        long max = maxMinorUnits();
+        return max == Long.MIN_VALUE ? 0.0 : Amounts.toDouble(max);
+    }
+
+    /**
+     * Returns the highest amount of the matching transactions in minor units, {@link Long#MIN_VALUE} if none matches.
+     */
+    long maxMinorUnits() {
+        if (index != null && filters() == 0) {
+            return index.maxAmount();
+        }
+        QueryPlan plan = plan();
+        TransactionStore rows = store;
+        return scan.scan(plan.domain(), (from, to) -> {
+            long partitionMax = Long.MIN_VALUE;
+            if (plan.scansAllRows()) {
+                for (int row = from; row < to; row++) {
+                    partitionMax = Math.max(partitionMax, rows.amount(row));
+                }
+                return partitionMax;
+            }
+            for (QueryPlan.Cursor cursor = plan.cursor(from, to); cursor.next(); ) {
+                int[] selected = cursor.selected();
+                for (int i = 0, count = cursor.count(); i < count; i++) {
+                    partitionMax = Math.max(partitionMax, rows.amount(selected[i]));
+                }
+            }
+            return partitionMax;
+        }, Math::max);
+    }
+
+    /**
+     * Counts the clients that sent or received a matching transaction.
+     */
+    public long countDistinctClients() {
+        if (filters() == 0) {
+            return index != null ? index.countUniqueClients() : store.clientCount();
+        }
+        return distinctClients(true, true).cardinality();
+    }
+
+    /**
+     * Counts the clients that sent a matching transaction.
+     */
+    public long countDistinctSenders() {
+        return distinctClients(true, false).cardinality();
+    }
+
+    /**
+     * Counts the clients that received a matching transaction.
+     */
+    public long countDistinctBeneficiaries() {
+        return distinctClients(false, true).cardinality();
+    }
+
+    private BitSet distinctClients(boolean senders, boolean beneficiaries) {
+        QueryPlan plan = plan();
+        TransactionStore rows = store;
+        return scan.scan(plan.domain(), (from, to) -> {
+            BitSet clients = new BitSet();
+            for (QueryPlan.Cursor cursor = plan.cursor(from, to); cursor.next(); ) {
+                int[] selected = cursor.selected();
+                for (int i = 0, count = cursor.count(); i < count; i++) {
+                    int row = selected[i];
+                    if (senders) {
+                        clients.set(rows.senderId(row));
+                    }
+                    if (beneficiaries) {
+                        clients.set(rows.beneficiaryId(row));
+                    }
+                }
+            }
+            return clients;
+        }, (left, right) -> {
+            left.or(right);
+            return left;
+        });
+    }
+
+    /**
+     * Returns the matching transactions in load order. The transactions of a beneficiary without other filters are
+     * a view over the {@link com.smallworld.data.BeneficiaryIndex}, read from the store on access.
+     */
+    public List<TransactionRecord> transactions() {
+        QueryPlan plan = plan();
+        TransactionStore rows = store;
+        if (plan.access() == QueryPlan.Access.BENEFICIARY_INDEX && !plan.hasResidual()) {
+            return TransactionsByBeneficiary.transactions(rows, rows.beneficiaryIndex(), rows.clientIdOf(beneficiary));
+        }
+        return Arrays.stream(matchingRows(plan).toArray())
+                .mapToObj(rows::record)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the n matching transactions with the highest amount, selected with a bounded heap.
+     * Transactions with the same amount keep their load order.
+     * @param n - number of transactions to return.
+     * @return {@link List} of at most n transactions in descending order of amount.
+     * @throws IllegalArgumentException - when n is negative.
+     */
+    public List<TransactionRecord> topByAmount(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative: " + n);
+        }
+        if (index != null && filters() == 0 && index.hasTopNTransactions(n)) {
+            return index.getTopNTransactionsByAmount(n);
+        }
+        QueryPlan plan = plan();
+        TransactionStore rows = store;
+        int capacity = Math.min(n, plan.domain());
+        TopK topRows = scan.scan(plan.domain(), (from, to) -> {
+            TopK partitionTopRows = new TopK(capacity);
+            if (plan.scansAllRows()) {
+                for (int row = from; row < to; row++) {
+                    partitionTopRows.offer(row, rows.amount(row));
+                }
+                return partitionTopRows;
+            }
+            for (QueryPlan.Cursor cursor = plan.cursor(from, to); cursor.next(); ) {
+                int[] selected = cursor.selected();
+                for (int i = 0, count = cursor.count(); i < count; i++) {
+                    int row = selected[i];
+                    partitionTopRows.offer(row, rows.amount(row));
+                }
+            }
+            return partitionTopRows;
+        }, TopK::merge);
+        return Arrays.stream(topRows.idsDescending())
+                .mapToObj(rows::record)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the identifiers of the unsolved compliance issues of the matching transactions.
+     */
+    public Set<Integer> openIssueIds() {
+        if (index != null && filters() == 0) {
+            return index.getUnsolvedIssueIds();
+        }
+        if (index != null && byClient && filters() == 1) {
+            return index.getOpenIssuesForClient(client);
+        }
+        QueryPlan plan = QueryPlan.issues(this, store, false);
+        TransactionStore rows = store;
+        int client = plan.onlyClientCheck(false);
+        return scan.scan(plan.domain(), (from, to) -> {
+            Set<Integer> openIssueIds = new HashSet<>();
+            if (!plan.hasResidual()) {
+                for (int issue = rows.nextUnsolvedIssue(from); issue >= 0 && issue < to; issue = rows.nextUnsolvedIssue(issue + 1)) {
+                    openIssueIds.add(rows.issueId(issue));
+                }
+                return openIssueIds;
+            }
+            if (client != ClientDictionary.UNKNOWN) {
+                for (int issue = rows.nextUnsolvedIssue(from); issue >= 0 && issue < to; issue = rows.nextUnsolvedIssue(issue + 1)) {
+                    int row = rows.issueRow(issue);
+                    if (rows.senderId(row) == client || rows.beneficiaryId(row) == client) {
+                        openIssueIds.add(rows.issueId(issue));
+                    }
+                }
+                return openIssueIds;
+            }
+            for (QueryPlan.Cursor cursor = plan.cursor(from, to); cursor.next(); ) {
+                int[] selected = cursor.selected();
+                for (int i = 0, count = cursor.count(); i < count; i++) {
+                    openIssueIds.add(rows.issueId(selected[i]));
+                }
+            }
+            return openIssueIds;
+        }, (left, right) -> {
+            left.addAll(right);
+            return left;
+        });
+    }
+
+    /**
+     * Returns the messages of the solved compliance issues of the matching transactions, in issue order, or
+     * for indexed fetchers without filters those of issues solved after they were indexed at the end.
+     */
+    public List<String> solvedIssueMessages() {
+        if (index != null && filters() == 0) {
+            return index.getAllSolvedIssueMessages();
+        }
+        QueryPlan plan = QueryPlan.issues(this, store, true);
+        TransactionStore rows = store;
+        return scan.scan(plan.domain(), (from, to) -> {
+            List<String> solvedIssueMessages = new ArrayList<>();
+            if (!plan.hasResidual()) {
+                for (int issue = rows.nextSolvedIssue(from); issue >= 0 && issue < to; issue = rows.nextSolvedIssue(issue + 1)) {
+                    if (rows.issueMessage(issue) != null) {
+                        solvedIssueMessages.add(rows.issueMessage(issue));
+                    }
+                }
+                return solvedIssueMessages;
+            }
+            for (QueryPlan.Cursor cursor = plan.cursor(from, to); cursor.next(); ) {
+                int[] selected = cursor.selected();
+                for (int i = 0, count = cursor.count(); i < count; i++) {
+                    int issue = selected[i];
+                    if (rows.issueMessage(issue) != null) {
+                        solvedIssueMessages.add(rows.issueMessage(issue));
+                    }
+                }
+            }
+            return solvedIssueMessages;
+        }, (left, right) -> {
+            left.addAll(right);
+            return left;
+        });
+    }
+
+    /**
+     * Groups the matching transactions by sender.
+     */
+    public Grouping groupBySender() {
+        return new Grouping(true);
+    }
+
+    /**
+     * Groups the matching transactions by beneficiary.
+     */
+    public Grouping groupByBeneficiary() {
+        return new Grouping(false);
+    }
+
+    /**
+     * Returns the number of filters set.
+     */
+    private int filters() {
+        int filters = (bySender ? 1 : 0) + (byBeneficiary ? 1 : 0) + (byClient ? 1 : 0) + (openIssues != null ? 1 : 0);
+        if (minAmount != Long.MIN_VALUE || maxAmount != Long.MAX_VALUE) {
+            filters++;
+        }
+        if (minSenderAge != Integer.MIN_VALUE || maxSenderAge != Integer.MAX_VALUE) {
+            filters++;
+        }
+        if (minBeneficiaryAge != Integer.MIN_VALUE || maxBeneficiaryAge != Integer.MAX_VALUE) {
+            filters++;
+        }
+        return filters;
+    }
+
+    private QueryPlan plan() {
+        return QueryPlan.rows(this, store);
+    }
+
+    private RowList matchingRows(QueryPlan plan) {
+        return scan.scan(plan.domain(), (from, to) -> {
+            RowList matching = new RowList();
+            for (QueryPlan.Cursor cursor = plan.cursor(from, to); cursor.next(); ) {
+                int[] selected = cursor.selected();
+                for (int i = 0, count = cursor.count(); i < count; i++) {
+                    matching.add(selected[i]);
+                }
+            }
+            return matching;
+        }, RowList::merge);
+    }
+
+    /**
+     * Aggregates of the matching transactions per sender or per beneficiary. Groups come in the order in which
+     * their clients first appear in the data.
+     */
+    public final class Grouping {
+
+        private final boolean bySenders;
+
+        private Grouping(boolean bySenders) {
+            this.bySenders = bySenders;
+        }
+
+        /**
+         * Returns the sum of the amounts of every group.
+         */
+        public Map<String, Double> sums() {
+            Map<String, Double> sums = new LinkedHashMap<>();
+            sumsInMinorUnits().forEach((client, sum) -> sums.put(client, Amounts.toDouble(sum)));
+            return sums;
+        }
+
+        /**
+         * Returns the sum of the amounts of every group in minor units, exact where a double may not be.
+         */
+        Map<String, Long> sumsInMinorUnits() {
+            GroupTotals totals = totals(false);
+            Map<String, Long> sums = new LinkedHashMap<>();
+            for (int client = totals.groups.nextSetBit(0); client >= 0; client = totals.groups.nextSetBit(client + 1)) {
+                sums.put(store.clientName(client), totals.amounts[client]);
+            }
+            return sums;
+        }
+
+        /**
+         * Returns the number of transactions of every group.
+         */
+        public Map<String, Long> counts() {
+            GroupTotals totals = totals(true);
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (int client = totals.groups.nextSetBit(0); client >= 0; client = totals.groups.nextSetBit(client + 1)) {
+                counts.put(store.clientName(client), totals.counts[client]);
+            }
+            return counts;
+        }
+
+        /**
+         * Returns the n groups with the highest sum of amounts, selected with a bounded heap.
+         * Groups with the same sum keep the order in which their clients first appear.
+         * @param n - number of groups to return.
+         * @return client names of at most n groups in descending order of sum.
+         * @throws IllegalArgumentException - when n is negative.
+         */
+        public List<String> top(int n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n must not be negative: " + n);
+            }
+            if (bySenders && index != null && filters() == 0) {
+                return index.getTopNSenders(n);
+            }
+            GroupTotals totals = totals(false);
+            TopK topGroups = new TopK(Math.min(n, totals.groups.cardinality()));
+            for (int client = totals.groups.nextSetBit(0); client >= 0; client = totals.groups.nextSetBit(client + 1)) {
+                topGroups.offer(client, totals.amounts[client]);
+            }
+            TransactionStore rows = store;
+            return Arrays.stream(topGroups.idsDescending())
+                    .mapToObj(rows::clientName)
+                    .collect(Collectors.toList());
+        }
+
+        /**
+         * Returns the matching transactions of every group in load order. Transactions by beneficiary without
+         * filters are a read-only view over the {@link com.smallworld.data.BeneficiaryIndex} looking names up
+         * ignoring case, read from the store on access; other groupings are copied into a map.
+         */
+        public Map<String, List<TransactionRecord>> transactions() {
+            TransactionStore rows = store;
+            if (!bySenders && filters() == 0) {
+                return new TransactionsByBeneficiary(rows, rows.beneficiaryIndex());
+            }
+            RowList matching = matchingRows(plan());
+            Map<String, List<TransactionRecord>> groups = new LinkedHashMap<>();
+            for (int row : matching.toArray()) {
+                String name = rows.clientName(bySenders ? rows.senderId(row) : rows.beneficiaryId(row));
+                groups.computeIfAbsent(name, key -> new ArrayList<>()).add(rows.record(row));
+            }
+            return groups;
+        }
+
+        private GroupTotals totals(boolean withCounts) {
+            QueryPlan plan = plan();
+            TransactionStore rows = store;
+            int clientCount = rows.clientCount();
+            return scan.scan(plan.domain(), (from, to) -> {
+                GroupTotals partitionTotals = new GroupTotals(clientCount, withCounts);
+                if (plan.scansAllRows()) {
+                    for (int row = from; row < to; row++) {
+                        partitionTotals.add(bySenders ? rows.senderId(row) : rows.beneficiaryId(row), rows.amount(row));
+                    }
+                    return partitionTotals;
+                }
+                for (QueryPlan.Cursor cursor = plan.cursor(from, to); cursor.next(); ) {
+                    int[] selected = cursor.selected();
+                    for (int i = 0, count = cursor.count(); i < count; i++) {
+                        int row = selected[i];
+                        partitionTotals.add(bySenders ? rows.senderId(row) : rows.beneficiaryId(row), rows.amount(row));
+                    }
+                }
+                return partitionTotals;
+            }, GroupTotals::merge);
+        }
+    }
+
+    /**
+     * Total amount and optionally number of transactions per client id, for the clients that have at least one.
+     */
+    private static class GroupTotals {
+
+        private final long[] amounts;
+
+        /**
+         * Transactions per client id, {@code null} when not counted.
+         */
+        private final long[] counts;
+
+        private final BitSet groups = new BitSet();
+
+        private GroupTotals(int clientCount, boolean withCounts) {
+            amounts = new long[clientCount];
+            counts = withCounts ? new long[clientCount] : null;
+        }
+
+        private void add(int clientId, long amount) {
+            amounts[clientId] += amount;
+            if (counts != null) {
+                counts[clientId]++;
+            }
+            groups.set(clientId);
+        }
+
+        private GroupTotals merge(GroupTotals other) {
+            for (int client = 0; client < amounts.length; client++) {
+                amounts[client] += other.amounts[client];
+            }
+            if (counts != null) {
+                for (int client = 0; client < counts.length; client++) {
+                    counts[client] += other.counts[client];
+                }
+            }
+            groups.or(other.groups);
+            return this;
+        }
+    }
+
+    /**
+     * Growable list of rows in ascending order.
+     */
+    private static class RowList {
+
+        private int[] rows = new int[16];
+
+        private int size;
+
+        private void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        private RowList merge(RowList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.rows[i]);
+            }
+            return this;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.smallworld;
+
+import com.smallworld.data.Issue;
+import com.smallworld.data.Transaction;
+import com.smallworld.data.TransactionRecord;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Groups the rows of the transaction/transaction_issue join into one {@link TransactionRecord} per mtn.
+ */
+public class TransactionRecords {
+
+    private TransactionRecords() {
+    }
+
+    /**
+     * Groups all rows sharing an mtn, wherever they appear, keeping the order in which the mtns first show up.
+     * @param transactions - transaction rows.
+     * @return one record per mtn.
+     */
+    public static List<TransactionRecord> group(Stream<Transaction> transactions) {
+        Map<Integer, RecordBuilder> builders = new LinkedHashMap<>();
+        transactions.forEach(transaction -> builders
+                .computeIfAbsent(transaction.getMtn(), mtn -> new RecordBuilder(transaction))
+                .addIssue(transaction));
+        List<TransactionRecord> records = new ArrayList<>(builders.size());
+        for (RecordBuilder builder : builders.values()) {
+            records.add(builder.build());
+        }
+        return records;
+    }
+
+    /**
+     * Lazily groups rows sharing an mtn that arrive next to each other, as the join emits them.
+     * Only the rows of the current transaction are held at a time. Closing the returned stream closes the rows.
+     * @param transactions - transaction rows with the rows of each mtn adjacent.
+     * @return one record per run of rows with the same mtn.
+     */
+    public static Stream<TransactionRecord> groupConsecutive(Stream<Transaction> transactions) {
+        Iterator<Transaction> rows = transactions.iterator();
+        Iterator<TransactionRecord> records = new Iterator<>() {
+
+            private boolean started;
+
+            private Transaction pending;
+
+            @Override
+            public boolean hasNext() {
+                if (!started) {
+                    started = true;
+                    pending = rows.hasNext() ? rows.next() : null;
+                }
+                return pending != null;
+            }
+
+            @Override
+            public TransactionRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                RecordBuilder builder = new RecordBuilder(pending);
+                builder.addIssue(pending);
+                pending = null;
+                while (rows.hasNext()) {
+                    Transaction row = rows.next();
+                    if (row.getMtn() != builder.first.getMtn()) {
+                        pending = row;
+                        break;
+                    }
+                    builder.addIssue(row);
+                }
+                return builder.build();
+            }
+        };
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(records, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(transactions::close);
+    }
+
+    /**
+     * Collects the issues of one mtn, taking the transaction details from its first row.
+     */
+    private static class RecordBuilder {
+
+        private final Transaction first;
+
+        private final List<Issue> issues = new ArrayList<>(1);
+
+        private RecordBuilder(Transaction first) {
+            this.first = first;
+        }
+
+        private void addIssue(Transaction row) {
+            if (row.getIssueId() != null) {
+                issues.add(new Issue(row.getIssueId(), row.isIssueSolved(), row.getIssueMessage()));
+            }
+        }
+
+        private TransactionRecord build() {
+            return new TransactionRecord(first.getMtn(), first.getAmount(),
+                    first.getSenderFullName(), first.getSenderAge(),
+                    first.getBeneficiaryFullName(), first.getBeneficiaryAge(),
+                    issues.toArray(new Issue[0]));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.smallworld;
+
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionSketches;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One partition of a dataset spread by mtn, see {@link ShardedTransactionDataFetcher}. A shard answers the partial
+ * queries that the coordinator merges into the answer over all shards: amounts are in minor units, so they add up
+ * exactly, and names are returned as the shard spells them, the coordinator matches them ignoring case.
+ * Every row of an mtn is held by the same shard, so a shard knows all the issues of its transactions.
+ */
+public interface TransactionShard {
+
+    /**
+     * Returns the number of transactions of the shard.
+     */
+    long size();
+
+    /**
+     * Returns the sum of the amounts of the shard's transactions, in minor units.
+     */
+    long totalAmount();
+
+    /**
+     * Returns the sum of the amounts sent by a client, in minor units.
+     * @param senderFullName - name of the sender.
+     */
+    long totalAmountSentBy(String senderFullName);
+
+    /**
+     * Returns the highest amount in minor units, {@link Long#MIN_VALUE} for a shard without transactions.
+     */
+    long maxAmount();
+
+    /**
+     * Returns the names of the clients that sent or received a transaction of the shard, each once.
+     */
+    List<String> clientNames();
+
+    /**
+     * Summarizes the shard's transactions, see {@link TransactionDataFetcher#sketch(double, double)}.
+     * @param clientError - standard error of the client counts relative to the true counts.
+     * @param amountAccuracy - accuracy of the amount quantiles relative to their value.
+     */
+    TransactionSketches sketch(double clientError, double amountAccuracy);
+
+    /**
+     * Returns whether a client has a transaction of the shard with an unsolved compliance issue.
+     * @param clientFullName - sender or beneficiary name.
+     */
+    boolean hasOpenComplianceIssues(String clientFullName);
+
+    /**
+     * Returns the ids of the unsolved issues on the shard's transactions a client sent or received.
+     * @param clientFullName - sender or beneficiary name.
+     */
+    Set<Integer> openIssuesForClient(String clientFullName);
+
+    /**
+     * Returns the shard's transactions by beneficiary name, in load order.
+     */
+    Map<String, List<TransactionRecord>> transactionsByBeneficiary();
+
+    /**
+     * Counts the shard's transactions received by a beneficiary.
+     * @param beneficiaryFullName - name of the beneficiary.
+     */
+    int countTransactionsByBeneficiary(String beneficiaryFullName);
+
+    /**
+     * Returns a page of the shard's transactions received by a beneficiary, in load order.
+     * @param beneficiaryFullName - name of the beneficiary.
+     * @param offset - number of transactions to skip, not negative.
+     * @param limit - number of transactions to return at most, not negative.
+     */
+    List<TransactionRecord> transactionsByBeneficiary(String beneficiaryFullName, int offset, int limit);
+
+    /**
+     * Returns the ids of the unsolved issues of the shard.
+     */
+    Set<Integer> unsolvedIssueIds();
+
+    /**
+     * Returns the messages of the solved issues of the shard.
+     */
+    List<String> solvedIssueMessages();
+
+    /**
+     * Returns the shard's n transactions with the highest amount in descending order, ties in load order.
+     * @param n - number of transactions to return at most, not negative.
+     */
+    List<TransactionRecord> topTransactionsByAmount(int n);
+
+    /**
+     * Returns the total amount sent per sender name, in minor units, in the order the shard first saw the clients.
+     * Senders are ranked over all shards, so every shard has to return all of its senders.
+     */
+    Map<String, Long> sentAmounts();
+}
@@ -0,0 +1,203 @@
+package com.smallworld;
+
+import com.smallworld.data.TransactionRecord;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves a shard to {@link RemoteTransactionShard}s of other processes over local TCP sockets, so that the shards of
+ * a dataset too large for one heap can each live in their own JVM. Every connection is served by its own daemon
+ * thread, answering its requests in order, see {@link ShardProtocol}. Exceptions thrown by the shard are sent back
+ * to the client and leave the connection open.
+ */
+public class TransactionShardServer implements Closeable {
+
+    private final TransactionShard shard;
+
+    private final ServerSocket serverSocket;
+
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Starts serving a shard on the loopback address.
+     * @param shard - shard answering the requests.
+     * @param port - port to listen on, 0 for any free port, see {@link #port()}.
+     * @throws IOException - when the port cannot be bound.
+     */
+    public TransactionShardServer(TransactionShard shard, int port) throws IOException {
+        this.shard = shard;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "shard-server-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     */
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket connection = serverSocket.accept();
+                connections.add(connection);
+                Thread handler = new Thread(() -> serve(connection), "shard-connection-" + connection.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                // the server socket was closed
+            }
+        }
+    }
+
+    private void serve(Socket connection) {
+        try (Socket ignored = connection;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            while (true) {
+                int opcode = in.read();
+                if (opcode < 0) {
+                    return;
+                }
+                answer((byte) opcode, in, out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client or the server closed the connection, or the client broke the protocol:
+            // the connection is closed and the client sees the end of its stream
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    private void answer(byte opcode, DataInputStream in, DataOutputStream out) throws IOException {
+        Reply reply;
+        try {
+            reply = reply(opcode, in);
+        } catch (RuntimeException e) {
+            out.writeByte(ShardProtocol.FAILED);
+            ShardProtocol.writeString(out, e.toString());
+            return;
+        }
+        out.writeByte(ShardProtocol.OK);
+        reply.write(out);
+    }
+
+    /**
+     * Reads the arguments of a request, then runs it on the shard.
+     * @return writer of the result.
+     * @throws IOException - when the request cannot be read or the opcode is unknown.
+     */
+    private Reply reply(byte opcode, DataInputStream in) throws IOException {
+        switch (opcode) {
+            case ShardProtocol.SIZE: {
+                long size = shard.size();
+                return out -> out.writeLong(size);
+            }
+            case ShardProtocol.TOTAL_AMOUNT: {
+                long totalAmount = shard.totalAmount();
+                return out -> out.writeLong(totalAmount);
+            }
+            case ShardProtocol.TOTAL_AMOUNT_SENT_BY: {
+                long sentAmount = shard.totalAmountSentBy(ShardProtocol.readString(in));
+                return out -> out.writeLong(sentAmount);
+            }
+            case ShardProtocol.MAX_AMOUNT: {
+                long maxAmount = shard.maxAmount();
+                return out -> out.writeLong(maxAmount);
+            }
+            case ShardProtocol.CLIENT_NAMES: {
+                List<String> clientNames = shard.clientNames();
+                return out -> ShardProtocol.writeStrings(out, clientNames);
+            }
+            case ShardProtocol.SKETCH: {
+                double clientError = in.readDouble();
+                double amountAccuracy = in.readDouble();
+                byte[] sketch = shard.sketch(clientError, amountAccuracy).toByteArray();
+                return out -> ShardProtocol.writeBytes(out, sketch);
+            }
+            case ShardProtocol.HAS_OPEN_COMPLIANCE_ISSUES: {
+                boolean hasOpenIssues = shard.hasOpenComplianceIssues(ShardProtocol.readString(in));
+                return out -> out.writeBoolean(hasOpenIssues);
+            }
+            case ShardProtocol.OPEN_ISSUES_FOR_CLIENT: {
+                Set<Integer> issueIds = shard.openIssuesForClient(ShardProtocol.readString(in));
+                return out -> ShardProtocol.writeInts(out, issueIds);
+            }
+            case ShardProtocol.TRANSACTIONS_BY_BENEFICIARY: {
+                Map<String, List<TransactionRecord>> transactions = shard.transactionsByBeneficiary();
+                return out -> {
+                    out.writeInt(transactions.size());
+                    for (Map.Entry<String, List<TransactionRecord>> beneficiary : transactions.entrySet()) {
+                        ShardProtocol.writeString(out, beneficiary.getKey());
+                        ShardProtocol.writeRecords(out, beneficiary.getValue());
+                    }
+                };
+            }
+            case ShardProtocol.COUNT_TRANSACTIONS_BY_BENEFICIARY: {
+                int count = shard.countTransactionsByBeneficiary(ShardProtocol.readString(in));
+                return out -> out.writeInt(count);
+            }
+            case ShardProtocol.TRANSACTIONS_BY_BENEFICIARY_PAGE: {
+                String beneficiary = ShardProtocol.readString(in);
+                int offset = in.readInt();
+                int limit = in.readInt();
+                List<TransactionRecord> page = shard.transactionsByBeneficiary(beneficiary, offset, limit);
+                return out -> ShardProtocol.writeRecords(out, page);
+            }
+            case ShardProtocol.UNSOLVED_ISSUE_IDS: {
+                Set<Integer> issueIds = shard.unsolvedIssueIds();
+                return out -> ShardProtocol.writeInts(out, issueIds);
+            }
+            case ShardProtocol.SOLVED_ISSUE_MESSAGES: {
+                List<String> messages = shard.solvedIssueMessages();
+                return out -> ShardProtocol.writeStrings(out, messages);
+            }
+            case ShardProtocol.TOP_TRANSACTIONS_BY_AMOUNT: {
+                List<TransactionRecord> top = shard.topTransactionsByAmount(in.readInt());
+                return out -> ShardProtocol.writeRecords(out, top);
+            }
+            case ShardProtocol.SENT_AMOUNTS: {
+                Map<String, Long> sentAmounts = shard.sentAmounts();
+                return out -> {
+                    out.writeInt(sentAmounts.size());
+                    for (Map.Entry<String, Long> sender : sentAmounts.entrySet()) {
+                        ShardProtocol.writeString(out, sender.getKey());
+                        out.writeLong(sender.getValue());
+                    }
+                };
+            }
+            default:
+                throw new IOException("Unknown opcode " + opcode);
+        }
+    }
+
+    /**
+     * Writes the result of a request that the shard answered.
+     */
+    private interface Reply {
+
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,133 @@
+package com.smallworld;
+
+import com.smallworld.data.BeneficiaryIndex;
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionStore;
+
+import java.util.*;
+
+/**
+ * Read-only map from beneficiary name to all transactions the beneficiary received, backed by a
+ * {@link BeneficiaryIndex} instead of per-beneficiary lists. Transactions are materialized from the store when
+ * they are read. Names are looked up ignoring case, like everywhere else in the fetcher.
+ */
+class TransactionsByBeneficiary extends AbstractMap<String, List<TransactionRecord>> {
+
+    private final TransactionStore store;
+
+    private final BeneficiaryIndex index;
+
+    private final int clientCount;
+
+    private Set<Entry<String, List<TransactionRecord>>> entrySet;
+
+    TransactionsByBeneficiary(TransactionStore store, BeneficiaryIndex index) {
+        this.store = store;
+        this.index = index;
+        this.clientCount = store.clientCount();
+    }
+
+    /**
+     * Returns the transactions of a beneficiary in row order, read from the store on access.
+     */
+    static List<TransactionRecord> transactions(TransactionStore store, BeneficiaryIndex index, int beneficiaryId) {
+        int count = index.count(beneficiaryId);
+        return new TransactionList(store, index, beneficiaryId, count);
+    }
+
+    @Override
+    public List<TransactionRecord> get(Object key) {
+        int beneficiary = beneficiaryId(key);
+        return index.count(beneficiary) == 0 ? null : transactions(store, index, beneficiary);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return index.count(beneficiaryId(key)) > 0;
+    }
+
+    private int beneficiaryId(Object key) {
+        return key == null || key instanceof String ? store.clientIdOf((String) key) : -1;
+    }
+
+    @Override
+    public Set<Entry<String, List<TransactionRecord>>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                private int size = -1;
+
+                @Override
+                public Iterator<Entry<String, List<TransactionRecord>>> iterator() {
+                    return new Iterator<>() {
+                        private int next = nextBeneficiary(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < clientCount;
+                        }
+
+                        @Override
+                        public Entry<String, List<TransactionRecord>> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int beneficiary = next;
+                            next = nextBeneficiary(beneficiary + 1);
+                            return new SimpleImmutableEntry<>(store.clientName(beneficiary), transactions(store, index, beneficiary));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    if (size < 0) {
+                        int beneficiaries = 0;
+                        for (int client = nextBeneficiary(0); client < clientCount; client = nextBeneficiary(client + 1)) {
+                            beneficiaries++;
+                        }
+                        size = beneficiaries;
+                    }
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private int nextBeneficiary(int from) {
+        int client = from;
+        while (client < clientCount && index.count(client) == 0) {
+            client++;
+        }
+        return client;
+    }
+
+    private static class TransactionList extends AbstractList<TransactionRecord> implements RandomAccess {
+
+        private final TransactionStore store;
+
+        private final BeneficiaryIndex index;
+
+        private final int beneficiaryId;
+
+        private final int size;
+
+        private TransactionList(TransactionStore store, BeneficiaryIndex index, int beneficiaryId, int size) {
+            this.store = store;
+            this.index = index;
+            this.beneficiaryId = beneficiaryId;
+            this.size = size;
+        }
+
+        @Override
+        public TransactionRecord get(int position) {
+            Objects.checkIndex(position, size);
+            return store.record(index.row(beneficiaryId, position));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
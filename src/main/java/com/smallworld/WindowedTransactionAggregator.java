@@ -0,0 +1,340 @@
+package com.smallworld;
+
+import com.smallworld.data.Amounts;
+import com.smallworld.data.Transaction;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregates a stream of transaction events over time windows, e.g. the total sent in the last 5 minutes and the
+ * top senders of the last hour, without keeping the events. Event time is cut into buckets of a fixed width and
+ * every bucket holds the aggregates of its events: count, total and highest amount, new open compliance issues
+ * and a bounded summary of the amounts per sender. The buckets of the retained period are kept in a ring that is
+ * reused as time moves on, so memory depends on the number of buckets and senders kept per bucket only, and an
+ * event updates one bucket in constant time.
+ * <p>
+ * Windows are made of whole buckets. A sliding window ends with the bucket of the latest event seen, a tumbling
+ * window is the window aligned on its own length, counted from the epoch, that holds the latest event.
+ * Events may arrive out of order as long as they are within the retained period; older events are dropped and
+ * counted by {@link #getLateEventCount()}.
+ * <p>
+ * Rows of the same transaction, which the transaction file repeats once per compliance issue, are counted once
+ * when they follow each other: a row with the mtn of the row before only adds its issue.
+ * Top senders are told apart by name as sent and their totals may be underestimated by a bounded amount, see
+ * {@link Window#getTopSenders()}. Instances may be shared by threads, updates and queries are serialized.
+ */
+public class WindowedTransactionAggregator {
+
+    private final long bucketMillis;
+
+    private final int topSenderCapacity;
+
+    /**
+     * Ring of buckets, bucket number n in slot n modulo the length.
+     */
+    private final Bucket[] buckets;
+
+    // Guarded by this
+
+    private long latestBucket = Long.MIN_VALUE;
+
+    private long latestEventTime = Long.MIN_VALUE;
+
+    private long lateEvents;
+
+    private boolean hasPrevious;
+
+    private int previousMtn;
+
+    /**
+     * Aggregates events in buckets of the given width for the retained period.
+     * @param bucketWidth - time covered by a bucket, the granularity of the windows.
+     * @param retention - longest window that can be asked for, a multiple of the bucket width.
+     * @param topSenderCapacity - number of senders kept per bucket, and so the most top senders a window ranks.
+     */
+    public WindowedTransactionAggregator(Duration bucketWidth, Duration retention, int topSenderCapacity) {
+        if (bucketWidth.toMillis() < 1) {
+            throw new IllegalArgumentException("bucketWidth must be at least a millisecond: " + bucketWidth);
+        }
+        if (topSenderCapacity < 1) {
+            throw new IllegalArgumentException("topSenderCapacity must be positive: " + topSenderCapacity);
+        }
+        this.bucketMillis = bucketWidth.toMillis();
+        this.topSenderCapacity = topSenderCapacity;
+        this.buckets = new Bucket[bucketCount(retention)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket(topSenderCapacity);
+        }
+    }
+
+    /**
+     * Adds an event at its own event time.
+     * @param transaction - event with an event time.
+     * @throws IllegalArgumentException - when the transaction has no event time.
+     */
+    public void accept(Transaction transaction) {
+        if (transaction.getEventTime() == null) {
+            throw new IllegalArgumentException("Transaction " + transaction.getMtn() + " has no event time");
+        }
+        accept(transaction, transaction.getEventTime());
+    }
+
+    /**
+     * Adds an event at the given time, e.g. the time it was received for events without an event time.
+     * @param transaction - event to add.
+     * @param eventTime - milliseconds since the epoch.
+     */
+    public synchronized void accept(Transaction transaction, long eventTime) {
+        boolean repeated = hasPrevious && previousMtn == transaction.getMtn();
+        hasPrevious = true;
+        previousMtn = transaction.getMtn();
+
+        long number = Math.floorDiv(eventTime, bucketMillis);
+        if (latestBucket != Long.MIN_VALUE && number <= latestBucket - buckets.length) {
+            lateEvents++;
+            return;
+        }
+        latestBucket = Math.max(latestBucket, number);
+        latestEventTime = Math.max(latestEventTime, eventTime);
+
+        Bucket bucket = buckets[(int) Math.floorMod(number, (long) buckets.length)];
+        if (bucket.number != number) {
+            // the slot still holds a bucket that fell out of the ring, or none
+            bucket.reset(number);
+        }
+        if (!repeated) {
+            bucket.count++;
+            bucket.total += transaction.getAmount();
+            bucket.max = Math.max(bucket.max, transaction.getAmount());
+            if (transaction.getSenderFullName() != null) {
+                bucket.senders.add(transaction.getSenderFullName(), transaction.getAmount());
+            }
+        }
+        if (transaction.getIssueId() != null && !transaction.isIssueSolved()) {
+            bucket.newOpenIssues++;
+        }
+    }
+
+    /**
+     * Returns the aggregates of the window of the given length that ends with the bucket of the latest event.
+     * @param length - window length, a multiple of the bucket width no longer than the retention.
+     * @return aggregates of the window, empty when no event was seen.
+     */
+    public synchronized Window slidingWindow(Duration length) {
+        int count = bucketCount(length);
+        if (count > buckets.length) {
+            throw new IllegalArgumentException("Window " + length + " is longer than the retention");
+        }
+        long last = latestBucket == Long.MIN_VALUE ? 0 : latestBucket;
+        return window(last - count + 1, last + 1);
+    }
+
+    /**
+     * Returns the aggregates of the window aligned on its length that holds the latest event, e.g. the current
+     * hour for a length of an hour. The window is still filling up while events of its period arrive.
+     * @param length - window length, a multiple of the bucket width no longer than the retention.
+     * @return aggregates of the window, empty when no event was seen.
+     */
+    public synchronized Window tumblingWindow(Duration length) {
+        int count = bucketCount(length);
+        if (count > buckets.length) {
+            throw new IllegalArgumentException("Window " + length + " is longer than the retention");
+        }
+        long last = latestBucket == Long.MIN_VALUE ? 0 : latestBucket;
+        long first = Math.floorDiv(last, count) * count;
+        return window(first, first + count);
+    }
+
+    /**
+     * Returns the time of the latest event seen, in milliseconds since the epoch, or {@link Long#MIN_VALUE} before
+     * the first event.
+     */
+    public synchronized long getLatestEventTime() {
+        return latestEventTime;
+    }
+
+    /**
+     * Returns the number of events dropped because they were older than the retained period.
+     */
+    public synchronized long getLateEventCount() {
+        return lateEvents;
+    }
+
+    /**
+     * Sums the buckets numbered from first to end excluded that are still in the ring.
+     */
+    private Window window(long first, long end) {
+        long count = 0;
+        long total = 0;
+        long max = Long.MIN_VALUE;
+        long newOpenIssues = 0;
+        HeavyHitters senders = new HeavyHitters(topSenderCapacity);
+        long oldest = latestBucket == Long.MIN_VALUE ? end : latestBucket - buckets.length + 1;
+        for (long number = Math.max(first, oldest); number < end; number++) {
+            Bucket bucket = buckets[(int) Math.floorMod(number, (long) buckets.length)];
+            if (bucket.number != number) {
+                continue;
+            }
+            count += bucket.count;
+            total += bucket.total;
+            max = Math.max(max, bucket.max);
+            newOpenIssues += bucket.newOpenIssues;
+            senders.merge(bucket.senders);
+        }
+        return new Window(first * bucketMillis, end * bucketMillis, count, total, count == 0 ? 0 : max,
+                newOpenIssues, senders);
+    }
+
+    private int bucketCount(Duration length) {
+        long millis = length.toMillis();
+        if (millis < bucketMillis || millis % bucketMillis != 0) {
+            throw new IllegalArgumentException(length + " is not a multiple of the bucket width of " + bucketMillis + "ms");
+        }
+        long count = millis / bucketMillis;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(length + " holds too many buckets");
+        }
+        return (int) count;
+    }
+
+    /**
+     * Aggregates of the events of one bucket.
+     */
+    private static class Bucket {
+
+        private long number = Long.MIN_VALUE;
+
+        private long count;
+
+        private long total;
+
+        private long max = Long.MIN_VALUE;
+
+        private long newOpenIssues;
+
+        private final HeavyHitters senders;
+
+        private Bucket(int topSenderCapacity) {
+            this.senders = new HeavyHitters(topSenderCapacity);
+        }
+
+        private void reset(long number) {
+            this.number = number;
+            count = 0;
+            total = 0;
+            max = Long.MIN_VALUE;
+            newOpenIssues = 0;
+            senders.clear();
+        }
+    }
+
+    /**
+     * Aggregates of the events of a time window. Instances are immutable.
+     */
+    public static class Window {
+
+        private final long start;
+
+        private final long end;
+
+        private final long count;
+
+        private final long total;
+
+        private final long max;
+
+        private final long newOpenIssues;
+
+        private final List<Map.Entry<String, Long>> topSenders;
+
+        private final long topSenderError;
+
+        private Window(long start, long end, long count, long total, long max, long newOpenIssues, HeavyHitters senders) {
+            this.start = start;
+            this.end = end;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+            this.newOpenIssues = newOpenIssues;
+            this.topSenders = senders.top(Integer.MAX_VALUE);
+            this.topSenderError = senders.error();
+        }
+
+        /**
+         * Returns the start of the window in milliseconds since the epoch, included.
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * Returns the end of the window in milliseconds since the epoch, excluded.
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * Returns the number of transactions in the window.
+         */
+        public long getTransactionCount() {
+            return count;
+        }
+
+        /**
+         * Returns the sum of the amounts of the transactions in the window.
+         */
+        public double getTotalTransactionAmount() {
+            return Amounts.toDouble(total);
+        }
+
+        /**
+         * Returns the highest transaction amount in the window, 0 when it has none.
+         */
+        public double getMaxTransactionAmount() {
+            return Amounts.toDouble(max);
+        }
+
+        /**
+         * Returns the number of unsolved compliance issues raised by the transactions of the window.
+         */
+        public long getNewOpenIssueCount() {
+            return newOpenIssues;
+        }
+
+        /**
+         * Returns the names of the senders with the most total sent amount in the window, in descending order of
+         * that amount. Senders whose total is within {@link #getTopSenderError()} of each other may be ranked in
+         * the wrong order, and a sender who sent no more than that error may be missing.
+         * @return full names of at most the configured number of senders.
+         */
+        public List<String> getTopSenders() {
+            return topSenders.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+        }
+
+        /**
+         * Returns the total sent amount counted for a top sender, which is at most {@link #getTopSenderError()}
+         * below the true total.
+         * @param senderFullName - name of one of the {@link #getTopSenders()}.
+         * @return counted amount, 0 for a sender who is not ranked.
+         */
+        public double getTotalTransactionAmountSentBy(String senderFullName) {
+            return Amounts.toDouble(topSenders.stream()
+                    .filter(sender -> sender.getKey().equals(senderFullName))
+                    .mapToLong(Map.Entry::getValue)
+                    .findFirst()
+                    .orElse(0L));
+        }
+
+        /**
+         * Returns how much the counted total of a top sender may be below the true total. It is 0 as long as no
+         * more senders than twice the configured number sent in the window.
+         */
+        public double getTopSenderError() {
+            return Amounts.toDouble(topSenderError);
+        }
+    }
+}
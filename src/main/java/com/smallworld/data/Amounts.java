@@ -0,0 +1,113 @@
+package com.smallworld.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point helpers for transaction amounts, which are held as {@code long} counts of minor units (cents).
+ * Sums and comparisons of minor units are exact and need no rounding or allocation.
+ */
+public final class Amounts {
+
+    /**
+     * Number of decimal places kept in an amount. Amounts are kept to the cent: a third decimal place in the input,
+     * which the double based fetcher carried through to its results rounded to three places, is rounded half to even
+     * when an amount is loaded, so sums of such amounts may differ from that fetcher's in the third place.
+     */
+    public static final int SCALE = 2;
+
+    /**
+     * Number of minor units in one unit of the currency.
+     */
+    public static final long MINOR_UNITS_PER_UNIT = 100;
+
+    private Amounts() {
+    }
+
+    /**
+     * Converts a count of minor units to the decimal amount it represents, e.g. {@code 43020} to {@code 430.2}.
+     * @param minorUnits - amount in minor units.
+     * @return closest double to the decimal amount.
+     */
+    public static double toDouble(long minorUnits) {
+        return minorUnits / (double) MINOR_UNITS_PER_UNIT;
+    }
+
+    /**
+     * Converts a decimal amount to minor units, rounding half to even past {@link #SCALE} decimal places.
+     * @param amount - decimal amount.
+     * @return amount in minor units.
+     */
+    public static long toMinorUnits(double amount) {
+        return toMinorUnits(BigDecimal.valueOf(amount));
+    }
+
+    /**
+     * Decodes the text of a json number straight into minor units, without creating a String or BigDecimal
+     * for plain decimal notation. Digits past {@link #SCALE} decimal places are rounded half to even.
+     * @param text - buffer holding the number.
+     * @param offset - start of the number in the buffer.
+     * @param length - number of characters of the number.
+     * @return amount in minor units.
+     * @throws NumberFormatException - when the text is not a number or does not fit in a long.
+     */
+    public static long parseMinorUnits(char[] text, int offset, int length) {
+        int end = offset + length;
+        int position = offset;
+        boolean negative = position < end && text[position] == '-';
+        if (negative || (position < end && text[position] == '+')) {
+            position++;
+        }
+        if (position == end) {
+            throw new NumberFormatException("Empty amount");
+        }
+        long units = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        int roundingDigit = -1;
+        boolean stickyDigits = false;
+        boolean digits = false;
+        for (; position < end; position++) {
+            char c = text[position];
+            if (c >= '0' && c <= '9') {
+                int digit = c - '0';
+                digits = true;
+                if (!fraction || fractionDigits < SCALE) {
+                    units = Math.addExact(Math.multiplyExact(units, 10), digit);
+                    if (fraction) {
+                        fractionDigits++;
+                    }
+                } else if (roundingDigit < 0) {
+                    roundingDigit = digit;
+                } else if (digit != 0) {
+                    stickyDigits = true;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if ((c == 'e' || c == 'E') && digits) {
+                return toMinorUnits(new BigDecimal(text, offset, length));
+            } else {
+                throw new NumberFormatException("Invalid amount: " + new String(text, offset, length));
+            }
+        }
+        if (!digits) {
+            throw new NumberFormatException("Invalid amount: " + new String(text, offset, length));
+        }
+        for (; fractionDigits < SCALE; fractionDigits++) {
+            units = Math.multiplyExact(units, 10);
+        }
+        if (roundingDigit > 5 || (roundingDigit == 5 && (stickyDigits || (units & 1) == 1))) {
+            units = Math.addExact(units, 1);
+        }
+        return negative ? -units : units;
+    }
+
+    /**
+     * Converts a decimal amount to minor units, rounding half to even past {@link #SCALE} decimal places.
+     * @param amount - decimal amount.
+     * @return amount in minor units.
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,183 @@
+package com.smallworld.data;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Rows of a {@link TransactionStore} grouped by beneficiary, in compressed sparse row layout: the rows of all
+ * beneficiaries in one int array, ordered by beneficiary id and then by row, and the offset of every beneficiary's
+ * group in a second array. That takes two ints per row and one per client, whatever the number of transactions of
+ * a beneficiary, and gives constant time access to the n-th transaction of a beneficiary.
+ * <p>
+ * Rows never change once added, so grouped rows stay valid for every later version of the store and for its
+ * snapshots. An index covers the first {@link #size()} rows of the store: rows appended after the grouping are kept
+ * in a small sorted tail until the store groups all rows again, and rows the grouping has beyond the size, which
+ * happens for a snapshot reusing the grouping of a newer version, are left out.
+ * Instances are immutable.
+ */
+public final class BeneficiaryIndex {
+
+    /**
+     * Start of the group of every beneficiary id in {@link #rows}, one more entry than grouped clients.
+     */
+    private final int[] offsets;
+
+    /**
+     * Grouped rows, ascending within every group.
+     */
+    private final int[] rows;
+
+    private final int size;
+
+    /**
+     * Rows from {@code rows.length} up to the size, as {@code beneficiaryId << 32 | row} sorted ascending.
+     */
+    private final long[] tail;
+
+    private BeneficiaryIndex(int[] offsets, int[] rows, int size, long[] tail) {
+        this.offsets = offsets;
+        this.rows = rows;
+        this.size = size;
+        this.tail = tail;
+    }
+
+    /**
+     * Groups the first rows of the store by beneficiary with a counting sort, in time linear in rows and clients.
+     */
+    static BeneficiaryIndex group(TransactionStore store, int size) {
+        int clients = 0;
+        for (int row = 0; row < size; row++) {
+            clients = Math.max(clients, store.beneficiaryId(row) + 1);
+        }
+        int[] offsets = new int[clients + 1];
+        for (int row = 0; row < size; row++) {
+            offsets[store.beneficiaryId(row) + 1]++;
+        }
+        for (int client = 0; client < clients; client++) {
+            offsets[client + 1] += offsets[client];
+        }
+        int[] next = Arrays.copyOf(offsets, clients);
+        int[] rows = new int[size];
+        for (int row = 0; row < size; row++) {
+            rows[next[store.beneficiaryId(row)]++] = row;
+        }
+        return new BeneficiaryIndex(offsets, rows, size, new long[0]);
+    }
+
+    /**
+     * Returns an index over the first rows of the store that reuses the grouping of this one.
+     * When the store grew, only the rows appended since this index are sorted, and merged into its tail,
+     * in time O(t + d log d) for t rows already in the tail and d new ones.
+     */
+    BeneficiaryIndex withSize(TransactionStore store, int newSize) {
+        if (newSize == size) {
+            return this;
+        }
+        // an index over more rows than the grouping can keep its sorted tail, any other one sorts its tail anew
+        int from = newSize > size && size >= rows.length ? size : rows.length;
+        long[] added = new long[Math.max(0, newSize - from)];
+        for (int i = 0; i < added.length; i++) {
+            int row = from + i;
+            added[i] = (long) store.beneficiaryId(row) << 32 | row;
+        }
+        Arrays.sort(added);
+        return new BeneficiaryIndex(offsets, rows, newSize, from == size ? merge(tail, added) : added);
+    }
+
+    private static long[] merge(long[] first, long[] second) {
+        if (first.length == 0) {
+            return second;
+        }
+        long[] merged = new long[first.length + second.length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < merged.length; k++) {
+            merged[k] = j == second.length || (i < first.length && first[i] < second[j]) ? first[i++] : second[j++];
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the number of store rows the index covers.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of rows grouped by the counting sort, the rest of the size is in the tail.
+     */
+    int groupedRows() {
+        return rows.length;
+    }
+
+    /**
+     * Returns the number of transactions received by a beneficiary.
+     * @param beneficiaryId - client id, {@link ClientDictionary#UNKNOWN} counts none.
+     */
+    public int count(int beneficiaryId) {
+        return groupedCount(beneficiaryId) + tailEnd(beneficiaryId) - tailStart(beneficiaryId);
+    }
+
+    /**
+     * Returns the row of a beneficiary's transaction, transactions numbered in row order.
+     * @param beneficiaryId - client id.
+     * @param position - number of the transaction, from 0 to {@link #count(int)} excluded.
+     * @throws IndexOutOfBoundsException - when there is no such transaction.
+     */
+    public int row(int beneficiaryId, int position) {
+        int grouped = groupedCount(beneficiaryId);
+        if (position >= 0 && position < grouped) {
+            return rows[offsets[beneficiaryId] + position];
+        }
+        int tailPosition = tailStart(beneficiaryId) + position - grouped;
+        if (position < 0 || tailPosition >= tailEnd(beneficiaryId)) {
+            throw new IndexOutOfBoundsException("Beneficiary " + beneficiaryId + " has no transaction " + position);
+        }
+        return (int) tail[tailPosition];
+    }
+
+    /**
+     * Streams the rows of a beneficiary's transactions in row order.
+     * @param beneficiaryId - client id, {@link ClientDictionary#UNKNOWN} has none.
+     */
+    public IntStream rows(int beneficiaryId) {
+        return IntStream.range(0, count(beneficiaryId)).map(position -> row(beneficiaryId, position));
+    }
+
+    private int groupedCount(int beneficiaryId) {
+        if (beneficiaryId < 0 || beneficiaryId >= offsets.length - 1) {
+            return 0;
+        }
+        int from = offsets[beneficiaryId];
+        int to = offsets[beneficiaryId + 1];
+        if (size >= rows.length) {
+            return to - from;
+        }
+        // the grouping is newer than this index, only rows below the size count
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (rows[middle] < size) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - from;
+    }
+
+    private int tailStart(int beneficiaryId) {
+        return tail.length == 0 || beneficiaryId < 0 ? 0 : lowerBound((long) beneficiaryId << 32);
+    }
+
+    private int tailEnd(int beneficiaryId) {
+        return tail.length == 0 || beneficiaryId < 0 ? 0 : lowerBound((long) (beneficiaryId + 1) << 32);
+    }
+
+    private int lowerBound(long key) {
+        int position = Arrays.binarySearch(tail, key);
+        return position >= 0 ? position : -position - 1;
+    }
+}
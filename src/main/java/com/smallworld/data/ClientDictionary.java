@@ -0,0 +1,235 @@
+package com.smallworld.data;
+
+import java.util.Arrays;
+
+/**
+ * Assigns a dense int id to every client full name, ignoring case, and keeps one canonical String per client:
+ * the spelling the client was first seen with. Names match the way {@link String#equalsIgnoreCase(String)} does.
+ * Lookups hash the characters of the name directly, so looking up a name, or interning one straight from a
+ * parser's character buffer, allocates nothing for clients that are already known.
+ * A dictionary has a single writer; {@link #snapshot()} gives readers on other threads a fixed view of it.
+ */
+public class ClientDictionary {
+
+    /**
+     * Returned by the lookups for names that are not in the dictionary.
+     */
+    public static final int UNKNOWN = -1;
+
+    private static final int EMPTY_SLOT = 0;
+
+    private String[] names = new String[16];
+
+    private int[] nameHashes = new int[16];
+
+    private int size;
+
+    /**
+     * Open addressing table holding {@code id + 1} of every name, {@link #EMPTY_SLOT} for free slots.
+     * Only replaced once filled, and slots are only ever taken, so snapshots can probe it while names are added.
+     */
+    private volatile int[] table = new int[32];
+
+    /**
+     * Id of the {@code null} name, which is kept apart from the table.
+     */
+    private int nullId = UNKNOWN;
+
+    /**
+     * Dictionary whose table the lookups probe, this one unless it is a snapshot.
+     */
+    private final ClientDictionary source;
+
+    public ClientDictionary() {
+        source = this;
+    }
+
+    private ClientDictionary(ClientDictionary source) {
+        this.source = source;
+        names = source.names;
+        nameHashes = source.nameHashes;
+        size = source.size;
+        nullId = source.nullId;
+        table = null;
+    }
+
+    /**
+     * Returns a read-only view of the clients added so far. It shares the storage of this dictionary and is not
+     * affected by names added later, so it can be read by other threads while this dictionary keeps growing,
+     * provided it is handed over safely, e.g. through a volatile field.
+     * @return read-only dictionary.
+     */
+    public ClientDictionary snapshot() {
+        return source == this ? new ClientDictionary(this) : this;
+    }
+
+    /**
+     * Returns the id of the client, adding it if it is not known yet.
+     * @param fullName - client full name, in any case.
+     * @return id of the client.
+     */
+    public int add(String fullName) {
+        checkWritable();
+        if (fullName == null) {
+            if (nullId == UNKNOWN) {
+                nullId = append(null, 0);
+            }
+            return nullId;
+        }
+        int hash = hash(fullName);
+        int[] table = this.table;
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        for (; table[slot] != EMPTY_SLOT; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (nameHashes[id] == hash && names[id].equalsIgnoreCase(fullName)) {
+                return id;
+            }
+        }
+        return insert(fullName, hash, slot);
+    }
+
+    /**
+     * Returns the canonical name of the client spelled by the given characters, adding it if it is not known yet.
+     * Only a new client allocates a String.
+     * @param text - buffer holding the name.
+     * @param offset - start of the name in the buffer.
+     * @param length - number of characters of the name.
+     * @return canonical full name of the client.
+     */
+    public String intern(char[] text, int offset, int length) {
+        checkWritable();
+        int hash = hash(text, offset, length);
+        int[] table = this.table;
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        for (; table[slot] != EMPTY_SLOT; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (nameHashes[id] == hash && equalsIgnoreCase(names[id], text, offset, length)) {
+                return names[id];
+            }
+        }
+        int id = insert(new String(text, offset, length), hash, slot);
+        return names[id];
+    }
+
+    /**
+     * Returns the id of the client, ignoring case.
+     * @param fullName - client full name.
+     * @return id of the client, or {@link #UNKNOWN} if the dictionary does not know it.
+     */
+    public int idOf(String fullName) {
+        if (fullName == null) {
+            return nullId;
+        }
+        int hash = hash(fullName);
+        int[] table = source.table;
+        int mask = table.length - 1;
+        for (int slot = hash & mask; table[slot] != EMPTY_SLOT; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            // a snapshot skips the names added after it was taken
+            if (id < size && nameHashes[id] == hash && names[id].equalsIgnoreCase(fullName)) {
+                return id;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns the canonical full name of the client.
+     */
+    public String name(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown client id " + id);
+        }
+        return names[id];
+    }
+
+    /**
+     * Returns the number of clients, which are numbered {@code 0} to {@code size() - 1}.
+     */
+    public int size() {
+        return size;
+    }
+
+    private void checkWritable() {
+        if (source != this) {
+            throw new UnsupportedOperationException("Client dictionary snapshots are read-only");
+        }
+    }
+
+    private int insert(String fullName, int hash, int slot) {
+        int id = append(fullName, hash);
+        table[slot] = id + 1;
+        if ((size - (nullId == UNKNOWN ? 0 : 1)) * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private int append(String fullName, int hash) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            nameHashes = Arrays.copyOf(nameHashes, size * 2);
+        }
+        names[size] = fullName;
+        nameHashes[size] = hash;
+        return size++;
+    }
+
+    private void rehash() {
+        int[] table = new int[this.table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            if (id != nullId) {
+                int slot = nameHashes[id] & mask;
+                while (table[slot] != EMPTY_SLOT) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id + 1;
+            }
+        }
+        this.table = table;
+    }
+
+    /**
+     * Folds a character the way {@link String#equalsIgnoreCase(String)} compares characters.
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static int hash(String fullName) {
+        int hash = 0;
+        for (int i = 0; i < fullName.length(); i++) {
+            hash = 31 * hash + fold(fullName.charAt(i));
+        }
+        return spread(hash);
+    }
+
+    private static int hash(char[] text, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + fold(text[i]);
+        }
+        return spread(hash);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equalsIgnoreCase(String name, char[] text, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            char other = text[offset + i];
+            if (c != other && fold(c) != fold(other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,137 @@
+package com.smallworld.data;
+
+import java.util.Arrays;
+
+/**
+ * Growable bitset whose snapshots share its storage. Bits are kept in chunks of {@link #CHUNK_WORDS} words: a snapshot
+ * copies the references to the chunks, and the bitset copies a chunk the first time it changes it after a snapshot.
+ * Taking a snapshot therefore costs one reference per {@link #CHUNK_BITS} bits, and the changes that follow one chunk
+ * copy per chunk they touch, so a bitset can be snapshotted after every change, see {@link TransactionStore#snapshot()}.
+ * There is a single writer. Snapshots are read-only and can be read by other threads once handed over safely.
+ */
+class CopyOnWriteBitSet {
+
+    private static final int CHUNK_WORDS = 64;
+
+    private static final int CHUNK_SHIFT = 12;
+
+    /**
+     * Number of bits in a chunk, {@code CHUNK_WORDS * 64}.
+     */
+    static final int CHUNK_BITS = 1 << CHUNK_SHIFT;
+
+    /**
+     * Chunks of words, {@code null} for chunks without any bit set so far.
+     */
+    private long[][] chunks;
+
+    /**
+     * Whether this bitset may change a chunk in place, because no snapshot shares it. {@code null} for snapshots.
+     */
+    private boolean[] owned;
+
+    CopyOnWriteBitSet() {
+        chunks = new long[0][];
+        owned = new boolean[0];
+    }
+
+    private CopyOnWriteBitSet(long[][] chunks) {
+        this.chunks = chunks;
+    }
+
+    /**
+     * Returns a read-only copy of the bits as they are now, sharing the chunks with this bitset.
+     */
+    CopyOnWriteBitSet snapshot() {
+        if (owned == null) {
+            return this;
+        }
+        Arrays.fill(owned, false);
+        return new CopyOnWriteBitSet(chunks.clone());
+    }
+
+    boolean get(int bit) {
+        int chunk = bit >>> CHUNK_SHIFT;
+        if (chunk >= chunks.length || chunks[chunk] == null) {
+            return false;
+        }
+        return (chunks[chunk][(bit >>> 6) & (CHUNK_WORDS - 1)] & (1L << bit)) != 0;
+    }
+
+    void set(int bit) {
+        set(bit, true);
+    }
+
+    void set(int bit, boolean value) {
+        if (get(bit) == value) {
+            return;
+        }
+        long[] words = writableChunk(bit >>> CHUNK_SHIFT);
+        words[(bit >>> 6) & (CHUNK_WORDS - 1)] ^= 1L << bit;
+    }
+
+    /**
+     * Returns the first set bit at or after the given one, or -1 if there is none.
+     */
+    int nextSetBit(int fromBit) {
+        if (fromBit < 0) {
+            throw new IndexOutOfBoundsException("fromBit must not be negative: " + fromBit);
+        }
+        int word = (fromBit >>> 6) & (CHUNK_WORDS - 1);
+        long mask = -1L << fromBit;
+        for (int chunk = fromBit >>> CHUNK_SHIFT; chunk < chunks.length; chunk++, word = 0, mask = -1L) {
+            long[] words = chunks[chunk];
+            if (words == null) {
+                continue;
+            }
+            for (; word < CHUNK_WORDS; word++, mask = -1L) {
+                long bits = words[word] & mask;
+                if (bits != 0) {
+                    return (chunk << CHUNK_SHIFT) + (word << 6) + Long.numberOfTrailingZeros(bits);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first clear bit at or after the given one.
+     */
+    int nextClearBit(int fromBit) {
+        if (fromBit < 0) {
+            throw new IndexOutOfBoundsException("fromBit must not be negative: " + fromBit);
+        }
+        int word = (fromBit >>> 6) & (CHUNK_WORDS - 1);
+        long mask = -1L << fromBit;
+        int chunk = fromBit >>> CHUNK_SHIFT;
+        for (; chunk < chunks.length; chunk++, word = 0, mask = -1L) {
+            long[] words = chunks[chunk];
+            if (words == null) {
+                return (chunk << CHUNK_SHIFT) + (word << 6) + Long.numberOfTrailingZeros(mask);
+            }
+            for (; word < CHUNK_WORDS; word++, mask = -1L) {
+                long bits = ~words[word] & mask;
+                if (bits != 0) {
+                    return (chunk << CHUNK_SHIFT) + (word << 6) + Long.numberOfTrailingZeros(bits);
+                }
+            }
+        }
+        return Math.max(fromBit, chunk << CHUNK_SHIFT);
+    }
+
+    private long[] writableChunk(int chunk) {
+        if (chunk >= chunks.length) {
+            int capacity = Math.max(chunk + 1, chunks.length * 2);
+            chunks = Arrays.copyOf(chunks, capacity);
+            owned = Arrays.copyOf(owned, capacity);
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new long[CHUNK_WORDS];
+            owned[chunk] = true;
+        } else if (!owned[chunk]) {
+            chunks[chunk] = chunks[chunk].clone();
+            owned[chunk] = true;
+        }
+        return chunks[chunk];
+    }
+}
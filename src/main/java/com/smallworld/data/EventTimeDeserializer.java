@@ -0,0 +1,57 @@
+package com.smallworld.data;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Binds a json event time to milliseconds since the epoch. The time is either a number of milliseconds, such as
+ * {@code 1700000000000}, or an ISO-8601 instant, such as {@code "2023-11-14T22:13:20Z"}.
+ */
+public class EventTimeDeserializer extends StdDeserializer<Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    public EventTimeDeserializer() {
+        super(Long.class);
+    }
+
+    /**
+     * Parses an ISO-8601 instant, or a number of milliseconds written as a string.
+     * @param text - event time as found in the json file.
+     * @return milliseconds since the epoch.
+     * @throws DateTimeParseException - when the text is neither.
+     */
+    public static long parseEpochMillis(String text) {
+        String trimmed = text.trim();
+        if (!trimmed.isEmpty() && trimmed.chars().allMatch(c -> c >= '0' && c <= '9' || c == '-')) {
+            try {
+                return Long.parseLong(trimmed);
+            } catch (NumberFormatException e) {
+                throw new DateTimeParseException("Invalid event time", text, 0, e);
+            }
+        }
+        return Instant.parse(trimmed).toEpochMilli();
+    }
+
+    @Override
+    public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            return (Long) context.handleUnexpectedToken(Long.class, parser);
+        }
+        try {
+            return parseEpochMillis(parser.getText());
+        } catch (DateTimeParseException | ArithmeticException e) {
+            return (Long) context.handleWeirdStringValue(Long.class, parser.getText(), e.getMessage());
+        }
+    }
+}
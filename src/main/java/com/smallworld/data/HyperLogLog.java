@@ -0,0 +1,197 @@
+package com.smallworld.data;
+
+import java.util.Arrays;
+
+/**
+ * Estimates the number of distinct client names in fixed memory, with the HyperLogLog algorithm: every name is
+ * hashed to 64 bits, the first bits pick one of 2<sup>precision</sup> registers and the register keeps the longest
+ * run of leading zeros seen in the remaining bits. The estimate has a standard error of about
+ * {@code 1.04 / sqrt(2^precision)}, e.g. 1.6% in 4KB for a precision of 12, whatever the number of names.
+ * <p>
+ * Names are hashed ignoring case, like {@link ClientDictionary} matches them. Counters of the same precision merge
+ * into the counter of the union of their names, so partitions, threads or nodes can count on their own; the
+ * registers travel between nodes as {@link #toByteArray()}. Instances are not thread-safe.
+ */
+public final class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+
+    public static final int MAX_PRECISION = 18;
+
+    private static final long NULL_HASH = 0x9E3779B97F4A7C15L;
+
+    private final int precision;
+
+    private final byte[] registers;
+
+    /**
+     * Creates an empty counter.
+     * @param precision - number of index bits, from {@link #MIN_PRECISION} to {@link #MAX_PRECISION}.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Creates an empty counter with the smallest precision whose standard error is within the given one.
+     * @param relativeError - standard error of the estimate relative to the true count, e.g. 0.01.
+     */
+    public static HyperLogLog withRelativeError(double relativeError) {
+        if (!(relativeError > 0)) {
+            throw new IllegalArgumentException("relativeError must be positive: " + relativeError);
+        }
+        int precision = MIN_PRECISION;
+        while (precision < MAX_PRECISION && relativeError(precision) > relativeError) {
+            precision++;
+        }
+        if (relativeError(precision) > relativeError) {
+            throw new IllegalArgumentException("relativeError " + relativeError + " needs more than " + MAX_PRECISION + " bits of precision");
+        }
+        return new HyperLogLog(precision);
+    }
+
+    /**
+     * Restores a counter from {@link #toByteArray()}.
+     */
+    public static HyperLogLog fromByteArray(byte[] bytes) {
+        HyperLogLog counter = new HyperLogLog(bytes.length > 0 ? bytes[0] : 0);
+        if (bytes.length != counter.registers.length + 1) {
+            throw new IllegalArgumentException("Expected " + (counter.registers.length + 1) + " bytes but found " + bytes.length);
+        }
+        System.arraycopy(bytes, 1, counter.registers, 0, counter.registers.length);
+        return counter;
+    }
+
+    /**
+     * Hashes a client name to 64 bits, ignoring case. Hashing a name once and adding the hash is the cheaper way
+     * to count a client that is seen many times.
+     */
+    public static long hash(String fullName) {
+        if (fullName == null) {
+            return NULL_HASH;
+        }
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < fullName.length(); i++) {
+            hash = (hash ^ Character.toLowerCase(Character.toUpperCase(fullName.charAt(i)))) * 0x100000001B3L;
+        }
+        // finalizer of MurmurHash3, so that every bit of the hash depends on every character
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    public void add(String fullName) {
+        addHash(hash(fullName));
+    }
+
+    /**
+     * Adds a name by its {@link #hash(String)}.
+     */
+    public void addHash(long hash) {
+        int register = (int) (hash >>> (64 - precision));
+        // the marker bit caps the run of zeros when all remaining bits are zero
+        int rank = Long.numberOfLeadingZeros(hash << precision | 1L << (precision - 1)) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    /**
+     * Adds the names counted by another counter to this one.
+     * @return this counter.
+     * @throws IllegalArgumentException - when the precisions differ.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge a precision of " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        }
+        return this;
+    }
+
+    public HyperLogLog copy() {
+        return fromByteArray(toByteArray());
+    }
+
+    /**
+     * Returns the estimated number of distinct names added.
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // linear counting is more accurate for small counts
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Returns the standard error of the estimate relative to the true count.
+     */
+    public double relativeError() {
+        return relativeError(precision);
+    }
+
+    /**
+     * Returns the precision followed by the registers.
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[registers.length + 1];
+        bytes[0] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 1, registers.length);
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HyperLogLog)) {
+            return false;
+        }
+        HyperLogLog that = (HyperLogLog) o;
+        return precision == that.precision && Arrays.equals(registers, that.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * precision + Arrays.hashCode(registers);
+    }
+
+    private static double relativeError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
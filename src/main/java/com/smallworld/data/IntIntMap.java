@@ -0,0 +1,96 @@
+package com.smallworld.data;
+
+/**
+ * Open addressing hash map from int keys to non-negative int values, without boxing.
+ * There is a single writer, but lookups may run concurrently with it: keys and values share one array that is
+ * only replaced, fully filled, through a volatile field, and entries are never moved within an array. A concurrent
+ * lookup therefore always finds the entries added before it was started, and may or may not see newer ones,
+ * which callers filter out by value, see {@link TransactionStore#snapshot()}.
+ */
+class IntIntMap {
+
+    /**
+     * Value returned for keys that are not in the map.
+     */
+    static final int ABSENT = -1;
+
+    /**
+     * Key of every slot followed by its value, {@link #ABSENT} for free slots.
+     */
+    private volatile int[] entries;
+
+    private int size;
+
+    IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        entries = emptyEntries(capacity);
+    }
+
+    int get(int key) {
+        int[] table = entries;
+        int mask = table.length / 2 - 1;
+        for (int slot = mix(key) & mask; table[2 * slot + 1] != ABSENT; slot = (slot + 1) & mask) {
+            if (table[2 * slot] == key) {
+                return table[2 * slot + 1];
+            }
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Associates the value with the key unless the key is already present.
+     * @return the value already associated with the key, or {@link #ABSENT} if the value was added.
+     */
+    int putIfAbsent(int key, int value) {
+        int[] table = entries;
+        int mask = table.length / 2 - 1;
+        int slot = mix(key) & mask;
+        for (; table[2 * slot + 1] != ABSENT; slot = (slot + 1) & mask) {
+            if (table[2 * slot] == key) {
+                return table[2 * slot + 1];
+            }
+        }
+        table[2 * slot] = key;
+        table[2 * slot + 1] = value;
+        if (++size * 4 > table.length) {
+            rehash(table);
+        }
+        return ABSENT;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void rehash(int[] oldTable) {
+        int[] table = emptyEntries(oldTable.length);
+        int mask = table.length / 2 - 1;
+        for (int i = 0; i < oldTable.length; i += 2) {
+            if (oldTable[i + 1] != ABSENT) {
+                int slot = mix(oldTable[i]) & mask;
+                while (table[2 * slot + 1] != ABSENT) {
+                    slot = (slot + 1) & mask;
+                }
+                table[2 * slot] = oldTable[i];
+                table[2 * slot + 1] = oldTable[i + 1];
+            }
+        }
+        entries = table;
+    }
+
+    /**
+     * Creates the entry array of a table with the given number of slots.
+     */
+    private static int[] emptyEntries(int slots) {
+        int[] table = new int[slots * 2];
+        for (int i = 1; i < table.length; i += 2) {
+            table[i] = ABSENT;
+        }
+        return table;
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
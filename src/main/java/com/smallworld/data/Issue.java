@@ -0,0 +1,46 @@
+package com.smallworld.data;
+
+import java.util.Objects;
+
+public class Issue {
+    private final int id;
+    private final boolean solved;
+    private final String message;
+
+    public Issue(int id, boolean solved, String message) {
+        this.id = id;
+        this.solved = solved;
+        this.message = message;
+    }
+
+    // Getters
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isSolved() {
+        return solved;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Issue)) {
+            return false;
+        }
+        Issue issue = (Issue) o;
+        return id == issue.id && solved == issue.solved && Objects.equals(message, issue.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, solved, message);
+    }
+}
@@ -0,0 +1,220 @@
+package com.smallworld.data;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.smallworld.data.TransactionStoreFile.*;
+
+/**
+ * Read-only {@link TransactionStore} reading its columns from the sections of a memory mapped
+ * {@link TransactionStoreFile}. Every column accessor is overridden, the inherited fields stay empty.
+ */
+class MappedTransactionStore extends TransactionStore {
+
+    private final int size;
+    private final IntBuffer mtn;
+    private final LongBuffer amount;
+    private final IntBuffer senderId;
+    private final IntBuffer senderAge;
+    private final IntBuffer beneficiaryId;
+    private final IntBuffer beneficiaryAge;
+    private final IntBuffer firstIssue;
+    private final LongBuffer transactionsWithOpenIssues;
+    /**
+     * (mtn, row) pairs sorted by mtn.
+     */
+    private final IntBuffer rowsByMtn;
+
+    private final int issueCount;
+    private final IntBuffer issueId;
+    private final IntBuffer issueRow;
+    private final IntBuffer nextIssue;
+    private final IntBuffer issueMessage;
+    private final LongBuffer solvedIssues;
+    /**
+     * (issue id, issue) pairs sorted by issue id, then issue.
+     */
+    private final IntBuffer issuesByIssueId;
+
+    /**
+     * Distinct issue messages, indexed by the message ids of the issue message column.
+     */
+    private final String[] messages;
+
+    MappedTransactionStore(int size, int issueCount, ByteBuffer[] sections, ClientDictionary clients, String[] messages) {
+        super(clients);
+        this.size = size;
+        mtn = sections[MTN].asIntBuffer();
+        amount = sections[AMOUNT].asLongBuffer();
+        senderId = sections[SENDER_ID].asIntBuffer();
+        senderAge = sections[SENDER_AGE].asIntBuffer();
+        beneficiaryId = sections[BENEFICIARY_ID].asIntBuffer();
+        beneficiaryAge = sections[BENEFICIARY_AGE].asIntBuffer();
+        firstIssue = sections[FIRST_ISSUE].asIntBuffer();
+        transactionsWithOpenIssues = sections[OPEN_ROWS].asLongBuffer();
+        rowsByMtn = sections[ROWS_BY_MTN].asIntBuffer();
+        this.issueCount = issueCount;
+        issueId = sections[ISSUE_ID].asIntBuffer();
+        issueRow = sections[ISSUE_ROW].asIntBuffer();
+        nextIssue = sections[NEXT_ISSUE].asIntBuffer();
+        issueMessage = sections[ISSUE_MESSAGE].asIntBuffer();
+        solvedIssues = sections[SOLVED_ISSUES].asLongBuffer();
+        issuesByIssueId = sections[ISSUES_BY_ISSUE_ID].asIntBuffer();
+        this.messages = messages;
+    }
+
+    // Transaction columns
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int rowOf(int transactionMtn) {
+        int pair = lowerBound(rowsByMtn, size, transactionMtn);
+        return pair < size && rowsByMtn.get(2 * pair) == transactionMtn ? rowsByMtn.get(2 * pair + 1) : -1;
+    }
+
+    @Override
+    public int mtn(int row) {
+        return mtn.get(row);
+    }
+
+    @Override
+    public long amount(int row) {
+        return amount.get(row);
+    }
+
+    @Override
+    public int senderId(int row) {
+        return senderId.get(row);
+    }
+
+    @Override
+    public int senderAge(int row) {
+        return senderAge.get(row);
+    }
+
+    @Override
+    public int beneficiaryId(int row) {
+        return beneficiaryId.get(row);
+    }
+
+    @Override
+    public int beneficiaryAge(int row) {
+        return beneficiaryAge.get(row);
+    }
+
+    @Override
+    public boolean hasOpenIssues(int row) {
+        return bit(transactionsWithOpenIssues, row);
+    }
+
+    @Override
+    public int nextRowWithOpenIssues(int fromRow) {
+        return nextBit(transactionsWithOpenIssues, fromRow, size, true);
+    }
+
+    // Issue columns
+
+    @Override
+    public int issueCount() {
+        return issueCount;
+    }
+
+    @Override
+    public int issueId(int issue) {
+        return issueId.get(issue);
+    }
+
+    @Override
+    public int issueRow(int issue) {
+        return issueRow.get(issue);
+    }
+
+    @Override
+    public String issueMessage(int issue) {
+        int message = issueMessage.get(issue);
+        return message == NONE ? null : messages[message];
+    }
+
+    @Override
+    public boolean isIssueSolved(int issue) {
+        return bit(solvedIssues, issue);
+    }
+
+    @Override
+    public int nextSolvedIssue(int fromIssue) {
+        return nextBit(solvedIssues, fromIssue, issueCount, true);
+    }
+
+    @Override
+    public int nextUnsolvedIssue(int fromIssue) {
+        return nextBit(solvedIssues, fromIssue, issueCount, false);
+    }
+
+    @Override
+    public int issueOf(int id) {
+        int pair = lowerBound(issuesByIssueId, issueCount, id);
+        return pair < issueCount && issuesByIssueId.get(2 * pair) == id ? issuesByIssueId.get(2 * pair + 1) : -1;
+    }
+
+    // Object views
+
+    @Override
+    public TransactionRecord record(int row) {
+        List<Issue> issues = new ArrayList<>(1);
+        for (int issue = firstIssue.get(row); issue != NONE; issue = nextIssue.get(issue)) {
+            issues.add(new Issue(issueId.get(issue), isIssueSolved(issue), issueMessage(issue)));
+        }
+        return new TransactionRecord(mtn(row), amount(row),
+                clientName(senderId(row)), senderAge(row),
+                clientName(beneficiaryId(row)), beneficiaryAge(row),
+                issues.toArray(new Issue[0]));
+    }
+
+    /**
+     * Returns the first of the sorted (key, value) pairs whose key is not less than the given one.
+     */
+    private static int lowerBound(IntBuffer pairs, int count, int key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (pairs.get(2 * middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static boolean bit(LongBuffer words, int index) {
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns the first index in {@code [from, limit)} whose bit is set, or clear, or -1 if there is none.
+     */
+    private static int nextBit(LongBuffer words, int from, int limit, boolean set) {
+        int index = from;
+        while (index < limit) {
+            long word = words.get(index >>> 6);
+            if (!set) {
+                word = ~word;
+            }
+            word &= -1L << index;
+            if (word != 0) {
+                int found = (index & ~63) + Long.numberOfTrailingZeros(word);
+                return found < limit ? found : -1;
+            }
+            index = (index & ~63) + 64;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,281 @@
+package com.smallworld.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Estimates quantiles of long values, e.g. amounts in minor units, in fixed memory, after DDSketch: values are
+ * counted in bins whose bounds grow geometrically by {@code gamma = (1 + a) / (1 - a)}, so every quantile is
+ * answered within a relative accuracy {@code a} of a value that really has that rank. Positive and negative values
+ * have bins of their own, and zeros a counter.
+ * <p>
+ * At most a fixed number of bins is kept per sign. Values too far below the largest ones to fit are counted in
+ * the lowest bin kept, which only affects the accuracy of the low quantiles; with the default 2048 bins and an
+ * accuracy of 1% that takes values spanning more than 17 orders of magnitude. Sketches of the same accuracy merge
+ * into the sketch of the union of their values, also across nodes through {@link #toByteArray()}.
+ * Instances are not thread-safe.
+ */
+public final class QuantileSketch {
+
+    public static final int DEFAULT_MAX_BINS = 2048;
+
+    private final double relativeAccuracy;
+
+    private final int maxBins;
+
+    private final double logGamma;
+
+    private final Bins positive;
+
+    private final Bins negative;
+
+    private long zeroCount;
+
+    private long count;
+
+    private long min = Long.MAX_VALUE;
+
+    private long max = Long.MIN_VALUE;
+
+    public QuantileSketch(double relativeAccuracy) {
+        this(relativeAccuracy, DEFAULT_MAX_BINS);
+    }
+
+    /**
+     * Creates an empty sketch.
+     * @param relativeAccuracy - accuracy of the quantiles relative to their value, strictly between 0 and 1.
+     * @param maxBins - number of bins kept at most for positive values and for negative values.
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBins) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("relativeAccuracy must be between 0 and 1: " + relativeAccuracy);
+        }
+        if (maxBins < 1) {
+            throw new IllegalArgumentException("maxBins must be positive: " + maxBins);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.maxBins = maxBins;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+        this.positive = new Bins(maxBins);
+        this.negative = new Bins(maxBins);
+    }
+
+    /**
+     * Restores a sketch from {@link #toByteArray()}.
+     */
+    public static QuantileSketch fromByteArray(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        QuantileSketch sketch = new QuantileSketch(buffer.getDouble(), buffer.getInt());
+        sketch.zeroCount = buffer.getLong();
+        sketch.count = buffer.getLong();
+        sketch.min = buffer.getLong();
+        sketch.max = buffer.getLong();
+        sketch.positive.read(buffer);
+        sketch.negative.read(buffer);
+        return sketch;
+    }
+
+    public void add(long value) {
+        if (value > 0) {
+            positive.add(index(value), 1);
+        } else if (value < 0) {
+            negative.add(index(-(double) value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the values counted by another sketch to this one.
+     * @return this sketch.
+     * @throws IllegalArgumentException - when the accuracies differ.
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge an accuracy of " + other.relativeAccuracy + " into " + relativeAccuracy);
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Returns the estimated value at the given quantile, e.g. the median for 0.5.
+     * @param quantile - rank of the value relative to the count, from 0 to 1.
+     * @return estimated value, exact for 0 and 1, {@link Double#NaN} when the sketch is empty.
+     */
+    public double quantile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("quantile must be between 0 and 1: " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (rank == 0 || rank == count - 1) {
+            return rank == 0 ? min : max;
+        }
+        double estimate;
+        if (rank < negative.total) {
+            estimate = -value(negative.indexOfRank(negative.total - 1 - rank));
+        } else if (rank < negative.total + zeroCount) {
+            estimate = 0;
+        } else {
+            estimate = value(positive.indexOfRank(rank - negative.total - zeroCount));
+        }
+        // the exact extremes are known and bound every estimate
+        return Math.max(min, Math.min(max, estimate));
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Returns the settings, counters and non-empty bins in a compact binary form.
+     */
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(Double.BYTES + Integer.BYTES + 4 * Long.BYTES
+                + positive.serializedSize() + negative.serializedSize());
+        buffer.putDouble(relativeAccuracy).putInt(maxBins).putLong(zeroCount).putLong(count).putLong(min).putLong(max);
+        positive.write(buffer);
+        negative.write(buffer);
+        return buffer.array();
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * Returns the value of a bin, which is within the relative accuracy of every value counted in it.
+     */
+    private double value(int index) {
+        return 2 * Math.exp(index * logGamma) / (1 + Math.exp(logGamma));
+    }
+
+    /**
+     * Counts per bin index for a contiguous range of at most maxBins indexes, kept in a ring so that the range can
+     * move without copying.
+     */
+    private static class Bins {
+
+        private final int maxBins;
+
+        private long[] counts;
+
+        private int minIndex;
+
+        private int maxIndex;
+
+        private long total;
+
+        private Bins(int maxBins) {
+            this.maxBins = maxBins;
+        }
+
+        private void add(int index, long n) {
+            if (counts == null) {
+                counts = new long[maxBins];
+            }
+            if (total == 0) {
+                minIndex = index;
+                maxIndex = index;
+            } else if (index > maxIndex) {
+                int oldMaxIndex = maxIndex;
+                maxIndex = index;
+                collapseBelow(maxIndex - maxBins + 1, oldMaxIndex);
+            } else if (index < minIndex) {
+                // too low to fit in the range, counted in the lowest bin kept
+                index = Math.max(index, maxIndex - maxBins + 1);
+                minIndex = Math.min(minIndex, index);
+            }
+            counts[slot(index)] += n;
+            total += n;
+        }
+
+        /**
+         * Moves the counts of the bins below the new lowest index, which are all at most the old highest one,
+         * into the new lowest bin.
+         */
+        private void collapseBelow(int newMinIndex, int oldMaxIndex) {
+            if (newMinIndex <= minIndex) {
+                return;
+            }
+            long collapsed = 0;
+            for (int index = minIndex; index < newMinIndex && index <= oldMaxIndex; index++) {
+                collapsed += counts[slot(index)];
+                counts[slot(index)] = 0;
+            }
+            minIndex = newMinIndex;
+            counts[slot(minIndex)] += collapsed;
+        }
+
+        private void merge(Bins other) {
+            for (int index = other.minIndex; other.total > 0 && index <= other.maxIndex; index++) {
+                long n = other.counts[other.slot(index)];
+                if (n > 0) {
+                    add(index, n);
+                }
+            }
+        }
+
+        /**
+         * Returns the index of the bin holding the value of the given rank, counted from the lowest index.
+         */
+        private int indexOfRank(long rank) {
+            long seen = 0;
+            for (int index = minIndex; index < maxIndex; index++) {
+                seen += counts[slot(index)];
+                if (seen > rank) {
+                    return index;
+                }
+            }
+            return maxIndex;
+        }
+
+        private int slot(int index) {
+            return Math.floorMod(index, maxBins);
+        }
+
+        private int nonEmptyBins() {
+            int bins = 0;
+            for (int index = minIndex; total > 0 && index <= maxIndex; index++) {
+                if (counts[slot(index)] > 0) {
+                    bins++;
+                }
+            }
+            return bins;
+        }
+
+        private int serializedSize() {
+            return Integer.BYTES + nonEmptyBins() * (Integer.BYTES + Long.BYTES);
+        }
+
+        private void write(ByteBuffer buffer) {
+            buffer.putInt(nonEmptyBins());
+            for (int index = minIndex; total > 0 && index <= maxIndex; index++) {
+                long n = counts[slot(index)];
+                if (n > 0) {
+                    buffer.putInt(index).putLong(n);
+                }
+            }
+        }
+
+        private void read(ByteBuffer buffer) {
+            for (int bins = buffer.getInt(); bins > 0; bins--) {
+                add(buffer.getInt(), buffer.getLong());
+            }
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.smallworld.data;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 public class Transaction {
     private int mtn;
-    private double amount;
+    /**
+     * Amount in minor units, see {@link Amounts}.
+     */
+    @JsonDeserialize(using = AmountDeserializer.class)
+    private long amount;
     private String senderFullName;
     private int senderAge;
     private String beneficiaryFullName;
@@ -10,6 +16,11 @@ public class Transaction {
     private Integer issueId;
     private boolean issueSolved;
     private String issueMessage;
+    /**
+     * Time the transaction happened, in milliseconds since the epoch, or null when the source does not say.
+     */
+    @JsonDeserialize(using = EventTimeDeserializer.class)
+    private Long eventTime;
 
     // Default constructor
     public Transaction() {
@@ -25,11 +36,11 @@ public class Transaction {
         this.mtn = mtn;
     }
 
-    public double getAmount() {
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 
@@ -88,4 +99,12 @@ public class Transaction {
     public void setIssueMessage(String issueMessage) {
         this.issueMessage = issueMessage;
     }
+
+    public Long getEventTime() {
+        return eventTime;
+    }
+
+    public void setEventTime(Long eventTime) {
+        this.eventTime = eventTime;
+    }
 }
@@ -0,0 +1,100 @@
+package com.smallworld.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A transaction with all of its issues, held once per mtn instead of once per issue row.
+ */
+public class TransactionRecord {
+    private static final Issue[] NO_ISSUES = new Issue[0];
+
+    private final int mtn;
+    /**
+     * Amount in minor units, see {@link Amounts}.
+     */
+    private final long amount;
+    private final String senderFullName;
+    private final int senderAge;
+    private final String beneficiaryFullName;
+    private final int beneficiaryAge;
+    private final Issue[] issues;
+
+    public TransactionRecord(int mtn, long amount, String senderFullName, int senderAge,
+                             String beneficiaryFullName, int beneficiaryAge, Issue[] issues) {
+        this.mtn = mtn;
+        this.amount = amount;
+        this.senderFullName = senderFullName;
+        this.senderAge = senderAge;
+        this.beneficiaryFullName = beneficiaryFullName;
+        this.beneficiaryAge = beneficiaryAge;
+        this.issues = issues.length == 0 ? NO_ISSUES : issues;
+    }
+
+    // Getters
+
+    public int getMtn() {
+        return mtn;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public String getSenderFullName() {
+        return senderFullName;
+    }
+
+    public int getSenderAge() {
+        return senderAge;
+    }
+
+    public String getBeneficiaryFullName() {
+        return beneficiaryFullName;
+    }
+
+    public int getBeneficiaryAge() {
+        return beneficiaryAge;
+    }
+
+    public List<Issue> getIssues() {
+        return Collections.unmodifiableList(Arrays.asList(issues));
+    }
+
+    /**
+     * Returns whether at least one issue of this transaction has not been solved.
+     */
+    public boolean hasOpenIssues() {
+        for (Issue issue : issues) {
+            if (!issue.isSolved()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TransactionRecord)) {
+            return false;
+        }
+        TransactionRecord that = (TransactionRecord) o;
+        return mtn == that.mtn
+                && amount == that.amount
+                && senderAge == that.senderAge
+                && beneficiaryAge == that.beneficiaryAge
+                && Objects.equals(senderFullName, that.senderFullName)
+                && Objects.equals(beneficiaryFullName, that.beneficiaryFullName)
+                && Arrays.equals(issues, that.issues);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mtn, amount, senderFullName, beneficiaryFullName);
+    }
+}
@@ -0,0 +1,573 @@
+package com.smallworld.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Column oriented storage of the transaction data, one row per mtn.
+ * Transaction fields are kept in primitive arrays indexed by row, client names are encoded into dense ids
+ * by a {@link ClientDictionary} and issues live in their own columns, chained per transaction, with their state in bitsets.
+ * The store is append-only: rows and issues are only ever added, and the only update is the solved state of an issue,
+ * which is also recorded in a transition log so that derived aggregates can catch up without rescanning.
+ * A store has a single writer. Other threads read it through {@link #snapshot()}.
+ */
+public class TransactionStore {
+
+    /**
+     * Marks the end of an issue chain.
+     */
+    private static final int NO_ISSUE = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Rows appended after the last grouping that are kept in the tail of a {@link BeneficiaryIndex}, at least.
+     * Beyond that and an eighth of the grouped rows, all rows are grouped again.
+     */
+    private static final int MIN_BENEFICIARY_TAIL = 1024;
+
+    // Transaction columns, indexed by row
+
+    private int size;
+    private int[] mtn;
+    /**
+     * Amounts in minor units, see {@link Amounts}.
+     */
+    private long[] amount;
+    private int[] senderId;
+    private int[] senderAge;
+    private int[] beneficiaryId;
+    private int[] beneficiaryAge;
+    private int[] firstIssue;
+    private int[] lastIssue;
+
+    /**
+     * Rows with at least one issue that is not solved.
+     */
+    private final CopyOnWriteBitSet transactionsWithOpenIssues;
+
+    /**
+     * Row of every mtn, used to attach later issue rows to their transaction.
+     */
+    private final IntIntMap rowByMtn;
+
+    // Issue columns, indexed by issue
+
+    private int issueCount;
+    private int[] issueId;
+    private int[] issueRow;
+    private int[] nextIssue;
+    private String[] issueMessage;
+    private final CopyOnWriteBitSet solvedIssues;
+
+    /**
+     * Issue of every issue id, the first one if an id is repeated.
+     */
+    private final IntIntMap issueByIssueId;
+
+    // Transition log, issues whose solved state changed, in order
+
+    private int transitionCount;
+    /**
+     * Changed issue, or its complement {@code ~issue} when the issue was reopened.
+     */
+    private int[] transitions = new int[DEFAULT_CAPACITY];
+
+    // Client name dictionary
+
+    private final ClientDictionary clients;
+
+    // Beneficiary index
+
+    /**
+     * Latest grouping of the rows by beneficiary, shared with the snapshots of the store, as grouped rows stay valid
+     * for every version.
+     */
+    private final AtomicReference<BeneficiaryIndex> groupedBeneficiaries;
+
+    /**
+     * Index over the current rows, handed out until the store grows.
+     */
+    private volatile BeneficiaryIndex beneficiaryIndex;
+
+    /**
+     * Set for snapshots, which reject every change.
+     */
+    private final boolean readOnly;
+
+    public TransactionStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TransactionStore(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        mtn = new int[capacity];
+        amount = new long[capacity];
+        senderId = new int[capacity];
+        senderAge = new int[capacity];
+        beneficiaryId = new int[capacity];
+        beneficiaryAge = new int[capacity];
+        firstIssue = new int[capacity];
+        lastIssue = new int[capacity];
+        rowByMtn = new IntIntMap(capacity);
+        issueId = new int[capacity];
+        issueRow = new int[capacity];
+        nextIssue = new int[capacity];
+        issueMessage = new String[capacity];
+        issueByIssueId = new IntIntMap(capacity);
+        transactionsWithOpenIssues = new CopyOnWriteBitSet();
+        solvedIssues = new CopyOnWriteBitSet();
+        clients = new ClientDictionary();
+        groupedBeneficiaries = new AtomicReference<>();
+        readOnly = false;
+    }
+
+    private TransactionStore(TransactionStore source) {
+        size = source.size;
+        mtn = source.mtn;
+        amount = source.amount;
+        senderId = source.senderId;
+        senderAge = source.senderAge;
+        beneficiaryId = source.beneficiaryId;
+        beneficiaryAge = source.beneficiaryAge;
+        firstIssue = source.firstIssue;
+        lastIssue = source.lastIssue;
+        transactionsWithOpenIssues = source.transactionsWithOpenIssues.snapshot();
+        rowByMtn = source.rowByMtn;
+        issueCount = source.issueCount;
+        issueId = source.issueId;
+        issueRow = source.issueRow;
+        nextIssue = source.nextIssue;
+        issueMessage = source.issueMessage;
+        solvedIssues = source.solvedIssues.snapshot();
+        issueByIssueId = source.issueByIssueId;
+        transitionCount = source.transitionCount;
+        transitions = source.transitions;
+        clients = source.clients.snapshot();
+        groupedBeneficiaries = source.groupedBeneficiaries;
+        readOnly = true;
+    }
+
+    /**
+     * Creates a read-only store whose columns live elsewhere, for subclasses that override every column accessor.
+     */
+    TransactionStore(ClientDictionary clients) {
+        rowByMtn = null;
+        issueByIssueId = null;
+        transactionsWithOpenIssues = null;
+        solvedIssues = null;
+        this.clients = clients;
+        groupedBeneficiaries = new AtomicReference<>();
+        readOnly = true;
+    }
+
+    /**
+     * Returns a read-only view of the store as it is now, which later changes do not affect.
+     * The columns are append-only, so the view shares them. The issue state bitsets are shared too, chunk by chunk,
+     * and this store copies a chunk before changing it, so a view costs one reference per
+     * {@value CopyOnWriteBitSet#CHUNK_BITS} rows and issues, and a store can be viewed after every change.
+     * The view can be read by any number of threads while the writer keeps changing this store, provided it is
+     * handed over safely, e.g. through a volatile field.
+     * @return read-only store.
+     */
+    public TransactionStore snapshot() {
+        return readOnly ? this : new TransactionStore(this);
+    }
+
+    /**
+     * Builds a store from rows of the transaction/transaction_issue join.
+     * @param transactions - transaction rows.
+     * @return store with one row per mtn.
+     */
+    public static TransactionStore of(Stream<Transaction> transactions) {
+        TransactionStore store = new TransactionStore();
+        transactions.forEach(store::add);
+        return store;
+    }
+
+    /**
+     * Builds a store from transactions already grouped by mtn.
+     * @param records - transaction records.
+     * @return store with one row per record.
+     */
+    public static TransactionStore ofRecords(List<TransactionRecord> records) {
+        TransactionStore store = new TransactionStore(records.size());
+        records.forEach(store::add);
+        return store;
+    }
+
+    /**
+     * Adds a row of the join. The first row of an mtn creates its transaction, later rows only add their issue.
+     * @param transaction - transaction row.
+     * @return row of the transaction in the store.
+     */
+    public int add(Transaction transaction) {
+        checkWritable();
+        int row = rowOrAdd(transaction.getMtn(), transaction.getAmount(),
+                transaction.getSenderFullName(), transaction.getSenderAge(),
+                transaction.getBeneficiaryFullName(), transaction.getBeneficiaryAge());
+        if (transaction.getIssueId() != null) {
+            addIssue(row, transaction.getIssueId(), transaction.isIssueSolved(), transaction.getIssueMessage());
+        }
+        return row;
+    }
+
+    /**
+     * Adds a transaction record with its issues.
+     * @param record - transaction record.
+     * @return row of the transaction in the store.
+     */
+    public int add(TransactionRecord record) {
+        checkWritable();
+        int row = rowOrAdd(record.getMtn(), record.getAmount(),
+                record.getSenderFullName(), record.getSenderAge(),
+                record.getBeneficiaryFullName(), record.getBeneficiaryAge());
+        for (Issue issue : record.getIssues()) {
+            addIssue(row, issue.getId(), issue.isSolved(), issue.getMessage());
+        }
+        return row;
+    }
+
+    /**
+     * Adds the transactions and issues of another store, as if the rows the other store was built from were added
+     * to this one in the same order. Transactions already in this store only get the issues of the other store.
+     * @param other - store to copy, e.g. one built from the next part of a file.
+     */
+    public void addAll(TransactionStore other) {
+        checkWritable();
+        int[] rows = new int[other.size()];
+        // ids of the other store's clients in this store, resolved once per client
+        int[] clientIds = new int[other.clientCount()];
+        Arrays.fill(clientIds, ClientDictionary.UNKNOWN);
+        for (int row = 0; row < rows.length; row++) {
+            int transactionMtn = other.mtn(row);
+            int existing = rowByMtn.putIfAbsent(transactionMtn, size);
+            rows[row] = existing != IntIntMap.ABSENT ? existing : addRow(transactionMtn, other.amount(row),
+                    clientId(other, other.senderId(row), clientIds), other.senderAge(row),
+                    clientId(other, other.beneficiaryId(row), clientIds), other.beneficiaryAge(row));
+        }
+        for (int issue = 0; issue < other.issueCount(); issue++) {
+            addIssue(rows[other.issueRow(issue)], other.issueId(issue), other.isIssueSolved(issue), other.issueMessage(issue));
+        }
+    }
+
+    private int clientId(TransactionStore other, int otherClientId, int[] clientIds) {
+        if (clientIds[otherClientId] == ClientDictionary.UNKNOWN) {
+            clientIds[otherClientId] = clients.add(other.clientName(otherClientId));
+        }
+        return clientIds[otherClientId];
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("This transaction store is read-only");
+        }
+    }
+
+    private int rowOrAdd(int transactionMtn, long transactionAmount, String senderFullName, int senderAgeValue,
+                         String beneficiaryFullName, int beneficiaryAgeValue) {
+        int existing = rowByMtn.putIfAbsent(transactionMtn, size);
+        if (existing != IntIntMap.ABSENT) {
+            return existing;
+        }
+        return addRow(transactionMtn, transactionAmount, clients.add(senderFullName), senderAgeValue,
+                clients.add(beneficiaryFullName), beneficiaryAgeValue);
+    }
+
+    /**
+     * Appends a transaction whose mtn has already been mapped to the next row.
+     */
+    private int addRow(int transactionMtn, long transactionAmount, int senderIdValue, int senderAgeValue,
+                       int beneficiaryIdValue, int beneficiaryAgeValue) {
+        if (size == mtn.length) {
+            int capacity = size * 2;
+            mtn = Arrays.copyOf(mtn, capacity);
+            amount = Arrays.copyOf(amount, capacity);
+            senderId = Arrays.copyOf(senderId, capacity);
+            senderAge = Arrays.copyOf(senderAge, capacity);
+            beneficiaryId = Arrays.copyOf(beneficiaryId, capacity);
+            beneficiaryAge = Arrays.copyOf(beneficiaryAge, capacity);
+            firstIssue = Arrays.copyOf(firstIssue, capacity);
+            lastIssue = Arrays.copyOf(lastIssue, capacity);
+        }
+        int row = size++;
+        mtn[row] = transactionMtn;
+        amount[row] = transactionAmount;
+        senderId[row] = senderIdValue;
+        senderAge[row] = senderAgeValue;
+        beneficiaryId[row] = beneficiaryIdValue;
+        beneficiaryAge[row] = beneficiaryAgeValue;
+        firstIssue[row] = NO_ISSUE;
+        lastIssue[row] = NO_ISSUE;
+        return row;
+    }
+
+    private void addIssue(int row, int id, boolean solved, String message) {
+        if (issueCount == issueId.length) {
+            int capacity = issueCount * 2;
+            issueId = Arrays.copyOf(issueId, capacity);
+            issueRow = Arrays.copyOf(issueRow, capacity);
+            nextIssue = Arrays.copyOf(nextIssue, capacity);
+            issueMessage = Arrays.copyOf(issueMessage, capacity);
+        }
+        int issue = issueCount++;
+        issueId[issue] = id;
+        issueRow[issue] = row;
+        nextIssue[issue] = NO_ISSUE;
+        issueMessage[issue] = message;
+        issueByIssueId.putIfAbsent(id, issue);
+        if (solved) {
+            solvedIssues.set(issue);
+        } else {
+            transactionsWithOpenIssues.set(row);
+        }
+        if (lastIssue[row] == NO_ISSUE) {
+            firstIssue[row] = issue;
+        } else {
+            nextIssue[lastIssue[row]] = issue;
+        }
+        lastIssue[row] = issue;
+    }
+
+    // Transaction columns
+
+    /**
+     * Returns the number of transactions (rows) in the store.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the row of the transaction with the given mtn, or -1 if there is none.
+     */
+    public int rowOf(int transactionMtn) {
+        // the map is shared with snapshots, which ignore rows added after them
+        int row = rowByMtn.get(transactionMtn);
+        return row < size ? row : -1;
+    }
+
+    public int mtn(int row) {
+        return mtn[row];
+    }
+
+    /**
+     * Returns the amount of the transaction in minor units.
+     */
+    public long amount(int row) {
+        return amount[row];
+    }
+
+    public int senderId(int row) {
+        return senderId[row];
+    }
+
+    public int senderAge(int row) {
+        return senderAge[row];
+    }
+
+    public int beneficiaryId(int row) {
+        return beneficiaryId[row];
+    }
+
+    public int beneficiaryAge(int row) {
+        return beneficiaryAge[row];
+    }
+
+    /**
+     * Returns whether the transaction has at least one issue that is not solved.
+     */
+    public boolean hasOpenIssues(int row) {
+        return transactionsWithOpenIssues.get(row);
+    }
+
+    /**
+     * Returns the first row at or after the given one that has an open issue, or -1 if there is none.
+     */
+    public int nextRowWithOpenIssues(int fromRow) {
+        int row = transactionsWithOpenIssues.nextSetBit(fromRow);
+        return row < size ? row : -1;
+    }
+
+    // Issue columns
+
+    /**
+     * Returns the number of issues in the store.
+     */
+    public int issueCount() {
+        return issueCount;
+    }
+
+    public int issueId(int issue) {
+        return issueId[issue];
+    }
+
+    public int issueRow(int issue) {
+        return issueRow[issue];
+    }
+
+    public String issueMessage(int issue) {
+        return issueMessage[issue];
+    }
+
+    public boolean isIssueSolved(int issue) {
+        return solvedIssues.get(issue);
+    }
+
+    /**
+     * Returns the first solved issue at or after the given one, or -1 if there is none.
+     */
+    public int nextSolvedIssue(int fromIssue) {
+        int issue = solvedIssues.nextSetBit(fromIssue);
+        return issue < issueCount ? issue : -1;
+    }
+
+    /**
+     * Returns the first unsolved issue at or after the given one, or -1 if there is none.
+     */
+    public int nextUnsolvedIssue(int fromIssue) {
+        int issue = solvedIssues.nextClearBit(fromIssue);
+        return issue < issueCount ? issue : -1;
+    }
+
+    /**
+     * Returns the issue with the given issue id, or -1 if there is none.
+     */
+    public int issueOf(int id) {
+        int issue = issueByIssueId.get(id);
+        return issue < issueCount ? issue : -1;
+    }
+
+    /**
+     * Marks an issue as solved or reopens it, updating the open issue state of its transaction.
+     * @param issue - issue to update.
+     * @param solved - new state of the issue.
+     * @return {@code true} if the state changed, {@code false} if the issue already was in that state.
+     */
+    public boolean setIssueSolved(int issue, boolean solved) {
+        checkWritable();
+        if (issue < 0 || issue >= issueCount) {
+            throw new IndexOutOfBoundsException("Unknown issue " + issue);
+        }
+        if (solvedIssues.get(issue) == solved) {
+            return false;
+        }
+        solvedIssues.set(issue, solved);
+        int row = issueRow[issue];
+        boolean open = false;
+        for (int other = firstIssue[row]; other != NO_ISSUE && !open; other = nextIssue[other]) {
+            open = !solvedIssues.get(other);
+        }
+        transactionsWithOpenIssues.set(row, open);
+        if (transitionCount == transitions.length) {
+            transitions = Arrays.copyOf(transitions, transitionCount * 2);
+        }
+        transitions[transitionCount++] = solved ? issue : ~issue;
+        return true;
+    }
+
+    /**
+     * Returns the number of solved state changes made by {@link #setIssueSolved(int, boolean)}.
+     */
+    public int transitionCount() {
+        return transitionCount;
+    }
+
+    /**
+     * Returns the issue changed by a transition.
+     */
+    public int transitionIssue(int transition) {
+        int issue = transitions[transition];
+        return issue < 0 ? ~issue : issue;
+    }
+
+    /**
+     * Returns whether a transition solved its issue, {@code false} if it reopened it.
+     */
+    public boolean transitionSolved(int transition) {
+        return transitions[transition] >= 0;
+    }
+
+    // Client dictionary
+
+    /**
+     * Returns the dictionary encoding the client names of the store.
+     * Parsers can use it to intern names while reading rows for this store.
+     */
+    public ClientDictionary clients() {
+        return clients;
+    }
+
+    /**
+     * Returns the number of distinct clients, senders and beneficiaries together.
+     */
+    public int clientCount() {
+        return clients.size();
+    }
+
+    public String clientName(int clientId) {
+        return clients.name(clientId);
+    }
+
+    /**
+     * Returns the id of the client with the given full name, ignoring case, or {@link ClientDictionary#UNKNOWN}.
+     */
+    public int clientIdOf(String fullName) {
+        return clients.idOf(fullName);
+    }
+
+    // Beneficiary index
+
+    /**
+     * Returns the transactions of the store grouped by beneficiary. The grouping is built on first use and then kept:
+     * rows appended later are sorted and merged into a tail, and the rows are grouped again once the tail outgrows an
+     * eighth of them, so the index costs amortized O(log n) per appended row, plus a linear merge of the tail for the
+     * first query after appends. Snapshots reuse the grouping of their store.
+     * @return index over all rows of the store as it is now.
+     */
+    public BeneficiaryIndex beneficiaryIndex() {
+        int rows = size();
+        BeneficiaryIndex current = beneficiaryIndex;
+        if (current != null && current.size() == rows) {
+            return current;
+        }
+        BeneficiaryIndex grouped = groupedBeneficiaries.get();
+        if (grouped == null || rows - grouped.groupedRows() > Math.max(MIN_BENEFICIARY_TAIL, grouped.groupedRows() / 8)) {
+            grouped = groupedBeneficiaries.accumulateAndGet(BeneficiaryIndex.group(this, rows),
+                    (kept, built) -> kept == null || built.groupedRows() > kept.groupedRows() ? built : kept);
+        }
+        // extend the index handed out last while it is based on the same grouping, so only new rows are sorted
+        boolean extend = current != null && current.size() < rows && current.groupedRows() == grouped.groupedRows();
+        current = (extend ? current : grouped).withSize(this, rows);
+        beneficiaryIndex = current;
+        return current;
+    }
+
+    // Object views
+
+    /**
+     * Materializes the transaction of a row together with its issues.
+     */
+    public TransactionRecord record(int row) {
+        List<Issue> issues = new ArrayList<>(1);
+        // issue chains only grow towards higher issues, a snapshot stops at the ones added after it
+        for (int issue = firstIssue[row]; issue != NO_ISSUE && issue < issueCount; issue = nextIssue[issue]) {
+            issues.add(new Issue(issueId[issue], solvedIssues.get(issue), issueMessage[issue]));
+        }
+        return new TransactionRecord(mtn[row], amount[row],
+                clients.name(senderId[row]), senderAge[row],
+                clients.name(beneficiaryId[row]), beneficiaryAge[row],
+                issues.toArray(new Issue[0]));
+    }
+
+    /**
+     * Streams the records of all rows in row order.
+     */
+    public Stream<TransactionRecord> records() {
+        return IntStream.range(0, size()).mapToObj(this::record);
+    }
+}
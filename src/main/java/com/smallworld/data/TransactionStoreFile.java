@@ -0,0 +1,394 @@
+package com.smallworld.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary file format of a {@link TransactionStore}, which is loaded by memory mapping instead of parsing.
+ * <p>
+ * The file starts with a header: magic, format version, row, issue, client and message counts, the id of the
+ * {@code null} client name and the offset and length of every section. Sections are little endian, 8 byte aligned,
+ * and hold the fixed width transaction and issue columns, the open and solved issue bitsets, (key, row) pairs sorted
+ * by mtn and by issue id for lookups, and two string dictionaries: client names and issue messages, each stored as
+ * end offsets followed by UTF-8 bytes.
+ * <p>
+ * A mapped store reads the columns straight from the mapped file, so the data lives off-heap in the page cache and
+ * loading takes time independent of the number of transactions. Only the two dictionaries, one entry per distinct
+ * client name or issue message, are decoded onto the heap. Every section is mapped as a single buffer, which limits
+ * a section to 2 GB, e.g. 268 million amounts.
+ */
+public class TransactionStoreFile {
+
+    private static final int MAGIC = 0x58545753; // "SWTX"
+
+    private static final int FORMAT_VERSION = 1;
+
+    static final int MTN = 0;
+    static final int AMOUNT = 1;
+    static final int SENDER_ID = 2;
+    static final int SENDER_AGE = 3;
+    static final int BENEFICIARY_ID = 4;
+    static final int BENEFICIARY_AGE = 5;
+    static final int FIRST_ISSUE = 6;
+    static final int OPEN_ROWS = 7;
+    static final int ROWS_BY_MTN = 8;
+    static final int ISSUE_ID = 9;
+    static final int ISSUE_ROW = 10;
+    static final int NEXT_ISSUE = 11;
+    static final int ISSUE_MESSAGE = 12;
+    static final int SOLVED_ISSUES = 13;
+    static final int ISSUES_BY_ISSUE_ID = 14;
+    static final int CLIENT_NAME_ENDS = 15;
+    static final int CLIENT_NAMES = 16;
+    static final int MESSAGE_ENDS = 17;
+    static final int MESSAGES = 18;
+    private static final int SECTION_COUNT = 19;
+
+    private static final int HEADER_SIZE = 8 * Integer.BYTES + SECTION_COUNT * 2 * Long.BYTES;
+
+    /**
+     * Marks the end of an issue chain and a missing issue message.
+     */
+    static final int NONE = -1;
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private TransactionStoreFile() {
+    }
+
+    /**
+     * Writes the store to a file.
+     * @param store - store to write, heap or mapped.
+     * @param filePath - of the file, replaced if it exists.
+     * @throws IOException - when there is error writing the file.
+     */
+    public static void write(TransactionStore store, String filePath) throws IOException {
+        int rows = store.size();
+        int issues = store.issueCount();
+
+        int nullClientId = NONE;
+        byte[][] clientNames = new byte[store.clientCount()][];
+        for (int client = 0; client < clientNames.length; client++) {
+            String name = store.clientName(client);
+            if (name == null) {
+                nullClientId = client;
+                clientNames[client] = new byte[0];
+            } else {
+                clientNames[client] = name.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        Map<String, Integer> messageIds = new HashMap<>();
+        int[] issueMessages = new int[issues];
+        for (int issue = 0; issue < issues; issue++) {
+            String message = store.issueMessage(issue);
+            issueMessages[issue] = message == null ? NONE : messageIds.computeIfAbsent(message, m -> messageIds.size());
+        }
+        byte[][] messages = new byte[messageIds.size()][];
+        messageIds.forEach((message, id) -> messages[id] = message.getBytes(StandardCharsets.UTF_8));
+
+        // issue chains run in issue order within a transaction
+        int[] firstIssue = new int[rows];
+        int[] lastIssue = new int[rows];
+        int[] nextIssue = new int[issues];
+        Arrays.fill(firstIssue, NONE);
+        Arrays.fill(nextIssue, NONE);
+        for (int issue = 0; issue < issues; issue++) {
+            int row = store.issueRow(issue);
+            if (firstIssue[row] == NONE) {
+                firstIssue[row] = issue;
+            } else {
+                nextIssue[lastIssue[row]] = issue;
+            }
+            lastIssue[row] = issue;
+        }
+
+        long[] sectionLengths = new long[SECTION_COUNT];
+        sectionLengths[MTN] = (long) rows * Integer.BYTES;
+        sectionLengths[AMOUNT] = (long) rows * Long.BYTES;
+        sectionLengths[SENDER_ID] = (long) rows * Integer.BYTES;
+        sectionLengths[SENDER_AGE] = (long) rows * Integer.BYTES;
+        sectionLengths[BENEFICIARY_ID] = (long) rows * Integer.BYTES;
+        sectionLengths[BENEFICIARY_AGE] = (long) rows * Integer.BYTES;
+        sectionLengths[FIRST_ISSUE] = (long) rows * Integer.BYTES;
+        sectionLengths[OPEN_ROWS] = bitsetWords(rows) * Long.BYTES;
+        sectionLengths[ROWS_BY_MTN] = (long) rows * 2 * Integer.BYTES;
+        sectionLengths[ISSUE_ID] = (long) issues * Integer.BYTES;
+        sectionLengths[ISSUE_ROW] = (long) issues * Integer.BYTES;
+        sectionLengths[NEXT_ISSUE] = (long) issues * Integer.BYTES;
+        sectionLengths[ISSUE_MESSAGE] = (long) issues * Integer.BYTES;
+        sectionLengths[SOLVED_ISSUES] = bitsetWords(issues) * Long.BYTES;
+        sectionLengths[ISSUES_BY_ISSUE_ID] = (long) issues * 2 * Integer.BYTES;
+        sectionLengths[CLIENT_NAME_ENDS] = (long) clientNames.length * Integer.BYTES;
+        sectionLengths[CLIENT_NAMES] = totalLength(clientNames);
+        sectionLengths[MESSAGE_ENDS] = (long) messages.length * Integer.BYTES;
+        sectionLengths[MESSAGES] = totalLength(messages);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            SectionWriter out = new SectionWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(FORMAT_VERSION);
+            out.putInt(rows);
+            out.putInt(issues);
+            out.putInt(clientNames.length);
+            out.putInt(messages.length);
+            out.putInt(nullClientId);
+            out.putInt(SECTION_COUNT);
+            long offset = align(HEADER_SIZE);
+            for (long length : sectionLengths) {
+                out.putLong(offset);
+                out.putLong(length);
+                offset = align(offset + length);
+            }
+
+            out.align();
+            for (int row = 0; row < rows; row++) {
+                out.putInt(store.mtn(row));
+            }
+            out.align();
+            for (int row = 0; row < rows; row++) {
+                out.putLong(store.amount(row));
+            }
+            out.align();
+            for (int row = 0; row < rows; row++) {
+                out.putInt(store.senderId(row));
+            }
+            out.align();
+            for (int row = 0; row < rows; row++) {
+                out.putInt(store.senderAge(row));
+            }
+            out.align();
+            for (int row = 0; row < rows; row++) {
+                out.putInt(store.beneficiaryId(row));
+            }
+            out.align();
+            for (int row = 0; row < rows; row++) {
+                out.putInt(store.beneficiaryAge(row));
+            }
+            out.align();
+            out.putInts(firstIssue);
+            out.align();
+            out.putBits(rows, store::hasOpenIssues);
+            out.align();
+            out.putSortedPairs(rows, store::mtn);
+            out.align();
+            for (int issue = 0; issue < issues; issue++) {
+                out.putInt(store.issueId(issue));
+            }
+            out.align();
+            for (int issue = 0; issue < issues; issue++) {
+                out.putInt(store.issueRow(issue));
+            }
+            out.align();
+            out.putInts(nextIssue);
+            out.align();
+            out.putInts(issueMessages);
+            out.align();
+            out.putBits(issues, store::isIssueSolved);
+            out.align();
+            out.putSortedPairs(issues, store::issueId);
+            out.align();
+            out.putStrings(clientNames);
+            out.align();
+            out.putStrings(messages);
+            out.flush();
+        }
+    }
+
+    /**
+     * Maps a file written by {@link #write(TransactionStore, String)}. The returned store is read-only and reads its
+     * columns from the mapping, which stays valid after the file is closed.
+     * @param filePath - of the file.
+     * @return read-only store backed by the file.
+     * @throws IOException - when there is error reading the file or it is not a transaction store file.
+     */
+    public static TransactionStore map(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a transaction store file: " + filePath);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a transaction store file: " + filePath);
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported transaction store file version " + version + ": " + filePath);
+            }
+            int rows = header.getInt();
+            int issues = header.getInt();
+            int clientCount = header.getInt();
+            int messageCount = header.getInt();
+            int nullClientId = header.getInt();
+            if (header.getInt() != SECTION_COUNT) {
+                throw new IOException("Corrupt transaction store file: " + filePath);
+            }
+            ByteBuffer[] sections = new ByteBuffer[SECTION_COUNT];
+            for (int section = 0; section < SECTION_COUNT; section++) {
+                long offset = header.getLong();
+                long length = header.getLong();
+                if (offset < HEADER_SIZE || offset + length > channel.size()) {
+                    throw new IOException("Corrupt transaction store file: " + filePath);
+                }
+                sections[section] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            ClientDictionary clients = new ClientDictionary();
+            String[] clientNames = readStrings(sections[CLIENT_NAME_ENDS], sections[CLIENT_NAMES], clientCount);
+            for (int client = 0; client < clientCount; client++) {
+                clients.add(client == nullClientId ? null : clientNames[client]);
+            }
+            String[] messages = readStrings(sections[MESSAGE_ENDS], sections[MESSAGES], messageCount);
+            return new MappedTransactionStore(rows, issues, sections, clients, messages);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer ends, ByteBuffer bytes, int count) {
+        IntBuffer endOffsets = ends.asIntBuffer();
+        String[] strings = new String[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            byte[] encoded = new byte[endOffsets.get(i) - start];
+            bytes.get(start, encoded);
+            strings[i] = new String(encoded, StandardCharsets.UTF_8);
+            start = endOffsets.get(i);
+        }
+        return strings;
+    }
+
+    private static long bitsetWords(int bits) {
+        return (bits + 63L) / 64;
+    }
+
+    private static long totalLength(byte[][] strings) {
+        return Arrays.stream(strings).mapToLong(string -> string.length).sum();
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    @FunctionalInterface
+    private interface IntColumn {
+        int get(int index);
+    }
+
+    @FunctionalInterface
+    private interface BitColumn {
+        boolean get(int index);
+    }
+
+    /**
+     * Buffered little endian output that keeps track of its position, to pad the sections.
+     */
+    private static class SectionWriter {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        private long position;
+
+        private SectionWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+            position += Integer.BYTES;
+        }
+
+        private void putLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+            position += Long.BYTES;
+        }
+
+        private void putInts(int[] values) throws IOException {
+            for (int value : values) {
+                putInt(value);
+            }
+        }
+
+        private void putBits(int count, BitColumn bits) throws IOException {
+            for (int word = 0; word < bitsetWords(count); word++) {
+                long value = 0;
+                for (int bit = 0; bit < 64 && word * 64 + bit < count; bit++) {
+                    if (bits.get(word * 64 + bit)) {
+                        value |= 1L << bit;
+                    }
+                }
+                putLong(value);
+            }
+        }
+
+        /**
+         * Writes the (key, index) pairs of all indexes sorted by key, then index.
+         */
+        private void putSortedPairs(int count, IntColumn keys) throws IOException {
+            long[] pairs = new long[count];
+            for (int index = 0; index < count; index++) {
+                pairs[index] = ((long) keys.get(index) << 32) | index;
+            }
+            Arrays.sort(pairs);
+            for (long pair : pairs) {
+                putInt((int) (pair >> 32));
+                putInt((int) pair);
+            }
+        }
+
+        /**
+         * Writes the end offsets of the strings, then their bytes.
+         */
+        private void putStrings(byte[][] strings) throws IOException {
+            int end = 0;
+            for (byte[] string : strings) {
+                end += string.length;
+                putInt(end);
+            }
+            align();
+            for (byte[] string : strings) {
+                for (int start = 0; start < string.length; ) {
+                    ensureRemaining(1);
+                    int length = Math.min(buffer.remaining(), string.length - start);
+                    buffer.put(string, start, length);
+                    start += length;
+                    position += length;
+                }
+            }
+        }
+
+        private void align() throws IOException {
+            while (position % 8 != 0) {
+                ensureRemaining(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.smallworld.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.LongSupplier;
+
+/**
+ * Entry point of the instrumentation of the parser and the fetchers. Measurements go to the installed
+ * {@link MetricsRecorder}, which is {@link MetricsRecorder#NOOP} until {@link #install(MetricsRecorder)} is called.
+ * While it is, timing an operation costs a volatile read and returns a shared instance, and counters are not
+ * touched, so the instrumentation can stay in the hot paths.
+ * <p>
+ * Names of the measurements:
+ * <ul>
+ *     <li>{@code parser.<method>}: time to read a file, per {@link com.smallworld.JsonFileParser} method;</li>
+ *     <li>{@code parser.rows}: json rows parsed, {@code parser.transactions}: distinct transactions they held, whose
+ *     ratio to the rows is the deduplication ratio of the transaction/issue join;</li>
+ *     <li>{@code parser.bytes}: size of the files read, for the throughput with the parser times;</li>
+ *     <li>{@code fetcher.<query>}: time to answer a query, per {@link com.smallworld.TransactionDataFetcher} query,
+ *     on the calling thread only for parallel fetchers;</li>
+ *     <li>{@code shards.<query>}: time to scatter a query to the shards of a
+ *     {@link com.smallworld.ShardedTransactionDataFetcher} and gather their answers, before they are merged;</li>
+ *     <li>{@code fetcher.appendedRows}: rows appended to fetchers;</li>
+ *     <li>{@code async.batches}: batches run by {@link com.smallworld.AsyncTransactionDataFetcher}s,
+ *     {@code async.batchedClients}: distinct clients they looked up, whose ratio is the mean batch size.</li>
+ * </ul>
+ */
+public final class Metrics {
+
+    private static volatile MetricsRecorder recorder = MetricsRecorder.NOOP;
+
+    private Metrics() {
+    }
+
+    /**
+     * Sends the measurements from now on to the given recorder.
+     * @param metricsRecorder - recorder, {@link MetricsRecorder#NOOP} to turn the instrumentation off.
+     */
+    public static void install(MetricsRecorder metricsRecorder) {
+        recorder = metricsRecorder == null ? MetricsRecorder.NOOP : metricsRecorder;
+    }
+
+    /**
+     * Returns the installed recorder.
+     */
+    public static MetricsRecorder recorder() {
+        return recorder;
+    }
+
+    /**
+     * Returns whether measurements are recorded, for instrumentation that has to compute what it records.
+     */
+    public static boolean isEnabled() {
+        return recorder != MetricsRecorder.NOOP;
+    }
+
+    /**
+     * Starts timing an operation, to be closed when it ends, preferably with try-with-resources.
+     * @param timer - name of the operation.
+     * @return running timing, a shared instance doing nothing while the instrumentation is off.
+     */
+    public static Timing time(String timer) {
+        MetricsRecorder current = recorder;
+        return current == MetricsRecorder.NOOP ? Timing.OFF : new Timing(current, timer);
+    }
+
+    /**
+     * Adds to a counter.
+     * @param counter - name of the counter.
+     * @param delta - amount to add.
+     */
+    public static void increment(String counter, long delta) {
+        MetricsRecorder current = recorder;
+        if (current != MetricsRecorder.NOOP) {
+            current.increment(counter, delta);
+        }
+    }
+
+    /**
+     * Registers a gauge with the installed recorder, see {@link MetricsRecorder#gauge(String, LongSupplier)}.
+     */
+    public static void gauge(String gauge, LongSupplier value) {
+        recorder.gauge(gauge, value);
+    }
+
+    /**
+     * Timing of one operation, recorded when closed.
+     */
+    public static final class Timing implements AutoCloseable {
+
+        private static final Timing OFF = new Timing(null, null);
+
+        private final MetricsRecorder recorder;
+
+        private final String timer;
+
+        private final long start;
+
+        private final long allocatedAtStart;
+
+        private Timing(MetricsRecorder recorder, String timer) {
+            this.recorder = recorder;
+            this.timer = timer;
+            this.allocatedAtStart = recorder != null && recorder.tracksAllocation() ? allocatedBytes() : -1;
+            this.start = recorder != null ? System.nanoTime() : 0;
+        }
+
+        @Override
+        public void close() {
+            if (recorder == null) {
+                return;
+            }
+            long nanos = System.nanoTime() - start;
+            long allocated = allocatedAtStart >= 0 ? allocatedBytes() - allocatedAtStart : -1;
+            recorder.recordTime(timer, nanos, allocated);
+        }
+
+        private static long allocatedBytes() {
+            return Allocation.THREADS == null ? -1 : Allocation.THREADS.getCurrentThreadAllocatedBytes();
+        }
+    }
+
+    /**
+     * Holds the thread allocation counter, looked up the first time allocation is tracked.
+     */
+    private static final class Allocation {
+
+        private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+        private static com.sun.management.ThreadMXBean threads() {
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+                return (com.sun.management.ThreadMXBean) threads;
+            }
+            return null;
+        }
+    }
+}
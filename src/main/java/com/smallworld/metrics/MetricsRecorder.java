@@ -0,0 +1,59 @@
+package com.smallworld.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Receives the measurements of the instrumented code, see {@link Metrics}. Implement it to forward measurements to
+ * a monitoring library, or use {@link MetricsRegistry}, which keeps them in memory and publishes them through JMX.
+ * Implementations are called from any thread and must be thread-safe.
+ */
+public interface MetricsRecorder {
+
+    /**
+     * Recorder that drops every measurement, installed until another one is.
+     */
+    MetricsRecorder NOOP = new MetricsRecorder() {
+        @Override
+        public void recordTime(String timer, long nanos, long allocatedBytes) {
+        }
+
+        @Override
+        public void increment(String counter, long delta) {
+        }
+
+        @Override
+        public void gauge(String gauge, LongSupplier value) {
+        }
+    };
+
+    /**
+     * Records one timed operation.
+     * @param timer - name of the operation.
+     * @param nanos - time the operation took.
+     * @param allocatedBytes - bytes the calling thread allocated during the operation, -1 unless
+     * {@link #tracksAllocation()}.
+     */
+    void recordTime(String timer, long nanos, long allocatedBytes);
+
+    /**
+     * Adds to a counter.
+     * @param counter - name of the counter.
+     * @param delta - amount to add.
+     */
+    void increment(String counter, long delta);
+
+    /**
+     * Registers a value that is read when the metrics are, replacing the gauge of the same name.
+     * @param gauge - name of the gauge.
+     * @param value - reads the current value, from any thread.
+     */
+    void gauge(String gauge, LongSupplier value);
+
+    /**
+     * Returns whether timed operations measure the bytes they allocate, which costs two reads of a thread
+     * allocation counter per operation.
+     */
+    default boolean tracksAllocation() {
+        return false;
+    }
+}
@@ -0,0 +1,188 @@
+package com.smallworld.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the measurements in memory: a {@link LatencyHistogram} per timer, and counters and gauges by name.
+ * They are read through the pull API, e.g. {@link #timer(String)} or {@link #getTimers()}, or through JMX once
+ * {@link #registerMBean()} was called. Metrics are created on first use and live as long as the registry.
+ * <p>
+ * Typical use: {@code Metrics.install(new MetricsRegistry().registerMBean())}.
+ */
+public class MetricsRegistry implements MetricsRecorder, MetricsRegistryMXBean {
+
+    /**
+     * Name the registry is published under by {@link #registerMBean()}.
+     */
+    public static final String DEFAULT_OBJECT_NAME = "com.smallworld:type=Metrics";
+
+    private final boolean trackAllocation;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    public MetricsRegistry() {
+        this(false);
+    }
+
+    /**
+     * Creates an empty registry.
+     * @param trackAllocation - whether timers also measure the bytes allocated by the timed operations.
+     */
+    public MetricsRegistry(boolean trackAllocation) {
+        this.trackAllocation = trackAllocation;
+    }
+
+    @Override
+    public void recordTime(String timer, long nanos, long allocatedBytes) {
+        Timer recorded = timers.computeIfAbsent(timer, name -> new Timer());
+        recorded.histogram.record(nanos);
+        if (allocatedBytes >= 0) {
+            recorded.allocatedBytes.add(allocatedBytes);
+        }
+    }
+
+    @Override
+    public void increment(String counter, long delta) {
+        counters.computeIfAbsent(counter, name -> new LongAdder()).add(delta);
+    }
+
+    @Override
+    public void gauge(String gauge, LongSupplier value) {
+        gauges.put(gauge, value);
+    }
+
+    @Override
+    public boolean tracksAllocation() {
+        return trackAllocation;
+    }
+
+    /**
+     * Returns the statistics of a timer.
+     * @param name - name of the timer.
+     * @return statistics, with a count of 0 for a timer that never ran.
+     */
+    public TimerSnapshot timer(String name) {
+        Timer timer = timers.get(name);
+        return timer == null ? new Timer().snapshot(trackAllocation) : timer.snapshot(trackAllocation);
+    }
+
+    /**
+     * Returns the latency distribution of a timer, e.g. for other percentiles than the snapshots have.
+     * @param name - name of the timer.
+     * @return histogram, empty for a timer that never ran.
+     */
+    public LatencyHistogram histogram(String name) {
+        Timer timer = timers.get(name);
+        return timer == null ? new LatencyHistogram() : timer.histogram;
+    }
+
+    /**
+     * Returns the value of a counter, 0 for a counter never incremented.
+     */
+    public long counter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Returns the current value of a gauge.
+     * @throws IllegalArgumentException - when no gauge has that name.
+     */
+    public long gauge(String name) {
+        LongSupplier gauge = gauges.get(name);
+        if (gauge == null) {
+            throw new IllegalArgumentException("Unknown gauge: " + name);
+        }
+        return gauge.getAsLong();
+    }
+
+    @Override
+    public Map<String, TimerSnapshot> getTimers() {
+        Map<String, TimerSnapshot> snapshots = new TreeMap<>();
+        timers.forEach((name, timer) -> snapshots.put(name, timer.snapshot(trackAllocation)));
+        return snapshots;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new TreeMap<>();
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        return values;
+    }
+
+    @Override
+    public void reset() {
+        timers.clear();
+        counters.clear();
+    }
+
+    /**
+     * Publishes the registry on the platform MBean server under {@link #DEFAULT_OBJECT_NAME}.
+     * @return this registry.
+     * @throws IllegalStateException - when the name is taken, e.g. by another registry.
+     */
+    public MetricsRegistry registerMBean() {
+        return registerMBean(DEFAULT_OBJECT_NAME);
+    }
+
+    /**
+     * Publishes the registry on the platform MBean server.
+     * @param objectName - JMX name of the registry.
+     * @return this registry.
+     * @throws IllegalStateException - when the name is invalid or taken.
+     */
+    public MetricsRegistry registerMBean(String objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(objectName));
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the metrics as " + objectName, e);
+        }
+        return this;
+    }
+
+    /**
+     * Removes the registry from the platform MBean server, if it was published under the given name.
+     * @param objectName - JMX name of the registry.
+     */
+    public void unregisterMBean(String objectName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister the metrics " + objectName, e);
+        }
+    }
+
+    private static class Timer {
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        private TimerSnapshot snapshot(boolean trackAllocation) {
+            return new TimerSnapshot(histogram, trackAllocation ? allocatedBytes.sum() : -1);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.smallworld.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of a {@link MetricsRegistry}, as published through JMX.
+ */
+public interface MetricsRegistryMXBean {
+
+    /**
+     * Returns the statistics of every timer, by name.
+     */
+    Map<String, TimerSnapshot> getTimers();
+
+    /**
+     * Returns the value of every counter, by name.
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Returns the current value of every gauge, by name.
+     */
+    Map<String, Long> getGauges();
+
+    /**
+     * Drops the recorded timings and sets the counters back to 0. Gauges stay registered.
+     */
+    void reset();
+}
@@ -0,0 +1,78 @@
+package com.smallworld.metrics;
+
+/**
+ * Statistics of a timer when they were read. Instances are immutable.
+ */
+public class TimerSnapshot {
+
+    private final long count;
+
+    private final long totalNanos;
+
+    private final long p50Nanos;
+
+    private final long p95Nanos;
+
+    private final long p99Nanos;
+
+    private final long maxNanos;
+
+    private final long allocatedBytes;
+
+    TimerSnapshot(LatencyHistogram histogram, long allocatedBytes) {
+        this.count = histogram.count();
+        this.totalNanos = histogram.totalNanos();
+        this.p50Nanos = histogram.percentileNanos(50);
+        this.p95Nanos = histogram.percentileNanos(95);
+        this.p99Nanos = histogram.percentileNanos(99);
+        this.maxNanos = histogram.maxNanos();
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Returns the number of timed operations.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the time taken by all operations, e.g. to compute rows per second with a row counter.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public double getMeanNanos() {
+        return count == 0 ? 0 : (double) totalNanos / count;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP95Nanos() {
+        return p95Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * Returns the bytes allocated by the threads running the operations, -1 unless the registry tracks allocation.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", p50=" + p50Nanos + "ns, p95=" + p95Nanos + "ns, p99=" + p99Nanos
+                + "ns, max=" + maxNanos + "ns" + (allocatedBytes >= 0 ? ", allocated=" + allocatedBytes + "B" : "");
+    }
+}
@@ -0,0 +1,70 @@
+import com.smallworld.data.Amounts;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AmountsTest {
+
+    private static long parse(String amount) {
+        return Amounts.parseMinorUnits(amount.toCharArray(), 0, amount.length());
+    }
+
+    /**
+     * Tests decoding of plain decimal amounts into minor units.
+     */
+    @Test
+    public void testParseMinorUnits() {
+        Assertions.assertEquals(43020, parse("430.2"));
+        Assertions.assertEquals(9766, parse("97.66"));
+        Assertions.assertEquals(98500, parse("985"));
+        Assertions.assertEquals(98500, parse("985.0"));
+        Assertions.assertEquals(-150, parse("-1.5"));
+        Assertions.assertEquals(100000, parse("1e3"));
+    }
+
+    /**
+     * Tests that digits past the scale are rounded half to even.
+     */
+    @Test
+    public void testParseMinorUnits_Rounding() {
+        Assertions.assertEquals(101, parse("1.014"));
+        Assertions.assertEquals(102, parse("1.015"));
+        Assertions.assertEquals(102, parse("1.025"));
+        Assertions.assertEquals(103, parse("1.0251"));
+        Assertions.assertEquals(103, parse("1.026"));
+    }
+
+    /**
+     * Tests that amounts are kept to the cent, so a third decimal place no longer reaches the sums.
+     */
+    @Test
+    public void testThirdDecimalIsRounded() {
+        Assertions.assertEquals(12, Amounts.toMinorUnits(0.125));
+        Assertions.assertEquals(14, Amounts.toMinorUnits(0.135));
+        Assertions.assertEquals(-12, parse("-0.125"));
+        long total = parse("100.004") + parse("200.004") + parse("0.005");
+        Assertions.assertEquals(30000, total);
+        Assertions.assertEquals(300.0, Amounts.toDouble(total));
+    }
+
+    /**
+     * Tests that text that is not a number is rejected.
+     */
+    @Test
+    public void testParseMinorUnits_Invalid() {
+        Assertions.assertThrows(NumberFormatException.class, () -> parse("abc"));
+        Assertions.assertThrows(NumberFormatException.class, () -> parse("-"));
+        Assertions.assertThrows(NumberFormatException.class, () -> parse("."));
+        Assertions.assertThrows(NumberFormatException.class, () -> parse("-."));
+        Assertions.assertThrows(NumberFormatException.class, () -> parse(".e5"));
+        Assertions.assertThrows(ArithmeticException.class, () -> parse("99999999999999999999"));
+    }
+
+    /**
+     * Tests the conversions between minor units and decimal amounts.
+     */
+    @Test
+    public void testConversions() {
+        Assertions.assertEquals(2889.17, Amounts.toDouble(288917));
+        Assertions.assertEquals(288917, Amounts.toMinorUnits(2889.17));
+    }
+}
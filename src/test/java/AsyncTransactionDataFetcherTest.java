@@ -0,0 +1,107 @@
+import com.smallworld.AsyncTransactionDataFetcher;
+import com.smallworld.ConcurrentTransactionDataFetcher;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.metrics.Metrics;
+import com.smallworld.metrics.MetricsRecorder;
+import com.smallworld.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class AsyncTransactionDataFetcherTest {
+
+    @AfterEach
+    public void tearDown() {
+        Metrics.install(MetricsRecorder.NOOP);
+    }
+
+    /**
+     * Tests that concurrent requests get the answers of the synchronous queries and are coalesced into few batches.
+     */
+    @Test
+    public void testCoalescesConcurrentRequests() throws Exception {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher(generate(20_000, 500));
+        MetricsRegistry registry = new MetricsRegistry();
+        Metrics.install(registry);
+        int requests = 5_000;
+        List<CompletableFuture<Double>> sentAmounts = new ArrayList<>();
+        List<CompletableFuture<Boolean>> openIssues = new ArrayList<>();
+        try (AsyncTransactionDataFetcher async = new AsyncTransactionDataFetcher(fetcher, Duration.ofMillis(20), 1_000);
+             ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Void>> submitted = new ArrayList<>();
+            for (int request = 0; request < requests; request++) {
+                String client = "Client " + request % 700;
+                CompletableFuture<Double> sentAmount = new CompletableFuture<>();
+                CompletableFuture<Boolean> openIssue = new CompletableFuture<>();
+                sentAmounts.add(sentAmount);
+                openIssues.add(openIssue);
+                submitted.add(CompletableFuture.runAsync(() -> {
+                    async.getTotalTransactionAmountSentBy(client).whenComplete((sum, e) -> sentAmount.complete(sum));
+                    async.hasOpenComplianceIssues(client).whenComplete((open, e) -> openIssue.complete(open));
+                }, callers));
+            }
+            CompletableFuture.allOf(submitted.toArray(new CompletableFuture<?>[0])).join();
+        }
+        for (int request = 0; request < requests; request++) {
+            String client = "Client " + request % 700;
+            Assertions.assertEquals(fetcher.getTotalTransactionAmountSentBy(client), sentAmounts.get(request).getNow(null));
+            Assertions.assertEquals(fetcher.hasOpenComplianceIssues(client), openIssues.get(request).getNow(null));
+        }
+        Assertions.assertTrue(registry.counter("async.batches") < requests / 10, "batches: " + registry.counter("async.batches"));
+        Assertions.assertTrue(registry.counter("async.batchedClients") <= registry.counter("async.batches") * 1_000L);
+    }
+
+    /**
+     * Tests that batches of a concurrent fetcher see the latest snapshot, and that requests fail once closed.
+     */
+    @Test
+    public void testConcurrentFetcherAndClose() {
+        ConcurrentTransactionDataFetcher fetcher = new ConcurrentTransactionDataFetcher(generate(100, 10));
+        AsyncTransactionDataFetcher async = new AsyncTransactionDataFetcher(fetcher, Duration.ZERO, 10);
+        double before = async.getTotalTransactionAmountSentBy("Client 3").join();
+        Assertions.assertEquals(fetcher.getTotalTransactionAmountSentBy("Client 3"), before);
+
+        Transaction transaction = new Transaction();
+        transaction.setMtn(1_000);
+        transaction.setAmount(250);
+        transaction.setSenderFullName("client 3");
+        transaction.setBeneficiaryFullName("Client 4");
+        fetcher.append(transaction);
+        Assertions.assertEquals(before + 2.5, async.getTotalTransactionAmountSentBy("Client 3").join(), 1e-9);
+        Assertions.assertFalse(async.hasOpenComplianceIssues("Nobody").join());
+
+        async.close();
+        CompletionException closed = Assertions.assertThrows(CompletionException.class,
+                () -> async.hasOpenComplianceIssues("Client 3").join());
+        Assertions.assertInstanceOf(IllegalStateException.class, closed.getCause());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new AsyncTransactionDataFetcher(fetcher, Duration.ofMillis(-1), 10));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new AsyncTransactionDataFetcher(fetcher, Duration.ZERO, 0));
+    }
+
+    private static List<Transaction> generate(int rows, int clients) {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int mtn = 0; mtn < rows; mtn++) {
+            Transaction transaction = new Transaction();
+            transaction.setMtn(mtn);
+            transaction.setAmount(100 + mtn * 7919L % 10_000);
+            transaction.setSenderFullName("Client " + mtn % clients);
+            transaction.setBeneficiaryFullName("Client " + mtn * 31 % clients);
+            if (mtn % 13 == 0) {
+                transaction.setIssueId(mtn);
+                transaction.setIssueSolved(mtn % 2 == 0);
+            }
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,134 @@
+import com.smallworld.CachingTransactionDataFetcher;
+import com.smallworld.ConcurrentTransactionDataFetcher;
+import com.smallworld.JsonFileParser;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+public class CachingTransactionDataFetcherTest {
+
+    /**
+     * transaction data for testing purpose.
+     */
+    private static List<Transaction> transactionList;
+
+    /**
+     * Reads the test transactions.
+     * @throws IOException If there is an error in reading the JSON file.
+     */
+    @BeforeAll
+    public static void setUp() throws IOException {
+        transactionList = JsonFileParser.readTransactionJsonFile("transactions.json");
+    }
+
+    /**
+     * Tests that cached answers are the answers of the wrapped fetcher, and that repeated queries hit the cache.
+     */
+    @Test
+    public void testMatchesTransactionDataFetcher() {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
+        CachingTransactionDataFetcher cachingFetcher = new CachingTransactionDataFetcher(dataFetcher, 100);
+
+        for (int round = 0; round < 2; round++) {
+            Assertions.assertEquals(dataFetcher.getTotalTransactionAmount(), cachingFetcher.getTotalTransactionAmount());
+            Assertions.assertEquals(dataFetcher.getTotalTransactionAmountSentBy("Tom Shelby"),
+                    cachingFetcher.getTotalTransactionAmountSentBy("Tom Shelby"));
+            Assertions.assertEquals(dataFetcher.getMaxTransactionAmount(), cachingFetcher.getMaxTransactionAmount());
+            Assertions.assertEquals(dataFetcher.countUniqueClients(), cachingFetcher.countUniqueClients());
+            Assertions.assertTrue(cachingFetcher.hasOpenComplianceIssues("Tom Shelby"));
+            Assertions.assertFalse(cachingFetcher.hasOpenComplianceIssues("Aunt Polly"));
+            Assertions.assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), cachingFetcher.getTransactionsByBeneficiaryName());
+            Assertions.assertEquals(dataFetcher.getUnsolvedIssueIds(), cachingFetcher.getUnsolvedIssueIds());
+            Assertions.assertEquals(dataFetcher.getAllSolvedIssueMessages(), cachingFetcher.getAllSolvedIssueMessages());
+            Assertions.assertEquals(dataFetcher.getTop3TransactionsByAmount(), cachingFetcher.getTop3TransactionsByAmount());
+            Assertions.assertEquals(dataFetcher.getTopSender(), cachingFetcher.getTopSender());
+            Assertions.assertEquals(dataFetcher.getTopNSenders(2), cachingFetcher.getTopNSenders(2));
+        }
+        Assertions.assertEquals(12, cachingFetcher.missCount());
+        Assertions.assertEquals(12, cachingFetcher.hitCount());
+        Assertions.assertEquals(12, cachingFetcher.size());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> cachingFetcher.getUnsolvedIssueIds().clear());
+    }
+
+    /**
+     * Tests that the least recently used answer is evicted when the cache is full.
+     */
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        CachingTransactionDataFetcher cachingFetcher = new CachingTransactionDataFetcher(new TransactionDataFetcher(transactionList), 2);
+
+        cachingFetcher.getTotalTransactionAmountSentBy("Tom Shelby");
+        cachingFetcher.getTotalTransactionAmountSentBy("Aunt Polly");
+        cachingFetcher.getTotalTransactionAmountSentBy("Tom Shelby");
+        cachingFetcher.getTotalTransactionAmountSentBy("Grace Burgess");
+        Assertions.assertEquals(1, cachingFetcher.evictionCount());
+        Assertions.assertEquals(2, cachingFetcher.size());
+
+        cachingFetcher.getTotalTransactionAmountSentBy("Tom Shelby");
+        Assertions.assertEquals(2, cachingFetcher.hitCount());
+        cachingFetcher.getTotalTransactionAmountSentBy("Aunt Polly");
+        Assertions.assertEquals(4, cachingFetcher.missCount());
+        Assertions.assertEquals(2, cachingFetcher.evictionCount());
+    }
+
+    /**
+     * Tests that appending data and solving issues drop the cached answers.
+     */
+    @Test
+    public void testInvalidatesOnDataChange() {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
+        CachingTransactionDataFetcher cachingFetcher = new CachingTransactionDataFetcher(dataFetcher, 100);
+
+        Assertions.assertEquals(2889.17, cachingFetcher.getTotalTransactionAmount());
+        Assertions.assertTrue(cachingFetcher.hasOpenComplianceIssues("Alfie Solomons"));
+
+        dataFetcher.append(transaction(1, "Ada Thorne", 100000));
+        Assertions.assertEquals(3889.17, cachingFetcher.getTotalTransactionAmount());
+        Assertions.assertEquals(Optional.of("Ada Thorne"), cachingFetcher.getTopSender());
+        Assertions.assertEquals(1, cachingFetcher.invalidationCount());
+
+        dataFetcher.setIssueSolved(1, true);
+        Assertions.assertFalse(cachingFetcher.hasOpenComplianceIssues("Alfie Solomons"));
+        Assertions.assertEquals(Optional.of("Ada Thorne"), cachingFetcher.getTopSender());
+        Assertions.assertEquals(2, cachingFetcher.invalidationCount());
+
+        // unchanged state and a row of a known mtn without an issue leave the data as it was
+        dataFetcher.setIssueSolved(1, true);
+        dataFetcher.append(transaction(1, "Ada Thorne", 100000));
+        Assertions.assertEquals(Optional.of("Ada Thorne"), cachingFetcher.getTopSender());
+        Assertions.assertEquals(2, cachingFetcher.invalidationCount());
+        Assertions.assertEquals(1, cachingFetcher.hitCount());
+    }
+
+    /**
+     * Tests caching the answers of a concurrent fetcher, which are dropped when new data is published.
+     */
+    @Test
+    public void testConcurrentTransactionDataFetcher() {
+        ConcurrentTransactionDataFetcher concurrentFetcher = new ConcurrentTransactionDataFetcher(transactionList);
+        CachingTransactionDataFetcher cachingFetcher = new CachingTransactionDataFetcher(concurrentFetcher, 100);
+
+        Assertions.assertEquals(concurrentFetcher.getUnsolvedIssueIds(), cachingFetcher.getUnsolvedIssueIds());
+        Assertions.assertEquals(concurrentFetcher.getUnsolvedIssueIds(), cachingFetcher.getUnsolvedIssueIds());
+        Assertions.assertEquals(1, cachingFetcher.hitCount());
+
+        concurrentFetcher.setIssueSolved(1, true);
+        Assertions.assertFalse(cachingFetcher.getUnsolvedIssueIds().contains(1));
+        Assertions.assertEquals(1, cachingFetcher.invalidationCount());
+    }
+
+    private static Transaction transaction(int mtn, String sender, long amount) {
+        Transaction transaction = new Transaction();
+        transaction.setMtn(mtn);
+        transaction.setAmount(amount);
+        transaction.setSenderFullName(sender);
+        transaction.setBeneficiaryFullName("Beneficiary " + mtn);
+        return transaction;
+    }
+}
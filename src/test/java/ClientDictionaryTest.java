@@ -0,0 +1,117 @@
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.ClientDictionary;
+import com.smallworld.data.Transaction;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+public class ClientDictionaryTest {
+
+    /**
+     * Tests that names differing only in case share one id and keep the first spelling.
+     */
+    @Test
+    public void testIgnoresCase() {
+        ClientDictionary clients = new ClientDictionary();
+        int tom = clients.add("Tom Shelby");
+        Assertions.assertEquals(tom, clients.add("TOM SHELBY"));
+        Assertions.assertEquals(tom, clients.idOf("tom shelby"));
+        Assertions.assertEquals("Tom Shelby", clients.name(tom));
+        Assertions.assertNotEquals(tom, clients.add("Arthur Shelby"));
+        Assertions.assertEquals(2, clients.size());
+    }
+
+    /**
+     * Tests interning names straight from a character buffer.
+     */
+    @Test
+    public void testIntern() {
+        ClientDictionary clients = new ClientDictionary();
+        char[] buffer = "\"Grace Burgess\",\"GRACE BURGESS\"".toCharArray();
+        String first = clients.intern(buffer, 1, 13);
+        String second = clients.intern(buffer, 17, 13);
+        Assertions.assertEquals("Grace Burgess", first);
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1, clients.size());
+    }
+
+    /**
+     * Tests lookups of names the dictionary does not know.
+     */
+    @Test
+    public void testUnknown() {
+        ClientDictionary clients = new ClientDictionary();
+        Assertions.assertEquals(ClientDictionary.UNKNOWN, clients.idOf("Tom Shelby"));
+        Assertions.assertEquals(ClientDictionary.UNKNOWN, clients.idOf(null));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> clients.name(0));
+
+        int nobody = clients.add(null);
+        Assertions.assertEquals(nobody, clients.idOf(null));
+        Assertions.assertNull(clients.name(nobody));
+    }
+
+    /**
+     * Tests that the table keeps every client when it grows.
+     */
+    @Test
+    public void testGrows() {
+        ClientDictionary clients = new ClientDictionary();
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertEquals(i, clients.add("Client " + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertEquals(i, clients.idOf("CLIENT " + i));
+        }
+        for (int i = 1000; i < 2000; i++) {
+            char[] name = ("Client " + i).toCharArray();
+            Assertions.assertEquals("Client " + i, clients.intern(name, 0, name.length));
+        }
+        Assertions.assertEquals(2000, clients.size());
+    }
+
+    /**
+     * Tests that a new dictionary grows while interning, which used to fail once the first table was full.
+     */
+    @Test
+    public void testGrowsWhileInterning() {
+        ClientDictionary clients = new ClientDictionary();
+        char[] buffer = new char[16];
+        for (int i = 0; i < 100; i++) {
+            String name = "Client " + i;
+            name.getChars(0, name.length(), buffer, 0);
+            Assertions.assertEquals(name, clients.intern(buffer, 0, name.length()));
+        }
+        Assertions.assertEquals(100, clients.size());
+        Assertions.assertEquals(42, clients.idOf("client 42"));
+    }
+
+    /**
+     * Tests that the fetcher counts and ranks clients spelled in different cases as one client.
+     */
+    @Test
+    public void testFetcherMergesCaseVariants() {
+        List<Transaction> transactions = Arrays.asList(
+                transaction(1, 100, "Tom Shelby", "Grace Burgess"),
+                transaction(2, 150, "tom shelby", "GRACE BURGESS"),
+                transaction(3, 200, "Arthur Shelby", "Tom Shelby"));
+        TransactionDataFetcher fetcher = new TransactionDataFetcher(transactions);
+
+        Assertions.assertEquals(3, fetcher.countUniqueClients());
+        Assertions.assertEquals(2.5, fetcher.getTotalTransactionAmountSentBy("TOM SHELBY"));
+        Assertions.assertEquals(Optional.of("Tom Shelby"), fetcher.getTopSender());
+        Assertions.assertEquals(3, fetcher.indexed().countUniqueClients());
+        Assertions.assertEquals(Optional.of("Tom Shelby"), fetcher.indexed().getTopSender());
+    }
+
+    private static Transaction transaction(int mtn, long amount, String sender, String beneficiary) {
+        Transaction transaction = new Transaction();
+        transaction.setMtn(mtn);
+        transaction.setAmount(amount);
+        transaction.setSenderFullName(sender);
+        transaction.setBeneficiaryFullName(beneficiary);
+        return transaction;
+    }
+}
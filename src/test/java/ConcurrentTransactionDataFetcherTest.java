@@ -0,0 +1,192 @@
+import com.smallworld.ConcurrentTransactionDataFetcher;
+import com.smallworld.JsonFileParser;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class ConcurrentTransactionDataFetcherTest {
+
+    /**
+     * transaction data for testing purpose.
+     */
+    private static List<Transaction> transactionList;
+
+    /**
+     * Reads the test transactions.
+     * @throws IOException If there is an error in reading the JSON file.
+     */
+    @BeforeAll
+    public static void setUp() throws IOException {
+        transactionList = JsonFileParser.readTransactionJsonFile("transactions.json");
+    }
+
+    /**
+     * Tests that the concurrent fetcher answers like the single threaded one.
+     */
+    @Test
+    public void testMatchesTransactionDataFetcher() {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
+        ConcurrentTransactionDataFetcher concurrentFetcher = new ConcurrentTransactionDataFetcher(transactionList);
+
+        Assertions.assertEquals(dataFetcher.getTotalTransactionAmount(), concurrentFetcher.getTotalTransactionAmount());
+        Assertions.assertEquals(dataFetcher.getTotalTransactionAmountSentBy("Tom Shelby"),
+                concurrentFetcher.getTotalTransactionAmountSentBy("Tom Shelby"));
+        Assertions.assertEquals(dataFetcher.getMaxTransactionAmount(), concurrentFetcher.getMaxTransactionAmount());
+        Assertions.assertEquals(dataFetcher.countUniqueClients(), concurrentFetcher.countUniqueClients());
+        Assertions.assertEquals(dataFetcher.hasOpenComplianceIssues("Tom Shelby"), concurrentFetcher.hasOpenComplianceIssues("Tom Shelby"));
+        Assertions.assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), concurrentFetcher.getTransactionsByBeneficiaryName());
+        Assertions.assertEquals(dataFetcher.getUnsolvedIssueIds(), concurrentFetcher.getUnsolvedIssueIds());
+        Assertions.assertEquals(dataFetcher.getAllSolvedIssueMessages(), concurrentFetcher.getAllSolvedIssueMessages());
+        Assertions.assertEquals(dataFetcher.getTop3TransactionsByAmount(), concurrentFetcher.getTop3TransactionsByAmount());
+        Assertions.assertEquals(dataFetcher.getTopSender(), concurrentFetcher.getTopSender());
+    }
+
+    /**
+     * Tests that a snapshot keeps answering for its version while new data is published.
+     */
+    @Test
+    public void testSnapshot() {
+        ConcurrentTransactionDataFetcher concurrentFetcher = new ConcurrentTransactionDataFetcher(transactionList);
+        TransactionDataFetcher snapshot = concurrentFetcher.snapshot();
+        long version = concurrentFetcher.version();
+
+        concurrentFetcher.append(transaction(1, "Ada Thorne", 100000));
+        concurrentFetcher.setIssueSolved(1, true);
+
+        Assertions.assertEquals(version + 2, concurrentFetcher.version());
+        Assertions.assertEquals(2889.17, snapshot.getTotalTransactionAmount());
+        Assertions.assertTrue(snapshot.hasOpenComplianceIssues("Alfie Solomons"));
+        Assertions.assertEquals(3889.17, concurrentFetcher.getTotalTransactionAmount());
+        Assertions.assertEquals(1000.0, concurrentFetcher.getMaxTransactionAmount());
+        Assertions.assertFalse(concurrentFetcher.hasOpenComplianceIssues("Alfie Solomons"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.append(transaction(2, "Ada Thorne", 1)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> concurrentFetcher.setIssueSolved(12345, true));
+    }
+
+    /**
+     * Tests that the index of every version read answers like a fetcher built from scratch over the same rows,
+     * while the indexes of earlier versions keep answering for theirs.
+     */
+    @Test
+    public void testSnapshotsAreIndexedIncrementally() throws IOException {
+        ConcurrentTransactionDataFetcher concurrentFetcher = new ConcurrentTransactionDataFetcher(transactionList);
+        List<Transaction> rows = JsonFileParser.readTransactionJsonFile("transactions.json");
+        TransactionDataFetcher first = concurrentFetcher.snapshot();
+        Assertions.assertEquals(Optional.of("Arthur Shelby"), first.getTopSender());
+
+        Transaction issue = transaction(1, "Ada Thorne", 500000);
+        issue.setIssueId(100);
+        issue.setIssueMessage("Unverified sender");
+        concurrentFetcher.append(issue);
+        rows.add(issue);
+        TransactionDataFetcher second = concurrentFetcher.snapshot();
+        for (int mtn = 2; mtn <= 5; mtn++) {
+            Transaction transaction = transaction(mtn, "Ada Thorne", -100000);
+            concurrentFetcher.append(transaction);
+            rows.add(transaction);
+        }
+        concurrentFetcher.setIssueSolved(1, true);
+        rows.stream().filter(row -> Objects.equals(row.getIssueId(), 1)).forEach(row -> row.setIssueSolved(true));
+        TransactionDataFetcher latest = concurrentFetcher.snapshot();
+
+        TransactionDataFetcher expected = new TransactionDataFetcher(rows);
+        Assertions.assertEquals(expected.getTotalTransactionAmountSentBy("Ada Thorne"),
+                latest.getTotalTransactionAmountSentBy("Ada Thorne"));
+        Assertions.assertEquals(expected.countUniqueClients(), latest.countUniqueClients());
+        Assertions.assertEquals(expected.getUnsolvedIssueIds(), latest.getUnsolvedIssueIds());
+        Assertions.assertEquals(new HashSet<>(expected.getAllSolvedIssueMessages()),
+                new HashSet<>(latest.getAllSolvedIssueMessages()));
+        Assertions.assertEquals(expected.getOpenIssuesForClient("Ada Thorne"), latest.getOpenIssuesForClient("Ada Thorne"));
+        Assertions.assertEquals(expected.hasOpenComplianceIssues("Alfie Solomons"), latest.hasOpenComplianceIssues("Alfie Solomons"));
+        Assertions.assertEquals(expected.getTop3TransactionsByAmount(), latest.getTop3TransactionsByAmount());
+        Assertions.assertEquals(expected.getTopSender(), latest.getTopSender());
+        Assertions.assertEquals(expected.getTopNSenders(3), latest.getTopNSenders(3));
+
+        Assertions.assertEquals(Optional.of("Arthur Shelby"), first.getTopSender());
+        Assertions.assertTrue(first.hasOpenComplianceIssues("Alfie Solomons"));
+        Assertions.assertEquals(Optional.of("Ada Thorne"), second.getTopSender());
+        Assertions.assertEquals(5000.0, second.getTotalTransactionAmountSentBy("Ada Thorne"));
+        Assertions.assertEquals(Set.of(100), second.getOpenIssuesForClient("Ada Thorne"));
+        Assertions.assertSame(latest, concurrentFetcher.snapshot());
+    }
+
+    /**
+     * Tests that readers running alongside a writer only ever see whole, growing versions of the data.
+     */
+    @Test
+    public void testConcurrentAppendAndQuery() throws Exception {
+        int batches = 500;
+        int batchSize = 100;
+        ConcurrentTransactionDataFetcher concurrentFetcher = new ConcurrentTransactionDataFetcher(transactionList);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?> writer = executor.submit(() -> {
+                start.await();
+                for (int batch = 0; batch < batches; batch++) {
+                    List<Transaction> transactions = new ArrayList<>();
+                    for (int i = 0; i < batchSize; i++) {
+                        transactions.add(transaction(batch * batchSize + i + 1, "Writer " + (i % 10), 1));
+                    }
+                    concurrentFetcher.appendAll(transactions);
+                }
+                return null;
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int reader = 0; reader < 4; reader++) {
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    long lastVersion = -1;
+                    double lastTotal = 0;
+                    while (!writer.isDone()) {
+                        long version = concurrentFetcher.version();
+                        double total = concurrentFetcher.getTotalTransactionAmount();
+                        Assertions.assertTrue(version >= lastVersion);
+                        Assertions.assertTrue(total >= lastTotal);
+                        lastVersion = version;
+                        lastTotal = total;
+
+                        // every version holds whole batches, and all queries on a snapshot agree with each other
+                        TransactionDataFetcher snapshot = concurrentFetcher.snapshot();
+                        double appended = 0;
+                        for (int sender = 0; sender < 10; sender++) {
+                            appended += snapshot.getTotalTransactionAmountSentBy("Writer " + sender);
+                        }
+                        long rows = Math.round(appended * 100);
+                        Assertions.assertEquals(0, rows % batchSize);
+                        Assertions.assertEquals(2889.17 + appended, snapshot.getTotalTransactionAmount(), 1e-6);
+                        Assertions.assertEquals(14 + rows + (rows > 0 ? 10 : 0), snapshot.countUniqueClients());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            writer.get(60, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assertions.assertEquals(batches, concurrentFetcher.version());
+        Assertions.assertEquals(2889.17 + batches * batchSize * 0.01, concurrentFetcher.getTotalTransactionAmount(), 1e-6);
+        Assertions.assertEquals(transactionList.stream().map(Transaction::getMtn).distinct().count() + batches * batchSize,
+                concurrentFetcher.getTopNTransactionsByAmount(Integer.MAX_VALUE).size());
+    }
+
+    private static Transaction transaction(int mtn, String sender, long amount) {
+        Transaction transaction = new Transaction();
+        transaction.setMtn(mtn);
+        transaction.setAmount(amount);
+        transaction.setSenderFullName(sender);
+        transaction.setBeneficiaryFullName("Beneficiary " + mtn);
+        return transaction;
+    }
+}
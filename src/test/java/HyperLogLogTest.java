@@ -0,0 +1,63 @@
+import com.smallworld.data.HyperLogLog;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class HyperLogLogTest {
+
+    /**
+     * Tests that estimates stay within a few standard errors of the true count, from a few names to a million.
+     */
+    @Test
+    public void testEstimate() {
+        HyperLogLog counter = HyperLogLog.withRelativeError(0.01);
+        Assertions.assertEquals(14, counter.precision());
+        Assertions.assertEquals(0, counter.estimate());
+
+        int added = 0;
+        for (int count : new int[]{10, 1_000, 100_000, 1_000_000}) {
+            for (; added < count; added++) {
+                counter.add("Client " + added);
+            }
+            Assertions.assertEquals(count, counter.estimate(), Math.max(1, count * 3 * counter.relativeError()));
+        }
+    }
+
+    /**
+     * Tests that names are counted once whatever their case, and that the null name counts as a name.
+     */
+    @Test
+    public void testIgnoresCase() {
+        HyperLogLog counter = new HyperLogLog(12);
+        counter.add("Tom Shelby");
+        counter.add("TOM SHELBY");
+        counter.add("tom shelby");
+        counter.add(null);
+        counter.add(null);
+        Assertions.assertEquals(2, counter.estimate());
+        Assertions.assertEquals(HyperLogLog.hash("Grace Burgess"), HyperLogLog.hash("grace BURGESS"));
+    }
+
+    /**
+     * Tests that merged counters count the union of their names, also after a trip through bytes.
+     */
+    @Test
+    public void testMerge() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        HyperLogLog all = new HyperLogLog(12);
+        for (int i = 0; i < 50_000; i++) {
+            (i % 2 == 0 ? first : second).add("Client " + i);
+            all.add("Client " + i);
+            // names seen by both count once
+            if (i % 10 == 0) {
+                first.add("Client " + (i + 1));
+            }
+        }
+        HyperLogLog merged = HyperLogLog.fromByteArray(first.toByteArray()).merge(second);
+        Assertions.assertEquals(all, merged);
+        Assertions.assertEquals(all.estimate(), merged.estimate());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> first.merge(new HyperLogLog(10)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> HyperLogLog.withRelativeError(0.0001));
+    }
+}
@@ -1,10 +1,22 @@
 import com.smallworld.JsonFileParser;
+import com.smallworld.data.Issue;
 import com.smallworld.data.Transaction;
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionStore;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class JsonFileParserTest {
     @Test
@@ -13,6 +25,7 @@ public class JsonFileParserTest {
         List<Transaction> transactions = JsonFileParser.readTransactionJsonFile(filePath);
         Assertions.assertNotNull(transactions);
         Assertions.assertFalse(transactions.isEmpty());
+        Assertions.assertEquals(43020, transactions.get(0).getAmount());
     }
 
     @Test
@@ -38,4 +51,167 @@ public class JsonFileParserTest {
             JsonFileParser.readTransactionJsonFile(filePath);
         });
     }
+
+    @Test
+    public void testStreamTransactionJsonFile_MatchesReadTransactionJsonFile() throws IOException {
+        String filePath = "transactions.json";
+        List<Transaction> transactions = JsonFileParser.readTransactionJsonFile(filePath);
+        try (Stream<Transaction> streamed = JsonFileParser.streamTransactionJsonFile(filePath)) {
+            List<Integer> streamedMtns = streamed.map(Transaction::getMtn).collect(Collectors.toList());
+            List<Integer> expectedMtns = transactions.stream().map(Transaction::getMtn).collect(Collectors.toList());
+            Assertions.assertEquals(expectedMtns, streamedMtns);
+        }
+        try (Stream<Transaction> streamed = JsonFileParser.streamTransactionJsonFile(filePath)) {
+            List<Long> streamedAmounts = streamed.map(Transaction::getAmount).collect(Collectors.toList());
+            List<Long> expectedAmounts = transactions.stream().map(Transaction::getAmount).collect(Collectors.toList());
+            Assertions.assertEquals(expectedAmounts, streamedAmounts);
+        }
+    }
+
+    @Test
+    public void testStreamTransactionJsonFile_EmptyFile() throws IOException {
+        String filePath = "src/test/resources/empty_transactions.json";
+        try (Stream<Transaction> streamed = JsonFileParser.streamTransactionJsonFile(filePath)) {
+            Assertions.assertEquals(0, streamed.count());
+        }
+    }
+
+    @Test
+    public void testStreamTransactionJsonFile_InvalidJsonFormat() throws IOException {
+        String filePath = "src/test/resources/invalid_transactions.json";
+        try (Stream<Transaction> streamed = JsonFileParser.streamTransactionJsonFile(filePath)) {
+            Assertions.assertThrows(UncheckedIOException.class, streamed::count);
+        }
+    }
+
+    @Test
+    public void testForEachTransaction_InvalidJsonFormat() {
+        String filePath = "src/test/resources/invalid_transactions.json";
+        List<Transaction> transactions = new ArrayList<>();
+        Assertions.assertThrows(IOException.class, () -> {
+            JsonFileParser.forEachTransaction(filePath, transactions::add);
+        });
+        Assertions.assertEquals(1, transactions.size());
+    }
+
+    @Test
+    public void testReadTransactionStore_MalformedFields(@TempDir Path directory) throws IOException {
+        String row = "{\"mtn\": 1, \"amount\": 10, \"senderFullName\": \"Tom Shelby\", \"senderAge\": 22, "
+                + "\"beneficiaryFullName\": \"Alfie Solomons\", \"beneficiaryAge\": 33, \"issueId\": 5, \"issueSolved\": false}";
+        String[][] malformed = {
+                {"\"mtn\": 1", "\"mtn\": \"one\""},
+                {"\"mtn\": 1", "\"mtn\": 1.5"},
+                {"\"senderAge\": 22", "\"senderAge\": null"},
+                {"\"beneficiaryAge\": 33", "\"beneficiaryAge\": true"},
+                {"\"issueId\": 5", "\"issueId\": \"5\""},
+                {"\"issueId\": 5", "\"issueId\": 99999999999"},
+                {"\"issueSolved\": false", "\"issueSolved\": \"yes\""},
+                {"\"issueSolved\": false", "\"issueSolved\": 1"},
+                {"\"amount\": 10", "\"amount\": \".\""},
+        };
+        for (String[] field : malformed) {
+            Path file = Files.writeString(directory.resolve("transactions.json"), "[" + row.replace(field[0], field[1]) + "]");
+            IOException e = Assertions.assertThrows(IOException.class, () -> JsonFileParser.readTransactionStore(file.toString()));
+            Assertions.assertTrue(e.getMessage().contains("line: 1"), e.getMessage());
+        }
+
+        Path file = Files.writeString(directory.resolve("transactions.json"),
+                "[" + row.replace("\"issueId\": 5", "\"issueId\": null").replace("\"issueSolved\": false", "\"issueSolved\": null") + "]");
+        TransactionStore store = JsonFileParser.readTransactionStore(file.toString());
+        Assertions.assertEquals(1, store.size());
+        Assertions.assertEquals(0, store.issueCount());
+    }
+
+    @Test
+    public void testReadTransactionRecords_GroupsRowsByMtn() throws IOException {
+        String filePath = "transactions.json";
+        List<TransactionRecord> records = JsonFileParser.readTransactionRecords(filePath);
+        Assertions.assertEquals(10, records.size());
+
+        TransactionRecord graceBurgessTransaction = records.stream()
+                .filter(record -> record.getMtn() == 32612651)
+                .findFirst()
+                .orElseThrow();
+        Assertions.assertEquals(66600, graceBurgessTransaction.getAmount());
+        Assertions.assertEquals(List.of(54, 78, 99), graceBurgessTransaction.getIssues().stream()
+                .map(Issue::getId)
+                .collect(Collectors.toList()));
+        Assertions.assertTrue(graceBurgessTransaction.hasOpenIssues());
+
+        TransactionRecord auntPollyTransaction = records.stream()
+                .filter(record -> record.getMtn() == 96132456)
+                .findFirst()
+                .orElseThrow();
+        Assertions.assertTrue(auntPollyTransaction.getIssues().isEmpty());
+        Assertions.assertFalse(auntPollyTransaction.hasOpenIssues());
+    }
+
+    @Test
+    public void testStreamTransactionRecords_MatchesReadTransactionRecords() throws IOException {
+        String filePath = "transactions.json";
+        List<Integer> expectedMtns = JsonFileParser.readTransactionRecords(filePath).stream()
+                .map(TransactionRecord::getMtn)
+                .collect(Collectors.toList());
+        try (Stream<TransactionRecord> streamed = JsonFileParser.streamTransactionRecords(filePath)) {
+            Assertions.assertEquals(expectedMtns, streamed.map(TransactionRecord::getMtn).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testReadTransactionStoreInParallel_MatchesReadTransactionStore() throws IOException {
+        String filePath = "transactions.json";
+        TransactionStore expected = JsonFileParser.readTransactionStore(filePath);
+        for (int chunks = 1; chunks <= 16; chunks++) {
+            assertSameStore(expected, JsonFileParser.readTransactionStore(filePath, ForkJoinPool.commonPool(), chunks));
+        }
+        assertSameStore(expected, JsonFileParser.readTransactionStore(filePath, ForkJoinPool.commonPool()));
+    }
+
+    @Test
+    public void testReadTransactionStoreInParallel_RowsOfOneMtnInDifferentChunks(@TempDir Path directory) throws IOException {
+        // rows of an mtn are spread over the file, and messages hold what a transaction boundary looks like
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            int mtn = i % 97;
+            String sender = i % 2 == 0 ? "Client " + mtn % 13 : "CLIENT " + mtn % 13;
+            String message = i % 3 == 0 ? "Split }, {\\\"mtn\\\": 1}, {" : "Issue " + i;
+            rows.add("{\"mtn\": " + mtn + ", \"amount\": " + mtn + "." + i % 10 + ", \"senderFullName\": \"" + sender
+                    + "\", \"senderAge\": 30, \"beneficiaryFullName\": \"Beneficiary " + mtn % 7 + "\", \"beneficiaryAge\": 40, "
+                    + "\"issueId\": " + (i % 5 == 0 ? "null" : i) + ", \"issueSolved\": " + (i % 4 == 0) + ", \"issueMessage\": \"" + message + "\"}");
+        }
+        Path array = Files.writeString(directory.resolve("transactions.json"), "[\n  " + String.join(",\n  ", rows) + "\n]\n");
+        Path lines = Files.writeString(directory.resolve("transactions.ndjson"), String.join("\n", rows) + "\n");
+
+        TransactionStore expected = JsonFileParser.readTransactionStore(array.toString());
+        Assertions.assertEquals(97, expected.size());
+        for (int chunks : new int[]{1, 2, 3, 7, 50, 599, 1000}) {
+            assertSameStore(expected, JsonFileParser.readTransactionStore(array.toString(), ForkJoinPool.commonPool(), chunks));
+            assertSameStore(expected, JsonFileParser.readTransactionStore(lines.toString(), ForkJoinPool.commonPool(), chunks));
+        }
+    }
+
+    @Test
+    public void testReadTransactionStoreInParallel_EmptyAndInvalidFile() throws IOException {
+        TransactionStore empty = JsonFileParser.readTransactionStore("src/test/resources/empty_transactions.json", ForkJoinPool.commonPool(), 4);
+        Assertions.assertEquals(0, empty.size());
+        Assertions.assertThrows(IOException.class, () -> {
+            JsonFileParser.readTransactionStore("src/test/resources/invalid_transactions.json", ForkJoinPool.commonPool(), 4);
+        });
+        Assertions.assertThrows(IOException.class, () -> {
+            JsonFileParser.readTransactionStore("file_does_not_exist.json", ForkJoinPool.commonPool());
+        });
+    }
+
+    private static void assertSameStore(TransactionStore expected, TransactionStore actual) {
+        Assertions.assertEquals(expected.records().collect(Collectors.toList()), actual.records().collect(Collectors.toList()));
+        Assertions.assertEquals(issueIds(expected), issueIds(actual));
+        Assertions.assertEquals(expected.clientCount(), actual.clientCount());
+        for (int client = 0; client < expected.clientCount(); client++) {
+            Assertions.assertEquals(expected.clientName(client), actual.clientName(client));
+        }
+    }
+
+    private static List<Integer> issueIds(TransactionStore store) {
+        return IntStream.range(0, store.issueCount()).map(store::issueId).boxed().collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,46 @@
+import com.smallworld.metrics.LatencyHistogram;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    /**
+     * Tests that percentiles are within 1/64 of the exact ones, from nanoseconds to seconds.
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 10_000; nanos++) {
+            histogram.record(nanos * 1_000);
+        }
+        Assertions.assertEquals(10_000, histogram.count());
+        Assertions.assertEquals(10_000_000, histogram.maxNanos());
+        Assertions.assertEquals(50_005_000_000L, histogram.totalNanos());
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9}) {
+            long exact = (long) (percentile * 100) * 1_000;
+            long estimate = histogram.percentileNanos(percentile);
+            Assertions.assertTrue(estimate >= exact && estimate <= exact + exact / 64, percentile + ": " + estimate);
+        }
+        Assertions.assertEquals(10_000_000, histogram.percentileNanos(100));
+    }
+
+    /**
+     * Tests small values, which are exact, and values past the range, which are capped.
+     */
+    @Test
+    public void testRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assertions.assertEquals(0, histogram.percentileNanos(99));
+        histogram.record(-5);
+        histogram.record(7);
+        histogram.record(127);
+        Assertions.assertEquals(0, histogram.percentileNanos(0));
+        Assertions.assertEquals(7, histogram.percentileNanos(50));
+        Assertions.assertEquals(127, histogram.percentileNanos(100));
+
+        histogram.record(Long.MAX_VALUE);
+        Assertions.assertEquals(Long.MAX_VALUE, histogram.maxNanos());
+        Assertions.assertTrue(histogram.percentileNanos(100) >= 1L << 39);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> histogram.percentileNanos(101));
+    }
+}
@@ -0,0 +1,138 @@
+import com.smallworld.CachingTransactionDataFetcher;
+import com.smallworld.JsonFileParser;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.TransactionStore;
+import com.smallworld.metrics.Metrics;
+import com.smallworld.metrics.MetricsRecorder;
+import com.smallworld.metrics.MetricsRegistry;
+import com.smallworld.metrics.TimerSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+public class MetricsRegistryTest {
+
+    @AfterEach
+    public void tearDown() {
+        Metrics.install(MetricsRecorder.NOOP);
+    }
+
+    /**
+     * Tests that nothing is recorded until a recorder is installed.
+     * @throws IOException If there is an error in reading the JSON file.
+     */
+    @Test
+    public void testDisabledByDefault() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        Assertions.assertFalse(Metrics.isEnabled());
+        JsonFileParser.readTransactionStore("transactions.json");
+        Assertions.assertSame(Metrics.time("a"), Metrics.time("b"));
+
+        Metrics.install(registry);
+        Assertions.assertTrue(Metrics.isEnabled());
+        Metrics.install(null);
+        Assertions.assertSame(MetricsRecorder.NOOP, Metrics.recorder());
+        Assertions.assertEquals(0, registry.getTimers().size());
+    }
+
+    /**
+     * Tests the parser metrics: time, rows, distinct transactions and bytes of every file read.
+     * @throws IOException If there is an error in reading the JSON file.
+     */
+    @Test
+    public void testParserMetrics() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry(true);
+        Metrics.install(registry);
+
+        TransactionStore store = JsonFileParser.readTransactionStore("transactions.json");
+        Assertions.assertEquals(1, registry.timer("parser.readTransactionStore").getCount());
+        Assertions.assertTrue(registry.timer("parser.readTransactionStore").getTotalNanos() > 0);
+        Assertions.assertTrue(registry.timer("parser.readTransactionStore").getAllocatedBytes() > 0);
+        Assertions.assertEquals(13, registry.counter("parser.rows"));
+        Assertions.assertEquals(store.size(), registry.counter("parser.transactions"));
+        Assertions.assertEquals(new File("transactions.json").length(), registry.counter("parser.bytes"));
+
+        TransactionDataFetcher.fromJsonFile("transactions.json");
+        Assertions.assertEquals(1, registry.timer("fetcher.fromJsonFile").getCount());
+        Assertions.assertEquals(26, registry.counter("parser.rows"));
+        Assertions.assertEquals(2L * store.size(), registry.counter("parser.transactions"));
+    }
+
+    /**
+     * Tests that every query is timed under its own name and that cache statistics are published as gauges.
+     * @throws IOException If there is an error in reading the JSON file.
+     */
+    @Test
+    public void testFetcherMetrics() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        Metrics.install(registry);
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(JsonFileParser.readTransactionStore("transactions.json"));
+
+        dataFetcher.getTotalTransactionAmount();
+        dataFetcher.getTotalTransactionAmount();
+        dataFetcher.getTopNSenders(2);
+        dataFetcher.getTransactionsByBeneficiaryName("Alfie Solomons", 0, 10);
+        dataFetcher.streamTransactionsByBeneficiaryName("Alfie Solomons").count();
+        TimerSnapshot total = registry.timer("fetcher.getTotalTransactionAmount");
+        Assertions.assertEquals(2, total.getCount());
+        Assertions.assertTrue(total.getP50Nanos() > 0 && total.getP50Nanos() <= total.getMaxNanos());
+        Assertions.assertEquals(-1, total.getAllocatedBytes());
+        Assertions.assertEquals(1, registry.timer("fetcher.getTopNSenders").getCount());
+        Assertions.assertEquals(1, registry.timer("fetcher.getTransactionsByBeneficiaryNamePage").getCount());
+        Assertions.assertEquals(1, registry.timer("fetcher.streamTransactionsByBeneficiaryName").getCount());
+        Assertions.assertEquals(0, registry.timer("fetcher.getTopSender").getCount());
+
+        CachingTransactionDataFetcher cachingFetcher = new CachingTransactionDataFetcher(dataFetcher, 10).registerMetrics("cache");
+        cachingFetcher.getMaxTransactionAmount();
+        cachingFetcher.getMaxTransactionAmount();
+        Assertions.assertEquals(1, registry.gauge("cache.hits"));
+        Assertions.assertEquals(1, registry.gauge("cache.size"));
+        Assertions.assertEquals(1, registry.timer("fetcher.getMaxTransactionAmount").getCount());
+
+        registry.reset();
+        Assertions.assertEquals(0, registry.getCounters().size());
+        Assertions.assertEquals(0, registry.timer("fetcher.getTotalTransactionAmount").getCount());
+        Assertions.assertEquals(1, registry.getGauges().get("cache.misses"));
+    }
+
+    /**
+     * Tests reading the metrics through JMX.
+     * @throws Exception If the registry cannot be published or read.
+     */
+    @Test
+    public void testJmx() throws Exception {
+        String objectName = "com.smallworld:type=Metrics,name=test";
+        MetricsRegistry registry = new MetricsRegistry().registerMBean(objectName);
+        try {
+            registry.increment("parser.rows", 42);
+            registry.recordTime("fetcher.countUniqueClients", 1_000, -1);
+            registry.gauge("cache.size", () -> 7);
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            TabularData counters = (TabularData) server.getAttribute(name, "Counters");
+            Assertions.assertEquals(42L, counters.get(new Object[]{"parser.rows"}).get("value"));
+            TabularData gauges = (TabularData) server.getAttribute(name, "Gauges");
+            Assertions.assertEquals(7L, gauges.get(new Object[]{"cache.size"}).get("value"));
+            TabularData timers = (TabularData) server.getAttribute(name, "Timers");
+            CompositeData timer = (CompositeData) timers.get(new Object[]{"fetcher.countUniqueClients"}).get("value");
+            Assertions.assertEquals(1L, timer.get("count"));
+            Assertions.assertEquals(1_000L, timer.get("maxNanos"));
+
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            Assertions.assertEquals(List.of(), List.copyOf(registry.getCounters().keySet()));
+            Assertions.assertThrows(IllegalStateException.class, () -> new MetricsRegistry().registerMBean(objectName));
+        } finally {
+            registry.unregisterMBean(objectName);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import com.smallworld.data.QuantileSketch;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class QuantileSketchTest {
+
+    /**
+     * Tests that quantiles are within the relative accuracy of the exact ones, for skewed values.
+     */
+    @Test
+    public void testQuantiles() {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1 + (long) Math.exp(random.nextDouble() * 20);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (double quantile : new double[]{0, 0.1, 0.5, 0.95, 0.99, 1}) {
+            long exact = values[(int) (quantile * (values.length - 1))];
+            Assertions.assertEquals(exact, sketch.quantile(quantile), exact * 0.01, "quantile " + quantile);
+        }
+        Assertions.assertEquals(values.length, sketch.count());
+        Assertions.assertTrue(Double.isNaN(new QuantileSketch(0.01).quantile(0.5)));
+    }
+
+    /**
+     * Tests negative values, zeros, and that low values are collapsed when the bins run out.
+     */
+    @Test
+    public void testNegativeValuesAndCollapse() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 100);
+        for (long value = -50; value <= 50; value++) {
+            sketch.add(value * 1000);
+        }
+        Assertions.assertEquals(-50_000, sketch.quantile(0));
+        Assertions.assertEquals(0, sketch.quantile(0.5));
+        Assertions.assertEquals(-25_000, sketch.quantile(0.25), 25_000 * 0.01);
+        Assertions.assertEquals(40_000, sketch.quantile(0.9), 40_000 * 0.01);
+        Assertions.assertEquals(50_000, sketch.quantile(1));
+
+        // 100 bins of 2% span a factor of about 7, the lower values are counted in the lowest bin kept
+        QuantileSketch collapsed = new QuantileSketch(0.01, 100);
+        for (long value = 1; value <= 1_000_000; value *= 10) {
+            collapsed.add(value);
+        }
+        Assertions.assertEquals(1, collapsed.quantile(0));
+        Assertions.assertEquals(1_000_000, collapsed.quantile(1));
+        Assertions.assertEquals(collapsed.quantile(0.5), collapsed.quantile(5 / 6.0));
+        Assertions.assertTrue(collapsed.quantile(0.5) > 100_000 && collapsed.quantile(0.5) < 1_000_000);
+    }
+
+    /**
+     * Tests that merged sketches answer like the sketch of all values, also after a trip through bytes.
+     */
+    @Test
+    public void testMerge() {
+        QuantileSketch first = new QuantileSketch(0.02);
+        QuantileSketch second = new QuantileSketch(0.02);
+        QuantileSketch all = new QuantileSketch(0.02);
+        for (long value = -1_000; value < 100_000; value += 7) {
+            (value % 2 == 0 ? first : second).add(value);
+            all.add(value);
+        }
+        QuantileSketch merged = QuantileSketch.fromByteArray(first.toByteArray()).merge(QuantileSketch.fromByteArray(second.toByteArray()));
+        for (double quantile = 0; quantile <= 1; quantile += 0.05) {
+            Assertions.assertEquals(all.quantile(quantile), merged.quantile(quantile));
+        }
+        Assertions.assertEquals(all.count(), merged.count());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> first.merge(new QuantileSketch(0.01)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> first.quantile(1.5));
+    }
+}
@@ -0,0 +1,214 @@
+import com.smallworld.JsonFileParser;
+import com.smallworld.LocalTransactionShard;
+import com.smallworld.PropertiesLoader;
+import com.smallworld.RemoteTransactionShard;
+import com.smallworld.ShardedTransactionDataFetcher;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.TransactionShardServer;
+import com.smallworld.data.Transaction;
+import com.smallworld.data.TransactionRecord;
+import org.apache.commons.configuration.ConfigurationException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+public class ShardedTransactionDataFetcherTest {
+
+    /**
+     * transaction data for testing purpose.
+     */
+    private static List<Transaction> transactionList;
+
+    @BeforeAll
+    public static void setUp() throws ConfigurationException, IOException {
+        transactionList = JsonFileParser.readTransactionJsonFile(new PropertiesLoader().getJsonFilePath());
+    }
+
+    /**
+     * Tests that every row of an mtn lands on the same shard, so shards deduplicate the test transactions.
+     */
+    @Test
+    public void testPartition() {
+        List<List<Transaction>> partitions = ShardedTransactionDataFetcher.partition(transactionList, 3);
+        Assertions.assertEquals(transactionList.size(), partitions.stream().mapToInt(List::size).sum());
+        for (int shard = 0; shard < partitions.size(); shard++) {
+            for (Transaction transaction : partitions.get(shard)) {
+                Assertions.assertEquals(shard, ShardedTransactionDataFetcher.shardOf(transaction.getMtn(), 3));
+            }
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ShardedTransactionDataFetcher.partition(transactionList, 0));
+
+        ShardedTransactionDataFetcher sharded = ShardedTransactionDataFetcher.inProcess(transactionList, 3);
+        Assertions.assertEquals(3, sharded.shardCount());
+        Assertions.assertEquals(2889.17, sharded.getTotalTransactionAmount());
+        Assertions.assertEquals(678.06, sharded.getTotalTransactionAmountSentBy("Tom Shelby"));
+        Assertions.assertEquals(985.0, sharded.getMaxTransactionAmount());
+        Assertions.assertEquals(14, sharded.countUniqueClients());
+        Assertions.assertEquals(Optional.of("Arthur Shelby"), sharded.getTopSender());
+        Assertions.assertEquals(Set.of(1, 3, 15, 54, 99), sharded.getUnsolvedIssueIds());
+        Assertions.assertEquals(3, sharded.countTransactionsByBeneficiaryName("Michael Gray")
+                + sharded.countTransactionsByBeneficiaryName("Alfie Solomons") + sharded.countTransactionsByBeneficiaryName("Ben Younger"));
+    }
+
+    /**
+     * Tests that in-process shards answer like a single fetcher over all rows.
+     */
+    @Test
+    public void testInProcessShards() {
+        List<Transaction> transactions = generate();
+        assertSameAnswers(new TransactionDataFetcher(transactions), ShardedTransactionDataFetcher.inProcess(transactions, 4));
+        assertSameAnswers(new TransactionDataFetcher(transactions), ShardedTransactionDataFetcher.inProcess(transactions, 1));
+    }
+
+    /**
+     * Tests that shards served over local sockets answer like a single fetcher over all rows, and that
+     * the failures of a remote shard reach the caller.
+     */
+    @Test
+    public void testSocketShards() throws IOException {
+        List<Transaction> transactions = generate();
+        List<TransactionShardServer> servers = new ArrayList<>();
+        List<RemoteTransactionShard> shards = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (List<Transaction> partition : ShardedTransactionDataFetcher.partition(transactions, 3)) {
+                TransactionShardServer server = new TransactionShardServer(
+                        new LocalTransactionShard(new TransactionDataFetcher(partition).indexed()), 0);
+                servers.add(server);
+                shards.add(new RemoteTransactionShard("localhost", server.port()));
+            }
+            assertSameAnswers(new TransactionDataFetcher(transactions), new ShardedTransactionDataFetcher(shards, executor));
+
+            Assertions.assertThrows(IllegalStateException.class, () -> shards.get(0).topTransactionsByAmount(-1));
+            Assertions.assertEquals(transactions.stream().filter(t -> ShardedTransactionDataFetcher.shardOf(t.getMtn(), 3) == 0)
+                    .map(Transaction::getMtn).distinct().count(), shards.get(0).size());
+        } finally {
+            executor.shutdown();
+            for (RemoteTransactionShard shard : shards) {
+                shard.close();
+            }
+            for (TransactionShardServer server : servers) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Tests that a local shard reports its amounts exactly in minor units, also beyond the integers a double holds.
+     */
+    @Test
+    public void testLocalShardAmountsAreExact() {
+        long large = (1L << 53) + 1;
+        List<Transaction> transactions = new ArrayList<>();
+        for (int mtn = 1; mtn <= 2; mtn++) {
+            Transaction transaction = new Transaction();
+            transaction.setMtn(mtn);
+            transaction.setAmount(mtn == 1 ? large : 2);
+            transaction.setSenderFullName("Tom Shelby");
+            transaction.setBeneficiaryFullName("Ada Thorne");
+            transactions.add(transaction);
+        }
+        for (TransactionDataFetcher fetcher : List.of(new TransactionDataFetcher(transactions),
+                new TransactionDataFetcher(transactions).indexed())) {
+            LocalTransactionShard shard = new LocalTransactionShard(fetcher);
+            Assertions.assertEquals(large + 2, shard.totalAmount());
+            Assertions.assertEquals(large + 2, shard.totalAmountSentBy("Tom Shelby"));
+            Assertions.assertEquals(large, shard.maxAmount());
+            Assertions.assertEquals(Map.of("Tom Shelby", large + 2), shard.sentAmounts());
+        }
+        Assertions.assertEquals(Long.MIN_VALUE, new LocalTransactionShard(new TransactionDataFetcher(List.of())).maxAmount());
+        Assertions.assertEquals(Long.MIN_VALUE, new LocalTransactionShard(new TransactionDataFetcher(List.of()).indexed()).maxAmount());
+    }
+
+    /**
+     * Generates rows with repeated mtns, one per issue, and client names spelled in different cases.
+     */
+    private static List<Transaction> generate() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int row = 0; row < 5_000; row++) {
+            int mtn = row % 3_000;
+            Transaction transaction = new Transaction();
+            transaction.setMtn(mtn);
+            transaction.setAmount(100 + mtn * 7919L % 100_000);
+            transaction.setSenderFullName((mtn % 2 == 0 ? "Client " : "CLIENT ") + mtn % 200);
+            transaction.setSenderAge(18 + mtn % 60);
+            transaction.setBeneficiaryFullName("client " + mtn * 31 % 350);
+            transaction.setBeneficiaryAge(18 + mtn % 70);
+            if (mtn % 5 == 0) {
+                transaction.setIssueId(row);
+                transaction.setIssueSolved(row % 3 == 0);
+                transaction.setIssueMessage("Issue " + row);
+            }
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    private static void assertSameAnswers(TransactionDataFetcher expected, ShardedTransactionDataFetcher sharded) {
+        Assertions.assertEquals(expected.getTotalTransactionAmount(), sharded.getTotalTransactionAmount());
+        Assertions.assertEquals(expected.getTotalTransactionAmountSentBy("client 7"), sharded.getTotalTransactionAmountSentBy("client 7"));
+        Assertions.assertEquals(expected.getMaxTransactionAmount(), sharded.getMaxTransactionAmount());
+        Assertions.assertEquals(expected.countUniqueClients(), sharded.countUniqueClients());
+        Assertions.assertEquals(expected.sketch().senders(), sharded.sketch().senders());
+        Assertions.assertEquals(expected.sketch().amounts().count(), sharded.sketch().amounts().count());
+
+        for (String client : List.of("Client 10", "client 15", "Client 3", "Nobody")) {
+            Assertions.assertEquals(expected.hasOpenComplianceIssues(client), sharded.hasOpenComplianceIssues(client));
+            Assertions.assertEquals(expected.getOpenIssuesForClient(client), sharded.getOpenIssuesForClient(client));
+        }
+        Assertions.assertEquals(expected.getUnsolvedIssueIds(), sharded.getUnsolvedIssueIds());
+        Assertions.assertEquals(sorted(expected.getAllSolvedIssueMessages()), sorted(sharded.getAllSolvedIssueMessages()));
+
+        Assertions.assertEquals(asSets(expected.getTransactionsByBeneficiaryName()), asSets(sharded.getTransactionsByBeneficiaryName()));
+        String beneficiary = "CLIENT 31";
+        int count = sharded.countTransactionsByBeneficiaryName(beneficiary);
+        Assertions.assertEquals(expected.countTransactionsByBeneficiaryName(beneficiary), count);
+        List<TransactionRecord> pages = new ArrayList<>();
+        for (int offset = 0; offset < count + 3; offset += 3) {
+            pages.addAll(sharded.getTransactionsByBeneficiaryName(beneficiary, offset, 3));
+        }
+        Assertions.assertEquals(sharded.streamTransactionsByBeneficiaryName(beneficiary).collect(Collectors.toList()), pages);
+        Assertions.assertEquals(mtns(expected.getTransactionsByBeneficiaryName(beneficiary, 0, count)), mtns(pages));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> sharded.getTransactionsByBeneficiaryName(beneficiary, -1, 3));
+
+        Assertions.assertEquals(amounts(expected.getTopNTransactionsByAmount(10)), amounts(sharded.getTopNTransactionsByAmount(10)));
+        Assertions.assertEquals(expected.getTop3TransactionsByAmount().size(), sharded.getTop3TransactionsByAmount().size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> sharded.getTopNTransactionsByAmount(-1));
+        Assertions.assertEquals(sentAmounts(expected, expected.getTopNSenders(5)), sentAmounts(expected, sharded.getTopNSenders(5)));
+        Assertions.assertEquals(expected.getTotalTransactionAmountSentBy(expected.getTopSender().orElseThrow()),
+                expected.getTotalTransactionAmountSentBy(sharded.getTopSender().orElseThrow()));
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Returns the mtns per lower case beneficiary name, because every shard spells a client the way it first saw it.
+     */
+    private static Map<String, Set<Integer>> asSets(Map<String, List<TransactionRecord>> transactionsByBeneficiary) {
+        Map<String, Set<Integer>> sets = new HashMap<>();
+        transactionsByBeneficiary.forEach((beneficiary, transactions) -> sets.put(beneficiary.toLowerCase(), mtns(transactions)));
+        return sets;
+    }
+
+    private static Set<Integer> mtns(List<TransactionRecord> transactions) {
+        return transactions.stream().map(TransactionRecord::getMtn).collect(Collectors.toSet());
+    }
+
+    private static List<Long> amounts(List<TransactionRecord> transactions) {
+        return transactions.stream().map(TransactionRecord::getAmount).collect(Collectors.toList());
+    }
+
+    private static List<Double> sentAmounts(TransactionDataFetcher fetcher, List<String> senders) {
+        return senders.stream().map(fetcher::getTotalTransactionAmountSentBy).collect(Collectors.toList());
+    }
+}
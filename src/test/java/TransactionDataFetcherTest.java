@@ -1,14 +1,23 @@
+import com.smallworld.CachingTransactionDataFetcher;
 import com.smallworld.JsonFileParser;
 import com.smallworld.PropertiesLoader;
 import com.smallworld.TransactionDataFetcher;
 import com.smallworld.data.Transaction;
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionSketches;
+import com.smallworld.data.TransactionStore;
 import org.apache.commons.configuration.ConfigurationException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 public class TransactionDataFetcherTest {
 
@@ -82,6 +91,51 @@ public class TransactionDataFetcherTest {
         Assertions.assertEquals(14, uniqueClientCount);
     }
 
+    /**
+     * Tests the approximate summary of {@link TransactionDataFetcher#sketch(double, double)}, which is exact enough
+     * for the few test clients, and that parallel partitions merge into the sequential summary.
+     */
+    @Test
+    public void testSketch() throws IOException {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
+
+        TransactionSketches sketches = dataFetcher.sketch();
+        Assertions.assertEquals(14, sketches.estimateUniqueClients());
+        Assertions.assertEquals(transactionList.stream().map(Transaction::getSenderFullName).distinct().count(),
+                sketches.estimateUniqueSenders());
+        Assertions.assertEquals(10, sketches.amounts().count());
+        Assertions.assertEquals(985.0, sketches.estimateAmountQuantile(1.0));
+        Assertions.assertEquals(transactionList.stream().mapToLong(Transaction::getAmount).min().orElseThrow() / 100.0,
+                sketches.estimateAmountQuantile(0.0));
+        Assertions.assertEquals(sketches.senders(), TransactionDataFetcher.fromJsonFile("transactions.json").sketch().senders());
+
+        List<Transaction> transactions = new ArrayList<>();
+        for (int mtn = 0; mtn < 100_000; mtn++) {
+            Transaction transaction = new Transaction();
+            transaction.setMtn(mtn);
+            transaction.setAmount(100 + mtn % 10_000);
+            transaction.setSenderFullName("Sender " + mtn % 5_000);
+            transaction.setBeneficiaryFullName("Beneficiary " + mtn % 20_000);
+            transactions.add(transaction);
+        }
+        TransactionDataFetcher generated = new TransactionDataFetcher(transactions);
+        TransactionSketches sequential = generated.sketch(0.01, 0.01);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TransactionSketches parallel = generated.parallel(pool).sketch(0.01, 0.01);
+            Assertions.assertEquals(sequential.senders(), parallel.senders());
+            Assertions.assertEquals(sequential.beneficiaries(), parallel.beneficiaries());
+            Assertions.assertEquals(sequential.estimateAmountQuantile(0.95), parallel.estimateAmountQuantile(0.95));
+        } finally {
+            pool.shutdown();
+        }
+        Assertions.assertEquals(25_000, sequential.estimateUniqueClients(), 25_000 * 0.03);
+        Assertions.assertEquals(5_000, sequential.estimateUniqueSenders(), 5_000 * 0.03);
+        Assertions.assertEquals(51.0, sequential.estimateAmountQuantile(0.5), 51.0 * 0.01);
+        Assertions.assertEquals(96.0, sequential.estimateAmountQuantile(0.95), 96.0 * 0.01);
+        Assertions.assertEquals(100.0, sequential.estimateAmountQuantile(0.99), 100.0 * 0.01);
+    }
+
     /**
      * Tests the {@link TransactionDataFetcher#hasOpenComplianceIssues} method.
      */
@@ -96,6 +150,72 @@ public class TransactionDataFetcherTest {
         Assertions.assertFalse(hasOpenIssues);
     }
 
+    /**
+     * Tests the batch lookups {@link TransactionDataFetcher#getTotalTransactionAmountSentBy(Collection)} and
+     * {@link TransactionDataFetcher#hasOpenComplianceIssues(Collection)} against the single ones, on every kind of fetcher.
+     */
+    @Test
+    public void testBatchLookups() throws IOException {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
+        List<String> clients = List.of("Tom Shelby", "aunt polly", "Nobody", "Michael Gray", "Tom Shelby", "Arthur Shelby");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (TransactionDataFetcher fetcher : List.of(dataFetcher, dataFetcher.indexed(), dataFetcher.parallel(pool),
+                    TransactionDataFetcher.fromJsonFile("transactions.json"))) {
+                Map<String, Double> sentAmounts = fetcher.getTotalTransactionAmountSentBy(clients);
+                Assertions.assertEquals(List.of("Tom Shelby", "aunt polly", "Nobody", "Michael Gray", "Arthur Shelby"),
+                        new ArrayList<>(sentAmounts.keySet()));
+                Assertions.assertEquals(678.06, sentAmounts.get("Tom Shelby"));
+                Assertions.assertEquals(101.02, sentAmounts.get("aunt polly"));
+                Assertions.assertEquals(0.0, sentAmounts.get("Nobody"));
+                Assertions.assertEquals(0.0, sentAmounts.get("Michael Gray"));
+                Assertions.assertEquals(985.0, sentAmounts.get("Arthur Shelby"));
+
+                Map<String, Boolean> openIssues = fetcher.hasOpenComplianceIssues(clients);
+                Assertions.assertEquals(Map.of("Tom Shelby", true, "aunt polly", false, "Nobody", false,
+                        "Michael Gray", true, "Arthur Shelby", true), openIssues);
+                Assertions.assertEquals(Map.of(), fetcher.hasOpenComplianceIssues(List.of()));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests the {@link TransactionDataFetcher#getOpenIssuesForClient} method, and that transactions without an issue
+     * are never open.
+     */
+    @Test
+    public void testGetOpenIssuesForClient() throws IOException {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
+        TransactionDataFetcher indexedFetcher = dataFetcher.indexed();
+
+        for (TransactionDataFetcher fetcher : List.of(dataFetcher, indexedFetcher,
+                TransactionDataFetcher.fromJsonFile("transactions.json"))) {
+            Assertions.assertEquals(Set.of(1, 3), fetcher.getOpenIssuesForClient("Tom Shelby"));
+            Assertions.assertEquals(Set.of(54, 99), fetcher.getOpenIssuesForClient("MICHAEL GRAY"));
+            Assertions.assertEquals(Set.of(), fetcher.getOpenIssuesForClient("Aunt Polly"));
+            Assertions.assertEquals(Set.of(), fetcher.getOpenIssuesForClient("Nobody"));
+        }
+
+        Transaction withoutIssue = transaction(3, 100, "Ada Thorne", "Esme Lee", null);
+        withoutIssue.setIssueSolved(false);
+        dataFetcher.append(withoutIssue);
+        dataFetcher.setIssueSolved(3, true);
+        dataFetcher.append(transaction(663458, 43020, "Tom Shelby", "Alfie Solomons", 300));
+        for (TransactionDataFetcher fetcher : List.of(dataFetcher, indexedFetcher)) {
+            Assertions.assertFalse(fetcher.hasOpenComplianceIssues("Ada Thorne"));
+            Assertions.assertEquals(Set.of(), fetcher.getOpenIssuesForClient("Esme Lee"));
+            Assertions.assertEquals(Set.of(1, 300), fetcher.getOpenIssuesForClient("Tom Shelby"));
+            Assertions.assertEquals(Set.of(15), fetcher.getOpenIssuesForClient("Arthur Shelby"));
+        }
+
+        dataFetcher.setIssueSolved(15, true);
+        Assertions.assertFalse(indexedFetcher.hasOpenComplianceIssues("Arthur Shelby"));
+        Assertions.assertFalse(indexedFetcher.hasOpenComplianceIssues("Ben Younger"));
+        Assertions.assertEquals(Set.of(), indexedFetcher.getOpenIssuesForClient("Ben Younger"));
+    }
+
     /**
      * Tests the {@link TransactionDataFetcher#getTransactionsByBeneficiaryName()} method.
      */
@@ -103,18 +223,58 @@ public class TransactionDataFetcherTest {
     public void testGetTransactionsByBeneficiaryName() {
         TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
 
-        Map<String, Transaction> transactionsByBeneficiaryName = dataFetcher.getTransactionsByBeneficiaryName();
+        Map<String, List<TransactionRecord>> transactionsByBeneficiaryName = dataFetcher.getTransactionsByBeneficiaryName();
         Assertions.assertEquals(10, transactionsByBeneficiaryName.size());
 
-        Transaction alfieSolomonsTransaction = transactionsByBeneficiaryName.get("Alfie Solomons");
-        Assertions.assertNotNull(alfieSolomonsTransaction);
-        Assertions.assertEquals(663458, alfieSolomonsTransaction.getMtn());
-        Assertions.assertEquals(430.2, alfieSolomonsTransaction.getAmount());
+        List<TransactionRecord> alfieSolomonsTransactions = transactionsByBeneficiaryName.get("Alfie Solomons");
+        Assertions.assertNotNull(alfieSolomonsTransactions);
+        Assertions.assertEquals(1, alfieSolomonsTransactions.size());
+        Assertions.assertEquals(663458, alfieSolomonsTransactions.get(0).getMtn());
+        Assertions.assertEquals(43020, alfieSolomonsTransactions.get(0).getAmount());
 
-        Transaction arthurShelbyTransactions = transactionsByBeneficiaryName.get("Arthur Shelby");
+        List<TransactionRecord> arthurShelbyTransactions = transactionsByBeneficiaryName.get("Arthur Shelby");
         Assertions.assertNotNull(arthurShelbyTransactions);
-        Assertions.assertEquals(1284564, arthurShelbyTransactions.getMtn());
-        Assertions.assertEquals(150.2, arthurShelbyTransactions.getAmount());
+        Assertions.assertEquals(1284564, arthurShelbyTransactions.get(0).getMtn());
+        Assertions.assertEquals(15020, arthurShelbyTransactions.get(0).getAmount());
+        Assertions.assertNull(transactionsByBeneficiaryName.get("Tom Shelby"));
+    }
+
+    /**
+     * Tests that a beneficiary with several transactions gets all of them, also page by page and streamed,
+     * and that transactions appended later are found.
+     */
+    @Test
+    public void testGetTransactionsByBeneficiaryName_SeveralTransactions() {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
+        TransactionDataFetcher indexedFetcher = dataFetcher.indexed();
+        dataFetcher.getTransactionsByBeneficiaryName();
+        for (int mtn = 1; mtn <= 2000; mtn++) {
+            dataFetcher.append(transaction(mtn, mtn, "Sender " + mtn % 3, mtn % 2 == 0 ? "Alfie Solomons" : "Esme Lee", null));
+        }
+
+        for (TransactionDataFetcher fetcher : List.of(dataFetcher, indexedFetcher)) {
+            Map<String, List<TransactionRecord>> transactionsByBeneficiaryName = fetcher.getTransactionsByBeneficiaryName();
+            Assertions.assertEquals(11, transactionsByBeneficiaryName.size());
+            List<TransactionRecord> alfieSolomonsTransactions = transactionsByBeneficiaryName.get("ALFIE SOLOMONS");
+            Assertions.assertEquals(1001, alfieSolomonsTransactions.size());
+            Assertions.assertEquals(663458, alfieSolomonsTransactions.get(0).getMtn());
+            Assertions.assertEquals(2000, alfieSolomonsTransactions.get(1000).getMtn());
+            Assertions.assertEquals(1001, fetcher.countTransactionsByBeneficiaryName("Alfie Solomons"));
+
+            List<Integer> pagedMtns = new ArrayList<>();
+            for (int offset = 0; offset < 1001; offset += 100) {
+                fetcher.getTransactionsByBeneficiaryName("Alfie Solomons", offset, 100).forEach(record -> pagedMtns.add(record.getMtn()));
+            }
+            Assertions.assertEquals(alfieSolomonsTransactions.stream().map(TransactionRecord::getMtn).collect(Collectors.toList()), pagedMtns);
+            Assertions.assertEquals(pagedMtns, fetcher.streamTransactionsByBeneficiaryName("Alfie Solomons")
+                    .map(TransactionRecord::getMtn)
+                    .collect(Collectors.toList()));
+            Assertions.assertEquals(List.of(), fetcher.getTransactionsByBeneficiaryName("Alfie Solomons", 2000, 10));
+            Assertions.assertEquals(0, fetcher.countTransactionsByBeneficiaryName("Nobody"));
+            Assertions.assertEquals(0, fetcher.streamTransactionsByBeneficiaryName("Nobody").count());
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> dataFetcher.getTransactionsByBeneficiaryName("Esme Lee", -1, 10));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> dataFetcher.getTransactionsByBeneficiaryName().clear());
     }
 
     /**
@@ -148,12 +308,12 @@ public class TransactionDataFetcherTest {
     public void testGetTop3TransactionsByAmount() {
         TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
 
-        List<Transaction> top3Transactions = dataFetcher.getTop3TransactionsByAmount();
+        List<TransactionRecord> top3Transactions = dataFetcher.getTop3TransactionsByAmount();
         Assertions.assertEquals(3, top3Transactions.size());
 
-        Assertions.assertEquals(985.0, top3Transactions.get(0).getAmount());
-        Assertions.assertEquals(666.0, top3Transactions.get(1).getAmount());
-        Assertions.assertEquals(430.2, top3Transactions.get(2).getAmount());
+        Assertions.assertEquals(98500, top3Transactions.get(0).getAmount());
+        Assertions.assertEquals(66600, top3Transactions.get(1).getAmount());
+        Assertions.assertEquals(43020, top3Transactions.get(2).getAmount());
     }
 
     /**
@@ -168,5 +328,263 @@ public class TransactionDataFetcherTest {
         Assertions.assertEquals("Arthur Shelby", topSender.get());
     }
 
+    /**
+     * Tests the {@link TransactionDataFetcher#getTopNTransactionsByAmount(int)} method.
+     */
+    @Test
+    public void testGetTopNTransactionsByAmount() {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
+
+        List<TransactionRecord> top5Transactions = dataFetcher.getTopNTransactionsByAmount(5);
+        Assertions.assertEquals(List.of(98500L, 66600L, 43020L, 21517L, 15415L),
+                top5Transactions.stream().map(TransactionRecord::getAmount).collect(Collectors.toList()));
+
+        Assertions.assertEquals(10, dataFetcher.getTopNTransactionsByAmount(100).size());
+        Assertions.assertTrue(dataFetcher.getTopNTransactionsByAmount(0).isEmpty());
+        Assertions.assertEquals(top5Transactions, dataFetcher.indexed().getTopNTransactionsByAmount(5));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> dataFetcher.getTopNTransactionsByAmount(-1));
+    }
+
+    /**
+     * Tests the {@link TransactionDataFetcher#getTopNSenders(int)} method.
+     */
+    @Test
+    public void testGetTopNSenders() {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
 
+        List<String> expectedSenders = List.of("Arthur Shelby", "Tom Shelby", "Grace Burgess", "Billy Kimber", "Aunt Polly");
+        Assertions.assertEquals(expectedSenders, dataFetcher.getTopNSenders(10));
+        Assertions.assertEquals(expectedSenders.subList(0, 2), dataFetcher.getTopNSenders(2));
+        Assertions.assertEquals(expectedSenders, dataFetcher.indexed().getTopNSenders(10));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> dataFetcher.getTopNSenders(-1));
+    }
+
+    /**
+     * Tests that a transaction whose rows are not next to each other in the file is counted once by
+     * {@link TransactionDataFetcher#fromJsonFile(String)}, with the issues of all its rows.
+     */
+    @Test
+    public void testFromJsonFile_RepeatedMtnApart(@TempDir Path directory) throws IOException {
+        Path file = Files.writeString(directory.resolve("transactions.json"), "["
+                + "{\"mtn\": 1, \"amount\": 10, \"senderFullName\": \"Tom Shelby\", \"beneficiaryFullName\": \"Ada Thorne\","
+                + " \"issueId\": 7, \"issueSolved\": false},"
+                + "{\"mtn\": 2, \"amount\": 20, \"senderFullName\": \"Ada Thorne\", \"beneficiaryFullName\": \"Tom Shelby\"},"
+                + "{\"mtn\": 1, \"amount\": 10, \"senderFullName\": \"Tom Shelby\", \"beneficiaryFullName\": \"Ada Thorne\","
+                + " \"issueId\": 8, \"issueSolved\": false}]");
+        TransactionDataFetcher streamingFetcher = TransactionDataFetcher.fromJsonFile(file.toString());
+
+        Assertions.assertEquals(30.0, streamingFetcher.getTotalTransactionAmount());
+        Assertions.assertEquals(30.0, streamingFetcher.query().amountAtLeast(0).sum());
+        Assertions.assertEquals(10.0, streamingFetcher.getTotalTransactionAmountSentBy("Tom Shelby"));
+        Assertions.assertEquals(Optional.of("Ada Thorne"), streamingFetcher.getTopSender());
+        Assertions.assertEquals(2, streamingFetcher.getTopNTransactionsByAmount(5).size());
+        Assertions.assertEquals(Set.of(7, 8), streamingFetcher.getOpenIssuesForClient("Tom Shelby"));
+    }
+
+    /**
+     * Tests that a fetcher over a json file answers top n queries for more transactions than its index keeps.
+     */
+    @Test
+    public void testFromJsonFile_TopNBeyondIndex(@TempDir Path directory) throws IOException {
+        StringJoiner rows = new StringJoiner(",\n", "[\n", "\n]");
+        for (int mtn = 0; mtn < 1500; mtn++) {
+            rows.add("{\"mtn\": " + mtn + ", \"amount\": " + (mtn * 7 % 1000) + ", \"senderFullName\": \"Client " + mtn % 10
+                    + "\", \"beneficiaryFullName\": \"Client " + mtn % 13 + "\"}");
+        }
+        Path file = Files.writeString(directory.resolve("transactions.json"), rows.toString());
+        TransactionDataFetcher streamingFetcher = TransactionDataFetcher.fromJsonFile(file.toString());
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(JsonFileParser.readTransactionJsonFile(file.toString()));
+
+        Assertions.assertEquals(1500, streamingFetcher.getTopNTransactionsByAmount(1500).size());
+        Assertions.assertEquals(dataFetcher.getTopNTransactionsByAmount(1200), streamingFetcher.getTopNTransactionsByAmount(1200));
+        Assertions.assertEquals(dataFetcher.getTopNTransactionsByAmount(10), streamingFetcher.getTopNTransactionsByAmount(10));
+    }
+
+    /**
+     * Tests that {@link TransactionDataFetcher#fromJsonFile(String)} streams the file and gives the same results.
+     */
+    @Test
+    public void testFromJsonFile() throws IOException {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
+        TransactionDataFetcher streamingFetcher = TransactionDataFetcher.fromJsonFile("transactions.json");
+
+        Assertions.assertEquals(dataFetcher.getTotalTransactionAmount(), streamingFetcher.getTotalTransactionAmount());
+        Assertions.assertEquals(dataFetcher.getTotalTransactionAmountSentBy("Tom Shelby"),
+                streamingFetcher.getTotalTransactionAmountSentBy("Tom Shelby"));
+        Assertions.assertEquals(dataFetcher.getMaxTransactionAmount(), streamingFetcher.getMaxTransactionAmount());
+        Assertions.assertEquals(dataFetcher.countUniqueClients(), streamingFetcher.countUniqueClients());
+        Assertions.assertEquals(dataFetcher.getUnsolvedIssueIds(), streamingFetcher.getUnsolvedIssueIds());
+        Assertions.assertEquals(dataFetcher.getAllSolvedIssueMessages(), streamingFetcher.getAllSolvedIssueMessages());
+        Assertions.assertEquals(dataFetcher.getTopSender(), streamingFetcher.getTopSender());
+        Assertions.assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), streamingFetcher.getTransactionsByBeneficiaryName());
+
+        Assertions.assertThrows(IOException.class, () -> TransactionDataFetcher.fromJsonFile("file_does_not_exist.json"));
+    }
+
+    /**
+     * Tests that {@link TransactionDataFetcher#indexed()} answers every query like the scanning fetcher.
+     */
+    @Test
+    public void testIndexed() {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
+        TransactionDataFetcher indexedFetcher = dataFetcher.indexed();
+
+        Assertions.assertEquals(dataFetcher.getTotalTransactionAmount(), indexedFetcher.getTotalTransactionAmount());
+        Assertions.assertEquals(dataFetcher.getTotalTransactionAmountSentBy("tom shelby"),
+                indexedFetcher.getTotalTransactionAmountSentBy("tom shelby"));
+        Assertions.assertEquals(0.0, indexedFetcher.getTotalTransactionAmountSentBy("Nobody"));
+        Assertions.assertEquals(dataFetcher.getMaxTransactionAmount(), indexedFetcher.getMaxTransactionAmount());
+        Assertions.assertEquals(dataFetcher.countUniqueClients(), indexedFetcher.countUniqueClients());
+        Assertions.assertTrue(indexedFetcher.hasOpenComplianceIssues("Tom Shelby"));
+        Assertions.assertFalse(indexedFetcher.hasOpenComplianceIssues("Aunt Polly"));
+        Assertions.assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), indexedFetcher.getTransactionsByBeneficiaryName());
+        Assertions.assertEquals(dataFetcher.getUnsolvedIssueIds(), indexedFetcher.getUnsolvedIssueIds());
+        Assertions.assertEquals(dataFetcher.getAllSolvedIssueMessages(), indexedFetcher.getAllSolvedIssueMessages());
+        Assertions.assertEquals(dataFetcher.getTop3TransactionsByAmount(), indexedFetcher.getTop3TransactionsByAmount());
+        Assertions.assertEquals(dataFetcher.getTopSender(), indexedFetcher.getTopSender());
+    }
+
+    /**
+     * Tests that appended rows show up in the scanning fetcher and in an indexed fetcher sharing its store.
+     */
+    @Test
+    public void testAppend() {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
+        TransactionDataFetcher indexedFetcher = dataFetcher.indexed();
+        Assertions.assertFalse(indexedFetcher.hasOpenComplianceIssues("Aunt Polly"));
+
+        dataFetcher.append(transaction(1, 200000, "Ada Thorne", "Tom Shelby", 200));
+        dataFetcher.appendAll(List.of(
+                transaction(96132456, 6780, "Aunt Polly", "Aberama Gold", 201),
+                transaction(2, 100, "Aunt Polly", "Esme Lee", null)));
+
+        for (TransactionDataFetcher fetcher : List.of(dataFetcher, indexedFetcher)) {
+            Assertions.assertEquals(4890.17, fetcher.getTotalTransactionAmount());
+            Assertions.assertEquals(2000.0, fetcher.getMaxTransactionAmount());
+            Assertions.assertEquals(102.02, fetcher.getTotalTransactionAmountSentBy("Aunt Polly"));
+            Assertions.assertEquals(16, fetcher.countUniqueClients());
+            Assertions.assertTrue(fetcher.hasOpenComplianceIssues("Aunt Polly"));
+            Assertions.assertTrue(fetcher.getUnsolvedIssueIds().containsAll(List.of(200, 201)));
+            Assertions.assertEquals(1, fetcher.getTop3TransactionsByAmount().get(0).getMtn());
+            Assertions.assertEquals(Optional.of("Ada Thorne"), fetcher.getTopSender());
+        }
+        Assertions.assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), indexedFetcher.getTransactionsByBeneficiaryName());
+        Assertions.assertEquals(dataFetcher.getTopNSenders(10), indexedFetcher.getTopNSenders(10));
+    }
+
+    /**
+     * Tests that results taken from an indexed fetcher, directly or through a cache, do not change or break
+     * when rows are appended and issues solved afterwards.
+     */
+    @Test
+    public void testResultsAreNotChangedByLaterAppends() {
+        TransactionDataFetcher indexedFetcher = new TransactionDataFetcher(transactionList).indexed();
+        CachingTransactionDataFetcher cachingFetcher = new CachingTransactionDataFetcher(indexedFetcher, 10);
+        List<TransactionRecord> top3 = indexedFetcher.getTop3TransactionsByAmount();
+        List<TransactionRecord> cachedTop3 = cachingFetcher.getTop3TransactionsByAmount();
+        Set<Integer> tomOpenIssues = indexedFetcher.getOpenIssuesForClient("Tom Shelby");
+        Set<Integer> unsolvedIssueIds = indexedFetcher.getUnsolvedIssueIds();
+        List<String> solvedIssueMessages = indexedFetcher.getAllSolvedIssueMessages();
+        List<Integer> top3Mtns = top3.stream().map(TransactionRecord::getMtn).collect(Collectors.toList());
+
+        indexedFetcher.append(transaction(1, 200000, "Ada Thorne", "Tom Shelby", 200));
+        indexedFetcher.setIssueSolved(1, true);
+        Assertions.assertEquals(1, indexedFetcher.getTop3TransactionsByAmount().get(0).getMtn());
+        Assertions.assertEquals(1, cachingFetcher.getTop3TransactionsByAmount().get(0).getMtn());
+
+        Assertions.assertEquals(top3Mtns, top3.stream().map(TransactionRecord::getMtn).collect(Collectors.toList()));
+        Assertions.assertEquals(top3Mtns, cachedTop3.stream().map(TransactionRecord::getMtn).collect(Collectors.toList()));
+        Assertions.assertEquals(Set.of(1, 3), tomOpenIssues);
+        Assertions.assertEquals(Set.of(1, 3, 15, 54, 99), unsolvedIssueIds);
+        Assertions.assertEquals(3, solvedIssueMessages.size());
+        Assertions.assertEquals(Set.of(3, 200), indexedFetcher.getOpenIssuesForClient("Tom Shelby"));
+    }
+
+    /**
+     * Tests solving and reopening an issue.
+     */
+    @Test
+    public void testSetIssueSolved() throws IOException {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactionList);
+        TransactionDataFetcher indexedFetcher = dataFetcher.indexed();
+        List<String> solvedIssueMessages = dataFetcher.getAllSolvedIssueMessages();
+
+        dataFetcher.setIssueSolved(1, true);
+        for (TransactionDataFetcher fetcher : List.of(dataFetcher, indexedFetcher)) {
+            Assertions.assertFalse(fetcher.hasOpenComplianceIssues("Alfie Solomons"));
+            Assertions.assertTrue(fetcher.hasOpenComplianceIssues("Tom Shelby"));
+            Assertions.assertFalse(fetcher.getUnsolvedIssueIds().contains(1));
+            Assertions.assertTrue(fetcher.getAllSolvedIssueMessages().contains("Looks like money laundering"));
+            Assertions.assertFalse(fetcher.getTop3TransactionsByAmount().get(2).hasOpenIssues());
+        }
+        Assertions.assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), indexedFetcher.getTransactionsByBeneficiaryName());
+
+        indexedFetcher.setIssueSolved(1, false);
+        for (TransactionDataFetcher fetcher : List.of(dataFetcher, indexedFetcher)) {
+            Assertions.assertTrue(fetcher.hasOpenComplianceIssues("Alfie Solomons"));
+            Assertions.assertTrue(fetcher.getUnsolvedIssueIds().contains(1));
+            Assertions.assertEquals(solvedIssueMessages, fetcher.getAllSolvedIssueMessages());
+        }
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> dataFetcher.setIssueSolved(12345, true));
+        TransactionDataFetcher fileFetcher = TransactionDataFetcher.fromJsonFile("transactions.json");
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> fileFetcher.setIssueSolved(1, true));
+    }
+
+    /**
+     * Tests that {@link TransactionDataFetcher#parallel(ForkJoinPool)} gives the same answers as the sequential scans
+     * on data large enough to be split into partitions.
+     */
+    @Test
+    public void testParallel() {
+        Random random = new Random(42);
+        TransactionStore store = new TransactionStore();
+        for (int mtn = 0; mtn < 200_000; mtn++) {
+            Transaction transaction = new Transaction();
+            transaction.setMtn(mtn);
+            transaction.setAmount(random.nextInt(100_000));
+            transaction.setSenderFullName("Sender " + random.nextInt(500));
+            transaction.setBeneficiaryFullName("Beneficiary " + mtn);
+            if (random.nextInt(10) == 0) {
+                transaction.setIssueId(mtn);
+                transaction.setIssueSolved(random.nextBoolean());
+                transaction.setIssueMessage("Issue " + mtn);
+            }
+            store.add(transaction);
+        }
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(store);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TransactionDataFetcher parallelFetcher = dataFetcher.parallel(pool);
+
+            Assertions.assertEquals(dataFetcher.getTotalTransactionAmount(), parallelFetcher.getTotalTransactionAmount());
+            Assertions.assertEquals(dataFetcher.getTotalTransactionAmountSentBy("Sender 7"),
+                    parallelFetcher.getTotalTransactionAmountSentBy("Sender 7"));
+            Assertions.assertEquals(dataFetcher.getMaxTransactionAmount(), parallelFetcher.getMaxTransactionAmount());
+            Assertions.assertEquals(dataFetcher.countUniqueClients(), parallelFetcher.countUniqueClients());
+            Assertions.assertEquals(dataFetcher.hasOpenComplianceIssues("Sender 7"),
+                    parallelFetcher.hasOpenComplianceIssues("Sender 7"));
+            Assertions.assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), parallelFetcher.getTransactionsByBeneficiaryName());
+            Assertions.assertEquals(dataFetcher.getUnsolvedIssueIds(), parallelFetcher.getUnsolvedIssueIds());
+            Assertions.assertEquals(dataFetcher.getAllSolvedIssueMessages(), parallelFetcher.getAllSolvedIssueMessages());
+            Assertions.assertEquals(dataFetcher.getTop3TransactionsByAmount(), parallelFetcher.getTop3TransactionsByAmount());
+            Assertions.assertEquals(dataFetcher.getTopSender(), parallelFetcher.getTopSender());
+            Assertions.assertEquals(dataFetcher.getTopNTransactionsByAmount(1000), parallelFetcher.getTopNTransactionsByAmount(1000));
+            Assertions.assertEquals(dataFetcher.getTopNTransactionsByAmount(1000), dataFetcher.indexed().getTopNTransactionsByAmount(1000));
+            Assertions.assertEquals(dataFetcher.getTopNSenders(100), parallelFetcher.getTopNSenders(100));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Transaction transaction(int mtn, long amount, String sender, String beneficiary, Integer issueId) {
+        Transaction transaction = new Transaction();
+        transaction.setMtn(mtn);
+        transaction.setAmount(amount);
+        transaction.setSenderFullName(sender);
+        transaction.setBeneficiaryFullName(beneficiary);
+        transaction.setIssueId(issueId);
+        transaction.setIssueMessage(issueId == null ? null : "Issue " + issueId);
+        return transaction;
+    }
 }
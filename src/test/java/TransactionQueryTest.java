@@ -0,0 +1,179 @@
+import com.smallworld.PropertiesLoader;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.TransactionQuery;
+import com.smallworld.data.Issue;
+import com.smallworld.data.Transaction;
+import com.smallworld.data.TransactionRecord;
+import org.apache.commons.configuration.ConfigurationException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+public class TransactionQueryTest {
+
+    /**
+     * Fetcher over the test transactions.
+     */
+    private static TransactionDataFetcher dataFetcher;
+
+    @BeforeAll
+    public static void setUp() throws ConfigurationException, IOException {
+        dataFetcher = TransactionDataFetcher.fromJsonFile(new PropertiesLoader().getJsonFilePath());
+    }
+
+    /**
+     * Tests that the filters combine, whichever drives the access.
+     */
+    @Test
+    public void testFilters() {
+        TransactionQuery tomAbove100 = dataFetcher.query().sender("Tom Shelby").amountAtLeast(100);
+        Assertions.assertEquals(2, tomAbove100.count());
+        Assertions.assertEquals(580.4, tomAbove100.sum());
+        Assertions.assertEquals(430.2, tomAbove100.max());
+
+        Assertions.assertEquals(4, dataFetcher.query().withOpenIssues().count());
+        Assertions.assertEquals(2231.4, dataFetcher.query().withOpenIssues().sum());
+        Assertions.assertEquals(6, dataFetcher.query().withoutOpenIssues().count());
+        Assertions.assertEquals(3, dataFetcher.query().beneficiaryAgeBetween(50, 60).count());
+        Assertions.assertEquals(2, dataFetcher.query().client("Arthur Shelby").count());
+        Assertions.assertEquals(215.17, dataFetcher.query().sender("Billy Kimber").max());
+        Assertions.assertEquals(1, dataFetcher.query().beneficiary("Michael Gray").amountBetween(666, 666).count());
+        Assertions.assertEquals(0, dataFetcher.query().beneficiary("Michael Gray").amountBetween(666.01, 667).count());
+
+        Assertions.assertTrue(dataFetcher.query().client("Tom Shelby").withOpenIssues().exists());
+        Assertions.assertFalse(dataFetcher.query().client("Aunt Polly").withOpenIssues().exists());
+        Assertions.assertFalse(dataFetcher.query().sender("Nobody").exists());
+        Assertions.assertEquals(0.0, dataFetcher.query().sender("Nobody").max());
+    }
+
+    /**
+     * Tests the issue queries, driven by the issue bitsets.
+     */
+    @Test
+    public void testIssues() {
+        Assertions.assertEquals(Set.of(3, 15), dataFetcher.query().client("Arthur Shelby").openIssueIds());
+        Assertions.assertEquals(Set.of(54, 99), dataFetcher.query().sender("Grace Burgess").openIssueIds());
+        Assertions.assertEquals(Set.of(1, 3, 15, 54, 99), dataFetcher.query().openIssueIds());
+        Assertions.assertEquals(List.of("Never gonna let you down"),
+                dataFetcher.query().amountAtMost(100).solvedIssueMessages());
+        Assertions.assertEquals(Set.of(), dataFetcher.query().withoutOpenIssues().openIssueIds());
+    }
+
+    /**
+     * Tests the aggregates per client and the distinct counts.
+     */
+    @Test
+    public void testGroupingAndDistinctCounts() {
+        Map<String, Double> sums = dataFetcher.query().groupBySender().sums();
+        Assertions.assertEquals(5, sums.size());
+        Assertions.assertEquals(678.06, sums.get("Tom Shelby"));
+        Assertions.assertEquals(459.09, sums.get("Billy Kimber"));
+        Assertions.assertEquals(List.of("Arthur Shelby", "Tom Shelby"), dataFetcher.query().groupBySender().top(2));
+        Assertions.assertEquals(List.of("Arthur Shelby"), dataFetcher.query().withOpenIssues().groupBySender().top(1));
+        Assertions.assertEquals(Map.of("Tom Shelby", 2L, "Arthur Shelby", 1L, "Grace Burgess", 1L, "Billy Kimber", 2L),
+                dataFetcher.query().amountAtLeast(100).groupBySender().counts());
+        Assertions.assertEquals(Set.of("Arthur Shelby", "Ben Younger", "Michael Gray", "Alfie Solomons"),
+                dataFetcher.query().withOpenIssues().groupByBeneficiary().transactions().keySet());
+
+        Assertions.assertEquals(14, dataFetcher.query().countDistinctClients());
+        Assertions.assertEquals(2, dataFetcher.query().senderAgeBetween(30, 40).countDistinctSenders());
+        Assertions.assertEquals(3, dataFetcher.query().sender("Tom Shelby").countDistinctBeneficiaries());
+        Assertions.assertEquals(4, dataFetcher.query().sender("Tom Shelby").countDistinctClients());
+
+        List<TransactionRecord> top = dataFetcher.query().withoutOpenIssues().topByAmount(2);
+        Assertions.assertEquals(List.of(645645111, 36448252),
+                top.stream().map(TransactionRecord::getMtn).collect(Collectors.toList()));
+    }
+
+    /**
+     * Tests the access paths the plans pick and the checks left to the rows.
+     */
+    @Test
+    public void testExplain() {
+        Assertions.assertEquals("no rows", dataFetcher.query().beneficiary("Nobody").explain());
+        Assertions.assertEquals("no rows", dataFetcher.query().amountBetween(500, 100).explain());
+        Assertions.assertEquals("beneficiary index (1 candidates), then amount",
+                dataFetcher.query().beneficiary("Michael Gray").amountAtLeast(1).explain());
+        Assertions.assertTrue(dataFetcher.query().withOpenIssues().explain().startsWith("open issue rows"));
+        Assertions.assertEquals("full scan (10 candidates), then sender",
+                dataFetcher.query().sender("Tom Shelby").explain());
+        Assertions.assertEquals("full scan (10 candidates)", dataFetcher.query().explain());
+    }
+
+    /**
+     * Tests that scanned, indexed and parallel fetchers answer like a stream over the transactions.
+     */
+    @Test
+    public void testAccessPathsAgree() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int mtn = 0; mtn < 20_000; mtn++) {
+            Transaction transaction = new Transaction();
+            transaction.setMtn(mtn);
+            transaction.setAmount(100 + mtn * 7919L % 10_000);
+            transaction.setSenderFullName("Client " + mtn % 300);
+            transaction.setSenderAge(18 + mtn % 60);
+            transaction.setBeneficiaryFullName("Client " + mtn * 31 % 500);
+            transaction.setBeneficiaryAge(18 + mtn % 70);
+            if (mtn % 7 == 0) {
+                transaction.setIssueId(mtn);
+                transaction.setIssueSolved(mtn % 3 == 0);
+                transaction.setIssueMessage("Issue " + mtn);
+            }
+            transactions.add(transaction);
+        }
+        TransactionDataFetcher scanned = new TransactionDataFetcher(transactions);
+        List<TransactionRecord> records = scanned.query().transactions();
+        Assertions.assertEquals(transactions.size(), records.size());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (TransactionDataFetcher fetcher : List.of(scanned, scanned.indexed(), scanned.parallel(pool))) {
+                assertAgrees(records, r -> true, fetcher.query());
+                assertAgrees(records, r -> r.getSenderFullName().equals("Client 42"),
+                        fetcher.query().sender("Client 42"));
+                assertAgrees(records, r -> r.getBeneficiaryFullName().equals("Client 7") && r.getAmount() >= 5_000,
+                        fetcher.query().beneficiary("Client 7").amountAtLeast(50));
+                assertAgrees(records, r -> r.hasOpenIssues() && r.getSenderAge() <= 40,
+                        fetcher.query().withOpenIssues().senderAgeBetween(0, 40));
+                assertAgrees(records, r -> !r.hasOpenIssues() && r.getAmount() <= 2_000
+                                && (r.getSenderFullName().equals("Client 3") || r.getBeneficiaryFullName().equals("Client 3")),
+                        fetcher.query().withoutOpenIssues().amountAtMost(20).client("Client 3"));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void assertAgrees(List<TransactionRecord> records, Predicate<TransactionRecord> filter,
+                                     TransactionQuery query) {
+        List<TransactionRecord> expected = records.stream().filter(filter).collect(Collectors.toList());
+        Assertions.assertEquals(expected.size(), query.count());
+        Assertions.assertEquals(!expected.isEmpty(), query.exists());
+        Assertions.assertEquals(expected.stream().mapToLong(TransactionRecord::getAmount).sum() / 100.0, query.sum());
+        Assertions.assertEquals(expected.stream().mapToLong(TransactionRecord::getAmount).max().orElse(0) / 100.0,
+                query.max());
+        Assertions.assertEquals(new HashSet<>(expected), new HashSet<>(query.transactions()));
+        Assertions.assertEquals(expected.stream().map(TransactionRecord::getSenderFullName).distinct().count(),
+                query.countDistinctSenders());
+        Assertions.assertEquals(expected.stream().mapToLong(TransactionRecord::getAmount).boxed()
+                        .sorted(Comparator.reverseOrder()).limit(5).collect(Collectors.toList()),
+                query.topByAmount(5).stream().map(TransactionRecord::getAmount).collect(Collectors.toList()));
+        Assertions.assertEquals(expected.stream().collect(Collectors.groupingBy(TransactionRecord::getSenderFullName,
+                        Collectors.counting())), query.groupBySender().counts());
+        Assertions.assertEquals(expected.stream().collect(Collectors.groupingBy(TransactionRecord::getBeneficiaryFullName,
+                        Collectors.mapping(Function.identity(), Collectors.toSet()))),
+                query.groupByBeneficiary().transactions().entrySet().stream()
+                        .collect(Collectors.toMap(Map.Entry::getKey, e -> new HashSet<>(e.getValue()))));
+        Assertions.assertEquals(expected.stream().flatMap(r -> r.getIssues().stream())
+                        .filter(issue -> !issue.isSolved()).map(Issue::getId)
+                        .collect(Collectors.toSet()),
+                query.openIssueIds());
+    }
+}
@@ -0,0 +1,97 @@
+import com.smallworld.JsonFileParser;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.data.TransactionStore;
+import com.smallworld.data.TransactionStoreFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+
+public class TransactionStoreFileTest {
+
+    /**
+     * Store loaded from the test transactions.
+     */
+    private static TransactionStore store;
+
+    /**
+     * Same store written to a binary file and mapped back.
+     */
+    private static TransactionStore mapped;
+
+    /**
+     * Writes the test transactions to a store file and maps it.
+     * @throws IOException If there is an error in reading or writing the files.
+     */
+    @BeforeAll
+    public static void setUp(@TempDir Path directory) throws IOException {
+        store = JsonFileParser.readTransactionStore("transactions.json");
+        String storeFile = directory.resolve("transactions.store").toString();
+        TransactionStoreFile.write(store, storeFile);
+        mapped = TransactionStoreFile.map(storeFile);
+    }
+
+    /**
+     * Tests that the mapped store has the same rows, issues and clients.
+     */
+    @Test
+    public void testColumns() {
+        Assertions.assertEquals(store.size(), mapped.size());
+        Assertions.assertEquals(store.issueCount(), mapped.issueCount());
+        Assertions.assertEquals(store.clientCount(), mapped.clientCount());
+        Assertions.assertEquals(store.records().collect(Collectors.toList()), mapped.records().collect(Collectors.toList()));
+        for (int row = 0; row < store.size(); row++) {
+            Assertions.assertEquals(row, mapped.rowOf(store.mtn(row)));
+            Assertions.assertEquals(store.hasOpenIssues(row), mapped.hasOpenIssues(row));
+        }
+        for (int issue = 0; issue < store.issueCount(); issue++) {
+            Assertions.assertEquals(issue, mapped.issueOf(store.issueId(issue)));
+            Assertions.assertEquals(store.nextSolvedIssue(issue), mapped.nextSolvedIssue(issue));
+            Assertions.assertEquals(store.nextUnsolvedIssue(issue), mapped.nextUnsolvedIssue(issue));
+        }
+        Assertions.assertEquals(-1, mapped.rowOf(42));
+        Assertions.assertEquals(-1, mapped.issueOf(12345));
+        Assertions.assertEquals(store.clientIdOf("TOM SHELBY"), mapped.clientIdOf("TOM SHELBY"));
+    }
+
+    /**
+     * Tests that a fetcher over the mapped store answers like one over the heap store.
+     */
+    @Test
+    public void testFetcher() {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(store);
+        TransactionDataFetcher mappedFetcher = new TransactionDataFetcher(mapped);
+
+        Assertions.assertEquals(dataFetcher.getTotalTransactionAmount(), mappedFetcher.getTotalTransactionAmount());
+        Assertions.assertEquals(dataFetcher.getTotalTransactionAmountSentBy("Tom Shelby"),
+                mappedFetcher.getTotalTransactionAmountSentBy("Tom Shelby"));
+        Assertions.assertEquals(dataFetcher.getMaxTransactionAmount(), mappedFetcher.getMaxTransactionAmount());
+        Assertions.assertEquals(dataFetcher.countUniqueClients(), mappedFetcher.countUniqueClients());
+        Assertions.assertTrue(mappedFetcher.hasOpenComplianceIssues("Tom Shelby"));
+        Assertions.assertFalse(mappedFetcher.hasOpenComplianceIssues("Aunt Polly"));
+        Assertions.assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), mappedFetcher.getTransactionsByBeneficiaryName());
+        Assertions.assertEquals(dataFetcher.getUnsolvedIssueIds(), mappedFetcher.getUnsolvedIssueIds());
+        Assertions.assertEquals(dataFetcher.getAllSolvedIssueMessages(), mappedFetcher.getAllSolvedIssueMessages());
+        Assertions.assertEquals(dataFetcher.getTop3TransactionsByAmount(), mappedFetcher.getTop3TransactionsByAmount());
+        Assertions.assertEquals(dataFetcher.getTopSender(), mappedFetcher.getTopSender());
+        Assertions.assertEquals(dataFetcher.getTopSender(), mappedFetcher.indexed().getTopSender());
+    }
+
+    /**
+     * Tests that the mapped store rejects changes and that other files are rejected.
+     */
+    @Test
+    public void testInvalidUse(@TempDir Path directory) throws IOException {
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> mapped.add(new Transaction()));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> mapped.setIssueSolved(0, true));
+        Assertions.assertThrows(IOException.class, () -> TransactionStoreFile.map("transactions.json"));
+        Path empty = Files.createFile(directory.resolve("empty.store"));
+        Assertions.assertThrows(IOException.class, () -> TransactionStoreFile.map(empty.toString()));
+    }
+}
@@ -0,0 +1,201 @@
+import com.smallworld.JsonFileParser;
+import com.smallworld.data.BeneficiaryIndex;
+import com.smallworld.data.ClientDictionary;
+import com.smallworld.data.Issue;
+import com.smallworld.data.Transaction;
+import com.smallworld.data.TransactionRecord;
+import com.smallworld.data.TransactionStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class TransactionStoreTest {
+
+    /**
+     * Store loaded from the test transactions.
+     */
+    private static TransactionStore store;
+
+    /**
+     * Loads the json file into the store.
+     * @throws IOException If there is an error in reading the JSON file.
+     */
+    @BeforeAll
+    public static void setUp() throws IOException {
+        store = JsonFileParser.readTransactionStore("transactions.json");
+    }
+
+    /**
+     * Tests that the rows of the join are stored once per mtn.
+     */
+    @Test
+    public void testOneRowPerMtn() {
+        Assertions.assertEquals(10, store.size());
+        Assertions.assertEquals(8, store.issueCount());
+
+        int row = store.rowOf(32612651);
+        Assertions.assertEquals(32612651, store.mtn(row));
+        Assertions.assertEquals(66600, store.amount(row));
+        Assertions.assertEquals("Grace Burgess", store.clientName(store.senderId(row)));
+        Assertions.assertEquals("Michael Gray", store.clientName(store.beneficiaryId(row)));
+        Assertions.assertTrue(store.hasOpenIssues(row));
+        Assertions.assertEquals(-1, store.rowOf(42));
+    }
+
+    /**
+     * Tests that client names are dictionary encoded.
+     */
+    @Test
+    public void testClientDictionary() {
+        Assertions.assertEquals(14, store.clientCount());
+        int tomShelby = store.senderId(store.rowOf(663458));
+        Assertions.assertEquals(tomShelby, store.senderId(store.rowOf(1284564)));
+    }
+
+    /**
+     * Tests that a row is materialized back into a record with its issues.
+     */
+    @Test
+    public void testRecord() {
+        TransactionRecord record = store.record(store.rowOf(32612651));
+        Assertions.assertEquals(66600, record.getAmount());
+        Assertions.assertEquals(List.of(54, 78, 99),
+                record.getIssues().stream().map(Issue::getId).collect(Collectors.toList()));
+        Assertions.assertEquals(List.of(false, true, false),
+                record.getIssues().stream().map(Issue::isSolved).collect(Collectors.toList()));
+    }
+
+    /**
+     * Tests that a snapshot is not affected by later changes to the store and rejects changes itself.
+     */
+    @Test
+    public void testSnapshot() throws IOException {
+        TransactionStore writable = JsonFileParser.readTransactionStore("transactions.json");
+        TransactionStore snapshot = writable.snapshot();
+
+        Transaction transaction = new Transaction();
+        transaction.setMtn(96132456);
+        transaction.setSenderFullName("Aunt Polly");
+        transaction.setBeneficiaryFullName("Aberama Gold");
+        transaction.setIssueId(100);
+        writable.add(transaction);
+        transaction.setMtn(42);
+        transaction.setSenderFullName("Ada Thorne");
+        writable.add(transaction);
+        writable.setIssueSolved(writable.issueOf(54), true);
+
+        Assertions.assertEquals(11, writable.size());
+        Assertions.assertEquals(10, snapshot.size());
+        Assertions.assertEquals(8, snapshot.issueCount());
+        Assertions.assertEquals(-1, snapshot.rowOf(42));
+        Assertions.assertEquals(-1, snapshot.issueOf(100));
+        Assertions.assertEquals(14, snapshot.clientCount());
+        Assertions.assertEquals(-1, snapshot.clientIdOf("Ada Thorne"));
+        Assertions.assertTrue(snapshot.record(snapshot.rowOf(96132456)).getIssues().isEmpty());
+        Assertions.assertFalse(snapshot.isIssueSolved(snapshot.issueOf(54)));
+        Assertions.assertTrue(snapshot.hasOpenIssues(snapshot.rowOf(663458)));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.add(transaction));
+    }
+
+    /**
+     * Tests snapshots taken after every change of a store spanning several chunks of its issue state bitsets:
+     * every snapshot keeps the issue states of its own version.
+     */
+    @Test
+    public void testSnapshotAfterEveryChange() {
+        TransactionStore writable = new TransactionStore();
+        List<TransactionStore> snapshots = new ArrayList<>();
+        int rows = 10_000;
+        for (int row = 0; row < rows; row++) {
+            Transaction transaction = new Transaction();
+            transaction.setMtn(row);
+            transaction.setSenderFullName("Client " + row % 100);
+            transaction.setBeneficiaryFullName("Client " + row % 70);
+            transaction.setIssueId(row);
+            transaction.setIssueSolved(row % 3 == 0);
+            writable.add(transaction);
+            if (row % 1000 == 999) {
+                snapshots.add(writable.snapshot());
+            }
+        }
+        for (int issue = 0; issue < rows; issue += 2) {
+            writable.setIssueSolved(issue, !writable.isIssueSolved(issue));
+            if (issue % 2000 == 0) {
+                snapshots.add(writable.snapshot());
+            }
+        }
+
+        for (int version = 0; version < snapshots.size(); version++) {
+            TransactionStore snapshot = snapshots.get(version);
+            int flipped = version < 10 ? 0 : 2000 * (version - 10) + 2;
+            int solved = 0;
+            for (int issue = snapshot.nextSolvedIssue(0); issue >= 0; issue = snapshot.nextSolvedIssue(issue + 1)) {
+                solved++;
+            }
+            int open = 0;
+            for (int row = snapshot.nextRowWithOpenIssues(0); row >= 0; row = snapshot.nextRowWithOpenIssues(row + 1)) {
+                open++;
+            }
+            Assertions.assertEquals(snapshot.issueCount(), solved + open);
+            for (int issue = 0; issue < snapshot.issueCount(); issue++) {
+                boolean solvedOnLoad = issue % 3 == 0;
+                boolean expected = issue % 2 == 0 && issue < flipped ? !solvedOnLoad : solvedOnLoad;
+                Assertions.assertEquals(expected, snapshot.isIssueSolved(issue));
+                Assertions.assertEquals(!expected, snapshot.hasOpenIssues(issue));
+                if (!expected) {
+                    Assertions.assertEquals(issue, snapshot.nextUnsolvedIssue(issue));
+                }
+            }
+            Assertions.assertEquals(-1, snapshot.nextUnsolvedIssue(snapshot.issueCount()));
+        }
+    }
+
+    /**
+     * Tests that the beneficiary index lists the rows of every beneficiary while rows are appended to the store,
+     * and that a snapshot reusing a newer grouping only sees its own rows.
+     */
+    @Test
+    public void testBeneficiaryIndex() throws IOException {
+        TransactionStore writable = JsonFileParser.readTransactionStore("transactions.json");
+        TransactionStore snapshot = writable.snapshot();
+        assertBeneficiaryIndex(writable);
+
+        for (int mtn = 1; mtn <= 3000; mtn++) {
+            Transaction transaction = new Transaction();
+            transaction.setMtn(mtn);
+            transaction.setSenderFullName("Sender " + mtn);
+            transaction.setBeneficiaryFullName(mtn % 3 == 0 ? "Alfie Solomons" : "Beneficiary " + mtn % 7);
+            writable.add(transaction);
+            if (mtn % 500 == 0 || mtn % 37 == 0) {
+                assertBeneficiaryIndex(writable);
+            }
+        }
+        Assertions.assertEquals(1001, writable.beneficiaryIndex().count(writable.clientIdOf("Alfie Solomons")));
+
+        BeneficiaryIndex snapshotIndex = snapshot.beneficiaryIndex();
+        Assertions.assertEquals(10, snapshotIndex.size());
+        Assertions.assertEquals(1, snapshotIndex.count(snapshot.clientIdOf("Alfie Solomons")));
+        assertBeneficiaryIndex(snapshot);
+        Assertions.assertEquals(0, snapshotIndex.count(ClientDictionary.UNKNOWN));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> snapshotIndex.row(snapshot.clientIdOf("Alfie Solomons"), 1));
+    }
+
+    private static void assertBeneficiaryIndex(TransactionStore store) {
+        BeneficiaryIndex index = store.beneficiaryIndex();
+        Assertions.assertEquals(store.size(), index.size());
+        for (int client = 0; client < store.clientCount(); client++) {
+            int beneficiary = client;
+            List<Integer> expected = IntStream.range(0, store.size())
+                    .filter(row -> store.beneficiaryId(row) == beneficiary)
+                    .boxed()
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(expected, index.rows(beneficiary).boxed().collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+import com.smallworld.JsonFileParser;
+import com.smallworld.WindowedTransactionAggregator;
+import com.smallworld.data.Transaction;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+public class WindowedTransactionAggregatorTest {
+
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    /**
+     * Start of an hour, so tumbling windows of up to an hour start with it.
+     */
+    private static final long START = Instant.parse("2024-01-01T10:00:00Z").toEpochMilli();
+
+    /**
+     * Tests totals, max, top senders and open issues of sliding windows as events arrive.
+     */
+    @Test
+    public void testSlidingWindows() {
+        WindowedTransactionAggregator aggregator = new WindowedTransactionAggregator(Duration.ofMinutes(1), Duration.ofHours(1), 3);
+
+        aggregator.accept(transaction(1, "Tom Shelby", 10000, START));
+        aggregator.accept(transaction(2, "Grace Burgess", 5000, START + 10 * MINUTE));
+        aggregator.accept(withIssue(transaction(3, "Tom Shelby", 2500, START + 58 * MINUTE), 1, false));
+        aggregator.accept(withIssue(transaction(3, "Tom Shelby", 2500, START + 58 * MINUTE), 2, true));
+        aggregator.accept(transaction(4, "Arthur Shelby", 7000, START + 59 * MINUTE + 30000));
+
+        WindowedTransactionAggregator.Window lastHour = aggregator.slidingWindow(Duration.ofHours(1));
+        Assertions.assertEquals(START, lastHour.getStart());
+        Assertions.assertEquals(START + 60 * MINUTE, lastHour.getEnd());
+        Assertions.assertEquals(4, lastHour.getTransactionCount());
+        Assertions.assertEquals(245.0, lastHour.getTotalTransactionAmount());
+        Assertions.assertEquals(100.0, lastHour.getMaxTransactionAmount());
+        Assertions.assertEquals(1, lastHour.getNewOpenIssueCount());
+        Assertions.assertEquals(List.of("Tom Shelby", "Arthur Shelby", "Grace Burgess"), lastHour.getTopSenders());
+        Assertions.assertEquals(125.0, lastHour.getTotalTransactionAmountSentBy("Tom Shelby"));
+        Assertions.assertEquals(0.0, lastHour.getTopSenderError());
+
+        WindowedTransactionAggregator.Window lastFiveMinutes = aggregator.slidingWindow(Duration.ofMinutes(5));
+        Assertions.assertEquals(2, lastFiveMinutes.getTransactionCount());
+        Assertions.assertEquals(95.0, lastFiveMinutes.getTotalTransactionAmount());
+        Assertions.assertEquals(70.0, lastFiveMinutes.getMaxTransactionAmount());
+        Assertions.assertEquals(List.of("Arthur Shelby", "Tom Shelby"), lastFiveMinutes.getTopSenders());
+
+        // the first minute falls out of the last hour
+        aggregator.accept(transaction(5, "Grace Burgess", 100, START + 60 * MINUTE));
+        lastHour = aggregator.slidingWindow(Duration.ofHours(1));
+        Assertions.assertEquals(START + MINUTE, lastHour.getStart());
+        Assertions.assertEquals(4, lastHour.getTransactionCount());
+        Assertions.assertEquals(146.0, lastHour.getTotalTransactionAmount());
+        Assertions.assertEquals(70.0, lastHour.getMaxTransactionAmount());
+        Assertions.assertEquals(List.of("Arthur Shelby", "Grace Burgess", "Tom Shelby"), lastHour.getTopSenders());
+    }
+
+    /**
+     * Tests that tumbling windows are aligned on their length and that out of order events are counted
+     * while they are retained.
+     */
+    @Test
+    public void testTumblingWindowsAndLateEvents() {
+        WindowedTransactionAggregator aggregator = new WindowedTransactionAggregator(Duration.ofMinutes(1), Duration.ofMinutes(15), 2);
+
+        aggregator.accept(transaction(1, "Tom Shelby", 1000, START + 3 * MINUTE));
+        aggregator.accept(transaction(2, "Tom Shelby", 2000, START + 7 * MINUTE));
+        aggregator.accept(transaction(3, "Ada Thorne", 4000, START + 6 * MINUTE));
+
+        WindowedTransactionAggregator.Window current = aggregator.tumblingWindow(Duration.ofMinutes(5));
+        Assertions.assertEquals(START + 5 * MINUTE, current.getStart());
+        Assertions.assertEquals(START + 10 * MINUTE, current.getEnd());
+        Assertions.assertEquals(2, current.getTransactionCount());
+        Assertions.assertEquals(60.0, current.getTotalTransactionAmount());
+        Assertions.assertEquals(List.of("Ada Thorne", "Tom Shelby"), current.getTopSenders());
+        Assertions.assertEquals(3, aggregator.tumblingWindow(Duration.ofMinutes(15)).getTransactionCount());
+
+        // from minute 20 on, the ring retains minutes 6 to 20 only
+        aggregator.accept(transaction(4, "Ada Thorne", 500, START + 20 * MINUTE));
+        aggregator.accept(transaction(5, "Tom Shelby", 500, START + 5 * MINUTE));
+        Assertions.assertEquals(1, aggregator.getLateEventCount());
+        Assertions.assertEquals(START + 20 * MINUTE, aggregator.getLatestEventTime());
+        Assertions.assertEquals(3, aggregator.slidingWindow(Duration.ofMinutes(15)).getTransactionCount());
+        Assertions.assertEquals(2, aggregator.slidingWindow(Duration.ofMinutes(14)).getTransactionCount());
+        Assertions.assertEquals(1, aggregator.tumblingWindow(Duration.ofMinutes(5)).getTransactionCount());
+    }
+
+    /**
+     * Tests that memory is bounded by the number of senders kept, at the cost of a bounded error in their totals.
+     */
+    @Test
+    public void testTopSendersAreBounded() {
+        WindowedTransactionAggregator aggregator = new WindowedTransactionAggregator(Duration.ofMinutes(1), Duration.ofMinutes(5), 2);
+
+        for (int i = 0; i < 1000; i++) {
+            aggregator.accept(transaction(3 * i, "Tom Shelby", 1000, START + i * 100));
+            aggregator.accept(transaction(3 * i + 1, "Arthur Shelby", 500, START + i * 100));
+            aggregator.accept(transaction(3 * i + 2, "Client " + i, 100, START + i * 100));
+        }
+        WindowedTransactionAggregator.Window window = aggregator.slidingWindow(Duration.ofMinutes(5));
+        Assertions.assertEquals(3000, window.getTransactionCount());
+        Assertions.assertEquals(16000.0, window.getTotalTransactionAmount());
+        Assertions.assertEquals(List.of("Tom Shelby", "Arthur Shelby"), window.getTopSenders());
+        Assertions.assertTrue(window.getTopSenderError() > 0);
+        Assertions.assertTrue(window.getTotalTransactionAmountSentBy("Tom Shelby") <= 10000.0);
+        Assertions.assertTrue(window.getTotalTransactionAmountSentBy("Tom Shelby") >= 10000.0 - window.getTopSenderError());
+    }
+
+    /**
+     * Tests an empty aggregator, transactions without event time and windows that are not made of whole buckets.
+     */
+    @Test
+    public void testEmptyAndInvalid() {
+        WindowedTransactionAggregator aggregator = new WindowedTransactionAggregator(Duration.ofMinutes(1), Duration.ofHours(1), 3);
+
+        WindowedTransactionAggregator.Window window = aggregator.slidingWindow(Duration.ofMinutes(5));
+        Assertions.assertEquals(0, window.getTransactionCount());
+        Assertions.assertEquals(0.0, window.getMaxTransactionAmount());
+        Assertions.assertEquals(List.of(), window.getTopSenders());
+
+        Transaction transaction = transaction(1, "Tom Shelby", 1000, START);
+        transaction.setEventTime(null);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> aggregator.accept(transaction));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> aggregator.slidingWindow(Duration.ofSeconds(90)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> aggregator.tumblingWindow(Duration.ofHours(2)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new WindowedTransactionAggregator(Duration.ofMinutes(1), Duration.ofSeconds(30), 3));
+    }
+
+    /**
+     * Tests that event times are read as milliseconds or ISO-8601 instants, by both parsers.
+     * @throws IOException If there is an error in reading the JSON file.
+     */
+    @Test
+    public void testParseEventTime() throws IOException {
+        Path file = Files.createTempFile("transactions", ".json");
+        try {
+            Files.writeString(file, "[{\"mtn\": 1, \"amount\": 1, \"eventTime\": 1704103200000},"
+                    + "{\"mtn\": 2, \"amount\": 1, \"eventTime\": \"2024-01-01T10:00:00Z\"},"
+                    + "{\"mtn\": 3, \"amount\": 1, \"eventTime\": null},"
+                    + "{\"mtn\": 4, \"amount\": 1}]");
+            List<Transaction> bound = JsonFileParser.readTransactionJsonFile(file.toString());
+            List<Transaction> streamed = JsonFileParser.streamTransactionJsonFile(file.toString()).toList();
+            for (List<Transaction> transactions : List.of(bound, streamed)) {
+                Assertions.assertEquals(START, transactions.get(0).getEventTime());
+                Assertions.assertEquals(START, transactions.get(1).getEventTime());
+                Assertions.assertNull(transactions.get(2).getEventTime());
+                Assertions.assertNull(transactions.get(3).getEventTime());
+            }
+
+            Files.writeString(file, "[{\"mtn\": 1, \"amount\": 1, \"eventTime\": \"yesterday\"}]");
+            Assertions.assertThrows(IOException.class, () -> JsonFileParser.readTransactionJsonFile(file.toString()));
+            Assertions.assertThrows(IOException.class, () -> JsonFileParser.forEachTransaction(file.toString(), transaction -> { }));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static Transaction transaction(int mtn, String sender, long amount, long eventTime) {
+        Transaction transaction = new Transaction();
+        transaction.setMtn(mtn);
+        transaction.setAmount(amount);
+        transaction.setSenderFullName(sender);
+        transaction.setBeneficiaryFullName("Beneficiary " + mtn);
+        transaction.setEventTime(eventTime);
+        return transaction;
+    }
+
+    private static Transaction withIssue(Transaction transaction, int issueId, boolean solved) {
+        transaction.setIssueId(issueId);
+        transaction.setIssueSolved(solved);
+        return transaction;
+    }
+}